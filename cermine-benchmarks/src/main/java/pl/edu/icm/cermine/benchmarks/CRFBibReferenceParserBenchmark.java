@@ -0,0 +1,71 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pl.edu.icm.cermine.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import pl.edu.icm.cermine.bibref.CRFBibReferenceParser;
+import pl.edu.icm.cermine.bibref.model.BibEntry;
+import pl.edu.icm.cermine.exception.AnalysisException;
+
+/**
+ * Parsing of the reference strings of the bibref fixture with the default
+ * CRF model. {@code parseBibReference} parses a single reference per
+ * invocation, cycling through the fixture, {@code parseBibReferences} parses
+ * all of them as a batch.
+ *
+ * @author Dominika Tkaczyk
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CRFBibReferenceParserBenchmark {
+
+    private CRFBibReferenceParser parser;
+
+    private List<String> references;
+
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException, AnalysisException {
+        parser = CRFBibReferenceParser.getInstance();
+        references = Fixtures.readLines("bibref/refs.txt");
+    }
+
+    @Benchmark
+    public BibEntry parseBibReference() throws AnalysisException {
+        String reference = references.get(next);
+        next = (next + 1) % references.size();
+        return parser.parseBibReference(reference);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<BibEntry> parseBibReferences() throws AnalysisException {
+        return parser.parseBibReferences(references);
+    }
+
+}
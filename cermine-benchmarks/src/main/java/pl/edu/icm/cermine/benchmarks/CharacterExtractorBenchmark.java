@@ -0,0 +1,67 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.*;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.structure.ITextCharacterExtractor;
+import pl.edu.icm.cermine.structure.PdfSource;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+
+/**
+ * Character extraction from the PDF fixtures, read into memory beforehand.
+ *
+ * @author Dominika Tkaczyk
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CharacterExtractorBenchmark {
+
+    @Param({"test1.pdf", "test2.pdf", "test3.pdf"})
+    public String pdf;
+
+    private ITextCharacterExtractor extractor;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        extractor = new ITextCharacterExtractor();
+        InputStream stream = Fixtures.open(pdf);
+        try {
+            bytes = IOUtils.toByteArray(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Benchmark
+    public BxDocument extractCharacters() throws AnalysisException {
+        return extractor.extractCharacters(PdfSource.fromBytes(bytes));
+    }
+
+}
@@ -0,0 +1,110 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.benchmarks;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.PdfContentByte;
+import com.itextpdf.text.pdf.PdfWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.structure.ITextCharacterExtractor;
+import pl.edu.icm.cermine.structure.PdfSource;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+
+/**
+ * Character extraction from generated pages, which spends much of the time
+ * filtering the chunks. The "overprinted" page holds three columns of text,
+ * every line drawn twice with a small offset like fake bold text, so that half
+ * of the chunks are removed as duplicates. The "dense" page holds a thousand
+ * lines spaced much closer than their height, so that the overcrowded areas
+ * are filtered out.
+ *
+ * @author Dominika Tkaczyk
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChunkFilterBenchmark {
+
+    @Param({"overprinted", "dense"})
+    public String page;
+
+    private ITextCharacterExtractor extractor;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() throws IOException, DocumentException {
+        extractor = new ITextCharacterExtractor();
+        bytes = createPdf("overprinted".equals(page));
+    }
+
+    @Benchmark
+    public BxDocument extractCharacters() throws AnalysisException {
+        return extractor.extractCharacters(PdfSource.fromBytes(bytes));
+    }
+
+    private static byte[] createPdf(boolean overprinted) throws IOException, DocumentException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Document document = new Document(PageSize.A4);
+        PdfWriter writer = PdfWriter.getInstance(document, out);
+        document.open();
+        PdfContentByte canvas = writer.getDirectContent();
+        canvas.beginText();
+        canvas.setFontAndSize(BaseFont.createFont(), 6);
+        if (overprinted) {
+            for (int line = 0; line < 100; line++) {
+                for (int column = 0; column < 3; column++) {
+                    String text = createLine(line + column, 50);
+                    float x = 20 + column * 180, y = 20 + line * 8;
+                    canvas.setTextMatrix(x, y);
+                    canvas.showText(text);
+                    canvas.setTextMatrix(x + 0.3f, y);
+                    canvas.showText(text);
+                }
+            }
+        } else {
+            for (int line = 0; line < 1000; line++) {
+                canvas.setTextMatrix(20, 20 + line * 0.8f);
+                canvas.showText(createLine(line, 20));
+            }
+        }
+        canvas.endText();
+        document.close();
+        return out.toByteArray();
+    }
+
+    private static String createLine(int line, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int index = 0; index < length; index++) {
+            text.append((char) ('a' + (line + index) % 26));
+        }
+        return text.toString();
+    }
+
+}
@@ -0,0 +1,143 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pl.edu.icm.cermine.benchmarks;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.apache.commons.io.IOUtils;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.DocstrumSegmenter;
+import pl.edu.icm.cermine.structure.ITextCharacterExtractor;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentReader;
+
+/**
+ * Loads the benchmark fixtures, which are the test resources of cermine-impl
+ * packaged with the benchmarks.
+ *
+ * @author Dominika Tkaczyk
+ */
+final class Fixtures {
+
+    static final String RESOURCES = "/pl/edu/icm/cermine/";
+
+    static InputStream open(String resource) throws IOException {
+        InputStream stream = Fixtures.class.getResourceAsStream(RESOURCES + resource);
+        if (stream == null) {
+            throw new FileNotFoundException("Fixture not found: " + resource);
+        }
+        return stream;
+    }
+
+    /**
+     * Extracts the characters of a PDF fixture.
+     *
+     * @param resource PDF resource, relative to the fixtures directory
+     * @return document containing the pages and the characters
+     */
+    static BxDocument extractCharacters(String resource) throws IOException, AnalysisException {
+        InputStream stream = open(resource);
+        try {
+            return new ITextCharacterExtractor().extractCharacters(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Extracts the characters of a PDF fixture and segments them.
+     *
+     * @param resource PDF resource, relative to the fixtures directory
+     * @return segmented document, in the order of the extraction
+     */
+    static BxDocument segment(String resource) throws IOException, AnalysisException {
+        return new DocstrumSegmenter().segmentDocument(extractCharacters(resource));
+    }
+
+    /**
+     * Reads a TrueViz fixture.
+     *
+     * @param resource TrueViz resource, relative to the fixtures directory
+     * @return document
+     */
+    static BxDocument readTrueViz(String resource) throws IOException, TransformationException {
+        InputStream stream = open(resource);
+        try {
+            return readTrueViz(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Reads a TrueViz fixture stored in a zip archive.
+     *
+     * @param resource zip resource, relative to the fixtures directory
+     * @param entry the name of the TrueViz entry
+     * @return document
+     */
+    static BxDocument readTrueViz(String resource, String entry) throws IOException, TransformationException {
+        ZipInputStream stream = new ZipInputStream(open(resource));
+        try {
+            for (ZipEntry zipEntry = stream.getNextEntry(); zipEntry != null; zipEntry = stream.getNextEntry()) {
+                if (zipEntry.getName().equals(entry)) {
+                    return readTrueViz(stream);
+                }
+            }
+            throw new FileNotFoundException("Fixture not found: " + resource + "!" + entry);
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static BxDocument readTrueViz(InputStream stream) throws IOException, TransformationException {
+        TrueVizToBxDocumentReader reader = new TrueVizToBxDocumentReader();
+        return new BxDocument().setPages(reader.read(new InputStreamReader(stream, "UTF-8")));
+    }
+
+    /**
+     * Reads the non-empty lines of a text fixture.
+     *
+     * @param resource text resource, relative to the fixtures directory
+     * @return lines
+     */
+    static List<String> readLines(String resource) throws IOException {
+        InputStream stream = open(resource);
+        try {
+            List<String> lines = new ArrayList<String>();
+            for (String line : IOUtils.readLines(stream, "UTF-8")) {
+                if (!line.trim().isEmpty()) {
+                    lines.add(line);
+                }
+            }
+            return lines;
+        } finally {
+            stream.close();
+        }
+    }
+
+    private Fixtures() {
+    }
+
+}
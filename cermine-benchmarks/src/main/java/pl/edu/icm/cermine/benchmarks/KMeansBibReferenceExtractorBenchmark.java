@@ -0,0 +1,59 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pl.edu.icm.cermine.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import pl.edu.icm.cermine.bibref.KMeansBibReferenceExtractor;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+
+/**
+ * Splitting of the references zones of the bibref TrueViz fixture into
+ * reference strings.
+ *
+ * @author Dominika Tkaczyk
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class KMeansBibReferenceExtractorBenchmark {
+
+    private KMeansBibReferenceExtractor extractor;
+
+    private BxDocument document;
+
+    @Setup
+    public void setUp() throws IOException, TransformationException {
+        extractor = new KMeansBibReferenceExtractor();
+        document = Fixtures.readTrueViz("bibref/refs.xml.zip", "out.xml");
+    }
+
+    @Benchmark
+    public String[] extractBibReferences() throws AnalysisException {
+        return extractor.extractBibReferences(document);
+    }
+
+}
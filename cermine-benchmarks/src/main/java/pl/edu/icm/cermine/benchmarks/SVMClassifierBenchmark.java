@@ -0,0 +1,101 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pl.edu.icm.cermine.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.SVMInitialZoneClassifier;
+import pl.edu.icm.cermine.structure.SVMMetadataZoneClassifier;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.model.BxZone;
+import pl.edu.icm.cermine.structure.model.BxZoneLabel;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
+import pl.edu.icm.cermine.tools.classification.general.TrainingSample;
+import pl.edu.icm.cermine.tools.classification.svm.SVMZoneClassifier;
+
+/**
+ * Zone label prediction with the default initial and metadata SVM models.
+ * {@code predictLabel} classifies precomputed feature vectors one by one,
+ * {@code predictLabels} classifies the zones of a page as a batch, including
+ * the feature computation.
+ *
+ * @author Dominika Tkaczyk
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SVMClassifierBenchmark {
+
+    @Param({"structure/001.xml", "structure/006.xml"})
+    public String trueViz;
+
+    @Param({"initial", "metadata"})
+    public String model;
+
+    private SVMZoneClassifier classifier;
+
+    private BxDocument document;
+
+    private List<TrainingSample<BxZoneLabel>> samples;
+
+    @Setup
+    public void setUp() throws IOException, AnalysisException, TransformationException {
+        FeatureVectorBuilder<BxZone, BxPage> builder;
+        if ("initial".equals(model)) {
+            classifier = SVMInitialZoneClassifier.getDefaultInstance();
+            builder = SVMInitialZoneClassifier.getFeatureVectorBuilder();
+        } else {
+            classifier = SVMMetadataZoneClassifier.getDefaultInstance();
+            builder = SVMMetadataZoneClassifier.getFeatureVectorBuilder();
+        }
+        document = Fixtures.readTrueViz(trueViz);
+        samples = new ArrayList<TrainingSample<BxZoneLabel>>();
+        for (BxPage page : document.getPages()) {
+            for (BxZone zone : page.getZones()) {
+                samples.add(new TrainingSample<BxZoneLabel>(builder.getFeatureVector(zone, page), zone.getLabel()));
+            }
+        }
+    }
+
+    @Benchmark
+    public void predictLabel(Blackhole blackhole) {
+        for (TrainingSample<BxZoneLabel> sample : samples) {
+            blackhole.consume(classifier.predictLabel(sample));
+        }
+    }
+
+    @Benchmark
+    public void predictLabels(Blackhole blackhole) {
+        for (BxPage page : document.getPages()) {
+            blackhole.consume(classifier.predictLabels(page.getZones(), page));
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pl.edu.icm.cermine.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.SVMInitialZoneClassifier;
+import pl.edu.icm.cermine.structure.SVMMetadataZoneClassifier;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.model.BxZone;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
+
+/**
+ * Computation of the zone feature vectors used by the initial and metadata
+ * zone classifiers, for all the zones of the TrueViz fixtures.
+ *
+ * @author Dominika Tkaczyk
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ZoneFeaturesBenchmark {
+
+    @Param({"structure/001.xml", "structure/006.xml"})
+    public String trueViz;
+
+    @Param({"initial", "metadata"})
+    public String features;
+
+    private FeatureVectorBuilder<BxZone, BxPage> builder;
+
+    private BxDocument document;
+
+    @Setup
+    public void setUp() throws IOException, TransformationException {
+        if ("initial".equals(features)) {
+            builder = SVMInitialZoneClassifier.getFeatureVectorBuilder();
+        } else {
+            builder = SVMMetadataZoneClassifier.getFeatureVectorBuilder();
+        }
+        document = Fixtures.readTrueViz(trueViz);
+    }
+
+    @Benchmark
+    public void getFeatureVectors(Blackhole blackhole) {
+        for (BxPage page : document.getPages()) {
+            for (BxZone zone : page.getZones()) {
+                blackhole.consume(builder.getFeatureVector(zone, page));
+            }
+        }
+    }
+
+}
@@ -17,6 +17,7 @@ package pl.edu.icm.cermine;
 import java.io.InputStream;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.exception.CermineException;
+import pl.edu.icm.cermine.structure.PdfSource;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 
 /**
@@ -32,7 +33,7 @@ import pl.edu.icm.cermine.structure.model.BxDocument;
  */
 public abstract class AbstractExtractor<InputType, OutputType> {
 
-    protected ComponentConfiguration config = new ComponentConfiguration();
+    protected ComponentConfiguration config;
 
     public AbstractExtractor() throws AnalysisException {
         this.config = new ComponentConfiguration();
@@ -67,9 +68,17 @@ public abstract class AbstractExtractor<InputType, OutputType> {
      * but for now during refactoring it makes sense for removing the static methods
      */
     protected BxDocument extractBasicStructure(InputStream stream) throws CermineException{
-        BxDocument doc = config.characterExtractor.extractCharacters(stream);
-        doc = config.documentSegmenter.segmentDocument(doc);
-        doc = config.readingOrderResolver.resolve(doc);
-        return config.initialClassifier.classifyZones(doc);
+        return extractBasicStructure(PdfSource.fromStream(stream));
+    }
+    
+    /**
+     * Creates an initial document from the given PDF source.
+     * 
+     * @param source PDF source
+     * @return The representation of the given PDF.
+     * @throws CermineException 
+     */
+    protected BxDocument extractBasicStructure(PdfSource source) throws CermineException{
+        return ExtractionUtils.extractStructure(config, source);
     }
 }
@@ -0,0 +1,343 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine;
+
+import java.io.*;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Document-level batch extraction engine. The files are processed by a fixed
+ * number of workers fed from a bounded queue, so that the memory footprint
+ * does not depend on the size of the corpus. The workers are expected to share
+ * a single component configuration (see {@link ExtractionPipeline}).
+ * 
+ * If the timeout is set, a worker processing a file for too long is interrupted.
+ * The extraction checks the interrupted flag between the processing steps,
+ * and the tasks run by the shared pools on behalf of the document, such as
+ * page segmentation and reference parsing, are cancelled, so the document
+ * is abandoned as soon as the current step is finished.
+ * 
+ * If the progress file is set, the outcome of every processed file is
+ * appended to it, and the files already processed successfully are skipped,
+ * so that an interrupted batch can be resumed. The files that failed or timed
+ * out are processed again.
+ *
+ * @author Dominika Tkaczyk
+ */
+public class BatchExtractor {
+
+    /**
+     * Processes a single file of the batch. The processor is called
+     * concurrently by all the workers.
+     */
+    public interface FileProcessor {
+
+        void process(File file) throws Exception;
+
+    }
+
+    public enum Status {
+        OK, FAILED, TIMEOUT
+    }
+
+    private static final String PROGRESS_SEPARATOR = "\t";
+
+    private final int workers;
+
+    private int queueCapacity;
+
+    private long timeout = 0;
+
+    private File progressFile;
+
+    private PrintStream log = System.out;
+
+    /**
+     * @param workers the number of documents processed in parallel
+     */
+    public BatchExtractor(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("The number of workers must be positive");
+        }
+        this.workers = workers;
+        this.queueCapacity = 2 * workers;
+    }
+
+    /**
+     * Processes the given files.
+     * 
+     * @param files files to process
+     * @param processor file processor
+     * @return the summary of the batch
+     * @throws IOException if the progress file cannot be read or written
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public Summary process(Collection<File> files, final FileProcessor processor) 
+            throws IOException, InterruptedException {
+        final Summary summary = new Summary(files.size());
+        Set<String> done = readProgress();
+        
+        final Writer progress = progressFile == null ? null 
+                : new OutputStreamWriter(new FileOutputStream(progressFile, true), "UTF-8");
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+        final Semaphore slots = new Semaphore(workers + queueCapacity);
+        try {
+            for (final File file : files) {
+                if (done.contains(file.getPath())) {
+                    summary.skipped.incrementAndGet();
+                    continue;
+                }
+                slots.acquire();
+                try {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                long start = System.currentTimeMillis();
+                                Status status = processFile(file, processor, watchdog);
+                                long time = System.currentTimeMillis() - start;
+                                summary.record(status);
+                                report(file, status, time, summary, progress);
+                            } finally {
+                                slots.release();
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException ex) {
+                    slots.release();
+                    throw ex;
+                }
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } finally {
+            executor.shutdownNow();
+            watchdog.shutdownNow();
+            if (progress != null) {
+                progress.close();
+            }
+        }
+        return summary;
+    }
+
+    private Status processFile(File file, FileProcessor processor, ScheduledExecutorService watchdog) {
+        Alarm alarm = new Alarm(Thread.currentThread());
+        ScheduledFuture<?> scheduledAlarm = null;
+        if (timeout > 0) {
+            scheduledAlarm = watchdog.schedule(alarm, timeout, TimeUnit.MILLISECONDS);
+        }
+        
+        Status status = Status.OK;
+        try {
+            processor.process(file);
+        } catch (Throwable ex) {
+            // errors such as OutOfMemoryError affect only the current document
+            if (alarm.hasGoneOff()) {
+                status = Status.TIMEOUT;
+            } else {
+                status = Status.FAILED;
+                synchronized (log) {
+                    log.println(file.getPath());
+                    ex.printStackTrace(log);
+                }
+            }
+        } finally {
+            alarm.disarm();
+            if (scheduledAlarm != null) {
+                scheduledAlarm.cancel(false);
+            }
+            // the alarm might have gone off after the processing was finished
+            Thread.interrupted();
+        }
+        return status;
+    }
+
+    private void report(File file, Status status, long time, Summary summary, Writer progress) {
+        synchronized (log) {
+            log.println(file.getPath() + " " + status);
+            log.println("Extraction time: " + Math.round(time / 1000F) + "s");
+            int finished = summary.getFinished();
+            log.println(finished * 100 / summary.getTotal() + "% done (" + finished 
+                    + " out of " + summary.getTotal() + ")");
+            log.println("");
+            if (progress != null) {
+                try {
+                    progress.write(status + PROGRESS_SEPARATOR + time + PROGRESS_SEPARATOR + file.getPath() + "\n");
+                    progress.flush();
+                } catch (IOException ex) {
+                    log.println("Cannot write progress file: " + ex.getMessage());
+                }
+            }
+        }
+    }
+
+    private Set<String> readProgress() throws IOException {
+        Set<String> done = new HashSet<String>();
+        if (progressFile == null || !progressFile.exists()) {
+            return done;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(progressFile), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(PROGRESS_SEPARATOR, 3);
+                if (fields.length == 3 && Status.OK.name().equals(fields[0])) {
+                    done.add(fields[2]);
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+        return done;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Sets the maximum number of files waiting for a free worker.
+     * 
+     * @param queueCapacity queue capacity
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("Queue capacity cannot be negative");
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Sets the per-file timeout.
+     * 
+     * @param timeout timeout in milliseconds, 0 means no timeout
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Sets the file used to store the progress of the batch.
+     * 
+     * @param progressFile progress file, or null
+     */
+    public void setProgressFile(File progressFile) {
+        this.progressFile = progressFile;
+    }
+
+    public void setLog(PrintStream log) {
+        this.log = log;
+    }
+
+    /**
+     * Interrupts the worker, unless it has already finished processing the file.
+     */
+    private static class Alarm implements Runnable {
+
+        private final Thread worker;
+        private boolean armed = true;
+        private boolean goneOff = false;
+
+        Alarm(Thread worker) {
+            this.worker = worker;
+        }
+
+        @Override
+        public synchronized void run() {
+            if (armed) {
+                goneOff = true;
+                worker.interrupt();
+            }
+        }
+
+        synchronized void disarm() {
+            armed = false;
+        }
+
+        synchronized boolean hasGoneOff() {
+            return goneOff;
+        }
+    }
+
+    /**
+     * The outcome of a batch.
+     */
+    public static class Summary {
+
+        private final int total;
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger timedOut = new AtomicInteger();
+
+        Summary(int total) {
+            this.total = total;
+        }
+
+        private void record(Status status) {
+            switch (status) {
+                case OK:
+                    succeeded.incrementAndGet();
+                    break;
+                case TIMEOUT:
+                    timedOut.incrementAndGet();
+                    break;
+                default:
+                    failed.incrementAndGet();
+            }
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getSkipped() {
+            return skipped.get();
+        }
+
+        public int getSucceeded() {
+            return succeeded.get();
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+
+        public int getTimedOut() {
+            return timedOut.get();
+        }
+
+        public int getFinished() {
+            return getSkipped() + getSucceeded() + getFailed() + getTimedOut();
+        }
+
+        @Override
+        public String toString() {
+            return "Processed " + total + " files: " + getSucceeded() + " succeeded, " + getFailed() 
+                    + " failed, " + getTimedOut() + " timed out, " + getSkipped() + " skipped";
+        }
+    }
+
+}
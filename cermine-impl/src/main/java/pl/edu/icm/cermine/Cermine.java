@@ -19,14 +19,17 @@ import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Collection;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.io.FileUtils;
 import org.jdom.Element;
 import org.jdom.output.Format;
 import org.jdom.output.XMLOutputter;
 import pl.edu.icm.cermine.exception.CermineException;
-import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.instrumentation.TimingStatistics;
+import pl.edu.icm.cermine.structure.PdfSource;
 import pl.edu.icm.cermine.structure.transformers.BxDocumentToTrueVizWriter;
 
 /**
@@ -37,14 +40,24 @@ import pl.edu.icm.cermine.structure.transformers.BxDocumentToTrueVizWriter;
 public class Cermine {
 
     private static final int DEFAULT_THREAD_COUNT = 3;
+    
+    /**
+     * The default number of pages segmented in parallel by the command line tools.
+     * 
+     * @deprecated the number of pages segmented in parallel is set
+     * with {@link ComponentConfiguration#setDocumentSegmenterConcurrency(int)}
+     */
+    @Deprecated
     public static int THREADS_NUMBER = DEFAULT_THREAD_COUNT;
 
+    private final int threadCount;
+
     public Cermine() {
         this(DEFAULT_THREAD_COUNT);
     }
 
     public Cermine(int threadCount) {
-        
+        this.threadCount = threadCount;
     }
 
     public static void main(String[] args) throws ParseException, IOException {
@@ -59,74 +72,79 @@ public class Cermine {
 
     }
     
-    private void processCommandLineCall(CommandLineOptionsParser parser) throws ParseException, IOException {
+    private void processCommandLineCall(final CommandLineOptionsParser parser) 
+            throws ParseException, IOException {
         File file = new File(parser.getPath());
         try {
-            PdfJatsExtractor extractor = new PdfJatsExtractor();
+            ComponentConfiguration conf = new ComponentConfiguration();
+            parser.updateMetadataModel(conf);
+            parser.updateInitialModel(conf);
+            conf.setDocumentSegmenterConcurrency(threadCount);
+            conf.setBibReferenceParserConcurrency(threadCount);
+            parser.updateResultCache(conf);
+            TimingStatistics timings = parser.updateTimings(conf);
+            final ExtractionPipeline pipeline = new ExtractionPipeline(conf);
+            
             if (file.isFile()) {
-                InputStream in = new FileInputStream(file);
-                parser.updateMetadataModel(extractor.getConfiguration());
-                parser.updateInitialModel(extractor.getConfiguration());
-
-                Element result = extractor.extract(in);
-                XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
-                System.out.println(outputter.outputString(result));
-            } else {
-
-                Collection<File> files = FileUtils.listFiles(file, new String[]{"pdf"}, true);
-
-                int i = 0;
-                for (File pdf : files) {
-                    long start = System.currentTimeMillis();
-
-                    File xmlF = new File(pdf.getPath().replaceAll("pdf$", parser.getNLMExtension()));
-                    if (xmlF.exists()) {
-                        i++;
-                        continue;
-                    }
-
-                    System.out.println(pdf.getPath());
-
-                    InputStream in = new FileInputStream(pdf);
-                    parser.updateMetadataModel(extractor.getConfiguration());
-                    parser.updateInitialModel(extractor.getConfiguration());
-
-                    Element result = extractor.extract(in);
-
+                try (InputStream in = new FileInputStream(file)) {
+                    Element result = pipeline.extract(in).getJats();
                     XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
-                    if (!xmlF.createNewFile()) {
-                        System.out.println("Cannot create new file!");
+                    System.out.println(outputter.outputString(result));
+                }
+                if (timings != null) {
+                    // the standard output holds the result
+                    System.err.print(timings.getSummary());
+                }
+            } else {
+                final String extension = parser.getNLMExtension();
+                final boolean extractStr = parser.extractStructure();
+                final String strExtension = parser.getBxExtension();
+                
+                List<File> files = new ArrayList<>();
+                for (File pdf : FileUtils.listFiles(file, new String[]{"pdf"}, true)) {
+                    if (!new File(pdf.getPath().replaceAll("pdf$", extension)).exists()) {
+                        files.add(pdf);
                     }
-                    FileUtils.writeStringToFile(xmlF, outputter.outputString(result));
-
-                    if (parser.extractStructure()) {
-                        BxDocumentToTrueVizWriter writer = new BxDocumentToTrueVizWriter();
-                        File strF = new File(pdf.getPath().replaceAll("pdf$", parser.getBxExtension()));
+                }
 
-                        BxDocument doc = extractor.extractBasicStructure(in);
-                        writer.write(new FileWriter(strF), doc.getPages());
+                BatchExtractor batchExtractor = parser.createBatchExtractor();
+                BatchExtractor.Summary summary = batchExtractor.process(files, new BatchExtractor.FileProcessor() {
+                    @Override
+                    public void process(File pdf) throws CermineException, IOException {
+                        ExtractionContext context;
+                        try (InputStream in = new FileInputStream(pdf)) {
+                            context = pipeline.extract(PdfSource.fromStream(in).setName(pdf.getPath()));
+                        }
+
+                        XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
+                        File xmlF = new File(pdf.getPath().replaceAll("pdf$", extension));
+                        FileUtils.writeStringToFile(xmlF, outputter.outputString(context.getJats()));
+
+                        // results cached before without the structure have none
+                        if (extractStr && context.getDocument() != null) {
+                            BxDocumentToTrueVizWriter writer = new BxDocumentToTrueVizWriter();
+                            File strF = new File(pdf.getPath().replaceAll("pdf$", strExtension));
+                            try (Writer fw = new FileWriter(strF)) {
+                                writer.write(fw, context.getDocument().getPages());
+                            }
+                        }
                     }
-
-                    long end = System.currentTimeMillis();
-
-                    i++;
-                    this.printStatistic(i, files.size(), end, start);
+                });
+                System.out.println(summary);
+                if (conf.getResultCache() != null) {
+                    System.out.println(conf.getResultCache().getStatistics());
+                }
+                if (timings != null) {
+                    System.out.print(timings.getSummary());
                 }
             }
         } catch (CermineException ex) {
             ex.printStackTrace(System.out);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    private void printStatistic(int currentFile, int totalFiles, float end, float start) {
-        float elapsed = (end - start) / 1000F;
-        int percentage = currentFile * 100 / totalFiles;
-
-        System.out.println("Extraction time: " + Math.round(elapsed) + "s");
-        System.out.println(percentage + "% done (" + currentFile + " out of " + totalFiles + ")");
-        System.out.println("");
-    }
-
     private static void printHelp() {
         System.err.println(
             "Usage: Cermine -path <path> [optional parameters]\n\n"
@@ -141,6 +159,16 @@ public class Cermine {
             + "                            used only if passed path is a directory\n"
             + "  -strext <extension>       (optional) the extension of the structure (TrueViz) file;\n"
             + "                            default: \"cxml\"; used only if passed path is a directory\n"
-            + "  -threads <num>            number of threads for parallel processing\n");
+            + "  -threads <num>            number of threads for parallel processing\n"
+            + "                            of the pages of a single document\n"
+            + "  -workers <num>            (optional) number of documents processed in parallel;\n"
+            + "                            default: the number of available processors\n"
+            + "  -queue <num>              (optional) maximum number of documents waiting for a worker\n"
+            + "  -timeout <seconds>        (optional) maximum processing time of a single document\n"
+            + "  -progress <path>          (optional) progress file; the documents listed in the file\n"
+            + "                            are skipped, so that the processing can be resumed\n"
+            + "  -cache <path>             (optional) directory of cached results; the documents\n"
+            + "                            found in the cache are not processed again\n"
+            + "  -timings                  (optional) print the time spent in the extraction stages\n");
     }
 }
@@ -18,11 +18,14 @@
 
 package pl.edu.icm.cermine;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import org.apache.commons.cli.*;
+import pl.edu.icm.cermine.cache.DiskExtractionResultCache;
 import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.instrumentation.TimingStatistics;
 import pl.edu.icm.cermine.structure.SVMAlternativeMetadataZoneClassifier;
 
 /**
@@ -45,6 +48,12 @@ public class CommandLineOptionsParser {
         options.addOption("modelmeta", true, "path to metadata classifier model");
         options.addOption("modelinit", true, "path to initial classifier model");
         options.addOption("threads", true, "number of threads used");
+        options.addOption("workers", true, "number of documents processed in parallel");
+        options.addOption("queue", true, "maximum number of documents waiting for a worker");
+        options.addOption("timeout", true, "per-document timeout in seconds");
+        options.addOption("progress", true, "progress file used to resume the processing");
+        options.addOption("cache", true, "directory of cached results");
+        options.addOption("timings", false, "print the time spent in the extraction stages");
     }
     
     public boolean parse(String[] args) throws ParseException {
@@ -124,6 +133,39 @@ public class CommandLineOptionsParser {
         }
     }
     
+    /**
+     * Sets the on-disk result cache, if its directory is given. The structures
+     * are cached as well if they are stored.
+     * 
+     * @param conf configuration
+     * @throws IOException if the cache directory cannot be created
+     */
+    public void updateResultCache(ComponentConfiguration conf) throws IOException {
+        String directory = getStringOptionValue(null, "cache");
+        if (directory != null) {
+            conf.setResultCache(new DiskExtractionResultCache(new File(directory), extractStructure()));
+        }
+    }
+    
+    /**
+     * Registers the statistics of the extraction stages, if they were requested.
+     * 
+     * @param conf configuration
+     * @return the statistics, or null if they were not requested
+     */
+    public TimingStatistics updateTimings(ComponentConfiguration conf) {
+        if (!commandLine.hasOption("timings")) {
+            return null;
+        }
+        TimingStatistics timings = new TimingStatistics();
+        conf.addExtractionListener(timings);
+        return timings;
+    }
+    
+    public void updateSegmenterConcurrency(ComponentConfiguration conf) {
+        conf.setDocumentSegmenterConcurrency(getThreadsNumber());
+    }
+    
     public int getThreadsNumber() {
         if (commandLine.hasOption("threads")) {
             return Integer.valueOf(commandLine.getOptionValue("threads"));
@@ -131,6 +173,32 @@ public class CommandLineOptionsParser {
         return Cermine.THREADS_NUMBER;
     }
 
+    public int getWorkersNumber() {
+        if (commandLine.hasOption("workers")) {
+            return Integer.valueOf(commandLine.getOptionValue("workers"));
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+    
+    /**
+     * Creates the batch extraction engine configured with the command line options.
+     * 
+     * @return batch extraction engine
+     */
+    public BatchExtractor createBatchExtractor() {
+        BatchExtractor batchExtractor = new BatchExtractor(getWorkersNumber());
+        if (commandLine.hasOption("queue")) {
+            batchExtractor.setQueueCapacity(Integer.valueOf(commandLine.getOptionValue("queue")));
+        }
+        if (commandLine.hasOption("timeout")) {
+            batchExtractor.setTimeout(Long.valueOf(commandLine.getOptionValue("timeout")) * 1000);
+        }
+        if (commandLine.hasOption("progress")) {
+            batchExtractor.setProgressFile(new File(commandLine.getOptionValue("progress")));
+        }
+        return batchExtractor;
+    }
+
     private String getStringOptionValue(String defaultValue, String name) {
         String value = defaultValue;
         if (commandLine.hasOption(name)) {
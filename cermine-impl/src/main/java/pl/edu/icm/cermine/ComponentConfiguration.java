@@ -20,27 +20,44 @@ package pl.edu.icm.cermine;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import pl.edu.icm.cermine.bibref.BibReferenceExtractor;
 import pl.edu.icm.cermine.bibref.BibReferenceParser;
+import pl.edu.icm.cermine.bibref.CRFBibReferenceParser;
 import pl.edu.icm.cermine.bibref.model.BibEntry;
+import pl.edu.icm.cermine.cache.CacheKeys;
+import pl.edu.icm.cermine.cache.ExtractionResultCache;
 import pl.edu.icm.cermine.content.cleaning.ContentCleaner;
 import pl.edu.icm.cermine.content.filtering.ContentFilter;
+import pl.edu.icm.cermine.content.filtering.SVMContentFilter;
 import pl.edu.icm.cermine.content.headings.ContentHeadersExtractor;
+import pl.edu.icm.cermine.content.headings.SVMContentHeadersExtractor;
 import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.instrumentation.ExtractionListener;
 import pl.edu.icm.cermine.metadata.MetadataExtractor;
+import pl.edu.icm.cermine.metadata.affiliation.CRFAffiliationParser;
 import pl.edu.icm.cermine.metadata.model.DocumentAffiliation;
 import pl.edu.icm.cermine.metadata.model.DocumentMetadata;
 import pl.edu.icm.cermine.parsing.tools.ParsableStringParser;
-import pl.edu.icm.cermine.structure.CharacterExtractor;
-import pl.edu.icm.cermine.structure.DocumentSegmenter;
-import pl.edu.icm.cermine.structure.ReadingOrderResolver;
-import pl.edu.icm.cermine.structure.ZoneClassifier;
+import pl.edu.icm.cermine.structure.*;
 
 /**
  * The class represents the configuration of the extraction system.
  * It contains all the objects performing the individual steps
  * of an extraction task.
  * 
+ * The default model-based components are shared by all the configurations
+ * (see {@link ComponentFactory}), so creating a new configuration is cheap.
+ * Components set explicitly with the setters are private to the configuration.
+ * 
+ * The configuration can use a cache of the extraction results, shared
+ * by the configurations of the same models (see {@link #getFingerprint()}).
+ * 
  * @author Dominika Tkaczyk
  */
 public class ComponentConfiguration {
@@ -72,6 +89,9 @@ public class ComponentConfiguration {
     /** bibliographic references parser */
     BibReferenceParser<BibEntry> bibReferenceParser;
     
+    /** number of batches of references parsed in parallel, or 0 if the parsers are used as set */
+    private int bibReferenceParserConcurrency;
+    
     /** content filter */
     ContentFilter contentFilter;
     
@@ -80,6 +100,19 @@ public class ComponentConfiguration {
     
     /** content cleaner */
     ContentCleaner contentCleaner;
+    
+    /** cache of extraction results, or null */
+    private ExtractionResultCache resultCache;
+    
+    /** digests of the models of the default components and the models loaded from streams, by component */
+    private final Map<String, String> modelDigests = new TreeMap<String, String>();
+    
+    /** components computing the same results as their superclasses */
+    private static final Set<Class<?>> EQUIVALENT_SUBCLASSES =
+            Collections.<Class<?>>singleton(ParallelDocstrumSegmenter.class);
+    
+    /** listeners notified about the extraction stages */
+    final List<ExtractionListener> extractionListeners = new CopyOnWriteArrayList<ExtractionListener>();
    
     public ComponentConfiguration() throws AnalysisException {
         try {
@@ -95,6 +128,12 @@ public class ComponentConfiguration {
             contentFilter = ComponentFactory.getContentFilter();
             contentHeaderExtractor = ComponentFactory.getContentHeaderExtractor();
             contentCleaner = ComponentFactory.getContentCleaner();
+            setResourceDigest("initialClassifier", SVMInitialZoneClassifier.getDefaultResources());
+            setResourceDigest("metadataClassifier", SVMMetadataZoneClassifier.getDefaultResources());
+            setResourceDigest("affiliationParser", CRFAffiliationParser.getDefaultResources());
+            setResourceDigest("bibReferenceParser", CRFBibReferenceParser.getDefaultResources());
+            setResourceDigest("contentFilter", SVMContentFilter.getDefaultResources());
+            setResourceDigest("contentHeaderExtractor", SVMContentHeadersExtractor.getDefaultResources());
         } catch (IOException ex) {
             throw new AnalysisException("Cannot create ComponentConfiguration!", ex);
         }
@@ -108,24 +147,36 @@ public class ComponentConfiguration {
         this.documentSegmenter = documentSegmenter;
     }
     
+    public void setDocumentSegmenterConcurrency(int concurrency) {
+        this.documentSegmenter = ComponentFactory.getDocumentSegmenter(concurrency);
+    }
+    
     public void setReadingOrderResolver(ReadingOrderResolver readingOrderResolver) {
         this.readingOrderResolver = readingOrderResolver;
     }
     
     public void setInitialZoneClassifier(ZoneClassifier initialClassifier) {
         this.initialClassifier = initialClassifier;
+        modelDigests.remove("initialClassifier");
     }
     
     public void setInitialZoneClassifier(InputStream model, InputStream range) throws AnalysisException, IOException {
-        this.initialClassifier = ComponentFactory.getInitialZoneClassifier(model, range);
+        DigestInputStream digestedModel = digesting(model);
+        DigestInputStream digestedRange = digesting(range);
+        this.initialClassifier = ComponentFactory.getInitialZoneClassifier(digestedModel, digestedRange);
+        setModelDigest("initialClassifier", digestedModel, digestedRange);
     }
     
     public void setMetadataZoneClassifier(ZoneClassifier metadataClassifier) {
         this.metadataClassifier = metadataClassifier;
+        modelDigests.remove("metadataClassifier");
     }
     
     public void setMetadataZoneClassifier(InputStream model, InputStream range) throws AnalysisException, IOException {
-        this.metadataClassifier = ComponentFactory.getMetadataZoneClassifier(model, range);
+        DigestInputStream digestedModel = digesting(model);
+        DigestInputStream digestedRange = digesting(range);
+        this.metadataClassifier = ComponentFactory.getMetadataZoneClassifier(digestedModel, digestedRange);
+        setModelDigest("metadataClassifier", digestedModel, digestedRange);
     }
 
     public void setMetadataExtractor(MetadataExtractor<DocumentMetadata> metadataExtractor) {
@@ -134,6 +185,7 @@ public class ComponentConfiguration {
     
     public void setAffiliationParser(ParsableStringParser<DocumentAffiliation> affiliationParser) {
         this.affiliationParser = affiliationParser;
+        modelDigests.remove("affiliationParser");
     }
     
     public void setBibReferenceExtractor(BibReferenceExtractor bibReferenceExtractor) {
@@ -141,11 +193,32 @@ public class ComponentConfiguration {
     }
     
     public void setBibReferenceParser(BibReferenceParser<BibEntry> bibReferenceParser) {
-        this.bibReferenceParser = bibReferenceParser;
+        this.bibReferenceParser = withConcurrency(bibReferenceParser);
+        modelDigests.remove("bibReferenceParser");
     }
     
     public void setBibReferenceParser(InputStream model) throws AnalysisException {
-        this.bibReferenceParser = ComponentFactory.getBibReferenceParser(model);
+        DigestInputStream digested = digesting(model);
+        this.bibReferenceParser = withConcurrency(ComponentFactory.getBibReferenceParser(digested));
+        setModelDigest("bibReferenceParser", digested);
+    }
+    
+    /**
+     * Sets the number of batches of references parsed in parallel. It applies
+     * to the current parser and to the parsers set later.
+     * 
+     * @param concurrency the number of batches parsed in parallel, 1 means sequential processing
+     */
+    public void setBibReferenceParserConcurrency(int concurrency) {
+        this.bibReferenceParserConcurrency = Math.max(concurrency, 1);
+        this.bibReferenceParser = withConcurrency(bibReferenceParser);
+    }
+    
+    private BibReferenceParser<BibEntry> withConcurrency(BibReferenceParser<BibEntry> parser) {
+        if (bibReferenceParserConcurrency == 0) {
+            return parser;
+        }
+        return ComponentFactory.getBibReferenceParser(parser, bibReferenceParserConcurrency);
     }
     
     public void setContentCleaner(ContentCleaner contentCleaner) {
@@ -154,18 +227,157 @@ public class ComponentConfiguration {
 
     public void setContentFilter(ContentFilter contentFilter) {
         this.contentFilter = contentFilter;
+        modelDigests.remove("contentFilter");
     }
 
     public void setContentFilter(InputStream model, InputStream range) throws AnalysisException, IOException {
-        this.contentFilter = ComponentFactory.getContentFilter(model, range);
+        DigestInputStream digestedModel = digesting(model);
+        DigestInputStream digestedRange = digesting(range);
+        this.contentFilter = ComponentFactory.getContentFilter(digestedModel, digestedRange);
+        setModelDigest("contentFilter", digestedModel, digestedRange);
     }
     
     public void setContentHeaderExtractor(ContentHeadersExtractor contentHeaderExtractor) {
         this.contentHeaderExtractor = contentHeaderExtractor;
+        modelDigests.remove("contentHeaderExtractor");
     }
     
     public void setContentHeaderExtractor(InputStream model, InputStream range) throws AnalysisException, IOException {
-        this.contentHeaderExtractor = ComponentFactory.getContentHeaderExtractor(model, range);
+        DigestInputStream digestedModel = digesting(model);
+        DigestInputStream digestedRange = digesting(range);
+        this.contentHeaderExtractor = ComponentFactory.getContentHeaderExtractor(digestedModel, digestedRange);
+        setModelDigest("contentHeaderExtractor", digestedModel, digestedRange);
+    }
+    
+    public void setResultCache(ExtractionResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+    
+    /**
+     * @return the cache of extraction results, or null if the results are not cached
+     */
+    public ExtractionResultCache getResultCache() {
+        return resultCache;
+    }
+    
+    /**
+     * Registers a listener notified about the start and the end of every
+     * extraction stage run with this configuration.
+     * 
+     * @param listener extraction listener
+     */
+    public void addExtractionListener(ExtractionListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        extractionListeners.add(listener);
+    }
+    
+    public void removeExtractionListener(ExtractionListener listener) {
+        extractionListeners.remove(listener);
+    }
+    
+    public List<ExtractionListener> getExtractionListeners() {
+        return Collections.unmodifiableList(extractionListeners);
+    }
+    
+    /**
+     * Describes the models and the configuration, so that the cached results
+     * are not used after they change. The fingerprint consists of
+     * <ul>
+     * <li>the version of the library from the manifest of its jar,</li>
+     * <li>the classes of the components and the values of their settings,
+     * i.e. the fields of primitive, string and enum types,</li>
+     * <li>the digests of the models: the model, range and dictionary resources
+     * read by the default components, as given by their
+     * {@code getDefaultResources} methods, and the models and ranges loaded from streams.</li>
+     * </ul>
+     * Components created outside the configuration are identified only
+     * by their classes and settings.
+     * 
+     * @return configuration fingerprint
+     */
+    public String getFingerprint() {
+        String version = ComponentConfiguration.class.getPackage().getImplementationVersion();
+        StringBuilder fingerprint = new StringBuilder(version == null ? "unknown" : version);
+        Object[] components = {characterExtractor, documentSegmenter, readingOrderResolver, initialClassifier,
+            metadataClassifier, metadataExtractor, affiliationParser, bibReferenceExtractor, bibReferenceParser,
+            contentFilter, contentHeaderExtractor, contentCleaner};
+        for (Object component : components) {
+            fingerprint.append(';');
+            describe(fingerprint, component);
+        }
+        for (Map.Entry<String, String> digest : modelDigests.entrySet()) {
+            fingerprint.append(';').append(digest.getKey()).append('=').append(digest.getValue());
+        }
+        return CacheKeys.sha256(fingerprint.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static void describe(StringBuilder description, Object component) {
+        if (component == null) {
+            description.append((Object) null);
+            return;
+        }
+        Class<?> type = component.getClass();
+        while (EQUIVALENT_SUBCLASSES.contains(type)) {
+            type = type.getSuperclass();
+        }
+        description.append(type.getName());
+        for (Class<?> c = component.getClass(); c != null && c != Object.class; c = c.getSuperclass()) {
+            // the order of the declared fields is not specified
+            SortedMap<String, Field> fields = new TreeMap<String, Field>();
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()
+                        && isSetting(field.getType())) {
+                    fields.put(field.getName(), field);
+                }
+            }
+            for (Field field : fields.values()) {
+                field.setAccessible(true);
+                try {
+                    description.append(',').append(field.getName()).append('=').append(field.get(component));
+                } catch (IllegalAccessException ex) {
+                    throw new IllegalStateException("Cannot read field " + field, ex);
+                }
+            }
+        }
+    }
+    
+    private static boolean isSetting(Class<?> type) {
+        return type.isPrimitive() || type.isEnum() || type == String.class
+                || Number.class.isAssignableFrom(type) || type == Boolean.class || type == Character.class;
+    }
+    
+    private void setResourceDigest(String component, List<String> resources) throws AnalysisException {
+        StringBuilder digest = new StringBuilder();
+        for (String resource : resources) {
+            if (digest.length() > 0) {
+                digest.append(',');
+            }
+            digest.append(resource).append(':').append(CacheKeys.digestResource(resource));
+        }
+        modelDigests.put(component, digest.toString());
+    }
+    
+    private static DigestInputStream digesting(InputStream stream) {
+        // null streams are left for the factory to report
+        return stream == null ? null : new DigestInputStream(stream, CacheKeys.newDigest());
+    }
+    
+    /**
+     * Stores the digest of the bytes read by the component from its model streams,
+     * e.g. the model and the range of the features.
+     */
+    private void setModelDigest(String component, DigestInputStream... streams) {
+        StringBuilder digest = new StringBuilder();
+        for (DigestInputStream stream : streams) {
+            if (digest.length() > 0) {
+                digest.append(',');
+            }
+            digest.append(stream == null ? "none" : CacheKeys.toHex(stream.getMessageDigest().digest()));
+        }
+        modelDigests.put(component, digest.toString());
     }
     
     public ParsableStringParser<DocumentAffiliation> getAffiliationParser() {
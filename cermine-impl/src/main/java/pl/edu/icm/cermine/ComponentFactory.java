@@ -42,9 +42,12 @@ import pl.edu.icm.cermine.metadata.model.DocumentAffiliation;
 import pl.edu.icm.cermine.metadata.model.DocumentMetadata;
 import pl.edu.icm.cermine.parsing.tools.ParsableStringParser;
 import pl.edu.icm.cermine.structure.*;
+import pl.edu.icm.cermine.tools.ModelRegistry;
+import pl.edu.icm.cermine.tools.SharedPools;
 
 /**
- * A factory of extraction components.
+ * A factory of extraction components. The default model-based components
+ * are loaded once per process and shared, see {@link ModelRegistry}.
  *
  * @author Dominika Tkaczyk
  */
@@ -68,6 +71,21 @@ public class ComponentFactory {
         return new ParallelDocstrumSegmenter();
     }
     
+    /**
+     * The method creates an instance of a page segmenter processing
+     * the given number of pages in parallel.
+     * 
+     * @param concurrency the number of pages processed in parallel, 
+     * 1 means sequential processing
+     * @return page segmenter
+     */
+    public static DocumentSegmenter getDocumentSegmenter(int concurrency) {
+        if (concurrency <= 1) {
+            return new DocstrumSegmenter();
+        }
+        return new ParallelDocstrumSegmenter(ParallelDocstrumSegmenter.getSharedPool(concurrency));
+    }
+    
     /**
      * The method creates an instance of a default reading order resolver.
      * 
@@ -78,7 +96,7 @@ public class ComponentFactory {
     }
     
     /**
-     * The method creates an instance of a default initial zone classifier.
+     * The method returns the shared instance of a default initial zone classifier.
      * 
      * @return initial zone classifier
      */
@@ -110,7 +128,7 @@ public class ComponentFactory {
     }
     
     /**
-     * The method creates an instance of a default metadata zone classifier.
+     * The method returns the shared instance of a default metadata zone classifier.
      * 
      * @return metadata zone classifier
      */
@@ -151,12 +169,12 @@ public class ComponentFactory {
     }
     
     /**
-     * The method creates an instance of a default affiliation parser.
+     * The method returns the shared instance of a default affiliation parser.
      * 
      * @return affiliation parser
      */
     public static ParsableStringParser<DocumentAffiliation> getAffiliationParser() throws AnalysisException {
-        return new CRFAffiliationParser();
+        return CRFAffiliationParser.getDefaultInstance();
     }
     
     /**
@@ -169,7 +187,7 @@ public class ComponentFactory {
     }
 
     /**
-     * The method creates an instance of a default bib reference parser.
+     * The method returns the shared instance of a default bib reference parser.
      * 
      * @return bib reference parser
      */
@@ -188,6 +206,30 @@ public class ComponentFactory {
         return new CRFBibReferenceParser(model);
     }
     
+    /**
+     * The method creates an instance of a bib reference parser using
+     * the model of the given parser and parsing the given number of batches
+     * of references in parallel. Parsers other than the CRF parser are
+     * returned unchanged. The references are parsed in parallel only
+     * if the model of the parser is a snapshot.
+     * 
+     * @param parser the parser whose model is used
+     * @param concurrency the number of batches of references parsed in parallel,
+     * 1 means sequential processing
+     * @return parser
+     */
+    public static BibReferenceParser<BibEntry> getBibReferenceParser(BibReferenceParser<BibEntry> parser,
+            int concurrency) {
+        if (!(parser instanceof CRFBibReferenceParser)) {
+            return parser;
+        }
+        CRFBibReferenceParser crfParser = (CRFBibReferenceParser) parser;
+        if (concurrency <= 1) {
+            return crfParser.withExecutor(null);
+        }
+        return crfParser.withExecutor(SharedPools.getPool(concurrency));
+    }
+    
     /**
      * The method creates an instance of a default logical structure extractor.
      * 
@@ -198,13 +240,13 @@ public class ComponentFactory {
     }
 
     /**
-     * The method creates an instance of a default content filter. 
+     * The method returns the shared instance of a default content filter. 
      * 
      * @return content filter
      * @throws AnalysisException 
      */
     public static ContentFilter getContentFilter() throws AnalysisException {
-        return new SVMContentFilter();
+        return SVMContentFilter.getDefaultInstance();
     }
 
     /**
@@ -231,13 +273,13 @@ public class ComponentFactory {
     }
     
     /**
-     * The method creates an instance of a default content header extractor. 
+     * The method returns the shared instance of a default content header extractor. 
      * 
      * @return content header extractor
      * @throws AnalysisException 
      */
     public static ContentHeadersExtractor getContentHeaderExtractor() throws AnalysisException {
-        return new SVMContentHeadersExtractor();
+        return SVMContentHeadersExtractor.getDefaultInstance();
     }
 
     /**
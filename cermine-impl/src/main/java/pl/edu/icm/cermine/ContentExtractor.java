@@ -20,7 +20,10 @@ package pl.edu.icm.cermine;
 
 import com.google.common.collect.Lists;
 import java.io.*;
-import java.util.Collection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.io.FileUtils;
@@ -28,10 +31,15 @@ import org.jdom.Element;
 import org.jdom.output.Format;
 import org.jdom.output.XMLOutputter;
 import pl.edu.icm.cermine.bibref.model.BibEntry;
+import pl.edu.icm.cermine.cache.CacheKeys;
+import pl.edu.icm.cermine.cache.CachedExtraction;
+import pl.edu.icm.cermine.cache.ExtractionResultCache;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.instrumentation.TimingStatistics;
 import pl.edu.icm.cermine.metadata.model.DocumentMetadata;
 import pl.edu.icm.cermine.metadata.transformers.DocumentMetadataToNLMElementConverter;
+import pl.edu.icm.cermine.structure.PdfSource;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.transformers.BxDocumentToTrueVizWriter;
 
@@ -49,6 +57,8 @@ public class ContentExtractor {
     
     private InputStream pdfFile;
     
+    private PdfSource pdfSource;
+    
     /** document's geometric structure */
     private BxDocument bxDocument;
     
@@ -64,6 +74,16 @@ public class ContentExtractor {
         conf = new ComponentConfiguration();
     }
 
+    /**
+     * Creates the extractor using the given configuration. The configuration
+     * can be shared by many extractors working in parallel.
+     * 
+     * @param conf extraction configuration
+     */
+    public ContentExtractor(ComponentConfiguration conf) {
+        this.conf = conf;
+    }
+
     /**
      * Stores the input PDF stream.
      * 
@@ -73,6 +93,58 @@ public class ContentExtractor {
     public void uploadPDF(InputStream pdfFile) throws IOException {
         this.reset();
         this.pdfFile = pdfFile;
+        this.pdfSource = PdfSource.fromStream(pdfFile);
+    }
+    
+    /**
+     * Stores the input PDF file path. The file is memory-mapped during the extraction.
+     * 
+     * @param pdfFile PDF file path
+     * @throws IOException 
+     */
+    public void uploadPDF(Path pdfFile) throws IOException {
+        uploadPDF(PdfSource.fromPath(pdfFile));
+    }
+    
+    /**
+     * Stores the input PDF file channel. The channel is memory-mapped during the extraction.
+     * 
+     * @param pdfFile PDF file channel
+     * @throws IOException 
+     */
+    public void uploadPDF(FileChannel pdfFile) throws IOException {
+        uploadPDF(PdfSource.fromChannel(pdfFile));
+    }
+    
+    /**
+     * Stores the input PDF content. The buffer is not copied.
+     * 
+     * @param pdfFile PDF content
+     * @throws IOException 
+     */
+    public void uploadPDF(ByteBuffer pdfFile) throws IOException {
+        uploadPDF(PdfSource.fromBuffer(pdfFile));
+    }
+    
+    /**
+     * Stores the input PDF content. The array is not copied.
+     * 
+     * @param pdfFile PDF content
+     * @throws IOException 
+     */
+    public void uploadPDF(byte[] pdfFile) throws IOException {
+        uploadPDF(PdfSource.fromBytes(pdfFile));
+    }
+    
+    /**
+     * Stores the input PDF source.
+     * 
+     * @param pdfSource PDF source
+     * @throws IOException 
+     */
+    public void uploadPDF(PdfSource pdfSource) throws IOException {
+        this.reset();
+        this.pdfSource = pdfSource;
     }
     
     /**
@@ -82,11 +154,11 @@ public class ContentExtractor {
      * @throws AnalysisException 
      */
     public BxDocument getBxDocument() throws AnalysisException {
-        if (pdfFile == null) {
+        if (pdfSource == null) {
             throw new AnalysisException("No PDF document uploaded!");
         }
         if (bxDocument == null) {
-            bxDocument = ExtractionUtils.extractStructure(conf, pdfFile);
+            bxDocument = ExtractionUtils.extractStructure(conf, pdfSource);
         }
         return bxDocument;
     }
@@ -182,13 +254,36 @@ public class ContentExtractor {
     }
     
     /**
-     * Extracts full content in NLM format.
+     * Extracts full content in NLM format. If the configuration has a result
+     * cache, the content is looked up in the cache first.
      * 
      * @return full content in NLM format
      * @throws AnalysisException 
      */
     public Element getNLMContent() throws AnalysisException {
         if (nlmContent == null) {
+            ExtractionResultCache cache = conf.getResultCache();
+            String key = null;
+            if (cache != null) {
+                if (pdfSource == null) {
+                    throw new AnalysisException("No PDF document uploaded!");
+                }
+                byte[] content = ExtractionPipeline.readContent(pdfSource);
+                pdfSource = PdfSource.fromBytes(content).setName(pdfSource.getName());
+                // the content is assembled differently than by the pipeline
+                key = CacheKeys.compute(content, conf.getFingerprint() + ";" + ContentExtractor.class.getName());
+                CachedExtraction cached = cache.get(key);
+                if (cached != null) {
+                    cache.getStatistics().recordHit(content.length);
+                    nlmContent = cached.getJats();
+                    if (bxDocument == null) {
+                        bxDocument = cached.getDocument();
+                    }
+                    return nlmContent;
+                }
+                cache.getStatistics().recordMiss();
+            }
+
             getNLMMetadata();
             getNLMReferences();
             getNLMText();
@@ -206,6 +301,10 @@ public class ContentExtractor {
             
             back.addContent(refList);
             nlmContent.addContent(back);
+
+            if (cache != null) {
+                cache.put(key, new CachedExtraction(nlmContent, bxDocument));
+            }
         }
         return nlmContent;
     }
@@ -246,6 +345,7 @@ public class ContentExtractor {
             pdfFile.close();
         }
         pdfFile = null;
+        pdfSource = null;
     }
 
     public ComponentConfiguration getConf() {
@@ -256,7 +356,8 @@ public class ContentExtractor {
         this.conf = conf;
     }
     
-    public static void main(String[] args) throws ParseException, AnalysisException, IOException, TransformationException {
+    public static void main(String[] args) 
+            throws ParseException, AnalysisException, IOException, InterruptedException {
         CommandLineOptionsParser parser = new CommandLineOptionsParser();
         if (!parser.parse(args)) {
             System.err.println(
@@ -272,79 +373,88 @@ public class ContentExtractor {
                   + "                            used only if passed path is a directory\n"
                   + "  -strext <extension>       (optional) the extension of the structure (TrueViz) file;\n"
                   + "                            default: \"cxml\"; used only if passed path is a directory\n"
-                  + "  -threads <num>            number of threads for parallel processing\n");
+                  + "  -threads <num>            number of threads for parallel processing\n"
+                  + "                            of the pages of a single document\n"
+                  + "  -workers <num>            (optional) number of documents processed in parallel;\n"
+                  + "                            default: the number of available processors\n"
+                  + "  -queue <num>              (optional) maximum number of documents waiting for a worker\n"
+                  + "  -timeout <seconds>        (optional) maximum processing time of a single document\n"
+                  + "  -progress <path>          (optional) progress file; the documents listed in the file\n"
+                  + "                            are skipped, so that the processing can be resumed\n"
+                  + "  -cache <path>             (optional) directory of cached results; the documents\n"
+                  + "                            found in the cache are not processed again\n"
+                  + "  -timings                  (optional) print the time spent in the extraction stages\n");
             System.exit(1);
         }
         
         String path = parser.getPath();
-        String extension = parser.getNLMExtension();
-        boolean extractStr = parser.extractStructure();
-        String strExtension = parser.getBxExtension();
-        Cermine.THREADS_NUMBER = parser.getThreadsNumber();
+        final String extension = parser.getNLMExtension();
+        final boolean extractStr = parser.extractStructure();
+        final String strExtension = parser.getBxExtension();
+        
+        final ComponentConfiguration conf = new ComponentConfiguration();
+        parser.updateMetadataModel(conf);
+        parser.updateInitialModel(conf);
+        parser.updateSegmenterConcurrency(conf);
+        parser.updateResultCache(conf);
+        TimingStatistics timings = parser.updateTimings(conf);
  
         File file = new File(path);
         if (file.isFile()) {
             try {
-                ContentExtractor extractor = new ContentExtractor();
-                parser.updateMetadataModel(extractor.getConf());
-                parser.updateInitialModel(extractor.getConf());
+                ContentExtractor extractor = new ContentExtractor(conf);
                 InputStream in = new FileInputStream(file);
                 extractor.uploadPDF(in);
                 Element result = extractor.getNLMContent();
                 XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
                 System.out.println(outputter.outputString(result));
+                extractor.reset();
             } catch (AnalysisException ex) {
                 ex.printStackTrace();
             }
+            if (timings != null) {
+                // the standard output holds the result
+                System.err.print(timings.getSummary());
+            }
         } else {
-        
-            Collection<File> files = FileUtils.listFiles(file, new String[]{"pdf"}, true);
-    
-            int i = 0;
-            for (File pdf : files) {
-                File xmlF = new File(pdf.getPath().replaceAll("pdf$", extension));
-                if (xmlF.exists()) {
-                    i++;
-                    continue;
+            List<File> files = new ArrayList<>();
+            for (File pdf : FileUtils.listFiles(file, new String[]{"pdf"}, true)) {
+                if (!new File(pdf.getPath().replaceAll("pdf$", extension)).exists()) {
+                    files.add(pdf);
                 }
- 
-                long start = System.currentTimeMillis();
-                float elapsed = 0;
-            
-                System.out.println(pdf.getPath());
- 
-                try {
-                    ContentExtractor extractor = new ContentExtractor();
-                    parser.updateMetadataModel(extractor.getConf());
-                    parser.updateInitialModel(extractor.getConf());
-                    InputStream in = new FileInputStream(pdf);
-                    extractor.uploadPDF(in);
-                    BxDocument doc = extractor.getBxDocument();
-                    Element result = extractor.getNLMContent();
+            }
+    
+            BatchExtractor batchExtractor = parser.createBatchExtractor();
+            BatchExtractor.Summary summary = batchExtractor.process(files, new BatchExtractor.FileProcessor() {
+                @Override
+                public void process(File pdf) throws AnalysisException, TransformationException, IOException {
+                    ContentExtractor extractor = new ContentExtractor(conf);
+                    try {
+                        extractor.uploadPDF(pdf.toPath());
+                        Element result = extractor.getNLMContent();
 
-                    long end = System.currentTimeMillis();
-                    elapsed = (end - start) / 1000F;
-            
-                    XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
-                    if (!xmlF.createNewFile()) {
-                        System.out.println("Cannot create new file!");
-                    }
-                    FileUtils.writeStringToFile(xmlF, outputter.outputString(result));            
-                
-                    if (extractStr) {
-                        BxDocumentToTrueVizWriter writer = new BxDocumentToTrueVizWriter();
-                        File strF = new File(pdf.getPath().replaceAll("pdf$", strExtension));
-                        writer.write(new FileWriter(strF), doc.getPages());
+                        XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
+                        File xmlF = new File(pdf.getPath().replaceAll("pdf$", extension));
+                        FileUtils.writeStringToFile(xmlF, outputter.outputString(result));            
+
+                        if (extractStr) {
+                            BxDocumentToTrueVizWriter writer = new BxDocumentToTrueVizWriter();
+                            File strF = new File(pdf.getPath().replaceAll("pdf$", strExtension));
+                            try (Writer fw = new FileWriter(strF)) {
+                                writer.write(fw, extractor.getBxDocument().getPages());
+                            }
+                        }
+                    } finally {
+                        extractor.reset();
                     }
-                } catch (AnalysisException | TransformationException ex) {
-                   ex.printStackTrace();
                 }
-                
-                i++;
-                int percentage = i*100/files.size();
-                System.out.println("Extraction time: " + Math.round(elapsed) + "s");
-                System.out.println(percentage + "% done (" + i +" out of " + files.size() + ")");
-                System.out.println("");
+            });
+            System.out.println(summary);
+            if (conf.getResultCache() != null) {
+                System.out.println(conf.getResultCache().getStatistics());
+            }
+            if (timings != null) {
+                System.out.print(timings.getSummary());
             }
         }
     }
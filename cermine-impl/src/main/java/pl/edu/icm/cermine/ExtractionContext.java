@@ -0,0 +1,121 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine;
+
+import java.util.List;
+import org.jdom.Element;
+import pl.edu.icm.cermine.bibref.model.BibEntry;
+import pl.edu.icm.cermine.content.model.DocumentContentStructure;
+import pl.edu.icm.cermine.content.references.InTextReference;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+
+/**
+ * Holds the intermediate and final results of processing a single document
+ * by {@link ExtractionPipeline}. A new context is created for every document,
+ * so contexts are never shared between threads.
+ * <p>
+ * The contexts of the results found in the configured cache hold the same
+ * results, except for the box structure if the cache does not store it.
+ *
+ * @author Dominika Tkaczyk
+ */
+public final class ExtractionContext {
+
+    private BxDocument document;
+
+    private DocumentContentStructure contentStructure;
+
+    private List<BibEntry> endReferences;
+
+    private List<InTextReference> inTextReferences;
+
+    private Element jats;
+
+    private boolean cached;
+
+    ExtractionContext() {}
+
+    /**
+     * @return document's box structure with initially classified zones,
+     * or null if the result was cached without the structure
+     */
+    public BxDocument getDocument() {
+        return document;
+    }
+
+    void setDocument(BxDocument document) {
+        this.document = document;
+    }
+
+    /**
+     * @return document's body structure
+     */
+    public DocumentContentStructure getContentStructure() {
+        return contentStructure;
+    }
+
+    void setContentStructure(DocumentContentStructure contentStructure) {
+        this.contentStructure = contentStructure;
+    }
+
+    /**
+     * @return parsed bibliographic references
+     */
+    public List<BibEntry> getEndReferences() {
+        return endReferences;
+    }
+
+    void setEndReferences(List<BibEntry> endReferences) {
+        this.endReferences = endReferences;
+    }
+
+    /**
+     * @return references found in the document's body
+     */
+    public List<InTextReference> getInTextReferences() {
+        return inTextReferences;
+    }
+
+    void setInTextReferences(List<InTextReference> inTextReferences) {
+        this.inTextReferences = inTextReferences;
+    }
+
+    /**
+     * @return the document in JATS format
+     */
+    public Element getJats() {
+        return jats;
+    }
+
+    void setJats(Element jats) {
+        this.jats = jats;
+    }
+
+    /**
+     * @return whether the result was found in the cache instead of being extracted
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+}
@@ -0,0 +1,288 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.io.IOUtils;
+import org.jdom.Element;
+import pl.edu.icm.cermine.bibref.model.BibEntry;
+import pl.edu.icm.cermine.cache.CacheKeys;
+import pl.edu.icm.cermine.cache.CachedExtraction;
+import pl.edu.icm.cermine.cache.ExtractionResultCache;
+import pl.edu.icm.cermine.content.model.BxDocContentStructure;
+import pl.edu.icm.cermine.content.model.DocumentContentStructure;
+import pl.edu.icm.cermine.content.model.DocumentParagraph;
+import pl.edu.icm.cermine.content.references.*;
+import pl.edu.icm.cermine.content.transformers.BxContentStructToDocContentStructConverter;
+import pl.edu.icm.cermine.content.transformers.DocContentStructToJatsBodyConverter;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.exception.CermineException;
+import pl.edu.icm.cermine.exception.ReferenceTypeException;
+import pl.edu.icm.cermine.instrumentation.ExtractionStage;
+import pl.edu.icm.cermine.structure.PdfSource;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.tools.transformers.ModelToModelConverter;
+
+/**
+ * Stateless extraction pipeline. All the per-document data is kept in
+ * an {@link ExtractionContext} created for every call, and all the components
+ * of the default configuration are safe for concurrent use, so a single
+ * pipeline can process many documents at the same time:
+ * 
+ * <pre>
+ * ExtractionPipeline pipeline = new ExtractionPipeline();
+ * // from any number of threads:
+ * Element jats = pipeline.extract(stream).getJats();
+ * </pre>
+ * 
+ * If custom components are set in the configuration, they have to be
+ * thread-safe as well. The configuration should not be modified once
+ * the pipeline is in use.
+ * 
+ * If the configuration has a result cache, the documents found in the cache
+ * are not processed at all, their contexts are filled with copies of the stored
+ * results. The input is then read into memory, to compute its digest.
+ *
+ * @author Dominika Tkaczyk
+ */
+public final class ExtractionPipeline {
+
+    private final ComponentConfiguration config;
+
+    public ExtractionPipeline() throws AnalysisException {
+        this(new ComponentConfiguration());
+    }
+
+    public ExtractionPipeline(ComponentConfiguration config) {
+        if (config == null) {
+            throw new IllegalArgumentException("Configuration cannot be null");
+        }
+        this.config = config;
+    }
+
+    public ComponentConfiguration getConfiguration() {
+        return config;
+    }
+
+    /**
+     * Extracts the box structure of the document with initially classified zones.
+     * 
+     * @param pdf PDF stream
+     * @return box structure
+     * @throws AnalysisException 
+     */
+    public BxDocument extractStructure(InputStream pdf) throws AnalysisException {
+        return extractStructure(PdfSource.fromStream(pdf));
+    }
+
+    /**
+     * Extracts the box structure of the document with initially classified zones.
+     * 
+     * @param pdf PDF source
+     * @return box structure
+     * @throws AnalysisException 
+     */
+    public BxDocument extractStructure(PdfSource pdf) throws AnalysisException {
+        return ExtractionUtils.extractStructure(config, pdf);
+    }
+
+    /**
+     * Extracts metadata, content and references from the document
+     * and converts them to JATS format.
+     * 
+     * @param pdf PDF stream
+     * @return the context of the processed document
+     * @throws CermineException 
+     */
+    public ExtractionContext extract(InputStream pdf) throws CermineException {
+        return extract(PdfSource.fromStream(pdf));
+    }
+
+    /**
+     * Extracts metadata, content and references from the document
+     * and converts them to JATS format.
+     * 
+     * @param pdf PDF source
+     * @return the context of the processed document
+     * @throws CermineException 
+     */
+    public ExtractionContext extract(PdfSource pdf) throws CermineException {
+        ExtractionResultCache cache = config.getResultCache();
+        if (cache == null) {
+            return process(pdf);
+        }
+
+        byte[] content = readContent(pdf);
+        String key = CacheKeys.compute(content, config.getFingerprint());
+        CachedExtraction cached = cache.get(key);
+        // the results stored without the references cannot fill the context
+        if (cached != null && cached.hasReferences()) {
+            cache.getStatistics().recordHit(content.length);
+            ExtractionContext context = new ExtractionContext();
+            context.setDocument(cached.getDocument());
+            context.setContentStructure(cached.getContentStructure());
+            context.setEndReferences(cached.getEndReferences());
+            context.setInTextReferences(cached.getInTextReferences());
+            context.setJats(cached.getJats());
+            context.setCached(true);
+            return context;
+        }
+        cache.getStatistics().recordMiss();
+        ExtractionContext context = process(PdfSource.fromBytes(content).setName(pdf.getName()));
+        cache.put(key, new CachedExtraction(context.getJats(), context.getDocument(),
+                context.getContentStructure(), context.getEndReferences(), context.getInTextReferences()));
+        return context;
+    }
+
+    static byte[] readContent(PdfSource pdf) throws AnalysisException {
+        try (InputStream stream = pdf.openStream()) {
+            return IOUtils.toByteArray(stream);
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot read PDF document!", ex);
+        }
+    }
+
+    private ExtractionContext process(PdfSource pdf) throws CermineException {
+        ExtractionContext context = new ExtractionContext();
+        context.setDocument(extractStructure(pdf));
+
+        Element root = new Element("article");
+        processFront(root, context);
+        ExtractionUtils.checkInterrupted();
+        processBody(root, context);
+        ExtractionUtils.checkInterrupted();
+        processBack(root, context);
+        context.setJats(root);
+
+        return context;
+    }
+
+    private void processFront(Element root, ExtractionContext context) throws CermineException {
+        Element meta = ExtractionUtils.extractMetadataAsNLM(config, context.getDocument());
+        Element metadata = (Element) meta.getChild("front").clone();
+        root.addContent(metadata);
+    }
+
+    private void processBody(Element root, ExtractionContext context) throws CermineException {
+        BxDocument doc;
+        try (StageTimer timer = StageTimer.start(config, ExtractionStage.CONTENT_FILTERING, context.getDocument())) {
+            doc = config.contentFilter.filter(context.getDocument());
+            timer.finish(doc);
+        }
+        DocumentContentStructure contentStructure;
+        try (StageTimer timer = StageTimer.start(config, ExtractionStage.CONTENT_STRUCTURING, doc)) {
+            BxDocContentStructure tmpContentStructure = config.contentHeaderExtractor.extractHeaders(doc);
+            config.contentCleaner.cleanupContent(tmpContentStructure);
+            BxContentStructToDocContentStructConverter structConverter =
+                    new BxContentStructToDocContentStructConverter();
+            contentStructure = structConverter.convert(tmpContentStructure);
+            timer.finish(doc);
+        }
+        context.setContentStructure(contentStructure);
+
+        context.setInTextReferences(extractInTextReferences(context));
+
+        ModelToModelConverter<DocumentContentStructure, Element> converter = new DocContentStructToJatsBodyConverter();
+        Element text = converter.convert(contentStructure);
+        root.addContent(text);
+    }
+
+    private void processBack(Element root, ExtractionContext context) throws AnalysisException {
+        Element back = new Element("back");
+        root.addContent(back);
+
+        Element refList = new Element("ref-list");
+        back.addContent(refList);
+
+        List<BibEntry> bibReferences = getEndReferences(context);
+        Element[] references = ExtractionUtils.convertReferences(bibReferences.toArray(new BibEntry[0]));
+        for (int i = 0; i < references.length; i++) {
+            Element refElement = new Element("ref");
+            refElement.setAttribute("id", "R" + (i + 1));
+            refElement.addContent(references[i]);
+            refList.addContent(refElement);
+        }
+    }
+
+    private List<InTextReference> extractInTextReferences(ExtractionContext context) 
+            throws AnalysisException, ReferenceTypeException {
+        DocumentContentStructure documentStructure = context.getContentStructure();
+        List<DocumentParagraph> paragraphs = documentStructure.getAllParagraphs();
+
+        InTextReferenceStyleClassifier styleClassifier = new InTextReferenceStyleClassifier();
+        InTextReferenceStyle inTextStyle = styleClassifier.classify(documentStructure);
+
+        // Pattern.DOTALL to search across line endings
+        Pattern bracketContentPattern = Pattern.compile("\\" + inTextStyle.getBracketType().getOpeningBracket() 
+                + "(.*?)\\" + inTextStyle.getBracketType().getClosingBracket(), Pattern.DOTALL);
+
+        List<InTextReference> possibleReferences = new ArrayList<InTextReference>();
+        for (DocumentParagraph paragraph : paragraphs) {
+            Matcher matcher = bracketContentPattern.matcher(paragraph.getText());
+            while (matcher.find()) {
+                // +1/-1 to don't get the bracket but the start/end of the contained string
+                possibleReferences.add(new InTextReference(paragraph, matcher.start() + 1, matcher.end() - 1, inTextStyle));
+            }
+        }
+
+        EndReferenceMatcher referenceMatcher = 
+                EndReferenceMatcher.create(inTextStyle.getInTextReferenceType(), getEndReferences(context));
+        List<InTextReference> actualReferences = new ArrayList<InTextReference>();
+        for (InTextReference reference : possibleReferences) {
+            Set<BibEntry> matchingEndReferences = referenceMatcher.match(reference);
+            if (!matchingEndReferences.isEmpty()) {
+                reference.setEndReferences(matchingEndReferences);
+                reference.getParentParagraph().addInTextReference(reference);
+                actualReferences.add(reference);
+            }
+        }
+        return actualReferences;
+    }
+
+    private List<BibEntry> getEndReferences(ExtractionContext context) throws AnalysisException {
+        if (context.getEndReferences() == null) {
+            BxDocument doc = context.getDocument();
+            String[] refs;
+            try (StageTimer timer = StageTimer.start(config, ExtractionStage.REFERENCE_EXTRACTION, doc)) {
+                refs = config.bibReferenceExtractor.extractBibReferences(doc);
+                timer.finish(doc);
+            }
+            ExtractionUtils.checkInterrupted();
+            List<BibEntry> endReferences;
+            try (StageTimer timer = StageTimer.start(config, ExtractionStage.REFERENCE_PARSING, doc)) {
+                endReferences = new ArrayList<BibEntry>(
+                        ExtractionUtils.parseReferences(config.bibReferenceParser, Arrays.asList(refs)));
+                timer.finish(doc);
+            }
+            for (int i = 0; i < endReferences.size(); i++) {
+                endReferences.get(i).setId("R" + (i + 1));
+            }
+            context.setEndReferences(endReferences);
+        }
+        return context.getEndReferences();
+    }
+
+}
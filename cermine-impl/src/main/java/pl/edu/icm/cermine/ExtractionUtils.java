@@ -18,10 +18,14 @@
 
 package pl.edu.icm.cermine;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.jdom.Element;
+import pl.edu.icm.cermine.bibref.BatchBibReferenceParser;
+import pl.edu.icm.cermine.bibref.BibReferenceParser;
 import pl.edu.icm.cermine.bibref.model.BibEntry;
 import pl.edu.icm.cermine.bibref.transformers.BibEntryToNLMElementConverter;
 import pl.edu.icm.cermine.content.RawTextWithLabelsExtractor;
@@ -32,14 +36,20 @@ import pl.edu.icm.cermine.content.transformers.BxContentStructToDocContentStruct
 import pl.edu.icm.cermine.content.transformers.DocContentStructToJatsBodyConverter;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.instrumentation.ExtractionStage;
 import pl.edu.icm.cermine.metadata.model.DocumentAffiliation;
 import pl.edu.icm.cermine.metadata.model.DocumentMetadata;
 import pl.edu.icm.cermine.metadata.transformers.DocumentMetadataToNLMElementConverter;
+import pl.edu.icm.cermine.structure.PdfSource;
+import pl.edu.icm.cermine.structure.StreamingCharacterExtractor;
+import pl.edu.icm.cermine.structure.StreamingDocumentSegmenter;
+import pl.edu.icm.cermine.structure.StreamingDocumentSegmenter.DocumentSegmentation;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.tools.transformers.ModelToModelConverter;
 
 /**
- * Extraction utility class
+ * Extraction utility class. The stages of the extraction are reported
+ * to the listeners registered in the configuration.
  *
  * @author Dominika Tkaczyk
  */
@@ -55,7 +65,26 @@ public class ExtractionUtils {
      */
     public static BxDocument extractStructure(ComponentConfiguration conf, InputStream stream) 
             throws AnalysisException {
-        return conf.initialClassifier.classifyZones(ExtractionUtils.createDocumentFromStream(conf, stream));
+        return extractStructure(conf, PdfSource.fromStream(stream));
+    }
+    
+    /**
+     * Extracts box structure from PDF source.
+     * 
+     * @param conf extraction configuration
+     * @param source PDF source
+     * @return box structure
+     * @throws AnalysisException 
+     */
+    public static BxDocument extractStructure(ComponentConfiguration conf, PdfSource source) 
+            throws AnalysisException {
+        BxDocument doc = ExtractionUtils.createDocument(conf, source);
+        checkInterrupted();
+        try (StageTimer timer = StageTimer.start(conf, ExtractionStage.INITIAL_CLASSIFICATION, doc)) {
+            doc = conf.initialClassifier.classifyZones(doc);
+            timer.finish(doc);
+        }
+        return doc;
     }
     
     /**
@@ -68,11 +97,22 @@ public class ExtractionUtils {
      */
     public static DocumentMetadata extractMetadata(ComponentConfiguration conf, BxDocument document) 
             throws AnalysisException {
-        BxDocument doc = conf.metadataClassifier.classifyZones(document);
-        DocumentMetadata metadata = conf.metadataExtractor.extractMetadata(doc);
-    	for (DocumentAffiliation aff : metadata.getAffiliations()) {
-    		conf.affiliationParser.parse(aff);
-    	}
+        BxDocument doc;
+        try (StageTimer timer = StageTimer.start(conf, ExtractionStage.METADATA_CLASSIFICATION, document)) {
+            doc = conf.metadataClassifier.classifyZones(document);
+            timer.finish(doc);
+        }
+        DocumentMetadata metadata;
+        try (StageTimer timer = StageTimer.start(conf, ExtractionStage.METADATA_EXTRACTION, doc)) {
+            metadata = conf.metadataExtractor.extractMetadata(doc);
+            timer.finish(doc);
+        }
+        try (StageTimer timer = StageTimer.start(conf, ExtractionStage.AFFILIATION_PARSING, doc)) {
+            for (DocumentAffiliation aff : metadata.getAffiliations()) {
+                conf.affiliationParser.parse(aff);
+            }
+            timer.finish(doc);
+        }
         return metadata;
     }
     
@@ -95,12 +135,80 @@ public class ExtractionUtils {
     }
     
     public static BxDocument createDocumentFromStream(ComponentConfiguration conf, InputStream stream) throws AnalysisException{
-        BxDocument doc = conf.characterExtractor.extractCharacters(stream);
-        doc = conf.documentSegmenter.segmentDocument(doc);
-        doc = conf.readingOrderResolver.resolve(doc);
+        return createDocument(conf, PdfSource.fromStream(stream));
+    }
+    
+    /**
+     * Extracts characters from the PDF, segments the pages and resolves the reading order.
+     * If both the character extractor and the segmenter support it, the pages are segmented
+     * while the following pages are still being extracted.
+     * 
+     * @param conf extraction configuration
+     * @param source PDF source
+     * @return document's box structure
+     * @throws AnalysisException 
+     */
+    public static BxDocument createDocument(ComponentConfiguration conf, PdfSource source) throws AnalysisException {
+        String documentId = StageTimer.getDocumentId(conf, source);
+        BxDocument doc;
+        if (conf.characterExtractor instanceof StreamingCharacterExtractor
+                && conf.documentSegmenter instanceof StreamingDocumentSegmenter) {
+            // pages are segmented while the following ones are still extracted
+            DocumentSegmentation segmentation;
+            try (StageTimer timer = StageTimer.start(conf, ExtractionStage.CHARACTER_EXTRACTION, documentId, null)) {
+                segmentation = ((StreamingDocumentSegmenter) conf.documentSegmenter).startSegmentation();
+                boolean extracted = false;
+                try {
+                    ((StreamingCharacterExtractor) conf.characterExtractor).extractCharacters(source, segmentation);
+                    extracted = true;
+                } finally {
+                    if (!extracted) {
+                        // the pages received so far must not keep the shared pool busy
+                        segmentation.cancel();
+                    }
+                }
+                timer.finish(null);
+            }
+            checkInterrupted();
+            try (StageTimer timer = StageTimer.start(conf, ExtractionStage.SEGMENTATION, documentId, null)) {
+                doc = segmentation.finish();
+                timer.finish(doc);
+            }
+        } else {
+            try (StageTimer timer = StageTimer.start(conf, ExtractionStage.CHARACTER_EXTRACTION, documentId, null)) {
+                doc = extractCharacters(conf, source);
+                timer.finish(doc);
+            }
+            checkInterrupted();
+            try (StageTimer timer = StageTimer.start(conf, ExtractionStage.SEGMENTATION, documentId, doc)) {
+                doc = conf.documentSegmenter.segmentDocument(doc);
+                timer.finish(doc);
+            }
+        }
+        checkInterrupted();
+        try (StageTimer timer = StageTimer.start(conf, ExtractionStage.READING_ORDER, documentId, doc)) {
+            doc = conf.readingOrderResolver.resolve(doc);
+            timer.finish(doc);
+        }
+        if (documentId != null && doc.getFilename() == null) {
+            // the following stages identify the document by its file name
+            doc.setFilename(documentId);
+        }
         return doc;
     }
     
+    private static BxDocument extractCharacters(ComponentConfiguration conf, PdfSource source) 
+            throws AnalysisException {
+        if (conf.characterExtractor instanceof StreamingCharacterExtractor) {
+            return ((StreamingCharacterExtractor) conf.characterExtractor).extractCharacters(source);
+        }
+        try (InputStream stream = source.openStream()) {
+            return conf.characterExtractor.extractCharacters(stream);
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot read PDF file", ex);
+        }
+    }
+    
     /**
      * Extracts raw text from document' box structure.
      * 
@@ -124,12 +232,40 @@ public class ExtractionUtils {
      */
     public static BibEntry[] extractReferences(ComponentConfiguration conf, BxDocument document)
             throws AnalysisException {
-        String[] refs = conf.bibReferenceExtractor.extractBibReferences(document);
-        BibEntry[] parsedRefs = new BibEntry[refs.length];
-        for (int i = 0; i < refs.length; i++) {
-            parsedRefs[i] = conf.bibReferenceParser.parseBibReference(refs[i]);
+        String[] refs;
+        try (StageTimer timer = StageTimer.start(conf, ExtractionStage.REFERENCE_EXTRACTION, document)) {
+            refs = conf.bibReferenceExtractor.extractBibReferences(document);
+            timer.finish(document);
+        }
+        checkInterrupted();
+        List<BibEntry> parsedRefs;
+        try (StageTimer timer = StageTimer.start(conf, ExtractionStage.REFERENCE_PARSING, document)) {
+            parsedRefs = parseReferences(conf.bibReferenceParser, Arrays.asList(refs));
+            timer.finish(document);
+        }
+        return parsedRefs.toArray(new BibEntry[refs.length]);
+    }
+
+    /**
+     * Parses references, as a batch if the parser supports it.
+     * 
+     * @param <T> type of parsed reference
+     * @param parser reference parser
+     * @param texts the texts of the references
+     * @return parsed references, in the order of the texts
+     * @throws AnalysisException 
+     */
+    public static <T> List<T> parseReferences(BibReferenceParser<T> parser, List<String> texts)
+            throws AnalysisException {
+        if (parser instanceof BatchBibReferenceParser) {
+            return ((BatchBibReferenceParser<T>) parser).parseBibReferences(texts);
         }
-        return parsedRefs;
+        List<T> references = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            checkInterrupted();
+            references.add(parser.parseBibReference(text));
+        }
+        return references;
     }
     
     /**
@@ -183,13 +319,20 @@ public class ExtractionUtils {
      */
     private static DocumentContentStructure extractText(ComponentConfiguration conf, BxDocument document) 
             throws AnalysisException {
-        try {
-            BxDocument doc = conf.contentFilter.filter(document);
+        BxDocument doc;
+        try (StageTimer timer = StageTimer.start(conf, ExtractionStage.CONTENT_FILTERING, document)) {
+            doc = conf.contentFilter.filter(document);
+            timer.finish(doc);
+        }
+        checkInterrupted();
+        try (StageTimer timer = StageTimer.start(conf, ExtractionStage.CONTENT_STRUCTURING, doc)) {
             BxDocContentStructure tmpContentStructure = conf.contentHeaderExtractor.extractHeaders(doc);
             conf.contentCleaner.cleanupContent(tmpContentStructure);
             BxContentStructToDocContentStructConverter converter = 
                     new BxContentStructToDocContentStructConverter();
-            return converter.convert(tmpContentStructure);
+            DocumentContentStructure contentStructure = converter.convert(tmpContentStructure);
+            timer.finish(doc);
+            return contentStructure;
         } catch (TransformationException ex) {
             throw new AnalysisException("Cannot extract content from the document!", ex);
         }
@@ -225,5 +368,17 @@ public class ExtractionUtils {
         RawTextWithLabelsExtractor textExtractor = new RawTextWithLabelsExtractor();
         return textExtractor.extractRawTextWithLabels(document, contentStr);
     }
+
+    /**
+     * Stops the extraction if the current thread was interrupted,
+     * for example because the extraction took too long.
+     * 
+     * @throws AnalysisException if the current thread was interrupted
+     */
+    static void checkInterrupted() throws AnalysisException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new AnalysisException("Extraction interrupted!");
+        }
+    }
     
 }
@@ -69,7 +69,6 @@ public class PdfBxStructureExtractor extends AbstractExtractor<InputStream, BxDo
         
         String path = parser.getPath();
         String strExtension = parser.getBxExtension();
-        Cermine.THREADS_NUMBER = parser.getThreadsNumber();
  
         File file = new File(path);
         Collection<File> files = FileUtils.listFiles(file, new String[]{"pdf"}, true);
@@ -91,6 +90,7 @@ public class PdfBxStructureExtractor extends AbstractExtractor<InputStream, BxDo
                 PdfBxStructureExtractor extractor = new PdfBxStructureExtractor();
                 parser.updateMetadataModel(extractor.getConfiguration());
                 parser.updateInitialModel(extractor.getConfiguration());
+                parser.updateSegmenterConcurrency(extractor.getConfiguration());
 
                 InputStream in = new FileInputStream(pdf);
                 BxDocument doc = extractor.extract(in);
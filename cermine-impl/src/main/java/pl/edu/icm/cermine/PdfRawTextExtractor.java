@@ -89,12 +89,12 @@ public class PdfRawTextExtractor {
         
         String path = parser.getPath();
         String extension = parser.getTextExtension();
-        Cermine.THREADS_NUMBER = parser.getThreadsNumber();
  
         File file = new File(path);
         if (file.isFile()) {
             try {
                 PdfRawTextExtractor extractor = new PdfRawTextExtractor();
+                parser.updateSegmenterConcurrency(extractor.getConf());
                 InputStream in = new FileInputStream(file);
                 String result = extractor.extractText(in);
                 System.out.println(result);
@@ -120,6 +120,7 @@ public class PdfRawTextExtractor {
  
                 try {
                     PdfRawTextExtractor extractor = new PdfRawTextExtractor();
+                    parser.updateSegmenterConcurrency(extractor.getConf());
                     InputStream in = new FileInputStream(pdf);
                     BxDocument doc = ExtractionUtils.extractStructure(extractor.getConf(), in);
                     String result = extractor.extractText(doc);
@@ -91,7 +91,6 @@ public class PdfRawTextWithLabelsExtractor extends AbstractExtractor<InputStream
         
         String path = parser.getPath();
         String extension = parser.getTextExtension();
-        Cermine.THREADS_NUMBER = parser.getThreadsNumber();
  
         File file = new File(path);
         if (file.isFile()) {
@@ -99,6 +98,7 @@ public class PdfRawTextWithLabelsExtractor extends AbstractExtractor<InputStream
                 PdfRawTextWithLabelsExtractor extractor = new PdfRawTextWithLabelsExtractor();
                 parser.updateMetadataModel(extractor.getConfiguration());
                 parser.updateInitialModel(extractor.getConfiguration());
+                parser.updateSegmenterConcurrency(extractor.getConfiguration());
                 InputStream in = new FileInputStream(file);
                 Element result = extractor.extractRawText(in);
                 XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
@@ -127,6 +127,7 @@ public class PdfRawTextWithLabelsExtractor extends AbstractExtractor<InputStream
                     PdfRawTextWithLabelsExtractor extractor = new PdfRawTextWithLabelsExtractor();
                     parser.updateMetadataModel(extractor.getConfiguration());
                     parser.updateInitialModel(extractor.getConfiguration());
+                    parser.updateSegmenterConcurrency(extractor.getConfiguration());
 
                     InputStream in = new FileInputStream(pdf);
                     BxDocument doc = extractor.extractBasicStructure(in);
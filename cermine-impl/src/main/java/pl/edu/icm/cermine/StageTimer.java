@@ -0,0 +1,176 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pl.edu.icm.cermine;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import pl.edu.icm.cermine.instrumentation.ExtractionListener;
+import pl.edu.icm.cermine.instrumentation.ExtractionStage;
+import pl.edu.icm.cermine.instrumentation.StageEvent;
+import pl.edu.icm.cermine.structure.PdfSource;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.model.BxPage;
+
+/**
+ * Measures an extraction stage and reports it to the listeners of the
+ * configuration. If there are no listeners, nothing is measured.
+ * <p>
+ * The stage should be run in a try-with-resources statement, so that a stage
+ * which throws an exception before it is finished is reported as failed:
+ * <pre>
+ * try (StageTimer timer = StageTimer.start(conf, stage, input)) {
+ *     output = ...;
+ *     timer.finish(output);
+ * }
+ * </pre>
+ *
+ * @author Dominika Tkaczyk
+ */
+final class StageTimer implements AutoCloseable {
+
+    private static final AtomicLong DOCUMENT_SEQUENCE = new AtomicLong();
+
+    private static final StageTimer DISABLED = new StageTimer(null, null, null, 0);
+
+    private final List<ExtractionListener> listeners;
+
+    private final ExtractionStage stage;
+
+    private final String documentId;
+
+    private final long start;
+
+    private boolean finished;
+
+    private StageTimer(List<ExtractionListener> listeners, ExtractionStage stage, String documentId, long start) {
+        this.listeners = listeners;
+        this.stage = stage;
+        this.documentId = documentId;
+        this.start = start;
+    }
+
+    /**
+     * Starts a stage processing the given document.
+     *
+     * @param conf extraction configuration
+     * @param stage extraction stage
+     * @param input the document processed by the stage
+     * @return the timer of the stage
+     */
+    static StageTimer start(ComponentConfiguration conf, ExtractionStage stage, BxDocument input) {
+        return start(conf, stage, input == null ? null : input.getFilename(), input);
+    }
+
+    /**
+     * Starts a stage.
+     *
+     * @param conf extraction configuration
+     * @param stage extraction stage
+     * @param documentId document id
+     * @param input the document processed by the stage, or null if it does not exist yet
+     * @return the timer of the stage
+     */
+    static StageTimer start(ComponentConfiguration conf, ExtractionStage stage, String documentId,
+            BxDocument input) {
+        return start(conf.extractionListeners, stage, documentId, input);
+    }
+
+    /**
+     * Starts a stage reported to the given listeners.
+     *
+     * @param listeners extraction listeners
+     * @param stage extraction stage
+     * @param documentId document id
+     * @param input the document processed by the stage, or null if it does not exist yet
+     * @return the timer of the stage
+     */
+    static StageTimer start(List<ExtractionListener> listeners, ExtractionStage stage, String documentId,
+            BxDocument input) {
+        if (listeners.isEmpty()) {
+            return DISABLED;
+        }
+        StageEvent event = event(stage, documentId, input, 0, false);
+        for (ExtractionListener listener : listeners) {
+            listener.stageStarted(event);
+        }
+        return new StageTimer(listeners, stage, documentId, System.nanoTime());
+    }
+
+    /**
+     * Finishes the stage.
+     *
+     * @param output the document produced by the stage
+     */
+    void finish(BxDocument output) {
+        if (listeners == null || finished) {
+            return;
+        }
+        finished = true;
+        fireFinished(event(stage, documentId, output, System.nanoTime() - start, false));
+    }
+
+    /**
+     * Finishes the stage as failed, unless it has already been finished.
+     */
+    @Override
+    public void close() {
+        if (listeners == null || finished) {
+            return;
+        }
+        finished = true;
+        fireFinished(event(stage, documentId, null, System.nanoTime() - start, true));
+    }
+
+    private void fireFinished(StageEvent event) {
+        for (ExtractionListener listener : listeners) {
+            listener.stageFinished(event);
+        }
+    }
+
+    /**
+     * Identifies the document read from the given source in the events:
+     * by the name of the source or, if the source has no name, by a sequence
+     * number.
+     *
+     * @param conf extraction configuration
+     * @param source PDF source
+     * @return document id, or null if the stages are not measured
+     */
+    static String getDocumentId(ComponentConfiguration conf, PdfSource source) {
+        if (source.getName() != null) {
+            return source.getName();
+        }
+        return conf.extractionListeners.isEmpty() ? null : "document-" + DOCUMENT_SEQUENCE.incrementAndGet();
+    }
+
+    private static StageEvent event(ExtractionStage stage, String documentId, BxDocument document, long elapsed,
+            boolean failed) {
+        int pageCount = 0;
+        int zoneCount = 0;
+        if (document != null) {
+            for (BxPage page : document.getPages()) {
+                pageCount++;
+                zoneCount += page.getZones().size();
+            }
+        }
+        return new StageEvent(stage, documentId, pageCount, zoneCount, elapsed, failed);
+    }
+
+}
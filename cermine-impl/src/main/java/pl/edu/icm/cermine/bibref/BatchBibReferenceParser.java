@@ -0,0 +1,42 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pl.edu.icm.cermine.bibref;
+
+import java.util.List;
+import pl.edu.icm.cermine.exception.AnalysisException;
+
+/**
+ * Bibliographic reference parser which parses many references at once
+ * faster than one by one.
+ * 
+ * @author Dominika Tkaczyk
+ *
+ * @param <T> Type of parsed reference.
+ */
+public interface BatchBibReferenceParser<T> extends BibReferenceParser<T> {
+
+    /**
+     * Parses the texts of references.
+     * 
+     * @param texts
+     * @return Parsed references, in the order of the texts.
+     * @throws AnalysisException 
+     */
+    List<T> parseBibReferences(List<String> texts) throws AnalysisException;
+
+}
@@ -18,130 +18,237 @@
 
 package pl.edu.icm.cermine.bibref;
 
-import edu.umass.cs.mallet.base.pipe.Pipe;
-import edu.umass.cs.mallet.base.pipe.iterator.LineGroupIterator;
-import edu.umass.cs.mallet.base.types.InstanceList;
-import edu.umass.cs.mallet.base.types.LabelsSequence;
-import edu.umass.cs.mallet.grmm.learning.ACRF;
 import java.io.*;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.regex.Pattern;
-import java.util.zip.GZIPInputStream;
+import java.util.*;
+import java.util.concurrent.*;
 import org.apache.commons.cli.*;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang.StringUtils;
 import org.jdom.Element;
 import org.jdom.output.Format;
 import org.jdom.output.XMLOutputter;
 import pl.edu.icm.cermine.bibref.model.BibEntry;
 import pl.edu.icm.cermine.bibref.parsing.model.Citation;
+import pl.edu.icm.cermine.bibref.parsing.model.CitationToken;
 import pl.edu.icm.cermine.bibref.parsing.model.CitationTokenLabel;
 import pl.edu.icm.cermine.bibref.parsing.tools.CitationUtils;
 import pl.edu.icm.cermine.bibref.transformers.BibEntryToNLMElementConverter;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.parsing.tools.GrmmModel;
+import pl.edu.icm.cermine.tools.CancellableTasks;
+import pl.edu.icm.cermine.tools.ModelRegistry;
+import pl.edu.icm.cermine.tools.SharedPools;
 
 /**
  * CRF-based bibiliographic reference parser.
  * 
  * @author Dominika Tkaczyk
  */
-public class CRFBibReferenceParser implements BibReferenceParser<BibEntry> {
+public class CRFBibReferenceParser implements BatchBibReferenceParser<BibEntry> {
     
     private static final int MAX_REFERENCE_LENGTH = 2000;
     
-    private ACRF model;
+    /** the number of references labelled at once */
+    private static final int BATCH_SIZE = 16;
+    
+    private final GrmmModel model;
+    
+    private final ExecutorService executor;
     
     private static final String defaultModelFile = "/pl/edu/icm/cermine/bibref/acrf.ser.gz";
     
     private static final String defaultWordsFile = "/pl/edu/icm/cermine/bibref/crf-train-words.txt";
     private final Set<String> words;
 
+    /**
+     * @param modelFile the path of the model file, either a serialized ACRF
+     * or its snapshot
+     * @throws AnalysisException 
+     */
     public CRFBibReferenceParser(String modelFile) throws AnalysisException {
-        System.setProperty("java.util.logging.config.file",
-            "edu/umass/cs/mallet/base/util/resources/logging.properties");
-        InputStream is;
-        ObjectInputStream ois = null;
-        try {
-            is = new FileInputStream(new File(modelFile));
-            ois = new ObjectInputStream(new BufferedInputStream(new GZIPInputStream(is)));
-            model = (ACRF)(ois.readObject());
-        } catch (ClassNotFoundException | IOException ex) {
-            throw new AnalysisException("Cannot set model!", ex);
-        } finally {
-            try {
-                if (ois != null) {
-                    ois.close();
-                }
-            } catch (IOException ex) {
-                throw new AnalysisException("Cannot set model!", ex);
-            }
-        }
-        
-        words = new HashSet<>();
-        InputStream wis = CitationUtils.class.getResourceAsStream(defaultWordsFile);
-        try {
-            words.addAll(IOUtils.readLines(wis));
-        } catch (IOException ex) {
-            throw new AnalysisException("Cannot set words!", ex);
-        }
+        this(GrmmModel.load(modelFile));
     }
     
+    /**
+     * @param modelInputStream the stream of the model, either a serialized ACRF
+     * or its snapshot
+     * @throws AnalysisException 
+     */
     public CRFBibReferenceParser(InputStream modelInputStream) throws AnalysisException {
-        System.setProperty("java.util.logging.config.file",
-            "edu/umass/cs/mallet/base/util/resources/logging.properties");
-        ObjectInputStream ois = null;
-        try {
-            ois = new ObjectInputStream(new BufferedInputStream(new GZIPInputStream(modelInputStream)));
-            model = (ACRF)(ois.readObject());
-        } catch (IOException | ClassNotFoundException ex) {
-            throw new AnalysisException("Cannot set model!", ex);
-        } finally {
-            try {
-                if (ois != null) {
-                    ois.close();
-                }
-            } catch (IOException ex) {
-                throw new AnalysisException("Cannot set model!", ex);
-            }
-        }
-        words = new HashSet<>();
+        this(GrmmModel.load(modelInputStream));
+    }
+    
+    /**
+     * @param model the model
+     * @throws AnalysisException 
+     */
+    public CRFBibReferenceParser(GrmmModel model) throws AnalysisException {
+        this(model, SharedPools.getDefaultPool());
+    }
+    
+    /**
+     * @param model the model
+     * @param executor the executor parsing the batches of references in parallel,
+     * or null if the batches should be parsed by the calling thread;
+     * the executor is not shut down by the parser and is used only
+     * if the model labels sequences in parallel
+     * @throws AnalysisException 
+     */
+    public CRFBibReferenceParser(GrmmModel model, ExecutorService executor) throws AnalysisException {
+        this(model, loadWords(), executor);
+    }
+    
+    private CRFBibReferenceParser(GrmmModel model, Set<String> words, ExecutorService executor) {
+        this.model = model;
+        this.words = words;
+        this.executor = executor;
+    }
+    
+    private static Set<String> loadWords() throws AnalysisException {
+        Set<String> words = new HashSet<>();
         InputStream wis = CitationUtils.class.getResourceAsStream(defaultWordsFile);
         try {
             words.addAll(IOUtils.readLines(wis));
         } catch (IOException ex) {
             throw new AnalysisException("Cannot set words!", ex);
         }
+        return words;
+    }
+    
+    /**
+     * Returns the parser sharing the model with this one and parsing
+     * the batches of references with the given executor.
+     * 
+     * @param executor the executor, or null if the batches should be parsed
+     * by the calling thread
+     * @return parser
+     */
+    public CRFBibReferenceParser withExecutor(ExecutorService executor) {
+        return new CRFBibReferenceParser(model, words, executor);
     }
 
     @Override
 	public BibEntry parseBibReference(String text) throws AnalysisException {
-        if (text.length() > MAX_REFERENCE_LENGTH) {
-            return new BibEntry().setText(text);
+        return parse(Collections.singletonList(text)).get(0);
+    }
+
+    /**
+     * Parses the references. If the model labels sequences in parallel,
+     * long lists are split into batches of {@value #BATCH_SIZE} references,
+     * parsed in parallel by the executor. A serialized ACRF would decode
+     * the batches one at a time anyway, so its references are parsed
+     * by the calling thread.
+     * 
+     * @param texts the texts of the references
+     * @return parsed references, in the order of the texts
+     * @throws AnalysisException 
+     */
+    @Override
+    public List<BibEntry> parseBibReferences(List<String> texts) throws AnalysisException {
+        if (executor == null || !model.isConcurrent() || texts.size() <= BATCH_SIZE) {
+            return parse(texts);
         }
         
+        List<Callable<List<BibEntry>>> tasks = new ArrayList<>();
+        for (int start = 0; start < texts.size(); start += BATCH_SIZE) {
+            final List<String> batch = texts.subList(start, Math.min(start + BATCH_SIZE, texts.size()));
+            tasks.add(new Callable<List<BibEntry>>() {
+                @Override
+                public List<BibEntry> call() throws AnalysisException {
+                    return parse(batch);
+                }
+            });
+        }
+        
+        List<BibEntry> references = new ArrayList<>(texts.size());
+        try {
+            for (List<BibEntry> batch : CancellableTasks.invokeAll(executor, tasks)) {
+                references.addAll(batch);
+            }
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof AnalysisException) {
+                throw (AnalysisException) ex.getCause();
+            }
+            throw new AnalysisException("Cannot parse references!", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisException("Cannot parse references!", ex);
+        } catch (RejectedExecutionException ex) {
+            throw new AnalysisException("Cannot parse references!", ex);
+        }
+        return references;
+    }
+    
+    /**
+     * Parses a batch of references, labelling all the citations at once.
+     */
+    private List<BibEntry> parse(List<String> texts) throws AnalysisException {
         if (model == null) {
             throw new AnalysisException("Model object is not set!");
         }
         
-        Citation citation = CitationUtils.stringToCitation(text);
-        String data = StringUtils.join(CitationUtils.citationToMalletInputFormat(citation, words), "\n");
-        
-        Pipe pipe = model.getInputPipe();
-        InstanceList instanceList = new InstanceList(pipe);
-        instanceList.add(new LineGroupIterator(new StringReader(data), Pattern.compile ("\\s*"), true)); 
-        LabelsSequence labelSequence = (LabelsSequence)model.getBestLabels(instanceList).get(0);
-           
-        for (int i = 0; i < labelSequence.size(); i++) {
-            citation.getTokens().get(i).setLabel(CitationTokenLabel.valueOf(labelSequence.get(i).toString()));
+        List<Citation> citations = new ArrayList<>(texts.size());
+        List<List<String>> tokenLabels = new ArrayList<>(texts.size());
+        List<List<List<String>>> features = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new AnalysisException("Reference parsing interrupted!");
+            }
+            if (text.length() > MAX_REFERENCE_LENGTH) {
+                citations.add(null);
+                continue;
+            }
+            Citation citation = CitationUtils.stringToCitation(text);
+            List<String> labels = new ArrayList<>(citation.getTokens().size());
+            for (CitationToken token : citation.getTokens()) {
+                labels.add(String.valueOf(token.getLabel()));
+            }
+            citations.add(citation);
+            tokenLabels.add(labels);
+            features.add(CitationUtils.citationToFeatureLists(citation, words));
         }
         
-        return CitationUtils.citationToBibref(citation);
+        Iterator<String[]> labels = model.getBestLabelSequences(tokenLabels, features).iterator();
+        List<BibEntry> references = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            Citation citation = citations.get(i);
+            if (citation == null) {
+                references.add(new BibEntry().setText(texts.get(i)));
+                continue;
+            }
+            String[] citationLabels = labels.next();
+            for (int j = 0; j < citationLabels.length; j++) {
+                citation.getTokens().get(j).setLabel(CitationTokenLabel.valueOf(citationLabels[j]));
+            }
+            references.add(CitationUtils.citationToBibref(citation));
+        }
+        return references;
     }
   
+    /**
+     * Returns the parser using the default model. The instance is shared
+     * by all the callers.
+     * 
+     * @return parser
+     * @throws AnalysisException 
+     */
     public static CRFBibReferenceParser getInstance() throws AnalysisException {
-        return new CRFBibReferenceParser(CRFBibReferenceParser.class.getResourceAsStream(defaultModelFile));
+        return ModelRegistry.getModel(defaultModelFile, CRFBibReferenceParser.class,
+                new ModelRegistry.ModelLoader<CRFBibReferenceParser>() {
+                    @Override
+                    public CRFBibReferenceParser load() throws AnalysisException {
+                        return new CRFBibReferenceParser(
+                                GrmmModel.loadResource(CRFBibReferenceParser.class, defaultModelFile));
+                    }
+                });
+    }
+
+    /**
+     * @return the resources of the model and the words used by the default instance
+     */
+    public static List<String> getDefaultResources() {
+        return Arrays.asList(GrmmModel.getModelResource(CRFBibReferenceParser.class, defaultModelFile),
+                defaultWordsFile);
     }
     
     public static void main(String[] args) throws ParseException, AnalysisException, TransformationException {
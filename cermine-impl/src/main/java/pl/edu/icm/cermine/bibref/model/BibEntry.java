@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine.bibref.model;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -34,7 +35,9 @@ import org.apache.commons.lang.StringUtils;
  * 
  * @author Lukasz Bolikowski (bolo@icm.edu.pl)
  */
-public class BibEntry {
+public class BibEntry implements Serializable {
+
+    private static final long serialVersionUID = -1457520264719883346L;
 
     // @note not necessarily the best place, but I needed to store the id somewhere, so that 
     // it could be accessed when writing the <xref> elements, see above for possible later changes
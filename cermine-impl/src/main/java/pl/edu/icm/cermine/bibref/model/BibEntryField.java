@@ -18,12 +18,16 @@
 
 package pl.edu.icm.cermine.bibref.model;
 
+import java.io.Serializable;
+
 /**
  * BibEntry field.
  *
  * @author Dominika Tkaczyk (d.tkaczyk@icm.edu.pl)
  */
-public class BibEntryField {
+public class BibEntryField implements Serializable {
+
+    private static final long serialVersionUID = 4462013617452293850L;
 
     private String text;
     private int startIndex;
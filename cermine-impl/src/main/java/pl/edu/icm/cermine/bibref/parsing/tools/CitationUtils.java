@@ -221,6 +221,36 @@ public final class CitationUtils {
     public static List<String> citationToMalletInputFormat(Citation citation, Set<String> words) {
         List<String> trainingExamples = new ArrayList<String>();
 
+        List<CitationToken> tokens = citation.getTokens();
+        List<List<String>> featureLists = citationToFeatureLists(citation, words);
+        for (int i = 0; i < tokens.size(); i++) {
+            StringBuilder stringBuilder = new StringBuilder();
+            
+            stringBuilder.append(tokens.get(i).getLabel());
+            stringBuilder.append(" ---- ");
+            for (String feature : featureLists.get(i)) {
+                stringBuilder.append(feature);
+                stringBuilder.append(" ");
+            }
+            while (stringBuilder.length() > 0 && Character.isWhitespace(stringBuilder.charAt(stringBuilder.length() - 1))) {
+                stringBuilder.deleteCharAt(stringBuilder.length() - 1);
+            }
+            trainingExamples.add(stringBuilder.toString());
+        }
+        
+        return trainingExamples; 
+    }
+    
+    /**
+     * Computes the features of the citation's tokens, used by the CRF model.
+     * Every token gets its own features and the features of two tokens 
+     * on both sides, with "@offset" suffix.
+     * 
+     * @param citation citation
+     * @param words the words used as features
+     * @return the feature lists of the tokens
+     */
+    public static List<List<String>> citationToFeatureLists(Citation citation, Set<String> words) {
         FeatureVectorBuilder vectorBuilder = FeatureList.VECTOR_BUILDER;
         
         List<CitationToken> tokens = citation.getTokens();
@@ -238,56 +268,33 @@ public final class CitationUtils {
             featureVectors.add(featureVector);
         }
         
+        List<List<String>> featureLists = new ArrayList<List<String>>(tokens.size());
         for (int i = 0; i < tokens.size(); i++) {
-            StringBuilder stringBuilder = new StringBuilder();
-            
-            stringBuilder.append(tokens.get(i).getLabel());
-            stringBuilder.append(" ---- ");
-               
+            List<String> features = new ArrayList<String>();
             if (i >= 2) {
-                for (String n : featureVectors.get(i-2).getFeatureNames()) {
-                    if (featureVectors.get(i-2).getValue(n) > Double.MIN_VALUE) {
-                        stringBuilder.append(n);
-                        stringBuilder.append("@-2 ");
-                    }
-                }
+                addPresentFeatures(features, featureVectors.get(i-2), "@-2");
             }
             if (i >= 1) {
-                for (String n : featureVectors.get(i-1).getFeatureNames()) {
-                    if (featureVectors.get(i-1).getValue(n) > Double.MIN_VALUE) {
-                        stringBuilder.append(n);
-                        stringBuilder.append("@-1 ");
-                    }
-                }
-            }
-            for (String n : featureVectors.get(i).getFeatureNames()) {
-                if (featureVectors.get(i).getValue(n) > Double.MIN_VALUE) {
-                    stringBuilder.append(n);
-                    stringBuilder.append(" ");
-                }
+                addPresentFeatures(features, featureVectors.get(i-1), "@-1");
             }
+            addPresentFeatures(features, featureVectors.get(i), "");
             if (i < featureVectors.size()-1) {
-                for (String n : featureVectors.get(i+1).getFeatureNames()) {
-                    if (featureVectors.get(i+1).getValue(n) > Double.MIN_VALUE) {
-                        stringBuilder.append(n);
-                        stringBuilder.append("@1 ");
-                    }
-                }
+                addPresentFeatures(features, featureVectors.get(i+1), "@1");
             }
             if (i < featureVectors.size()-2) {
-                for (String n : featureVectors.get(i+2).getFeatureNames()) {
-                    if (featureVectors.get(i+2).getValue(n) > Double.MIN_VALUE) {
-                        stringBuilder.append(n);
-                        stringBuilder.append("@2 ");
-                    }
-                }
+                addPresentFeatures(features, featureVectors.get(i+2), "@2");
             }
-            while (stringBuilder.length() > 0 && Character.isWhitespace(stringBuilder.charAt(stringBuilder.length() - 1))) {
-                stringBuilder.deleteCharAt(stringBuilder.length() - 1);
-            }
-            trainingExamples.add(stringBuilder.toString());
+            featureLists.add(features);
         }
         
-        return trainingExamples; 
+        return featureLists;
+    }
+    
+    private static void addPresentFeatures(List<String> features, FeatureVector featureVector, String suffix) {
+        for (String n : featureVector.getFeatureNames()) {
+            if (featureVector.getValue(n) > Double.MIN_VALUE) {
+                features.add(n + suffix);
+            }
+        }
     }
 }
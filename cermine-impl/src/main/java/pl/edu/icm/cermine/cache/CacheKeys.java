@@ -0,0 +1,126 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pl.edu.icm.cermine.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.tools.ModelRegistry;
+
+/**
+ * Computes the keys of the cached results. A key consists of the SHA-256
+ * digest of the input document and a part of the digest of the fingerprint
+ * describing the models and the configuration used for the extraction.
+ * The keys contain only hexadecimal digits and a dash, so they can be used
+ * as file names.
+ *
+ * @author Dominika Tkaczyk
+ */
+public final class CacheKeys {
+
+    private static final String ALGORITHM = "SHA-256";
+
+    private static final int FINGERPRINT_LENGTH = 16;
+
+    private static final String RESOURCE_DIGEST_KEY_PREFIX = "sha256:";
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * @param pdf the content of the input document
+     * @param fingerprint the fingerprint of the models and the configuration
+     * @return result key
+     */
+    public static String compute(byte[] pdf, String fingerprint) {
+        return sha256(pdf) + "-"
+                + sha256(fingerprint.getBytes(StandardCharsets.UTF_8)).substring(0, FINGERPRINT_LENGTH);
+    }
+
+    /**
+     * @param bytes data
+     * @return the SHA-256 digest of the data as a hexadecimal string
+     */
+    public static String sha256(byte[] bytes) {
+        return toHex(newDigest().digest(bytes));
+    }
+
+    /**
+     * Computes the SHA-256 digest of a classpath resource. The resources
+     * do not change while the process is running, so the digest of every
+     * resource is computed only once and kept in the {@link ModelRegistry}.
+     *
+     * @param resource the absolute path of the resource
+     * @return the digest as a hexadecimal string
+     * @throws AnalysisException if the resource cannot be read
+     */
+    public static String digestResource(final String resource) throws AnalysisException {
+        return ModelRegistry.getModel(RESOURCE_DIGEST_KEY_PREFIX + resource, String.class,
+                new ModelRegistry.ModelLoader<String>() {
+                    @Override
+                    public String load() throws AnalysisException {
+                        InputStream stream = CacheKeys.class.getResourceAsStream(resource);
+                        if (stream == null) {
+                            throw new AnalysisException("Resource not found: " + resource);
+                        }
+                        MessageDigest digest = newDigest();
+                        byte[] buffer = new byte[BUFFER_SIZE];
+                        try (InputStream is = stream) {
+                            int read;
+                            while ((read = is.read(buffer)) != -1) {
+                                digest.update(buffer, 0, read);
+                            }
+                        } catch (IOException ex) {
+                            throw new AnalysisException("Cannot read resource " + resource, ex);
+                        }
+                        return toHex(digest.digest());
+                    }
+                });
+    }
+
+    /**
+     * @return a new SHA-256 message digest
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform has to support SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] hex = new char[2 * bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    private CacheKeys() {
+    }
+
+}
@@ -0,0 +1,82 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pl.edu.icm.cermine.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the lookups of a result cache. The bytes saved are the sizes
+ * of the input documents found in the cache, which did not have to be processed.
+ *
+ * @author Dominika Tkaczyk
+ */
+public final class CacheStatistics {
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    /**
+     * Records a result found in the cache.
+     *
+     * @param inputSize the size of the input document in bytes
+     */
+    public void recordHit(long inputSize) {
+        hits.incrementAndGet();
+        bytesSaved.addAndGet(inputSize);
+    }
+
+    /**
+     * Records a result not found in the cache.
+     */
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    /**
+     * @return the fraction of the lookups that found a result, or 0 if there were no lookups
+     */
+    public double getHitRatio() {
+        long found = hits.get();
+        long total = found + misses.get();
+        return total == 0 ? 0 : (double) found / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Result cache: %d hits, %d misses, hit ratio %.1f%%, %d bytes saved",
+                getHits(), getMisses(), 100 * getHitRatio(), getBytesSaved());
+    }
+
+}
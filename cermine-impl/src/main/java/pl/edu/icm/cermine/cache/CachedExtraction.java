@@ -0,0 +1,192 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.cache;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.jdom.Element;
+import pl.edu.icm.cermine.bibref.model.BibEntry;
+import pl.edu.icm.cermine.content.model.DocumentContentStructure;
+import pl.edu.icm.cermine.content.references.InTextReference;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.transformers.BxDocumentToTrueVizWriter;
+import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentReader;
+
+/**
+ * The result of the extraction stored in a cache: the document in JATS format
+ * and, optionally, its geometric structure and the references found
+ * in its content.
+ * <p>
+ * The content structure, the end references and the in-text references
+ * are stored together, as the in-text references point to the paragraphs
+ * and the end references. The caches store them in a serialized form,
+ * so that every lookup gets its own copy.
+ *
+ * @author Dominika Tkaczyk
+ */
+public final class CachedExtraction {
+
+    private final Element jats;
+
+    private final BxDocument document;
+
+    private final DocumentContentStructure contentStructure;
+
+    private final List<BibEntry> endReferences;
+
+    private final List<InTextReference> inTextReferences;
+
+    /**
+     * @param jats the document in JATS format
+     * @param document the geometric structure of the document, or null
+     */
+    public CachedExtraction(Element jats, BxDocument document) {
+        this(jats, document, null, null, null);
+    }
+
+    /**
+     * @param jats the document in JATS format
+     * @param document the geometric structure of the document, or null
+     * @param contentStructure the structure of the document's body, or null
+     * @param endReferences the parsed bibliographic references, null
+     * if the content structure is null
+     * @param inTextReferences the references found in the document's body, null
+     * if the content structure is null
+     */
+    public CachedExtraction(Element jats, BxDocument document, DocumentContentStructure contentStructure,
+            List<BibEntry> endReferences, List<InTextReference> inTextReferences) {
+        if (jats == null) {
+            throw new IllegalArgumentException("JATS element cannot be null");
+        }
+        if ((contentStructure == null) != (endReferences == null)
+                || (contentStructure == null) != (inTextReferences == null)) {
+            throw new IllegalArgumentException("Content structure and references must be stored together");
+        }
+        this.jats = jats;
+        this.document = document;
+        this.contentStructure = contentStructure;
+        this.endReferences = endReferences;
+        this.inTextReferences = inTextReferences;
+    }
+
+    /**
+     * @return the document in JATS format
+     */
+    public Element getJats() {
+        return jats;
+    }
+
+    /**
+     * @return the geometric structure of the document, or null if it was not stored
+     */
+    public BxDocument getDocument() {
+        return document;
+    }
+
+    /**
+     * @return whether the content structure and the references were stored
+     */
+    public boolean hasReferences() {
+        return contentStructure != null;
+    }
+
+    /**
+     * @return the structure of the document's body, or null if it was not stored
+     */
+    public DocumentContentStructure getContentStructure() {
+        return contentStructure;
+    }
+
+    /**
+     * @return the parsed bibliographic references, or null if they were not stored
+     */
+    public List<BibEntry> getEndReferences() {
+        return endReferences;
+    }
+
+    /**
+     * @return the references found in the document's body, or null if they were not stored
+     */
+    public List<InTextReference> getInTextReferences() {
+        return inTextReferences;
+    }
+
+    /**
+     * @return the geometric structure in TrueViz format, or null if there is no structure
+     * @throws TransformationException 
+     */
+    String writeDocument() throws TransformationException {
+        return document == null ? null : new BxDocumentToTrueVizWriter().write(document.getPages());
+    }
+
+    static BxDocument readDocument(Reader reader) throws TransformationException {
+        List<BxPage> pages = new TrueVizToBxDocumentReader().read(reader);
+        return new BxDocument().setPages(pages);
+    }
+
+    static BxDocument readDocument(String trueViz) throws TransformationException {
+        return trueViz == null ? null : readDocument(new StringReader(trueViz));
+    }
+
+    /**
+     * @return the serialized content structure and references, or null if they were not stored
+     * @throws IOException 
+     */
+    byte[] writeReferences() throws IOException {
+        if (!hasReferences()) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(contentStructure);
+            out.writeObject(new ArrayList<>(endReferences));
+            out.writeObject(new ArrayList<>(inTextReferences));
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Creates the result with the content structure and references read
+     * from their serialized form.
+     * 
+     * @param jats the document in JATS format
+     * @param document the geometric structure of the document, or null
+     * @param references the serialized content structure and references, or null
+     * @return the result
+     * @throws IOException if the references cannot be read
+     */
+    @SuppressWarnings("unchecked")
+    static CachedExtraction read(Element jats, BxDocument document, byte[] references) throws IOException {
+        if (references == null) {
+            return new CachedExtraction(jats, document);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(references))) {
+            DocumentContentStructure contentStructure = (DocumentContentStructure) in.readObject();
+            List<BibEntry> endReferences = (List<BibEntry>) in.readObject();
+            List<InTextReference> inTextReferences = (List<InTextReference>) in.readObject();
+            return new CachedExtraction(jats, document, contentStructure, endReferences, inTextReferences);
+        } catch (ClassNotFoundException | ClassCastException ex) {
+            throw new InvalidObjectException("Cannot read cached references: " + ex.getMessage());
+        }
+    }
+
+}
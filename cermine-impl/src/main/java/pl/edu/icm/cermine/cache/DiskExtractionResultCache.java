@@ -0,0 +1,148 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pl.edu.icm.cermine.cache;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.JDOMException;
+import org.jdom.input.SAXBuilder;
+import org.jdom.output.XMLOutputter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+
+/**
+ * Result cache storing the results in a local directory, so that they
+ * survive restarts and can be shared by processes. Every result is stored
+ * in a JATS file named after its key, a file with the serialized content
+ * structure and references, if there are any, and, if the structures are stored
+ * as well, a TrueViz file.
+ * <p>
+ * The files are written under temporary names and then renamed, so
+ * incomplete files are never read. The entries that cannot be read or written
+ * are logged and treated as missing, so a broken cache never fails the extraction.
+ * The cache is not limited in size; old files can be simply deleted.
+ *
+ * @author Dominika Tkaczyk
+ */
+public class DiskExtractionResultCache implements ExtractionResultCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DiskExtractionResultCache.class);
+
+    private static final String JATS_SUFFIX = ".xml";
+
+    private static final String STRUCTURE_SUFFIX = ".cxml";
+
+    private static final String REFERENCES_SUFFIX = ".refs";
+
+    private final File directory;
+
+    private final boolean storeStructure;
+
+    private final CacheStatistics statistics = new CacheStatistics();
+
+    /**
+     * @param directory cache directory, created if it does not exist
+     * @param storeStructure whether to store the geometric structures as well
+     * @throws IOException if the directory cannot be created
+     */
+    public DiskExtractionResultCache(File directory, boolean storeStructure) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create cache directory " + directory);
+        }
+        this.directory = directory;
+        this.storeStructure = storeStructure;
+    }
+
+    @Override
+    public CachedExtraction get(String key) {
+        File jatsFile = new File(directory, key + JATS_SUFFIX);
+        if (!jatsFile.isFile()) {
+            return null;
+        }
+        try {
+            Element jats = new SAXBuilder().build(jatsFile).detachRootElement();
+            BxDocument document = null;
+            File structureFile = new File(directory, key + STRUCTURE_SUFFIX);
+            if (storeStructure && structureFile.isFile()) {
+                try (Reader reader = new InputStreamReader(new FileInputStream(structureFile),
+                        StandardCharsets.UTF_8)) {
+                    document = CachedExtraction.readDocument(reader);
+                }
+            }
+            byte[] references = null;
+            File referencesFile = new File(directory, key + REFERENCES_SUFFIX);
+            if (referencesFile.isFile()) {
+                references = Files.readAllBytes(referencesFile.toPath());
+            }
+            return CachedExtraction.read(jats, document, references);
+        } catch (IOException | JDOMException | TransformationException ex) {
+            log.warn("Cannot read cached result " + key, ex);
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, CachedExtraction result) {
+        try {
+            // the other files are written first, so they are there when the JATS file appears
+            if (storeStructure && result.getDocument() != null) {
+                write(key + STRUCTURE_SUFFIX, result.writeDocument().getBytes(StandardCharsets.UTF_8));
+            }
+            if (result.hasReferences()) {
+                write(key + REFERENCES_SUFFIX, result.writeReferences());
+            }
+            String jats = new XMLOutputter().outputString(new Document((Element) result.getJats().clone()));
+            write(key + JATS_SUFFIX, jats.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | TransformationException ex) {
+            log.warn("Cannot store result " + key, ex);
+        }
+    }
+
+    private void write(String name, byte[] content) throws IOException {
+        File temp = File.createTempFile(name, ".tmp", directory);
+        try {
+            Files.write(temp.toPath(), content);
+            Files.move(temp.toPath(), new File(directory, name).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public boolean isStoreStructure() {
+        return storeStructure;
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+
+}
@@ -0,0 +1,54 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pl.edu.icm.cermine.cache;
+
+/**
+ * Cache of extraction results. The results are identified by keys computed
+ * with {@link CacheKeys}, so the same document processed with the same models
+ * and configuration is found regardless of its file name or origin.
+ * <p>
+ * Implementations have to be safe for use by many threads.
+ *
+ * @author Dominika Tkaczyk
+ */
+public interface ExtractionResultCache {
+
+    /**
+     * Looks up the result stored under the given key.
+     *
+     * @param key result key
+     * @return the stored result, or null if there is no such result
+     */
+    CachedExtraction get(String key);
+
+    /**
+     * Stores the result under the given key, replacing the previous one.
+     *
+     * @param key result key
+     * @param result extraction result
+     */
+    void put(String key, CachedExtraction result);
+
+    /**
+     * @return the statistics of the lookups
+     */
+    CacheStatistics getStatistics();
+
+}
@@ -0,0 +1,132 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pl.edu.icm.cermine.cache;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.jdom.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.edu.icm.cermine.exception.TransformationException;
+
+/**
+ * In-memory result cache keeping the most recently used results.
+ * The results are copied when they are stored and returned, so the
+ * callers may modify them: the JATS elements are cloned, the geometric
+ * structures are kept in TrueViz format and the content structures with
+ * the references in a serialized form.
+ *
+ * @author Dominika Tkaczyk
+ */
+public class MemoryExtractionResultCache implements ExtractionResultCache {
+
+    private static final Logger log = LoggerFactory.getLogger(MemoryExtractionResultCache.class);
+
+    private final int maxEntries;
+
+    private final Map<String, CachedEntry> entries;
+
+    private final CacheStatistics statistics = new CacheStatistics();
+
+    /**
+     * @param maxEntries the maximum number of stored results
+     */
+    public MemoryExtractionResultCache(final int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The maximum number of entries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, CachedEntry>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public CachedExtraction get(String key) {
+        CachedEntry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return CachedExtraction.read((Element) entry.jats.clone(),
+                    CachedExtraction.readDocument(entry.document), entry.references);
+        } catch (IOException | TransformationException ex) {
+            log.warn("Cannot read cached result " + key, ex);
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, CachedExtraction result) {
+        CachedEntry entry;
+        try {
+            entry = new CachedEntry((Element) result.getJats().clone(), result.writeDocument(),
+                    result.writeReferences());
+        } catch (IOException | TransformationException ex) {
+            log.warn("Cannot store result " + key, ex);
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * @return the number of stored results
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    private static final class CachedEntry {
+
+        private final Element jats;
+
+        private final String document;
+
+        private final byte[] references;
+
+        CachedEntry(Element jats, String document, byte[] references) {
+            this.jats = jats;
+            this.document = document;
+            this.references = references;
+        }
+    }
+
+}
@@ -32,8 +32,8 @@ import pl.edu.icm.cermine.exception.AnalysisException;
 public class SVMLogicalStructureExtractor extends LogicalStructureExtractor {
 
     public SVMLogicalStructureExtractor() throws AnalysisException {
-        this.setContentFilter(new SVMContentFilter());
-        this.setHeaderExtractor(new SVMContentHeadersExtractor());
+        this.setContentFilter(SVMContentFilter.getDefaultInstance());
+        this.setHeaderExtractor(SVMContentHeadersExtractor.getDefaultInstance());
         this.setContentCleaner(new ContentCleaner());
         this.setConverter(new BxContentStructToDocContentStructConverter());
     }
@@ -20,9 +20,11 @@ package pl.edu.icm.cermine.content.filtering;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.*;
+import pl.edu.icm.cermine.tools.ModelRegistry;
 import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
 import pl.edu.icm.cermine.tools.classification.svm.SVMClassifier;
 
@@ -63,27 +65,48 @@ public class SVMContentFilter extends SVMClassifier<BxZone, BxPage, BxZoneLabel>
 	public SVMContentFilter(String modelFilePath, String rangeFilePath, FeatureVectorBuilder<BxZone, BxPage> featureVectorBuilder) 
             throws AnalysisException {
 		super(featureVectorBuilder, BxZoneLabel.class);
-		InputStreamReader modelISR = new InputStreamReader(SVMContentFilter.class
-				.getResourceAsStream(modelFilePath));
-		BufferedReader modelFile = new BufferedReader(modelISR);
-		
-		InputStreamReader rangeISR = new InputStreamReader(SVMContentFilter.class
-				.getResourceAsStream(rangeFilePath));
-		BufferedReader rangeFile = new BufferedReader(rangeISR);
         try {
-            loadModelFromFile(modelFile, rangeFile);
+            loadModelFromResources(modelFilePath, rangeFilePath);
         } catch (IOException ex) {
             throw new AnalysisException("Cannot create SVM classifier!", ex);
         }
 	}
     
+    public static SVMContentFilter getDefaultInstance() throws AnalysisException {
+        return ModelRegistry.getModel(MODEL_FILE_PATH, SVMContentFilter.class,
+                new ModelRegistry.ModelLoader<SVMContentFilter>() {
+                    @Override
+                    public SVMContentFilter load() throws AnalysisException {
+                        return new SVMContentFilter();
+                    }
+                });
+    }
+
+    /**
+     * @return the resources of the model used by the default instance
+     */
+    public static List<String> getDefaultResources() {
+        return SVMClassifier.getModelResources(MODEL_FILE_PATH, RANGE_FILE_PATH);
+    }
+
     @Override
     public BxDocument filter(BxDocument document) throws AnalysisException {
-        for (BxZone zone: document.asZones()) {
-			if (zone.getLabel().isOfCategoryOrGeneral(BxZoneLabelCategory.CAT_BODY)) {
-                zone.setLabel(predictLabel(zone, zone.getParent()));
+        List<BxZone> zones = new ArrayList<BxZone>();
+        for (BxPage page : document.asPages()) {
+            zones.clear();
+            for (BxZone zone : page.getZones()) {
+                if (zone.getLabel().isOfCategoryOrGeneral(BxZoneLabelCategory.CAT_BODY)) {
+                    zones.add(zone);
+                }
+            }
+            if (zones.isEmpty()) {
+                continue;
             }
-		}
+            List<BxZoneLabel> labels = predictLabels(zones, page);
+            for (int i = 0; i < zones.size(); i++) {
+                zones.get(i).setLabel(labels.get(i));
+            }
+        }
 		return document;
     }
     
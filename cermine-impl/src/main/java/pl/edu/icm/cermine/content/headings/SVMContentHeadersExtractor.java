@@ -19,9 +19,12 @@
 package pl.edu.icm.cermine.content.headings;
 
 import java.io.BufferedReader;
+import java.util.List;
 import pl.edu.icm.cermine.content.model.BxDocContentStructure;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.*;
+import pl.edu.icm.cermine.tools.ModelRegistry;
+import pl.edu.icm.cermine.tools.classification.svm.SVMClassifier;
 
 /**
  *
@@ -60,7 +63,23 @@ public class SVMContentHeadersExtractor implements ContentHeadersExtractor {
         this.headerLinesCompletener = new HeaderLinesCompletener();
 	}
     
-   
+    public static SVMContentHeadersExtractor getDefaultInstance() throws AnalysisException {
+        return ModelRegistry.getModel(MODEL_FILE_PATH, SVMContentHeadersExtractor.class,
+                new ModelRegistry.ModelLoader<SVMContentHeadersExtractor>() {
+                    @Override
+                    public SVMContentHeadersExtractor load() throws AnalysisException {
+                        return new SVMContentHeadersExtractor();
+                    }
+                });
+    }
+
+    /**
+     * @return the resources of the model used by the default instance
+     */
+    public static List<String> getDefaultResources() {
+        return SVMClassifier.getModelResources(MODEL_FILE_PATH, RANGE_FILE_PATH);
+    }
+
     private boolean isHeader(BxLine line, BxPage page) {
         BxZoneLabel label = contentHeaderClassifier.predictLabel(line, page);
         return label.equals(BxZoneLabel.BODY_HEADING);
@@ -20,7 +20,6 @@ package pl.edu.icm.cermine.content.headings;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.BxLine;
 import pl.edu.icm.cermine.structure.model.BxPage;
@@ -61,15 +60,8 @@ public class SVMHeaderLinesClassifier extends SVMClassifier<BxLine, BxPage, BxZo
 
 	public SVMHeaderLinesClassifier(String modelFilePath, String rangeFilePath, FeatureVectorBuilder<BxLine, BxPage> featureVectorBuilder) throws AnalysisException {
 		super(featureVectorBuilder, BxZoneLabel.class);
-		InputStreamReader modelISR = new InputStreamReader(SVMHeaderLinesClassifier.class
-				.getResourceAsStream(modelFilePath));
-		BufferedReader modelFile = new BufferedReader(modelISR);
-		
-		InputStreamReader rangeISR = new InputStreamReader(SVMHeaderLinesClassifier.class
-				.getResourceAsStream(rangeFilePath));
-		BufferedReader rangeFile = new BufferedReader(rangeISR);
         try {
-            loadModelFromFile(modelFile, rangeFile);
+            loadModelFromResources(modelFilePath, rangeFilePath);
         } catch (IOException ex) {
             throw new AnalysisException("Cannot create SVM classifier!", ex);
         }
@@ -18,6 +18,7 @@
 
 package pl.edu.icm.cermine.content.model;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,7 +27,9 @@ import java.util.List;
  * 
  * @author Dominika Tkaczyk
  */
-public class DocumentContentStructure {
+public class DocumentContentStructure implements Serializable {
+
+    private static final long serialVersionUID = 5129877364930148361L;
 
     private DocumentHeading header;
     private final List<DocumentParagraph> paragraphs;
@@ -18,12 +18,16 @@
 
 package pl.edu.icm.cermine.content.model;
 
+import java.io.Serializable;
+
 /**
  * Represents a heading in a document.
  *
  * @author Dominika Tkaczyk
  */
-public class DocumentHeading {
+public class DocumentHeading implements Serializable {
+
+    private static final long serialVersionUID = 2290813478162405373L;
 
     private final int level;
     private final String text;
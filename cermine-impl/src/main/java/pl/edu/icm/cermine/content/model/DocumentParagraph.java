@@ -15,6 +15,7 @@
 package pl.edu.icm.cermine.content.model;
 
 import pl.edu.icm.cermine.content.references.InTextReference;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -26,7 +27,9 @@ import java.util.List;
  * @author Dominika Tkaczyk
  * @author Dominik Horb <cermine@dominik.berlin>
  */
-public class DocumentParagraph {
+public class DocumentParagraph implements Serializable {
+
+    private static final long serialVersionUID = -3870921534688237454L;
 
     private final String text;
     private final DocumentContentStructure contentStructure;
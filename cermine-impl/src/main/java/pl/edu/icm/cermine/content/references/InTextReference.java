@@ -14,6 +14,7 @@
  */
 package pl.edu.icm.cermine.content.references;
 
+import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
 import pl.edu.icm.cermine.bibref.model.BibEntry;
@@ -30,7 +31,9 @@ import pl.edu.icm.cermine.content.model.DocumentParagraph;
  *
  * @author Dominik Horb <cermine@dominik.berlin>
  */
-public final class InTextReference {
+public final class InTextReference implements Serializable {
+
+    private static final long serialVersionUID = -6135477790318246601L;
 
     private final int startPosition;
     private final int endPosition;
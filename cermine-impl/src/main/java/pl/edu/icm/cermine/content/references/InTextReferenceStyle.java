@@ -17,13 +17,17 @@
  */
 package pl.edu.icm.cermine.content.references;
 
+import java.io.Serializable;
+
 /**
  * Represents the style of an in-text reference, i. e. some variation of [1] or (Shotton, 2009), 
  * by the brackets that are used and if it is numerical or in author-year style.
  * 
  * @author Dominik Horb <cermine@dominik.berlin>
  */
-public class InTextReferenceStyle {
+public class InTextReferenceStyle implements Serializable {
+
+    private static final long serialVersionUID = 7714930925107338892L;
 
     private final BracketType bracketType;
     private final InTextReferenceType inTextReferenceType;
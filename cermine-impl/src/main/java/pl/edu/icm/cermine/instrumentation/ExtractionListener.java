@@ -0,0 +1,49 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pl.edu.icm.cermine.instrumentation;
+
+/**
+ * Receives the start and end events of the extraction stages. Listeners are
+ * registered in {@link pl.edu.icm.cermine.ComponentConfiguration} and are
+ * called synchronously by the thread running the stage, so they should be fast
+ * and, if the configuration is used by many threads, thread-safe.
+ * <p>
+ * Every started stage gets the end event, also if it fails; the end event
+ * of a failed stage is marked with {@link StageEvent#isFailed()}.
+ *
+ * @author Dominika Tkaczyk
+ */
+public interface ExtractionListener {
+
+    /**
+     * Called before the stage is run.
+     *
+     * @param event stage event with zero elapsed time
+     */
+    void stageStarted(StageEvent event);
+
+    /**
+     * Called after the stage is finished or has failed.
+     *
+     * @param event stage event
+     */
+    void stageFinished(StageEvent event);
+
+}
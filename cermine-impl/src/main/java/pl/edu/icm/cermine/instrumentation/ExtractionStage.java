@@ -0,0 +1,66 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pl.edu.icm.cermine.instrumentation;
+
+/**
+ * The stages of the extraction reported to {@link ExtractionListener}s.
+ *
+ * @author Dominika Tkaczyk
+ */
+public enum ExtractionStage {
+
+    /**
+     * extracting characters from the PDF; if the pages are segmented
+     * while the following pages are extracted, the stage includes
+     * the segmentation done in the meantime
+     */
+    CHARACTER_EXTRACTION,
+
+    /** segmenting the pages into zones, lines and words */
+    SEGMENTATION,
+
+    /** resolving the reading order */
+    READING_ORDER,
+
+    /** initial zone classification */
+    INITIAL_CLASSIFICATION,
+
+    /** metadata zone classification */
+    METADATA_CLASSIFICATION,
+
+    /** extracting the metadata from the classified zones, including the enhancers */
+    METADATA_EXTRACTION,
+
+    /** parsing the affiliations */
+    AFFILIATION_PARSING,
+
+    /** extracting the reference strings */
+    REFERENCE_EXTRACTION,
+
+    /** parsing the reference strings */
+    REFERENCE_PARSING,
+
+    /** filtering the body zones */
+    CONTENT_FILTERING,
+
+    /** extracting the section headers and the paragraphs of the body */
+    CONTENT_STRUCTURING
+
+}
@@ -0,0 +1,97 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pl.edu.icm.cermine.instrumentation;
+
+/**
+ * The event of starting or finishing an extraction stage. The page and zone
+ * counts describe the document processed by the stage: the input document
+ * for the start events and the output document for the end events. The end
+ * events of the failed stages have no counts.
+ *
+ * @author Dominika Tkaczyk
+ */
+public final class StageEvent {
+
+    private final ExtractionStage stage;
+
+    private final String documentId;
+
+    private final int pageCount;
+
+    private final int zoneCount;
+
+    private final long elapsedNanos;
+
+    private final boolean failed;
+
+    public StageEvent(ExtractionStage stage, String documentId, int pageCount, int zoneCount, long elapsedNanos) {
+        this(stage, documentId, pageCount, zoneCount, elapsedNanos, false);
+    }
+
+    public StageEvent(ExtractionStage stage, String documentId, int pageCount, int zoneCount, long elapsedNanos,
+            boolean failed) {
+        this.stage = stage;
+        this.documentId = documentId;
+        this.pageCount = pageCount;
+        this.zoneCount = zoneCount;
+        this.elapsedNanos = elapsedNanos;
+        this.failed = failed;
+    }
+
+    public ExtractionStage getStage() {
+        return stage;
+    }
+
+    /**
+     * @return the name of the document if it is known, or its sequence number otherwise
+     */
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public int getZoneCount() {
+        return zoneCount;
+    }
+
+    /**
+     * @return the duration of the stage in nanoseconds, or 0 for the start events
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return true if this is the end event of a stage that threw an exception
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    @Override
+    public String toString() {
+        return stage + " [" + documentId + ", " + pageCount + " pages, " + zoneCount + " zones, "
+                + elapsedNanos + " ns" + (failed ? ", failed" : "") + "]";
+    }
+
+}
@@ -0,0 +1,93 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pl.edu.icm.cermine.instrumentation;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Extraction listener aggregating the durations of every stage in histograms.
+ * The durations of the failed stages are included.
+ * A single instance can be registered in a configuration used by many threads.
+ *
+ * @author Dominika Tkaczyk
+ */
+public class TimingStatistics implements ExtractionListener {
+
+    private final Map<ExtractionStage, StageHistogram> histograms;
+
+    public TimingStatistics() {
+        Map<ExtractionStage, StageHistogram> stageHistograms =
+                new EnumMap<ExtractionStage, StageHistogram>(ExtractionStage.class);
+        for (ExtractionStage stage : ExtractionStage.values()) {
+            stageHistograms.put(stage, new StageHistogram());
+        }
+        histograms = Collections.unmodifiableMap(stageHistograms);
+    }
+
+    @Override
+    public void stageStarted(StageEvent event) {
+    }
+
+    @Override
+    public void stageFinished(StageEvent event) {
+        histograms.get(event.getStage()).record(event.getElapsedNanos());
+    }
+
+    /**
+     * @param stage extraction stage
+     * @return the histogram of the durations of the stage
+     */
+    public StageHistogram getHistogram(ExtractionStage stage) {
+        return histograms.get(stage);
+    }
+
+    /**
+     * @return a table of the stages run at least once, with their durations in milliseconds
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder(String.format("%-24s %8s %12s %10s %10s %10s %10s %10s%n",
+                "Stage", "Calls", "Total", "Mean", "p50", "p90", "p99", "Max"));
+        long totalNanos = 0;
+        for (Map.Entry<ExtractionStage, StageHistogram> entry : histograms.entrySet()) {
+            StageHistogram histogram = entry.getValue();
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            totalNanos += histogram.getTotalNanos();
+            summary.append(String.format("%-24s %8d %12.1f %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                    entry.getKey(), histogram.getCount(), StageHistogram.millis(histogram.getTotalNanos()),
+                    StageHistogram.millis(histogram.getMeanNanos()),
+                    StageHistogram.millis(histogram.getPercentileNanos(50)),
+                    StageHistogram.millis(histogram.getPercentileNanos(90)),
+                    StageHistogram.millis(histogram.getPercentileNanos(99)),
+                    StageHistogram.millis(histogram.getMaxNanos())));
+        }
+        summary.append(String.format("%-24s %8s %12.1f%n", "All stages", "", StageHistogram.millis(totalNanos)));
+        return summary.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+
+}
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.apache.commons.cli.*;
 import org.jdom.Element;
@@ -37,7 +38,9 @@ import pl.edu.icm.cermine.metadata.model.AffiliationLabel;
 import pl.edu.icm.cermine.metadata.model.DocumentAffiliation;
 import pl.edu.icm.cermine.metadata.transformers.DocumentMetadataToNLMElementConverter;
 import pl.edu.icm.cermine.parsing.model.Token;
+import pl.edu.icm.cermine.parsing.tools.GrmmModel;
 import pl.edu.icm.cermine.parsing.tools.ParsableStringParser;
+import pl.edu.icm.cermine.tools.ModelRegistry;
 
 /**
  * CRF-based Affiliation parser. 
@@ -93,13 +96,38 @@ public class CRFAffiliationParser implements ParsableStringParser<DocumentAffili
 		tokenizer = new AffiliationTokenizer();
 		featureExtractor = new AffiliationFeatureExtractor(commonWords);
 		classifier = new AffiliationCRFTokenClassifier(
-				getClass().getResourceAsStream(acrfFileName));
+				GrmmModel.loadResource(getClass(), acrfFileName));
 	}
 	
 	public CRFAffiliationParser() throws AnalysisException {
 		this(DEFAULT_COMMON_WORDS_FILE, DEFAULT_MODEL_FILE);
 	}
 
+	/**
+	 * Returns the parser using the default model and words list. The instance
+	 * is shared by all the callers.
+	 * 
+	 * @return parser
+	 * @throws AnalysisException
+	 */
+	public static CRFAffiliationParser getDefaultInstance() throws AnalysisException {
+		return ModelRegistry.getModel(DEFAULT_MODEL_FILE, CRFAffiliationParser.class,
+				new ModelRegistry.ModelLoader<CRFAffiliationParser>() {
+					@Override
+					public CRFAffiliationParser load() throws AnalysisException {
+						return new CRFAffiliationParser();
+					}
+				});
+	}
+
+	/**
+	 * @return the resources of the model and the common words used by the default instance
+	 */
+	public static List<String> getDefaultResources() {
+		return Arrays.asList(GrmmModel.getModelResource(CRFAffiliationParser.class, DEFAULT_MODEL_FILE),
+				DEFAULT_COMMON_WORDS_FILE);
+	}
+
 	/**
 	 * Sets the token list of the affiliation so that their labels
 	 * determine the tagging of its text content. 
@@ -18,18 +18,13 @@
 
 package pl.edu.icm.cermine.metadata.affiliation.tools;
 
-import edu.umass.cs.mallet.base.pipe.Pipe;
-import edu.umass.cs.mallet.base.pipe.iterator.LineGroupIterator;
-import edu.umass.cs.mallet.base.types.InstanceList;
-import edu.umass.cs.mallet.base.types.LabelsSequence;
-import edu.umass.cs.mallet.grmm.learning.ACRF;
-import java.io.*;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
-import java.util.zip.GZIPInputStream;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.metadata.model.AffiliationLabel;
 import pl.edu.icm.cermine.parsing.model.Token;
+import pl.edu.icm.cermine.parsing.tools.GrmmModel;
 import pl.edu.icm.cermine.parsing.tools.GrmmUtils;
 import pl.edu.icm.cermine.parsing.tools.TokenClassifier;
 
@@ -41,39 +36,25 @@ import pl.edu.icm.cermine.parsing.tools.TokenClassifier;
  */
 public class AffiliationCRFTokenClassifier implements TokenClassifier<Token<AffiliationLabel>> {
 
-	private ACRF model;
+	private final GrmmModel model;
 	private static final int DEFAULT_NEIGHBOR_INFLUENCE_THRESHOLD = 1;
 	private static final String DEFAULT_MODEL_FILE =
 			"/pl/edu/icm/cermine/metadata/affiliation/acrf-affiliations-pubmed.ser.gz";
 
 	/**
-	 * @param modelInputStream the stream representing the ACRF model to be used
+	 * @param modelInputStream the stream representing the ACRF model to be used,
+	 * either a serialized ACRF or its snapshot
 	 * @throws AnalysisException if the model cannot be loaded
 	 */
 	public AffiliationCRFTokenClassifier(InputStream modelInputStream) throws AnalysisException {
-		System.setProperty("java.util.logging.config.file",
-				"edu/umass/cs/mallet/base/util/resources/logging.properties");
-		if (modelInputStream == null) {
-			throw new AnalysisException("Cannot set model, input stream is null!");
-		}
-		ObjectInputStream ois = null;
-		try {
-			ois = new ObjectInputStream(new BufferedInputStream(new GZIPInputStream(
-					modelInputStream)));
-			model = (ACRF) (ois.readObject());
-		} catch (IOException ex) {
-			throw new AnalysisException("Cannot set model!", ex);
-		} catch (ClassNotFoundException ex) {
-			throw new AnalysisException("Cannot set model!", ex);
-		} finally {
-			try {
-				if (ois != null) {
-					ois.close();
-				}
-			} catch (IOException ex) {
-				throw new AnalysisException("Cannot set model!", ex);
-			}
-		}
+		this(GrmmModel.load(modelInputStream));
+	}
+
+	/**
+	 * @param model the model to be used
+	 */
+	public AffiliationCRFTokenClassifier(GrmmModel model) {
+		this.model = model;
 	}
 
 	/**
@@ -82,14 +63,9 @@ public class AffiliationCRFTokenClassifier implements TokenClassifier<Token<Affi
 	 * @throws AnalysisException
 	 */
 	public AffiliationCRFTokenClassifier() throws AnalysisException {
-		this(AffiliationCRFTokenClassifier.class.getResourceAsStream(DEFAULT_MODEL_FILE));
+		this(GrmmModel.loadResource(AffiliationCRFTokenClassifier.class, DEFAULT_MODEL_FILE));
 	}
 
-	private LineGroupIterator getLineIterator(String data) {
-		return new LineGroupIterator(new StringReader(data), Pattern.compile("\\s*"), true);
-	}
-	
-	
 	/**
 	 * When comma is the last token in a tagged part, its label is changed to 'TEXT'.
 	 * 
@@ -113,21 +89,21 @@ public class AffiliationCRFTokenClassifier implements TokenClassifier<Token<Affi
                 token.setLabel(AffiliationLabel.TEXT);
             }
         }
-		String data = GrmmUtils.toGrmmInput(tokens, DEFAULT_NEIGHBOR_INFLUENCE_THRESHOLD);
+		List<List<String>> features = GrmmUtils.toFeatureLists(tokens, DEFAULT_NEIGHBOR_INFLUENCE_THRESHOLD);
+		List<String> tokenLabels = new ArrayList<String>(tokens.size());
+		for (Token<AffiliationLabel> token : tokens) {
+			tokenLabels.add(token.getLabel().toString());
+		}
 
-		Pipe pipe = model.getInputPipe();
-		InstanceList instanceList = new InstanceList(pipe);
-		instanceList.add(getLineIterator(data));
-		LabelsSequence labelsSequence = null;
-		
+		String[] labels;
 		try {
-			labelsSequence = (LabelsSequence) model.getBestLabels(instanceList).get(0);
+			labels = model.getBestLabels(tokenLabels, features);
 		} catch (ArrayIndexOutOfBoundsException ex) {
 			throw new AnalysisException("ACRF model can't recognize some of the labels.");
 		}
 
-		for (int i = 0; i < labelsSequence.size(); i++) {
-			tokens.get(i).setLabel(AffiliationLabel.valueOf(labelsSequence.get(i).toString()));
+		for (int i = 0; i < labels.length; i++) {
+			tokens.get(i).setLabel(AffiliationLabel.valueOf(labels[i]));
 		}
 		
 		enhanceLabels(tokens);
@@ -24,7 +24,9 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.HashMap;
 import java.util.Map;
+import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.tools.ModelRegistry;
 
 /**
  * Affiliation parser. Processes an instance of DocumentAffiliation by
@@ -68,6 +70,31 @@ public class CountryISOCodeFinder {
 		loadCountryCodes();
 	}
 
+	/**
+	 * Returns the finder using the default country codes list. The instance
+	 * is shared by all the callers.
+	 * 
+	 * @return finder
+	 * @throws TransformationException
+	 */
+	public static CountryISOCodeFinder getDefaultInstance() throws TransformationException {
+		try {
+			return ModelRegistry.getModel(CODES_FILE, CountryISOCodeFinder.class,
+					new ModelRegistry.ModelLoader<CountryISOCodeFinder>() {
+						@Override
+						public CountryISOCodeFinder load() throws AnalysisException {
+							try {
+								return new CountryISOCodeFinder();
+							} catch (TransformationException ex) {
+								throw new AnalysisException("Cannot load country codes!", ex);
+							}
+						}
+					});
+		} catch (AnalysisException ex) {
+			throw new TransformationException(ex);
+		}
+	}
+
 	public String getCountryISOCode(String country) {
         if (countryCodes.get(country) != null) {
             return countryCodes.get(country.toLowerCase());
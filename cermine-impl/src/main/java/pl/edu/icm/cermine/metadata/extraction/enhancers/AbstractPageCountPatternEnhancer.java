@@ -0,0 +1,74 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.metadata.extraction.enhancers;
+
+import java.util.Collection;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import pl.edu.icm.cermine.metadata.model.DocumentMetadata;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.model.BxZone;
+import pl.edu.icm.cermine.structure.model.BxZoneLabel;
+
+/**
+ * Base class for pattern enhancers that validate the match against
+ * the number of pages of the document. The page count is passed along
+ * with the match instead of being kept in a field, so that a single enhancer
+ * can process many documents concurrently.
+ *
+ * @author Dominika Tkaczyk
+ */
+public abstract class AbstractPageCountPatternEnhancer extends AbstractPatternEnhancer {
+
+    protected static final int DEFAULT_PAGE_COUNT = 10;
+
+    protected AbstractPageCountPatternEnhancer(Pattern pattern, Collection<BxZoneLabel> zoneLabels) {
+        super(pattern, zoneLabels);
+    }
+
+    protected AbstractPageCountPatternEnhancer(Pattern pattern) {
+        super(pattern);
+    }
+
+    protected abstract boolean enhanceMetadata(MatchResult result, DocumentMetadata metadata, int pageCount);
+
+    @Override
+    protected boolean enhanceMetadata(MatchResult result, DocumentMetadata metadata) {
+        return enhanceMetadata(result, metadata, DEFAULT_PAGE_COUNT);
+    }
+
+    @Override
+    protected boolean enhanceMetadata(BxDocument document, DocumentMetadata metadata) {
+        int pageCount = document.getPages().size();
+        for (BxPage page : filterPages(document)) {
+            for (BxZone zone : filterZones(page)) {
+                Matcher matcher = getPattern().matcher(zone.toText());
+                while (matcher.find()) {
+                    if (enhanceMetadata(matcher.toMatchResult(), metadata, pageCount)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+}
@@ -43,6 +43,10 @@ public abstract class AbstractPatternEnhancer extends AbstractSimpleEnhancer {
         this.pattern = pattern;
     }
 
+    protected Pattern getPattern() {
+        return pattern;
+    }
+
     protected void setPattern(Pattern pattern) {
         this.pattern = pattern;
     }
@@ -23,19 +23,17 @@ import java.util.Set;
 import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 import pl.edu.icm.cermine.metadata.model.DocumentMetadata;
-import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxZoneLabel;
 
 /**
  *
  * @author Dominika Tkaczyk (d.tkaczyk@icm.edu.pl)
  */
-public class JournalVolumePagesEnhancer extends AbstractPatternEnhancer {
+public class JournalVolumePagesEnhancer extends AbstractPageCountPatternEnhancer {
 
     private static final Pattern PATTERN = 
             Pattern.compile("([A-Z][^\\d]*),?\\s+(\\d+):?\\s*(\\d{1,5})[\u002D\u00AD\u2010\u2011\u2012\u2013\u2014\u2015\u207B\u208B\u2212-](\\d{1,5})");
     private static final Set<BxZoneLabel> SEARCHED_ZONE_LABELS = EnumSet.of(BxZoneLabel.MET_BIB_INFO);
-    private int pages = 10;
 
     public JournalVolumePagesEnhancer() {
         super(PATTERN, SEARCHED_ZONE_LABELS);
@@ -47,13 +45,7 @@ public class JournalVolumePagesEnhancer extends AbstractPatternEnhancer {
     }
 
     @Override
-    protected boolean enhanceMetadata(BxDocument document, DocumentMetadata metadata) {
-        pages = document.getPages().size();
-        return super.enhanceMetadata(document, metadata);
-    }
-    
-    @Override
-    protected boolean enhanceMetadata(MatchResult result, DocumentMetadata metadata) {
+    protected boolean enhanceMetadata(MatchResult result, DocumentMetadata metadata, int pages) {
         int first = Integer.parseInt(result.group(3));
         int last = Integer.parseInt(result.group(4));
         if (first <= last && last - first < pages * 2) {
@@ -24,19 +24,17 @@ import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 import pl.edu.icm.cermine.metadata.model.DocumentDate;
 import pl.edu.icm.cermine.metadata.model.DocumentMetadata;
-import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxZoneLabel;
 
 /**
  *
  * @author Dominika Tkaczyk (d.tkaczyk@icm.edu.pl)
  */
-public class JournalVolumePagesYearEnhancer extends AbstractPatternEnhancer {
+public class JournalVolumePagesYearEnhancer extends AbstractPageCountPatternEnhancer {
 
     private static final Pattern PATTERN = 
             Pattern.compile("([A-Z].*)\\s*[\\( ](\\d{4})[\\),;]\\s*(\\d+):\\s*(\\d{1,5})[\u002D\u00AD\u2010\u2011\u2012\u2013\u2014\u2015\u207B\u208B\u2212-](\\d{1,5})");
     private static final Set<BxZoneLabel> SEARCHED_ZONE_LABELS = EnumSet.of(BxZoneLabel.MET_BIB_INFO);
-    private int pages = 10;
 
     public JournalVolumePagesYearEnhancer() {
         super(PATTERN, SEARCHED_ZONE_LABELS);
@@ -48,13 +46,7 @@ public class JournalVolumePagesYearEnhancer extends AbstractPatternEnhancer {
     }
 
     @Override
-    protected boolean enhanceMetadata(BxDocument document, DocumentMetadata metadata) {
-        pages = document.getPages().size();
-        return super.enhanceMetadata(document, metadata);
-    }
-    
-    @Override
-    protected boolean enhanceMetadata(MatchResult result, DocumentMetadata metadata) {
+    protected boolean enhanceMetadata(MatchResult result, DocumentMetadata metadata, int pages) {
         int first = Integer.parseInt(result.group(4));
         int last = Integer.parseInt(result.group(5));
         if (first <= last && last - first < pages * 2) {
@@ -23,19 +23,17 @@ import java.util.Set;
 import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 import pl.edu.icm.cermine.metadata.model.DocumentMetadata;
-import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxZoneLabel;
 
 /**
  *
  * @author krusek
  */
-public class PagesLastEnhancer extends AbstractPatternEnhancer {
+public class PagesLastEnhancer extends AbstractPageCountPatternEnhancer {
 
     private static final Pattern PATTERN = Pattern.compile(
             "(\\d{1,5})[\u002D\u00AD\u2010\u2011\u2012\u2013\u2014\u2015\u207B\u208B\u2212-](\\d{1,5})",
             Pattern.CASE_INSENSITIVE);
-    private int pages = 10;
 
     public PagesLastEnhancer() {
         super(PATTERN);
@@ -43,13 +41,7 @@ public class PagesLastEnhancer extends AbstractPatternEnhancer {
     }
 
     @Override
-    protected boolean enhanceMetadata(BxDocument document, DocumentMetadata metadata) {
-        pages = document.getPages().size();
-        return super.enhanceMetadata(document, metadata);
-    }
-   
-    @Override
-    protected boolean enhanceMetadata(MatchResult result, DocumentMetadata metadata) {
+    protected boolean enhanceMetadata(MatchResult result, DocumentMetadata metadata, int pages) {
         int first = Integer.parseInt(result.group(1));
         int last = Integer.parseInt(result.group(2));
         if (first <= last && last - first + 1 <= 2 * pages) {
@@ -154,7 +154,7 @@ public class DocumentMetadataToNLMElementConverter implements ModelToModelConver
             if (token.getLabel().equals(AffiliationLabel.TEXT)) {
                 aff.addContent(token.getText());
             } else if (token.getLabel().equals(AffiliationLabel.COUN)) {
-                CountryISOCodeFinder finder = new CountryISOCodeFinder();
+                CountryISOCodeFinder finder = CountryISOCodeFinder.getDefaultInstance();
                 String isoCode = finder.getCountryISOCode(token.getText());
                 if (isoCode == null) {
                     addElement(aff, TAG_COUNTRY, token.getText());
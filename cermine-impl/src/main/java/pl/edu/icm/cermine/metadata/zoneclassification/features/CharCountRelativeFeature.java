@@ -18,7 +18,8 @@
 
 package pl.edu.icm.cermine.metadata.zoneclassification.features;
 
-import pl.edu.icm.cermine.structure.model.*;
+import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.tools.classification.features.FeatureCalculator;
 
 /**
@@ -29,29 +30,7 @@ public class CharCountRelativeFeature extends FeatureCalculator<BxZone, BxPage>
 
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
-        int count = 0;
-        for (BxLine line : zone.getLines()) {
-            for (BxWord word : line.getWords()) {
-                for (BxChunk chunk : word.getChunks()) {
-                    count += chunk.toText().length();
-                }
-            }
-        }
-
-        int pCount = 0;
-        for (BxZone pZone : page.getZones()) {
-            for (BxLine line : pZone.getLines()) {
-                for (BxWord word : line.getWords()) {
-                    for (BxChunk chunk : word.getChunks()) {
-                        pCount += chunk.toText().length();
-                    }
-                }
-            }
-        }
-        if(((double) count / (double) pCount)<0.0) {
-        	System.out.println(count);
-        	System.out.println(pCount);
-        }
-        return (double) count / (double) pCount;
+        ZoneFeatureContext context = ZoneFeatureContext.get();
+        return (double) context.getCharCount(zone) / (double) context.getCharCount(page);
     }
 }
@@ -18,7 +18,8 @@
 
 package pl.edu.icm.cermine.metadata.zoneclassification.features;
 
-import pl.edu.icm.cermine.structure.model.*;
+import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.tools.classification.features.FeatureCalculator;
 
 /**
@@ -28,16 +29,6 @@ public class FontHeightMeanFeature extends FeatureCalculator<BxZone, BxPage> {
 
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
-        double heightSum = 0.0;
-        int heightNumber = 0;
-        for (BxLine line : zone.getLines()) {
-            for (BxWord word : line.getWords()) {
-                for (BxChunk chunk : word.getChunks()) {
-                    heightSum += chunk.getBounds().getHeight();
-                    ++heightNumber;
-                }
-            }
-        }
-        return heightSum / heightNumber;
+        return ZoneFeatureContext.get().getFontHeightMean(zone);
     }
 }
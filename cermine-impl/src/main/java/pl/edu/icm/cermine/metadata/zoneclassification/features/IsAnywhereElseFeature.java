@@ -18,7 +18,6 @@
 
 package pl.edu.icm.cermine.metadata.zoneclassification.features;
 
-import java.util.List;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 
@@ -26,15 +25,12 @@ public class IsAnywhereElseFeature extends AbstractFeatureCalculator<BxZone, BxP
 
 	@Override
 	public double calculateFeatureValue(BxZone object, BxPage context) {
-		List<BxPage> pages = getOtherPages(context);
 		if(object.toText().length() <= 5) {
 			return 0.0;
 		}
-		for(BxPage page: pages) {
-			for(BxZone zone: page.getZones()) {
-				if(zone.toText().equals(object.toText())) {
-					return 1.0;
-				}
+		for(BxPage page: ZoneFeatureContext.get().getPagesWithZoneText(context, object.toText())) {
+			if(page != context) {
+				return 1.0;
 			}
 		}
 		return 0.0;
@@ -38,37 +38,19 @@ public class IsFontBiggerThanNeighboursFeature extends FeatureCalculator<BxZone,
             return 1.0;
         }
 
-        Integer thisZoneIdx = null;
-        for (int zoneIdx = 0; zoneIdx < pageZones.size(); ++zoneIdx) {
-            if (zone == pageZones.get(zoneIdx)) {
-                thisZoneIdx = zoneIdx;
-                break;
-            }
-        }
+        ZoneFeatureContext context = ZoneFeatureContext.get();
+        Integer thisZoneIdx = context.getZoneIndex(zone, page);
         assert thisZoneIdx != null : "No zone in zone's context found";
+        double thisZoneFont = context.getFontHeightMean(pageZones.get(thisZoneIdx));
         if (thisZoneIdx == 0) {
-            FeatureCalculator<BxZone, BxPage> fontHeight = new FontHeightMeanFeature();
-            double nextZoneFont = fontHeight.calculateFeatureValue(
-                    pageZones.get(thisZoneIdx + 1), page);
-            double thisZoneFont = fontHeight.calculateFeatureValue(
-                    pageZones.get(thisZoneIdx), page);
+            double nextZoneFont = context.getFontHeightMean(pageZones.get(thisZoneIdx + 1));
             return thisZoneFont > nextZoneFont ? 1.0 : 0.0;
         } else if (thisZoneIdx == pageZones.size() - 1) {
-            FeatureCalculator<BxZone, BxPage> fontHeight = new FontHeightMeanFeature();
-            double prevZoneFont = fontHeight.calculateFeatureValue(
-                    pageZones.get(thisZoneIdx - 1), page);
-            double thisZoneFont = fontHeight.calculateFeatureValue(
-                    pageZones.get(thisZoneIdx), page);
+            double prevZoneFont = context.getFontHeightMean(pageZones.get(thisZoneIdx - 1));
             return thisZoneFont > prevZoneFont ? 1.0 : 0.0;
         } else {
-            FeatureCalculator<BxZone, BxPage> fontHeight = new FontHeightMeanFeature();
-            double prevZoneFont = fontHeight.calculateFeatureValue(
-                    pageZones.get(thisZoneIdx - 1), page);
-            double thisZoneFont = fontHeight.calculateFeatureValue(
-                    pageZones.get(thisZoneIdx), page);
-            double nextZoneFont = fontHeight.calculateFeatureValue(
-                    pageZones.get(thisZoneIdx + 1), page);
-
+            double prevZoneFont = context.getFontHeightMean(pageZones.get(thisZoneIdx - 1));
+            double nextZoneFont = context.getFontHeightMean(pageZones.get(thisZoneIdx + 1));
             return (thisZoneFont > prevZoneFont && thisZoneFont > nextZoneFont) ? 1.0
                     : 0.0;
         }
@@ -26,10 +26,8 @@ public class IsLongestOnThePageFeature extends FeatureCalculator<BxZone, BxPage>
 
     @Override
     public double calculateFeatureValue(BxZone object, BxPage context) {
-        for (BxZone zone : context.getZones()) {
-            if (zone.toText().length() > object.toText().length()) {
-                return 0.0;
-            }
+        if (ZoneFeatureContext.get().getMaxTextLength(context) > object.toText().length()) {
+            return 0.0;
         }
         return 1.0;
     }
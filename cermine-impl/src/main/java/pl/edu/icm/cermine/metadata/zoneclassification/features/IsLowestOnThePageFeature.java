@@ -17,28 +17,18 @@
  */
 
 package pl.edu.icm.cermine.metadata.zoneclassification.features;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+
 import java.util.List;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
-import pl.edu.icm.cermine.tools.Utils;
 import pl.edu.icm.cermine.tools.classification.features.FeatureCalculator;
 
 public class IsLowestOnThePageFeature extends FeatureCalculator<BxZone, BxPage>{
 	public static final double EPS = 10.0;
-	private static class yCoordinateComparator implements Comparator<BxZone> {
-		@Override
-		public int compare(BxZone z1, BxZone z2) {
-            return Utils.compareDouble(z1.getY() + z1.getHeight(), z2.getY() + z2.getHeight(), 0.1);
-		}
-	}
 	
 	@Override
 	public double calculateFeatureValue(BxZone zone, BxPage page) {	
-		List<BxZone> zones = new ArrayList<BxZone>(page.getZones());
-		Collections.sort(zones, new yCoordinateComparator());
+		List<BxZone> zones = ZoneFeatureContext.get().getZonesByBottomEdge(page);
 		BxZone lastZone = zones.get(zones.size()-1);
 		if(zone.equals(lastZone)) {
 			return 1.0;
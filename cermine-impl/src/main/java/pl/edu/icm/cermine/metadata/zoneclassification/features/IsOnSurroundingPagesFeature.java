@@ -29,19 +29,9 @@ public class IsOnSurroundingPagesFeature extends FeatureCalculator<BxZone, BxPag
         BxPage nextPage = context.getNext();
         BxPage prevPage = context.getPrev();
 
-        if (nextPage != null) {
-            for (BxZone zone : nextPage.getZones()) {
-                if (zone.toText().equals(object.toText())) {
-                    return 1.0;
-                }
-            }
-        }
-
-        if (prevPage != null) {
-            for (BxZone zone : prevPage.getZones()) {
-                if (zone.toText().equals(object.toText())) {
-                    return 1.0;
-                }
+        for (BxPage page : ZoneFeatureContext.get().getPagesWithZoneText(context, object.toText())) {
+            if (page == nextPage || page == prevPage) {
+                return 1.0;
             }
         }
 
@@ -26,10 +26,8 @@ public class IsWidestOnThePageFeature extends FeatureCalculator<BxZone, BxPage>
 
     @Override
     public double calculateFeatureValue(BxZone object, BxPage context) {
-        for (BxZone zone : context.getZones()) {
-            if (zone.getWidth() > object.getWidth()) {
-                return 0.0;
-            }
+        if (ZoneFeatureContext.get().getMaxWidth(context) > object.getWidth()) {
+            return 0.0;
         }
         return 1.0;
     }
@@ -18,7 +18,6 @@
 
 package pl.edu.icm.cermine.metadata.zoneclassification.features;
 
-import pl.edu.icm.cermine.structure.model.BxLine;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.tools.classification.features.FeatureCalculator;
@@ -38,23 +37,9 @@ public class LineHeightMaxMeanFeature extends FeatureCalculator<BxZone, BxPage>
 
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
-        double zoneMean = 0;
-        for (BxLine line : zone.getLines()) {
-            zoneMean += line.getBounds().getHeight();
-        }
-        zoneMean /= (double) zone.getLines().size();
-        for (BxZone z : page.getZones()) {
-            if (z.equals(zone)) {
-                continue;
-            }
-            double pageMean = 0;
-            for (BxLine line : z.getLines()) {
-                pageMean += line.getBounds().getHeight();
-            }
-            pageMean /= z.getLines().size();
-            if (pageMean > zoneMean + 1) {
-                return 0;
-            }
+        ZoneFeatureContext context = ZoneFeatureContext.get();
+        if (context.getMaxLineHeightMean(page) > context.getLineHeightMean(zone) + 1) {
+            return 0;
         }
         return 1;
     }
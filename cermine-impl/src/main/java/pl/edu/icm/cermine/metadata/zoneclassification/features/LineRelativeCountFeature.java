@@ -30,12 +30,7 @@ public class LineRelativeCountFeature extends FeatureCalculator<BxZone, BxPage>
 
     @Override
     public double calculateFeatureValue(BxZone zone, BxPage page) {
-        int allLines = 0;
-        for (BxZone pZone : page.getZones()) {
-            allLines += pZone.getLines().size();
-        }
-        
-        return (double) zone.getLines().size() / (double) allLines;
+        return (double) zone.getLines().size() / (double) ZoneFeatureContext.get().getLineCount(page);
     }
 
 }
@@ -0,0 +1,292 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.metadata.zoneclassification.features;
+
+import java.util.*;
+import pl.edu.icm.cermine.structure.model.*;
+import pl.edu.icm.cermine.tools.Utils;
+
+/**
+ * Aggregates of a document's zones and pages shared by zone feature calculators.
+ * 
+ * The values are computed lazily and cached. A context is opened by a classifier
+ * for the time of processing a single document with {@link #open()}
+ * and closed with {@link #close()}; the structure of the document (but not
+ * the labels of its zones) must not be changed in the meantime. Outside of
+ * an opened context the calculators use a new, empty context for every value.
+ * 
+ * @author Dominika Tkaczyk
+ */
+public final class ZoneFeatureContext {
+
+    private static final ThreadLocal<ZoneFeatureContext> ACTIVE = new ThreadLocal<ZoneFeatureContext>();
+
+    private final ZoneFeatureContext previous;
+
+    private final Map<BxZone, ZoneStats> zoneStats = new IdentityHashMap<BxZone, ZoneStats>();
+
+    private final Map<BxPage, PageStats> pageStats = new IdentityHashMap<BxPage, PageStats>();
+
+    private final Map<BxZone, ZoneChainStats> zoneChainStats = new IdentityHashMap<BxZone, ZoneChainStats>();
+
+    private final Map<BxPage, PageChainStats> pageChainStats = new IdentityHashMap<BxPage, PageChainStats>();
+
+    private ZoneFeatureContext(ZoneFeatureContext previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * Opens a context used by the feature calculators in the current thread.
+     * 
+     * @return the opened context
+     */
+    public static ZoneFeatureContext open() {
+        ZoneFeatureContext context = new ZoneFeatureContext(ACTIVE.get());
+        ACTIVE.set(context);
+        return context;
+    }
+
+    /**
+     * Closes the context, restoring the context active before it was opened.
+     */
+    public void close() {
+        if (ACTIVE.get() != this) {
+            throw new IllegalStateException("Only the most recently opened context can be closed");
+        }
+        if (previous == null) {
+            ACTIVE.remove();
+        } else {
+            ACTIVE.set(previous);
+        }
+    }
+
+    /**
+     * @return the context opened in the current thread, or a new one
+     * if no context is opened
+     */
+    public static ZoneFeatureContext get() {
+        ZoneFeatureContext context = ACTIVE.get();
+        return context == null ? new ZoneFeatureContext(null) : context;
+    }
+
+    public int getCharCount(BxZone zone) {
+        return getZoneStats(zone).charCount;
+    }
+
+    public double getFontHeightMean(BxZone zone) {
+        return getZoneStats(zone).fontHeightMean;
+    }
+
+    public double getLineHeightMean(BxZone zone) {
+        return getZoneStats(zone).lineHeightMean;
+    }
+
+    public int getCharCount(BxPage page) {
+        return getPageStats(page).charCount;
+    }
+
+    public int getWordCount(BxPage page) {
+        return getPageStats(page).wordCount;
+    }
+
+    public int getLineCount(BxPage page) {
+        return getPageStats(page).lineCount;
+    }
+
+    /**
+     * @return the length of the longest zone text on the page
+     */
+    public int getMaxTextLength(BxPage page) {
+        return getPageStats(page).maxTextLength;
+    }
+
+    /**
+     * @return the width of the widest zone on the page
+     */
+    public double getMaxWidth(BxPage page) {
+        return getPageStats(page).maxWidth;
+    }
+
+    /**
+     * @return the greatest mean line height of the page's zones
+     */
+    public double getMaxLineHeightMean(BxPage page) {
+        return getPageStats(page).maxLineHeightMean;
+    }
+
+    /**
+     * @return the page's zones sorted by the position of their bottom edge
+     */
+    public List<BxZone> getZonesByBottomEdge(BxPage page) {
+        PageStats stats = getPageStats(page);
+        if (stats.zonesByBottomEdge == null) {
+            List<BxZone> zones = new ArrayList<BxZone>(page.getZones());
+            Collections.sort(zones, new Comparator<BxZone>() {
+
+                @Override
+                public int compare(BxZone z1, BxZone z2) {
+                    return Utils.compareDouble(z1.getY() + z1.getHeight(), z2.getY() + z2.getHeight(), 0.1);
+                }
+            });
+            stats.zonesByBottomEdge = Collections.unmodifiableList(zones);
+        }
+        return stats.zonesByBottomEdge;
+    }
+
+    /**
+     * @return the index of the zone on the page, or null if the zone 
+     * is not on the page
+     */
+    public Integer getZoneIndex(BxZone zone, BxPage page) {
+        PageStats stats = getPageStats(page);
+        if (stats.zoneIndices == null) {
+            stats.zoneIndices = new IdentityHashMap<BxZone, Integer>();
+            List<BxZone> zones = page.getZones();
+            for (int i = zones.size() - 1; i >= 0; i--) {
+                stats.zoneIndices.put(zones.get(i), i);
+            }
+        }
+        return stats.zoneIndices.get(zone);
+    }
+
+    /**
+     * @return the greatest mean font height of the zones linked 
+     * with the given zone
+     */
+    public double getMaxFontHeightMean(BxZone zone) {
+        ZoneChainStats stats = zoneChainStats.get(zone);
+        if (stats == null) {
+            BxZone first = zone;
+            while (first.getPrev() != null) {
+                first = first.getPrev();
+            }
+            stats = new ZoneChainStats();
+            for (BxZone z = first; z != null; z = z.getNext()) {
+                double fontHeightMean = getFontHeightMean(z);
+                if (fontHeightMean > stats.maxFontHeightMean) {
+                    stats.maxFontHeightMean = fontHeightMean;
+                }
+                zoneChainStats.put(z, stats);
+            }
+        }
+        return stats.maxFontHeightMean;
+    }
+
+    /**
+     * @return the pages linked with the given page containing
+     * a zone with the given text
+     */
+    public List<BxPage> getPagesWithZoneText(BxPage page, String text) {
+        PageChainStats stats = pageChainStats.get(page);
+        if (stats == null) {
+            BxPage first = page;
+            while (first.getPrev() != null) {
+                first = first.getPrev();
+            }
+            stats = new PageChainStats();
+            for (BxPage p = first; p != null; p = p.getNext()) {
+                for (BxZone zone : p.getZones()) {
+                    List<BxPage> pages = stats.pagesByZoneText.get(zone.toText());
+                    if (pages == null) {
+                        pages = new ArrayList<BxPage>(1);
+                        stats.pagesByZoneText.put(zone.toText(), pages);
+                    }
+                    if (pages.isEmpty() || pages.get(pages.size() - 1) != p) {
+                        pages.add(p);
+                    }
+                }
+                pageChainStats.put(p, stats);
+            }
+        }
+        List<BxPage> pages = stats.pagesByZoneText.get(text);
+        return pages == null ? Collections.<BxPage>emptyList() : pages;
+    }
+
+    private ZoneStats getZoneStats(BxZone zone) {
+        ZoneStats stats = zoneStats.get(zone);
+        if (stats == null) {
+            stats = new ZoneStats();
+            double heightSum = 0.0;
+            int heightNumber = 0;
+            double lineHeightSum = 0;
+            for (BxLine line : zone.getLines()) {
+                lineHeightSum += line.getBounds().getHeight();
+                for (BxWord word : line.getWords()) {
+                    for (BxChunk chunk : word.getChunks()) {
+                        stats.charCount += chunk.toText().length();
+                        heightSum += chunk.getBounds().getHeight();
+                        ++heightNumber;
+                    }
+                }
+            }
+            stats.fontHeightMean = heightSum / heightNumber;
+            stats.lineHeightMean = lineHeightSum / (double) zone.getLines().size();
+            zoneStats.put(zone, stats);
+        }
+        return stats;
+    }
+
+    private PageStats getPageStats(BxPage page) {
+        PageStats stats = pageStats.get(page);
+        if (stats == null) {
+            stats = new PageStats();
+            for (BxZone zone : page.getZones()) {
+                stats.charCount += getCharCount(zone);
+                stats.lineCount += zone.getLines().size();
+                for (BxLine line : zone.getLines()) {
+                    stats.wordCount += line.getWords().size();
+                }
+                stats.maxTextLength = Math.max(stats.maxTextLength, zone.toText().length());
+                if (zone.getWidth() > stats.maxWidth) {
+                    stats.maxWidth = zone.getWidth();
+                }
+                if (getLineHeightMean(zone) > stats.maxLineHeightMean) {
+                    stats.maxLineHeightMean = getLineHeightMean(zone);
+                }
+            }
+            pageStats.put(page, stats);
+        }
+        return stats;
+    }
+
+    private static class ZoneStats {
+        private int charCount;
+        private double fontHeightMean;
+        private double lineHeightMean;
+    }
+
+    private static class PageStats {
+        private int charCount;
+        private int wordCount;
+        private int lineCount;
+        private int maxTextLength;
+        private double maxWidth = Double.NEGATIVE_INFINITY;
+        private double maxLineHeightMean = Double.NEGATIVE_INFINITY;
+        private List<BxZone> zonesByBottomEdge;
+        private Map<BxZone, Integer> zoneIndices;
+    }
+
+    private static class ZoneChainStats {
+        private double maxFontHeightMean = Double.NEGATIVE_INFINITY;
+    }
+
+    private static class PageChainStats {
+        private final Map<String, List<BxPage>> pagesByZoneText = new HashMap<String, List<BxPage>>();
+    }
+}
@@ -0,0 +1,544 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.parsing.tools;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A snapshot of a linear-chain GRMM ACRF model (a single bigram template),
+ * stored in a compact binary format and decoded without GRMM.
+ * <p>
+ * The snapshot contains the label alphabet, the feature alphabet, the weights
+ * of every pair of labels of neighbouring tokens and their default weights.
+ * The factor between tokens t and t+1 is computed from the features
+ * of token t, exactly as the ACRF bigram template does. The labels are chosen
+ * by the maximum of the max-marginals, which corresponds to GRMM's max-product
+ * inference on a chain.
+ * <p>
+ * The format (big-endian) consists of a header: magic number, format version,
+ * payload length and CRC32 checksum of the payload, followed by the payload:
+ * the number of labels and features, the default weights, the weights
+ * (feature-major), the labels and the features. When the snapshot is
+ * memory-mapped, the weights are read directly from the mapping.
+ * <p>
+ * Decoding does not modify the snapshot, so it can be shared by threads.
+ *
+ * @author Dominika Tkaczyk
+ */
+public final class ACRFSnapshot {
+
+    /** The suffix of the snapshot files, replacing the ".ser.gz" suffix of the serialized model. */
+    public static final String FILE_SUFFIX = ".crf";
+
+    static final int MAGIC = 0x43524653;
+    static final int VERSION = 1;
+
+    private static final String SERIALIZED_MODEL_SUFFIX = ".ser.gz";
+    private static final String LABEL_SEPARATOR = "----";
+    private static final Pattern BLANK_LINE = Pattern.compile("\\s*");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final int HEADER_LENGTH = 24;
+    private static final int CHECKSUM_BUFFER_SIZE = 8192;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final String[] labels;
+
+    private final Map<String, Integer> featureIndices;
+
+    private final String[] features;
+
+    /** default weights of the label pairs, indexed by first label * label count + second label */
+    private final double[] defaultWeights;
+
+    /** weights of the label pairs, indexed by feature * label count^2 + label pair */
+    private final DoubleBuffer weights;
+
+    /**
+     * Creates a snapshot.
+     *
+     * @param labels label alphabet
+     * @param features feature alphabet
+     * @param weights the weights of the label pairs,
+     * indexed by [first label * label count + second label][feature]
+     * @param defaultWeights the default weights of the label pairs
+     */
+    public ACRFSnapshot(String[] labels, String[] features, double[][] weights, double[] defaultWeights) {
+        int pairCount = labels.length * labels.length;
+        if (weights.length != pairCount || defaultWeights.length != pairCount) {
+            throw new IllegalArgumentException("Expected weights of " + pairCount + " label pairs");
+        }
+        double[] pairWeights = new double[features.length * pairCount];
+        for (int pair = 0; pair < pairCount; pair++) {
+            if (weights[pair].length != features.length) {
+                throw new IllegalArgumentException("Expected " + features.length + " weights of label pair " + pair);
+            }
+            for (int feature = 0; feature < features.length; feature++) {
+                pairWeights[feature * pairCount + pair] = weights[pair][feature];
+            }
+        }
+        this.labels = labels.clone();
+        this.features = features.clone();
+        this.featureIndices = createFeatureIndices(this.features);
+        this.defaultWeights = defaultWeights.clone();
+        this.weights = DoubleBuffer.wrap(pairWeights);
+    }
+
+    private ACRFSnapshot(String[] labels, String[] features, DoubleBuffer weights, double[] defaultWeights) {
+        this.labels = labels;
+        this.features = features;
+        this.featureIndices = createFeatureIndices(features);
+        this.defaultWeights = defaultWeights;
+        this.weights = weights;
+    }
+
+    private static Map<String, Integer> createFeatureIndices(String[] features) {
+        Map<String, Integer> indices = new HashMap<String, Integer>(2 * features.length);
+        for (int i = 0; i < features.length; i++) {
+            indices.put(features[i], i);
+        }
+        return indices;
+    }
+
+    public String[] getLabels() {
+        return labels.clone();
+    }
+
+    public int getFeatureCount() {
+        return features.length;
+    }
+
+    /**
+     * @param feature feature name
+     * @return the index of the feature, or -1 if the feature is unknown
+     */
+    public int getFeatureIndex(String feature) {
+        Integer index = featureIndices.get(feature);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Maps feature names to their indices. As in GRMM's input pipe, a name 
+     * containing whitespace is split into several features.
+     *
+     * @param features feature names
+     * @return feature indices, -1 for unknown features
+     */
+    public int[] getFeatureIndices(List<String> features) {
+        int[] indices = new int[features.size()];
+        int count = 0;
+        for (String feature : features) {
+            if (!needsSplitting(feature)) {
+                indices[count++] = getFeatureIndex(feature);
+                continue;
+            }
+            for (String part : splitFeature(feature)) {
+                if (count == indices.length) {
+                    indices = Arrays.copyOf(indices, 2 * count);
+                }
+                indices[count++] = getFeatureIndex(part);
+            }
+        }
+        return count == indices.length ? indices : Arrays.copyOf(indices, count);
+    }
+
+    /**
+     * Splits a feature name at whitespace, as GRMM's input pipe does.
+     *
+     * @param feature feature name
+     * @return the non-empty parts of the name
+     */
+    static List<String> splitFeature(String feature) {
+        List<String> parts = new ArrayList<String>();
+        for (String part : WHITESPACE.split(feature)) {
+            if (!part.isEmpty()) {
+                parts.add(part);
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * @return true if the string is empty or contains whitespace matched by {@code \s},
+     * so that it has to be split with {@link #splitFeature(String)}
+     */
+    static boolean needsSplitting(String string) {
+        if (string.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < string.length(); i++) {
+            char ch = string.charAt(i);
+            if (ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the best labels of a token sequence.
+     *
+     * @param tokenFeatures feature names of every token
+     * @return the labels of the tokens
+     */
+    public String[] getBestLabels(List<? extends List<String>> tokenFeatures) {
+        int[][] indices = new int[tokenFeatures.size()][];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = getFeatureIndices(tokenFeatures.get(i));
+        }
+        return toLabels(getBestLabels(indices));
+    }
+
+    /**
+     * Finds the best labels of a token sequence given in GRMM input format:
+     * one token per line, each line containing the labels, the separator
+     * "----" and the features. Like in GRMM, only the first group of lines
+     * is used, the groups being separated by blank lines.
+     *
+     * @param grmmInput token sequence in GRMM input format
+     * @return the labels of the tokens
+     */
+    public String[] getBestLabels(String grmmInput) {
+        List<int[]> tokens = new ArrayList<int[]>();
+        BufferedReader reader = new BufferedReader(new StringReader(grmmInput));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (BLANK_LINE.matcher(line).matches()) {
+                    if (tokens.isEmpty()) {
+                        continue;
+                    }
+                    break;
+                }
+                tokens.add(parseFeatures(line));
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot read string", ex);
+        }
+        return toLabels(getBestLabels(tokens.toArray(new int[tokens.size()][])));
+    }
+
+    private String[] toLabels(int[] indices) {
+        String[] names = new String[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            names[i] = labels[indices[i]];
+        }
+        return names;
+    }
+
+    private int[] parseFeatures(String line) {
+        String[] tokens = WHITESPACE.split(line);
+        int first = 0;
+        while (first < tokens.length && !LABEL_SEPARATOR.equals(tokens[first])) {
+            first++;
+        }
+        first++;
+        int[] indices = new int[Math.max(tokens.length - first, 0)];
+        for (int i = first; i < tokens.length; i++) {
+            indices[i - first] = getFeatureIndex(tokens[i]);
+        }
+        return indices;
+    }
+
+    /**
+     * Finds the best labels of a token sequence.
+     *
+     * @param tokenFeatures feature indices of every token; unknown (negative)
+     * and repeated indices are ignored
+     * @return the label indices of the tokens
+     */
+    public int[] getBestLabels(int[][] tokenFeatures) {
+        int length = tokenFeatures.length;
+        int labelCount = labels.length;
+        int pairCount = labelCount * labelCount;
+        int[] best = new int[length];
+        // a single token has no factors, GRMM uses the first label then
+        if (length < 2) {
+            return best;
+        }
+
+        double[] factors = new double[(length - 1) * pairCount];
+        for (int t = 0; t < length - 1; t++) {
+            computeFactor(tokenFeatures[t], factors, t * pairCount);
+        }
+
+        double[] forward = new double[length * labelCount];
+        for (int t = 1; t < length; t++) {
+            for (int label = 0; label < labelCount; label++) {
+                double max = Double.NEGATIVE_INFINITY;
+                for (int prev = 0; prev < labelCount; prev++) {
+                    max = Math.max(max, forward[(t - 1) * labelCount + prev]
+                            + factors[(t - 1) * pairCount + prev * labelCount + label]);
+                }
+                forward[t * labelCount + label] = max;
+            }
+        }
+        double[] backward = new double[length * labelCount];
+        for (int t = length - 2; t >= 0; t--) {
+            for (int label = 0; label < labelCount; label++) {
+                double max = Double.NEGATIVE_INFINITY;
+                for (int next = 0; next < labelCount; next++) {
+                    max = Math.max(max, factors[t * pairCount + label * labelCount + next]
+                            + backward[(t + 1) * labelCount + next]);
+                }
+                backward[t * labelCount + label] = max;
+            }
+        }
+
+        for (int t = 0; t < length; t++) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int label = 0; label < labelCount; label++) {
+                double score = forward[t * labelCount + label] + backward[t * labelCount + label];
+                if (score > max) {
+                    max = score;
+                    best[t] = label;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Computes the log-values of a factor in the same order of additions
+     * as GRMM: the weights of the features in ascending order of indices,
+     * followed by the default weight.
+     */
+    private void computeFactor(int[] featureIndices, double[] factors, int offset) {
+        int[] sorted = featureIndices.clone();
+        Arrays.sort(sorted);
+        int pairCount = defaultWeights.length;
+        for (int i = 0; i < sorted.length; i++) {
+            int feature = sorted[i];
+            if (feature < 0 || feature >= features.length || (i > 0 && sorted[i - 1] == feature)) {
+                continue;
+            }
+            int base = feature * pairCount;
+            for (int pair = 0; pair < pairCount; pair++) {
+                factors[offset + pair] += weights.get(base + pair);
+            }
+        }
+        for (int pair = 0; pair < pairCount; pair++) {
+            factors[offset + pair] += defaultWeights[pair];
+        }
+    }
+
+    /**
+     * Writes the snapshot in the binary format.
+     *
+     * @param out output stream, not closed by the method
+     * @throws IOException
+     */
+    public void write(OutputStream out) throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeInt(labels.length);
+        payload.writeInt(features.length);
+        for (double weight : defaultWeights) {
+            payload.writeDouble(weight);
+        }
+        for (int i = 0; i < weights.limit(); i++) {
+            payload.writeDouble(weights.get(i));
+        }
+        writeStrings(payload, labels);
+        writeStrings(payload, features);
+        payload.flush();
+
+        byte[] bytes = payloadBytes.toByteArray();
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes);
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeLong(bytes.length);
+        header.writeLong(checksum.getValue());
+        header.write(bytes);
+        header.flush();
+    }
+
+    /**
+     * Reads a snapshot from a buffer. The buffer's position is not changed.
+     * The weights are not copied out of the buffer.
+     *
+     * @param buffer snapshot data
+     * @return snapshot
+     * @throws IOException if the data is not a valid snapshot
+     */
+    public static ACRFSnapshot read(ByteBuffer buffer) throws IOException {
+        ByteBuffer data = buffer.slice();
+        if (data.remaining() < HEADER_LENGTH || data.getInt() != MAGIC) {
+            throw new IOException("Not an ACRF snapshot");
+        }
+        int version = data.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported ACRF snapshot version: " + version);
+        }
+        long length = data.getLong();
+        long expectedChecksum = data.getLong();
+        if (length > data.remaining()) {
+            throw new IOException("ACRF snapshot is truncated");
+        }
+        data.limit(data.position() + (int) length);
+        if (checksum(data.duplicate()) != expectedChecksum) {
+            throw new IOException("ACRF snapshot checksum mismatch");
+        }
+
+        try {
+            int labelCount = data.getInt();
+            int featureCount = data.getInt();
+            int pairCount = labelCount * labelCount;
+            double[] defaultWeights = new double[pairCount];
+            data.asDoubleBuffer().get(defaultWeights);
+            data.position(data.position() + 8 * pairCount);
+
+            int weightCount = featureCount * pairCount;
+            ByteBuffer weightData = data.slice();
+            weightData.limit(8 * weightCount);
+            DoubleBuffer weights = weightData.asDoubleBuffer();
+            data.position(data.position() + 8 * weightCount);
+
+            String[] labels = readStrings(data, labelCount);
+            String[] features = readStrings(data, featureCount);
+            return new ACRFSnapshot(labels, features, weights, defaultWeights);
+        } catch (RuntimeException ex) {
+            throw new IOException("Corrupted ACRF snapshot", ex);
+        }
+    }
+
+    /**
+     * Reads a snapshot from a stream.
+     *
+     * @param stream snapshot stream, not closed by the method
+     * @return snapshot
+     * @throws IOException if the data is not a valid snapshot
+     */
+    public static ACRFSnapshot read(InputStream stream) throws IOException {
+        return read(ByteBuffer.wrap(IOUtils.toByteArray(stream)));
+    }
+
+    /**
+     * Reads a snapshot from a memory-mapped file.
+     *
+     * @param path snapshot file path
+     * @return snapshot
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static ACRFSnapshot map(String path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Checks whether a file starts with the snapshot's magic number.
+     *
+     * @param path file path
+     * @return true if the file is a snapshot
+     * @throws IOException
+     */
+    public static boolean isSnapshot(String path) throws IOException {
+        InputStream stream = new FileInputStream(path);
+        try {
+            return startsWithMagic(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Checks whether a stream starts with the snapshot's magic number.
+     * The stream is reset to its current position.
+     *
+     * @param stream input stream supporting marks
+     * @return true if the stream contains a snapshot
+     * @throws IOException
+     */
+    public static boolean isSnapshot(InputStream stream) throws IOException {
+        if (!stream.markSupported()) {
+            throw new IllegalArgumentException("The stream does not support marks");
+        }
+        stream.mark(4);
+        try {
+            return startsWithMagic(stream);
+        } finally {
+            stream.reset();
+        }
+    }
+
+    private static boolean startsWithMagic(InputStream stream) throws IOException {
+        try {
+            return new DataInputStream(stream).readInt() == MAGIC;
+        } catch (EOFException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * @param modelFile the name of a serialized ACRF model file
+     * @return the name of the corresponding snapshot file
+     */
+    public static String getSnapshotFile(String modelFile) {
+        if (modelFile.endsWith(SERIALIZED_MODEL_SUFFIX)) {
+            modelFile = modelFile.substring(0, modelFile.length() - SERIALIZED_MODEL_SUFFIX.length());
+        }
+        return modelFile + FILE_SUFFIX;
+    }
+
+    private static long checksum(ByteBuffer data) {
+        CRC32 checksum = new CRC32();
+        byte[] chunk = new byte[CHECKSUM_BUFFER_SIZE];
+        while (data.hasRemaining()) {
+            int length = Math.min(chunk.length, data.remaining());
+            data.get(chunk, 0, length);
+            checksum.update(chunk, 0, length);
+        }
+        return checksum.getValue();
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer data, int count) {
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[data.getInt()];
+            data.get(bytes);
+            strings[i] = new String(bytes, UTF_8);
+        }
+        return strings;
+    }
+
+}
@@ -0,0 +1,206 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.parsing.tools;
+
+import edu.umass.cs.mallet.base.types.Alphabet;
+import edu.umass.cs.mallet.base.types.SparseVector;
+import edu.umass.cs.mallet.grmm.learning.ACRF;
+import java.io.*;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import pl.edu.icm.cermine.exception.AnalysisException;
+
+/**
+ * Exports a serialized GRMM ACRF model into an {@link ACRFSnapshot}.
+ * <p>
+ * GRMM does not expose all the needed parts of the model, so the fields
+ * of the model, its templates and its pipes are read by reflection. Only
+ * the models used by CERMINE are supported: a single bigram template
+ * and an input pipe reading one label and binary features per token.
+ * <p>
+ * Optionally, the labels found by the snapshot are compared with the labels
+ * found by the ACRF for sample sequences in GRMM input format, separated
+ * by blank lines.
+ * <p>
+ * The snapshots of the bundled models are written by the build, next to the
+ * serialized models in the compiled resources.
+ *
+ * @author Dominika Tkaczyk
+ */
+public final class ACRFSnapshotExporter {
+
+    private static final String BIGRAM_TEMPLATE = "ACRF$BigramTemplate";
+    private static final String INPUT_PIPE = "GenericAcrfData2TokenSequence";
+    private static final String FEATURE_PIPE = "TokenSequence2FeatureVectorSequence";
+
+    public static ACRFSnapshot export(ACRF acrf) {
+        if (!((List<?>) field(acrf, "fixedPtls")).isEmpty() || field(acrf, "graphProcessor") != null) {
+            throw new IllegalArgumentException("Fixed potentials and graph processors are not supported");
+        }
+        Object[] templates = (Object[]) field(acrf, "templates");
+        if (templates.length != 1 || !templates[0].getClass().getName().endsWith(BIGRAM_TEMPLATE)
+                || (Integer) field(templates[0], "factor") != 0) {
+            throw new IllegalArgumentException("Only a single bigram template is supported");
+        }
+
+        Object inputPipe = null;
+        Object featurePipe = null;
+        for (Object pipe : (List<?>) field(acrf.getInputPipe(), "pipes")) {
+            if (pipe.getClass().getName().endsWith(INPUT_PIPE)) {
+                inputPipe = pipe;
+            } else if (pipe.getClass().getName().endsWith(FEATURE_PIPE)) {
+                featurePipe = pipe;
+            }
+        }
+        if (inputPipe == null || featurePipe == null) {
+            throw new IllegalArgumentException("Unsupported input pipe");
+        }
+        if ((Boolean) field(inputPipe, "featuresIncludeToken") || (Boolean) field(inputPipe, "includeTokenText")
+                || (Boolean) field(inputPipe, "labelsAtEnd") || (Integer) field(inputPipe, "numLabels") > 0
+                || ((List<?>) field(inputPipe, "labelDicts")).size() != 1
+                || !(Boolean) field(featurePipe, "binary")) {
+            throw new IllegalArgumentException("Unsupported input pipe configuration");
+        }
+
+        String[] labels = entries((Alphabet) ((List<?>) field(inputPipe, "labelDicts")).get(0));
+        String[] features = entries((Alphabet) field(acrf, "inputAlphabet"));
+        SparseVector[] weights = (SparseVector[]) field(templates[0], "weights");
+        double[][] pairWeights = new double[weights.length][];
+        for (int i = 0; i < weights.length; i++) {
+            pairWeights[i] = toArray(weights[i], features.length);
+        }
+        double[] defaultWeights = toArray((SparseVector) field(templates[0], "defaultWeights"), weights.length);
+        return new ACRFSnapshot(labels, features, pairWeights, defaultWeights);
+    }
+
+    private static String[] entries(Alphabet alphabet) {
+        String[] entries = new String[alphabet.size()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = alphabet.lookupObject(i).toString();
+        }
+        return entries;
+    }
+
+    private static double[] toArray(SparseVector vector, int length) {
+        double[] array = new double[length];
+        for (int loc = 0; loc < vector.numLocations(); loc++) {
+            int index = vector.indexAtLocation(loc);
+            if (index < length) {
+                array[index] = vector.valueAtLocation(loc);
+            }
+        }
+        return array;
+    }
+
+    private static Object field(Object object, String name) {
+        for (Class<?> cls = object.getClass(); cls != null; cls = cls.getSuperclass()) {
+            try {
+                Field field = cls.getDeclaredField(name);
+                field.setAccessible(true);
+                return field.get(object);
+            } catch (NoSuchFieldException ex) {
+                // look in the superclass
+            } catch (IllegalAccessException ex) {
+                throw new IllegalStateException("Cannot read field " + name, ex);
+            }
+        }
+        throw new IllegalArgumentException("Field " + name + " not found in " + object.getClass().getName());
+    }
+
+    /**
+     * Compares the labels found by the model and the snapshot.
+     *
+     * @param acrf model
+     * @param snapshot snapshot
+     * @param samples token sequences in GRMM input format
+     * @return the number of sequences labelled differently
+     */
+    public static int compare(ACRF acrf, ACRFSnapshot snapshot, List<String> samples) {
+        GrmmModel model = new GrmmModel(acrf);
+        int differences = 0;
+        for (String sample : samples) {
+            String[] expected = model.getBestLabels(sample);
+            String[] actual = snapshot.getBestLabels(sample);
+            if (!Arrays.equals(expected, actual)) {
+                System.out.println("Different labels: " + Arrays.toString(expected) + " " + Arrays.toString(actual));
+                differences++;
+            }
+        }
+        return differences;
+    }
+
+    private static List<String> readSamples(String path) throws IOException {
+        List<String> samples = new ArrayList<String>();
+        StringBuilder sample = new StringBuilder();
+        for (String line : FileUtils.readLines(new File(path), "UTF-8")) {
+            if (line.trim().isEmpty()) {
+                if (sample.length() > 0) {
+                    samples.add(sample.toString());
+                    sample = new StringBuilder();
+                }
+            } else {
+                sample.append(line).append("\n");
+            }
+        }
+        if (sample.length() > 0) {
+            samples.add(sample.toString());
+        }
+        return samples;
+    }
+
+    public static void main(String[] args) throws AnalysisException, IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: ACRFSnapshotExporter <model.ser.gz> <output> [<samples in GRMM input format>]");
+            return;
+        }
+
+        ACRF acrf = GrmmModel.load(args[0]).getACRF();
+        if (acrf == null) {
+            System.out.println(args[0] + " is already a snapshot");
+            return;
+        }
+        ACRFSnapshot snapshot = export(acrf);
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(args[1]));
+        try {
+            snapshot.write(out);
+        } finally {
+            out.close();
+        }
+        // make sure the written snapshot can be read back
+        snapshot = ACRFSnapshot.map(args[1]);
+        System.out.println("Snapshot written to " + args[1] + ": " + snapshot.getLabels().length + " labels, "
+                + snapshot.getFeatureCount() + " features");
+
+        if (args.length > 2) {
+            List<String> samples = readSamples(args[2]);
+            int differences = compare(acrf, snapshot, samples);
+            System.out.println(differences + " of " + samples.size() + " samples labelled differently");
+            if (differences > 0) {
+                throw new AnalysisException("The snapshot labels " + differences + " samples differently");
+            }
+        }
+    }
+
+    private ACRFSnapshotExporter() {
+    }
+
+}
@@ -0,0 +1,403 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.parsing.tools;
+
+import edu.umass.cs.mallet.base.pipe.Pipe;
+import edu.umass.cs.mallet.base.pipe.SerialPipes;
+import edu.umass.cs.mallet.base.pipe.iterator.LineGroupIterator;
+import edu.umass.cs.mallet.base.types.Alphabet;
+import edu.umass.cs.mallet.base.types.FeatureVector;
+import edu.umass.cs.mallet.base.types.FeatureVectorSequence;
+import edu.umass.cs.mallet.base.types.Instance;
+import edu.umass.cs.mallet.base.types.InstanceList;
+import edu.umass.cs.mallet.base.types.Label;
+import edu.umass.cs.mallet.base.types.LabelAlphabet;
+import edu.umass.cs.mallet.base.types.Labels;
+import edu.umass.cs.mallet.base.types.LabelsSequence;
+import edu.umass.cs.mallet.grmm.learning.ACRF;
+import edu.umass.cs.mallet.grmm.learning.GenericAcrfData2TokenSequence;
+import java.io.*;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import pl.edu.icm.cermine.exception.AnalysisException;
+
+/**
+ * GRMM sequence labelling model. The model is either a Java-serialized ACRF
+ * or its {@link ACRFSnapshot}, which is much faster to load and does not
+ * need GRMM for the inference. The format is recognized when the model
+ * is loaded.
+ *
+ * @author Dominika Tkaczyk
+ */
+public final class GrmmModel {
+
+    private final ACRF acrf;
+
+    /** the label alphabet of the ACRF input pipe, or null if the sequences have to be read by the pipe */
+    private final LabelAlphabet labelAlphabet;
+
+    private final ACRFSnapshot snapshot;
+
+    public GrmmModel(ACRF acrf) {
+        this.acrf = acrf;
+        this.labelAlphabet = findLabelAlphabet(acrf.getInputPipe());
+        this.snapshot = null;
+    }
+
+    public GrmmModel(ACRFSnapshot snapshot) {
+        this.acrf = null;
+        this.labelAlphabet = null;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Loads a model from a stream containing either a snapshot
+     * or a gzipped, serialized ACRF.
+     *
+     * @param stream model stream
+     * @return model
+     * @throws AnalysisException if the model cannot be loaded
+     */
+    public static GrmmModel load(InputStream stream) throws AnalysisException {
+        if (stream == null) {
+            throw new AnalysisException("Cannot set model, input stream is null!");
+        }
+        InputStream is = new BufferedInputStream(stream);
+        try {
+            if (ACRFSnapshot.isSnapshot(is)) {
+                return new GrmmModel(ACRFSnapshot.read(is));
+            }
+            return new GrmmModel(readACRF(is));
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot set model!", ex);
+        } finally {
+            try {
+                is.close();
+            } catch (IOException ex) {
+                throw new AnalysisException("Cannot set model!", ex);
+            }
+        }
+    }
+
+    /**
+     * Loads a model from a file containing either a snapshot
+     * or a gzipped, serialized ACRF. Snapshot files are memory-mapped.
+     *
+     * @param path model file path
+     * @return model
+     * @throws AnalysisException if the model cannot be loaded
+     */
+    public static GrmmModel load(String path) throws AnalysisException {
+        try {
+            if (ACRFSnapshot.isSnapshot(path)) {
+                return new GrmmModel(ACRFSnapshot.map(path));
+            }
+            return load(new FileInputStream(path));
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot set model!", ex);
+        }
+    }
+
+    /**
+     * Loads a model from resources. The snapshot resource, named as given by
+     * {@link ACRFSnapshot#getSnapshotFile(String)}, is used if it exists.
+     *
+     * @param owner the class used to find the resources
+     * @param resource the name of the serialized ACRF resource
+     * @return model
+     * @throws AnalysisException if the model cannot be loaded
+     */
+    public static GrmmModel loadResource(Class<?> owner, String resource) throws AnalysisException {
+        return load(owner.getResourceAsStream(getModelResource(owner, resource)));
+    }
+
+    /**
+     * Returns the resource read by {@link #loadResource(Class, String)}:
+     * the snapshot resource if it exists, the serialized ACRF resource otherwise.
+     *
+     * @param owner the class used to find the resources
+     * @param resource the name of the serialized ACRF resource
+     * @return resource name
+     */
+    public static String getModelResource(Class<?> owner, String resource) {
+        String snapshot = ACRFSnapshot.getSnapshotFile(resource);
+        return owner.getResource(snapshot) != null ? snapshot : resource;
+    }
+
+    private static ACRF readACRF(InputStream stream) throws IOException {
+        System.setProperty("java.util.logging.config.file",
+            "edu/umass/cs/mallet/base/util/resources/logging.properties");
+        ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new GZIPInputStream(stream)));
+        try {
+            return (ACRF) ois.readObject();
+        } catch (ClassNotFoundException ex) {
+            throw new IOException("Cannot read ACRF model", ex);
+        }
+    }
+
+    /**
+     * Finds the label alphabet of the input pipe, if the sequences can be
+     * built without the pipe: the pipe has to read one label and the features
+     * of every token, without treating the first feature as the token text.
+     * These settings are not exposed by GRMM, so they are read by reflection.
+     *
+     * @return the label alphabet, or null if the sequences have to be read by the pipe
+     */
+    private static LabelAlphabet findLabelAlphabet(Pipe pipe) {
+        if (pipe instanceof GenericAcrfData2TokenSequence) {
+            if (!Boolean.FALSE.equals(field(pipe, "featuresIncludeToken"))
+                    || !Boolean.FALSE.equals(field(pipe, "includeTokenText"))
+                    || !Boolean.FALSE.equals(field(pipe, "labelsAtEnd"))
+                    || !(field(pipe, "numLabels") instanceof Integer) || (Integer) field(pipe, "numLabels") > 0
+                    || !(field(pipe, "labelDicts") instanceof List)
+                    || ((List<?>) field(pipe, "labelDicts")).size() != 1) {
+                return null;
+            }
+            return ((GenericAcrfData2TokenSequence) pipe).getLabelAlphabet(0);
+        }
+        if (pipe instanceof SerialPipes) {
+            SerialPipes pipes = (SerialPipes) pipe;
+            for (int i = 0; i < pipes.size(); i++) {
+                LabelAlphabet alphabet = findLabelAlphabet(pipes.getPipe(i));
+                if (alphabet != null) {
+                    return alphabet;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the value of the field, or null if it cannot be read
+     */
+    private static Object field(Object object, String name) {
+        for (Class<?> cls = object.getClass(); cls != null; cls = cls.getSuperclass()) {
+            try {
+                Field field = cls.getDeclaredField(name);
+                field.setAccessible(true);
+                return field.get(object);
+            } catch (NoSuchFieldException ex) {
+                // look in the superclass
+            } catch (IllegalAccessException ex) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the serialized ACRF, or null if the model is a snapshot
+     */
+    public ACRF getACRF() {
+        return acrf;
+    }
+
+    /**
+     * @return the snapshot, or null if the model is a serialized ACRF
+     */
+    public ACRFSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * ACRF inference keeps its state in the model object, so a serialized
+     * ACRF labels one sequence at a time. Snapshots can be used by many
+     * threads at once.
+     *
+     * @return true if the model labels sequences in parallel
+     */
+    public boolean isConcurrent() {
+        return snapshot != null;
+    }
+
+    /**
+     * Finds the best labels of a token sequence given as feature lists.
+     * The features are mapped directly to their indices, in the snapshot
+     * or in the input alphabet of a serialized ACRF. Only an ACRF whose
+     * input pipe is not recognized or is configured differently reads
+     * the sequence written in GRMM input format.
+     *
+     * @param tokenLabels the current labels of the tokens, used in GRMM input
+     * @param tokenFeatures the feature lists of the tokens
+     * @return the labels of the tokens
+     */
+    public String[] getBestLabels(List<String> tokenLabels, List<? extends List<String>> tokenFeatures) {
+        if (snapshot != null) {
+            return snapshot.getBestLabels(tokenFeatures);
+        }
+        if (labelAlphabet != null) {
+            return getACRFLabels(Arrays.asList(tokenLabels), Arrays.asList(tokenFeatures)).get(0);
+        }
+        return getBestLabels(toGrmmInput(tokenLabels, tokenFeatures));
+    }
+
+    /**
+     * Finds the best labels of a batch of token sequences given as feature
+     * lists. An ACRF read through its pipe gets the whole batch as one
+     * instance list.
+     *
+     * @param tokenLabels the current labels of the tokens of every sequence
+     * @param tokenFeatures the feature lists of the tokens of every sequence
+     * @return the labels of the tokens of every sequence, in the order of the sequences
+     */
+    public List<String[]> getBestLabelSequences(List<? extends List<String>> tokenLabels,
+            List<? extends List<? extends List<String>>> tokenFeatures) {
+        List<String[]> labels = new ArrayList<String[]>(tokenFeatures.size());
+        if (snapshot != null) {
+            for (List<? extends List<String>> sequence : tokenFeatures) {
+                labels.add(snapshot.getBestLabels(sequence));
+            }
+            return labels;
+        }
+        if (labelAlphabet != null) {
+            return getACRFLabels(tokenLabels, tokenFeatures);
+        }
+
+        // empty sequences would not produce any instance
+        StringBuilder grmmInput = new StringBuilder();
+        for (int i = 0; i < tokenFeatures.size(); i++) {
+            if (!tokenFeatures.get(i).isEmpty()) {
+                grmmInput.append(toGrmmInput(tokenLabels.get(i), tokenFeatures.get(i))).append("\n");
+            }
+        }
+        Iterator<String[]> acrfLabels = getACRFLabels(grmmInput.toString()).iterator();
+        for (List<? extends List<String>> sequence : tokenFeatures) {
+            labels.add(sequence.isEmpty() ? new String[0] : acrfLabels.next());
+        }
+        return labels;
+    }
+
+    private static String toGrmmInput(List<String> tokenLabels, List<? extends List<String>> tokenFeatures) {
+        StringBuilder grmmInput = new StringBuilder();
+        for (int i = 0; i < tokenFeatures.size(); i++) {
+            grmmInput.append(GrmmUtils.toGrmmInput(tokenLabels.get(i), tokenFeatures.get(i)));
+            grmmInput.append("\n");
+        }
+        return grmmInput.toString();
+    }
+
+    /**
+     * Finds the best labels of a token sequence.
+     *
+     * @param grmmInput token sequence in GRMM input format
+     * @return the labels of the tokens
+     */
+    public String[] getBestLabels(String grmmInput) {
+        if (snapshot != null) {
+            return snapshot.getBestLabels(grmmInput);
+        }
+        return getACRFLabels(grmmInput).get(0);
+    }
+
+    /**
+     * Labels token sequences with the ACRF. The feature vector sequences
+     * and the label sequences of the instances are built from the input
+     * alphabet and the label alphabet of the model, as the input pipe would
+     * build them: the feature names are split at whitespace and the features
+     * missing from the alphabet, which have no weights, are skipped.
+     */
+    private List<String[]> getACRFLabels(List<? extends List<String>> tokenLabels,
+            List<? extends List<? extends List<String>>> tokenFeatures) {
+        List<String[]> labels = new ArrayList<String[]>(tokenFeatures.size());
+        // ACRF inference keeps its state in the model object
+        synchronized (acrf) {
+            Alphabet features = acrf.getInputAlphabet();
+            for (int i = 0; i < tokenFeatures.size(); i++) {
+                List<? extends List<String>> sequenceFeatures = tokenFeatures.get(i);
+                if (sequenceFeatures.isEmpty()) {
+                    labels.add(new String[0]);
+                    continue;
+                }
+                FeatureVector[] vectors = new FeatureVector[sequenceFeatures.size()];
+                Labels[] sequenceLabels = new Labels[sequenceFeatures.size()];
+                for (int t = 0; t < vectors.length; t++) {
+                    vectors[t] = new FeatureVector(features, featureIndices(features, sequenceFeatures.get(t)));
+                    sequenceLabels[t] = new Labels(new Label[]{labelAlphabet.lookupLabel(tokenLabels.get(i).get(t))});
+                }
+                Instance instance = new Instance(new FeatureVectorSequence(vectors),
+                        new LabelsSequence(sequenceLabels), null, null);
+                labels.add(toStrings(acrf.getBestLabels(instance)));
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * @return the sorted indices of the known features, without repetitions
+     */
+    private static int[] featureIndices(Alphabet alphabet, List<String> features) {
+        int[] indices = new int[features.size()];
+        int count = 0;
+        for (String feature : features) {
+            List<String> parts = ACRFSnapshot.needsSplitting(feature)
+                    ? ACRFSnapshot.splitFeature(feature) : Collections.singletonList(feature);
+            for (String part : parts) {
+                int index = alphabet.lookupIndex(part, false);
+                if (index >= 0) {
+                    if (count == indices.length) {
+                        indices = Arrays.copyOf(indices, 2 * count);
+                    }
+                    indices[count++] = index;
+                }
+            }
+        }
+        Arrays.sort(indices, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || indices[unique - 1] != indices[i]) {
+                indices[unique++] = indices[i];
+            }
+        }
+        return Arrays.copyOf(indices, unique);
+    }
+
+    /**
+     * Labels all the token sequences of GRMM input, separated by blank lines.
+     */
+    private List<String[]> getACRFLabels(String grmmInput) {
+        List<?> labelsSequences;
+        // ACRF inference keeps its state in the model object
+        synchronized (acrf) {
+            Pipe pipe = acrf.getInputPipe();
+            InstanceList instanceList = new InstanceList(pipe);
+            instanceList.add(new LineGroupIterator(new StringReader(grmmInput), Pattern.compile("\\s*"), true));
+            labelsSequences = acrf.getBestLabels(instanceList);
+        }
+        List<String[]> labels = new ArrayList<String[]>(labelsSequences.size());
+        for (Object sequence : labelsSequences) {
+            labels.add(toStrings((LabelsSequence) sequence));
+        }
+        return labels;
+    }
+
+    private static String[] toStrings(LabelsSequence labelsSequence) {
+        String[] labels = new String[labelsSequence.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = labelsSequence.get(i).toString();
+        }
+        return labels;
+    }
+
+}
@@ -77,14 +77,13 @@ public class GrmmUtils {
 	 * @param tokens the tokens whose feature lists should be exported
 	 * @param neighborInfluenceThreshold the maximum distance of token's neighbor whose local
 	 * features will be added to the token's feature list
-	 * @return GRMM input string representing the token sequence
+	 * @return the feature lists of the tokens, including the features of their neighbors
 	 */
-	public static <T extends Token<?>> String toGrmmInput(List<T> tokens, 
+	public static <T extends Token<?>> List<List<String>> toFeatureLists(List<T> tokens,
 			int neighborInfluenceThreshold) {
-		StringBuilder grmmInputBuilder = new StringBuilder();
+		List<List<String>> featureLists = new ArrayList<List<String>>(tokens.size());
 		for (int i = 0; i < tokens.size(); i++) {
 			List<String> features = new ArrayList<String>();
-			String label = tokens.get(i).getLabel().toString();
 			
 			// For better readability, we write the own features of a token first.
 			features.addAll(neighborFeatures(i, 0, tokens));
@@ -93,8 +92,24 @@ public class GrmmUtils {
 					features.addAll(neighborFeatures(i, j, tokens));
 				}
 			}
-			
-			grmmInputBuilder.append(GrmmUtils.toGrmmInput(label, features));
+			featureLists.add(features);
+		}
+		return featureLists;
+	}
+	
+	/**
+	 * @param tokens the tokens whose feature lists should be exported
+	 * @param neighborInfluenceThreshold the maximum distance of token's neighbor whose local
+	 * features will be added to the token's feature list
+	 * @return GRMM input string representing the token sequence
+	 */
+	public static <T extends Token<?>> String toGrmmInput(List<T> tokens, 
+			int neighborInfluenceThreshold) {
+		List<List<String>> featureLists = toFeatureLists(tokens, neighborInfluenceThreshold);
+		StringBuilder grmmInputBuilder = new StringBuilder();
+		for (int i = 0; i < tokens.size(); i++) {
+			String label = tokens.get(i).getLabel().toString();
+			grmmInputBuilder.append(GrmmUtils.toGrmmInput(label, featureLists.get(i)));
 			grmmInputBuilder.append("\n");
 		}
 		
@@ -0,0 +1,39 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure;
+
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.structure.model.BxPage;
+
+/**
+ * Interface for receiving the pages of a document one by one, as soon as they
+ * are available.
+ * 
+ * @author Dominika Tkaczyk
+ */
+public interface BxPageListener {
+
+    /**
+     * Processes the next page of the document.
+     * 
+     * @param page page
+     * @throws AnalysisException 
+     */
+    void pageExtracted(BxPage page) throws AnalysisException;
+}
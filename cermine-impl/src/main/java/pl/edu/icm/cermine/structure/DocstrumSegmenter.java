@@ -31,23 +31,68 @@ import pl.edu.icm.cermine.structure.tools.Histogram;
  * 
  * @author krusek
  */
-public class DocstrumSegmenter implements DocumentSegmenter {
+public class DocstrumSegmenter implements StreamingDocumentSegmenter {
 
     public static final int MAX_ZONES_PER_PAGE = 300;
     public static final int PAGE_MARGIN = 2;
     public static final double ORIENTATION_MARGIN = 0.2;
     public static final int LINES_PER_PAGE_MARGIN = 100;
     
-    private double docOrientation = Double.NaN;
-    
-    private Map<BxPage, List<Component>> componentMap = new HashMap<BxPage, List<Component>>();
-    
     @Override
     public BxDocument segmentDocument(BxDocument document) throws AnalysisException {
-        computeDocumentOrientation(document);
+        Map<BxPage, List<Component>> componentMap = new LinkedHashMap<BxPage, List<Component>>();
+        for (BxPage page : document.asPages()) {
+            componentMap.put(page, createComponents(page));
+        }
+        return segmentPages(document, componentMap);
+    }
+
+    /**
+     * Starts the segmentation of a document delivered page by page. The components
+     * of each page are computed as soon as the page is received.
+     * 
+     * @return segmentation receiving the pages of the document
+     */
+    @Override
+    public DocumentSegmentation startSegmentation() {
+        return new DocumentSegmentation() {
+
+            private final BxDocument document = new BxDocument();
+            private final Map<BxPage, List<Component>> componentMap = new LinkedHashMap<BxPage, List<Component>>();
+
+            @Override
+            public void pageExtracted(BxPage page) throws AnalysisException {
+                document.addPage(page);
+                componentMap.put(page, createComponents(page));
+            }
+
+            @Override
+            public BxDocument finish() throws AnalysisException {
+                return segmentPages(document, componentMap);
+            }
+
+            @Override
+            public void cancel() {
+                // the components are computed by the extracting thread, nothing is left running
+            }
+        };
+    }
+
+    /**
+     * Segments the pages of the document, whose components are already computed.
+     * 
+     * @param document document
+     * @param componentMap components of every page of the document
+     * @return segmented document
+     * @throws AnalysisException 
+     */
+    protected BxDocument segmentPages(BxDocument document, Map<BxPage, List<Component>> componentMap)
+            throws AnalysisException {
+        double docOrientation = computeDocumentOrientation(componentMap);
+        
         BxDocument output = new BxDocument();
         for (BxPage page: document.getPages()) {
-        	BxPage segmentedPage = segmentPage(page);
+        	BxPage segmentedPage = segmentPage(page, componentMap.get(page), docOrientation);
         	if (segmentedPage.getBounds() != null) {
         		output.addPage(segmentedPage);
         	}
@@ -55,28 +100,25 @@ public class DocstrumSegmenter implements DocumentSegmenter {
         return output;
     }
     
-    protected void computeDocumentOrientation(BxDocument document) throws AnalysisException {
-        List<Component> components = new ArrayList<Component>();
-        for (BxPage page : document.asPages()) {
-            List<Component> pageComponents = createComponents(page);
-            componentMap.put(page, pageComponents);
-            components.addAll(pageComponents);
-        }
-        
-        docOrientation = computeInitialOrientation(components);
-    }
-    
-    protected void computeDocumentOrientation(Map<BxPage, List<Component>> componentMap) throws AnalysisException {
-        this.componentMap = componentMap;
+    /**
+     * Computes the initial orientation of the whole document.
+     * 
+     * The segmenter does not keep any per-document state, so a single instance
+     * can segment many documents concurrently.
+     * 
+     * @param componentMap components of every page of the document
+     * @return document orientation
+     */
+    protected double computeDocumentOrientation(Map<BxPage, List<Component>> componentMap) {
         List<Component> components = new ArrayList<Component>();
         for (Map.Entry<BxPage, List<Component>> entry : componentMap.entrySet()) {
             components.addAll(entry.getValue());
         }
-        docOrientation = computeInitialOrientation(components);
+        return computeInitialOrientation(components);
     }
     
-    protected BxPage segmentPage(BxPage page) throws AnalysisException {
-        List<Component> components = componentMap.get(page);
+    protected BxPage segmentPage(BxPage page, List<Component> components, double docOrientation)
+            throws AnalysisException {
         double orientation = docOrientation;
         if (Double.isNaN(orientation)) {
             orientation = computeInitialOrientation(components);
@@ -84,6 +126,7 @@ public class DocstrumSegmenter implements DocumentSegmenter {
         double characterSpacing = computeCharacterSpacing(components, orientation);
         double lineSpacing = computeLineSpacing(components, orientation);
 
+        checkInterrupted();
         List<ComponentLine> lines = determineLines(components, orientation,
                 characterSpacing * componentDistanceCharacterMultiplier,
                 lineSpacing * maxVerticalComponentDistanceMultiplier);
@@ -104,18 +147,32 @@ public class DocstrumSegmenter implements DocumentSegmenter {
             orientation = lineOrientation;
         }
         
+        checkInterrupted();
         List<List<ComponentLine>> zones = determineZones(lines, orientation,
                 characterSpacing * minHorizontalDistanceMultiplier, Double.POSITIVE_INFINITY,
                 lineSpacing * minVerticalDistanceMultiplier, lineSpacing * maxVerticalDistanceMultiplier,
                 characterSpacing * minHorizontalMergeDistanceMultiplier, 0.0,
                 0.0, lineSpacing * maxVerticalMergeDistanceMultiplier);
         zones = mergeZones(zones, characterSpacing * 0.5);
+        checkInterrupted();
         zones = mergeLines(zones, orientation,
                 Double.NEGATIVE_INFINITY, 0.0,
                 0.0, lineSpacing * maxVerticalMergeDistanceMultiplier);
         return convertToBxModel(page, zones, wordDistanceMultiplier * characterSpacing);
     }
 
+    /**
+     * Stops the segmentation if the current thread was interrupted,
+     * for example because the document was abandoned.
+     * 
+     * @throws AnalysisException if the current thread was interrupted
+     */
+    private static void checkInterrupted() throws AnalysisException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new AnalysisException("Segmentation interrupted!");
+        }
+    }
+
     /**
      * Constructs sorted by x coordinate array of components from page's chunks.
      *
@@ -132,6 +189,7 @@ public class DocstrumSegmenter implements DocumentSegmenter {
             }
         }
         Arrays.sort(components, ComponentXComparator.getInstance());
+        checkInterrupted();
         findNeighbors(components);
         return Arrays.asList(components);
     }
@@ -139,8 +197,13 @@ public class DocstrumSegmenter implements DocumentSegmenter {
     /**
      * Performs for each component search for nearest-neighbors and stores the
      * result in component's neighbors attribute.
+     * 
+     * The neighbors are found using a uniform grid over components' centers.
+     * Neighbors at equal distances are ordered as if the components were
+     * scanned in DISTANCE_STEP-wide stripes of growing horizontal distance
+     * (left side first), so that the result does not depend on the index used.
      *
-     * @param components array of components
+     * @param components array of components sorted by x coordinate
      * @throws AnalysisException if the number of components is less than or
      * equal to the number of nearest-neighbors per component.
      */
@@ -157,43 +220,12 @@ public class DocstrumSegmenter implements DocumentSegmenter {
             pageNeighborCount = components.length - 1;
         }
 
-        List<Neighbor> candidates = new ArrayList<Neighbor>();
+        ComponentGrid grid = new ComponentGrid(components);
+        NeighborHeap heap = new NeighborHeap(components, pageNeighborCount);
         for (int i = 0; i < components.length; i++) {
-            int start = i, end = i + 1;
-            // Contains components from components array
-            // from ranges [start, i) and [i+1, end)
-            double dist = Double.POSITIVE_INFINITY;
-            for (double searchDist = 0; searchDist < dist; ) {
-                searchDist += DISTANCE_STEP;
-                boolean newCandidatesFound = false;
-                
-                while (start > 0 && components[i].getX() - components[start - 1].getX() < searchDist) {
-                    start--;
-                    candidates.add(new Neighbor(components[start], components[i]));
-                    if (candidates.size() > pageNeighborCount) {
-                        Collections.sort(candidates, NeighborDistanceComparator.getInstance());
-                        candidates.subList(pageNeighborCount, candidates.size()).clear();
-                    }
-                    newCandidatesFound = true;
-                }
-                while (end < components.length && components[end].getX() - components[i].getX() < searchDist) {
-                    candidates.add(new Neighbor(components[end], components[i]));
-                    if (candidates.size() > pageNeighborCount) {
-                        Collections.sort(candidates, NeighborDistanceComparator.getInstance());
-                        candidates.subList(pageNeighborCount, candidates.size()).clear();
-                    }
-                    end++;
-                    newCandidatesFound = true;
-                }
-                
-                if (newCandidatesFound && candidates.size() >= pageNeighborCount) {
-                    Collections.sort(candidates, NeighborDistanceComparator.getInstance());
-                    dist = candidates.get(pageNeighborCount - 1).getDistance();
-                }
-            }
-            candidates.subList(pageNeighborCount, candidates.size()).clear();
-            components[i].setNeighbors(new ArrayList<Neighbor>(candidates));
-            candidates.clear();
+            heap.reset(i);
+            grid.findNeighbors(heap);
+            components[i].setNeighbors(heap.toNeighbors());
         }
     }
 
@@ -337,9 +369,18 @@ public class DocstrumSegmenter implements DocumentSegmenter {
         }
         meanHeight /= weights;
 
+        // Only pairs of lines close enough to each other to pass any of the
+        // distance tests are examined, in the same order as in a full scan
+        double maxScale = Math.max(minLineSizeScale, maxLineSizeScale);
+        double maxVertical = Double.POSITIVE_INFINITY, maxGap = Double.POSITIVE_INFINITY;
+        if (minLineSizeScale > 0) {
+            maxVertical = Math.max(Math.max(maxVerticalDistance, maxVerticalMergeDistance), 0) * maxScale;
+            maxGap = Math.max(-Math.min(minHorizontalDistance, minHorizontalMergeDistance), 0) * maxScale;
+        }
+        LineIndex index = new LineIndex(lines, orientation);
         for (int i = 0; i < lines.size(); i++) {
             ComponentLine li = lines.get(i);
-            for (int j = i + 1; j < lines.size(); j++) {
+            for (int j : index.findCandidates(i, maxVertical, maxGap)) {
                 ComponentLine lj = lines.get(j);
                 double scale = Math.min(li.getHeight(), lj.getHeight()) / meanHeight;
                 scale = Math.max(minLineSizeScale, Math.min(scale, maxLineSizeScale));
@@ -413,9 +454,12 @@ public class DocstrumSegmenter implements DocumentSegmenter {
             double minHorizontalDistance, double maxHorizontalDistance,
             double minVerticalDistance, double maxVerticalDistance) {
         DisjointSets<ComponentLine> sets = new DisjointSets<ComponentLine>(lines);
+        // Lines overlapping horizontally are at distance 0.1 at most
+        double maxGap = Math.max(-minHorizontalDistance, 0.1);
+        LineIndex index = new LineIndex(lines, orientation);
         for (int i = 0; i < lines.size(); i++) {
             ComponentLine li = lines.get(i);
-            for (int j = i + 1; j < lines.size(); j++) {
+            for (int j : index.findCandidates(i, maxVerticalDistance, maxGap)) {
                 ComponentLine lj = lines.get(j);
                 double hDist = li.horizontalDistance(lj, orientation);
                 double vDist = li.verticalDistance(lj, orientation);
@@ -423,23 +467,9 @@ public class DocstrumSegmenter implements DocumentSegmenter {
                         && minVerticalDistance <= vDist && vDist <= maxVerticalDistance) {
                     sets.union(li, lj);
                 } else if (minVerticalDistance <= vDist && vDist <= maxVerticalDistance
-                        && Math.abs(hDist-Math.min(li.getLength(), lj.getLength())) < 0.1) {
-                    boolean componentOverlap = false;
-                    int overlappingCount = 0;
-                    for (Component ci : li.getComponents()) {
-                        for (Component cj : lj.getComponents()) {
-                            double dist = ci.overlappingDistance(cj, orientation);
-                            if (dist > 2) {
-                                componentOverlap = true;
-                            }
-                            if (dist > 0) {
-                                overlappingCount++;
-                            }
-                        }
-                    }
-                    if (!componentOverlap && overlappingCount <= 2) {
-                        sets.union(li, lj);
-                    }
+                        && Math.abs(hDist-Math.min(li.getLength(), lj.getLength())) < 0.1
+                        && !componentsOverlap(li, lj, orientation)) {
+                    sets.union(li, lj);
                 }
             }
         }
@@ -455,6 +485,60 @@ public class DocstrumSegmenter implements DocumentSegmenter {
         return outputZone;
     }
 
+    /**
+     * Checks if the components of two lines overlap horizontally, that is if
+     * any pair of components overlaps by more than 2, or more than two pairs
+     * overlap at all. Only pairs of components with intersecting projections
+     * are compared.
+     */
+    static boolean componentsOverlap(ComponentLine line1, ComponentLine line2, double orientation) {
+        List<Component> components1 = sortByProjection(line1.getComponents(), orientation);
+        List<Component> components2 = sortByProjection(line2.getComponents(), orientation);
+        double s = Math.sin(-orientation), c = Math.cos(-orientation);
+        int overlappingCount = 0;
+        int i1 = 0, i2 = 0;
+        while (i1 < components1.size() && i2 < components2.size()) {
+            Component first = components1.get(i1);
+            Component second = components2.get(i2);
+            boolean firstStarts = first.projectionStart(s, c) <= second.projectionStart(s, c);
+            List<Component> others = firstStarts ? components2 : components1;
+            Component current = firstStarts ? first : second;
+            double end = current.projectionEnd(s, c);
+            for (int k = firstStarts ? i2 : i1; k < others.size(); k++) {
+                Component other = others.get(k);
+                if (other.projectionStart(s, c) > end) {
+                    break;
+                }
+                double dist = current.overlappingDistance(other, orientation);
+                if (dist > 2) {
+                    return true;
+                }
+                if (dist > 0 && ++overlappingCount > 2) {
+                    return true;
+                }
+            }
+            if (firstStarts) {
+                i1++;
+            } else {
+                i2++;
+            }
+        }
+        return false;
+    }
+
+    private static List<Component> sortByProjection(List<Component> components, final double orientation) {
+        final double s = Math.sin(-orientation), c = Math.cos(-orientation);
+        List<Component> sorted = new ArrayList<Component>(components);
+        Collections.sort(sorted, new Comparator<Component>() {
+
+            @Override
+            public int compare(Component c1, Component c2) {
+                return Double.compare(c1.projectionStart(s, c), c2.projectionStart(s, c));
+            }
+        });
+        return sorted;
+    }
+
     /**
      * Converts list of zones from internal format (using components and
      * component lines) to BxModel.
@@ -608,6 +692,14 @@ public class DocstrumSegmenter implements DocumentSegmenter {
             Arrays.sort(xs);
             return Math.abs(xs[2] - xs[1]) * (overlapping ? 1 : -1);
         }
+
+        private double projectionStart(double s, double c) {
+            return Math.min(c * x - s * y, c * (x+chunk.getWidth()) - s * (y+chunk.getHeight()));
+        }
+
+        private double projectionEnd(double s, double c) {
+            return Math.max(c * x - s * y, c * (x+chunk.getWidth()) - s * (y+chunk.getHeight()));
+        }
     }
 
     /**
@@ -823,6 +915,339 @@ public class DocstrumSegmenter implements DocumentSegmenter {
         }
     }
 
+    /**
+     * Uniform grid over the centers of components, used for nearest-neighbor search.
+     */
+    private static final class ComponentGrid {
+
+        private static final double COMPONENTS_PER_CELL = 2;
+
+        private final Component[] components;
+        private final double minX;
+        private final double minY;
+        private final double cellSize;
+        private final int columns;
+        private final int rows;
+        /** indices of components in cell c are cellComponents[cellStarts[c]..cellStarts[c+1]) */
+        private final int[] cellStarts;
+        private final int[] cellComponents;
+
+        ComponentGrid(Component[] components) {
+            this.components = components;
+            double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+            double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+            for (Component component : components) {
+                x0 = Math.min(x0, component.getX());
+                y0 = Math.min(y0, component.getY());
+                x1 = Math.max(x1, component.getX());
+                y1 = Math.max(y1, component.getY());
+            }
+            minX = x0;
+            minY = y0;
+            double width = x1 - x0;
+            double height = y1 - y0;
+            double size = Math.max(Math.sqrt(width * height * COMPONENTS_PER_CELL / components.length),
+                    Math.max(width, height) / components.length);
+            cellSize = size > 0 ? size : 1;
+            columns = (int) (width / cellSize) + 1;
+            rows = (int) (height / cellSize) + 1;
+
+            int[] cells = new int[components.length];
+            cellStarts = new int[columns * rows + 1];
+            for (int i = 0; i < components.length; i++) {
+                cells[i] = column(components[i].getX()) + columns * row(components[i].getY());
+                cellStarts[cells[i] + 1]++;
+            }
+            for (int c = 0; c < columns * rows; c++) {
+                cellStarts[c + 1] += cellStarts[c];
+            }
+            int[] positions = Arrays.copyOf(cellStarts, cellStarts.length - 1);
+            cellComponents = new int[components.length];
+            for (int i = 0; i < components.length; i++) {
+                cellComponents[positions[cells[i]]++] = i;
+            }
+        }
+
+        private int column(double x) {
+            return Math.min((int) ((x - minX) / cellSize), columns - 1);
+        }
+
+        private int row(double y) {
+            return Math.min((int) ((y - minY) / cellSize), rows - 1);
+        }
+
+        /**
+         * Visits the cells in rings of growing distance from the origin's cell,
+         * until the remaining cells cannot contain nearer components.
+         * 
+         * @param heap the heap of the nearest neighbors of the origin
+         */
+        void findNeighbors(NeighborHeap heap) {
+            Component origin = components[heap.getOrigin()];
+            int column = column(origin.getX());
+            int row = row(origin.getY());
+            int maxRadius = Math.max(Math.max(column, columns - 1 - column), Math.max(row, rows - 1 - row));
+            for (int r = 0; r <= maxRadius; r++) {
+                // one spare ring to stay on the safe side of rounding errors
+                if (heap.isFull() && (r - 2) * cellSize > heap.getMaxDistance()) {
+                    return;
+                }
+                for (int c = column - r; c <= column + r; c++) {
+                    visitCell(c, row - r, heap);
+                    if (r > 0) {
+                        visitCell(c, row + r, heap);
+                    }
+                }
+                for (int w = row - r + 1; w <= row + r - 1; w++) {
+                    visitCell(column - r, w, heap);
+                    visitCell(column + r, w, heap);
+                }
+            }
+        }
+
+        private void visitCell(int column, int row, NeighborHeap heap) {
+            if (column < 0 || column >= columns || row < 0 || row >= rows) {
+                return;
+            }
+            int cell = column + columns * row;
+            for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+                heap.offer(cellComponents[i]);
+            }
+        }
+    }
+
+    /**
+     * Bounded max-heap holding the nearest neighbors of a single component.
+     * 
+     * Neighbors are ordered by distance. Ties are broken by the DISTANCE_STEP-wide
+     * stripe of the horizontal distance, then by the side (left first)
+     * and by the distance in the x-sorted components array.
+     */
+    private static final class NeighborHeap {
+
+        private final Component[] components;
+        private final int capacity;
+        private final int[] heap;
+        private final double[] distances;
+        private int size;
+        private int origin;
+
+        NeighborHeap(Component[] components, int capacity) {
+            this.components = components;
+            this.capacity = capacity;
+            this.heap = new int[capacity];
+            this.distances = new double[capacity];
+        }
+
+        void reset(int origin) {
+            this.origin = origin;
+            this.size = 0;
+        }
+
+        int getOrigin() {
+            return origin;
+        }
+
+        boolean isFull() {
+            return size == capacity;
+        }
+
+        double getMaxDistance() {
+            return distances[0];
+        }
+
+        void offer(int index) {
+            if (index == origin || capacity == 0) {
+                return;
+            }
+            double distance = components[index].distance(components[origin]);
+            if (size < capacity) {
+                heap[size] = index;
+                distances[size] = distance;
+                siftUp(size++);
+            } else if (compare(index, distance, heap[0], distances[0]) < 0) {
+                heap[0] = index;
+                distances[0] = distance;
+                siftDown(0);
+            }
+        }
+
+        /**
+         * Removes all the neighbors from the heap.
+         * 
+         * @return the neighbors of the origin, nearest first
+         */
+        List<Neighbor> toNeighbors() {
+            Neighbor[] neighbors = new Neighbor[size];
+            while (size > 0) {
+                neighbors[size - 1] = new Neighbor(components[heap[0]], components[origin]);
+                size--;
+                heap[0] = heap[size];
+                distances[0] = distances[size];
+                siftDown(0);
+            }
+            return new ArrayList<Neighbor>(Arrays.asList(neighbors));
+        }
+
+        private int compare(int index1, double distance1, int index2, double distance2) {
+            int cmp = Double.compare(distance1, distance2);
+            if (cmp != 0) {
+                return cmp;
+            }
+            cmp = Double.compare(stripe(index1), stripe(index2));
+            if (cmp != 0) {
+                return cmp;
+            }
+            boolean left1 = index1 < origin;
+            boolean left2 = index2 < origin;
+            if (left1 != left2) {
+                return left1 ? -1 : 1;
+            }
+            return Integer.compare(Math.abs(index1 - origin), Math.abs(index2 - origin));
+        }
+
+        private double stripe(int index) {
+            double dx = index < origin 
+                    ? components[origin].getX() - components[index].getX()
+                    : components[index].getX() - components[origin].getX();
+            return Math.floor(dx / DISTANCE_STEP);
+        }
+
+        private void siftUp(int position) {
+            int index = heap[position];
+            double distance = distances[position];
+            while (position > 0) {
+                int parent = (position - 1) / 2;
+                if (compare(heap[parent], distances[parent], index, distance) >= 0) {
+                    break;
+                }
+                heap[position] = heap[parent];
+                distances[position] = distances[parent];
+                position = parent;
+            }
+            heap[position] = index;
+            distances[position] = distance;
+        }
+
+        private void siftDown(int position) {
+            int index = heap[position];
+            double distance = distances[position];
+            while (2 * position + 1 < size) {
+                int child = 2 * position + 1;
+                if (child + 1 < size && compare(heap[child + 1], distances[child + 1], heap[child], distances[child]) > 0) {
+                    child++;
+                }
+                if (compare(heap[child], distances[child], index, distance) <= 0) {
+                    break;
+                }
+                heap[position] = heap[child];
+                distances[position] = distances[child];
+                position = child;
+            }
+            heap[position] = index;
+            distances[position] = distance;
+        }
+    }
+
+    /**
+     * Index of text lines sorted by the position of their centers across the
+     * text orientation, used to find pairs of lines close to each other.
+     */
+    static final class LineIndex {
+
+        /** relative margin covering rounding differences between distance formulas */
+        private static final double EPSILON = 1e-9;
+
+        private final double[] positions;
+        private final double[] starts;
+        private final double[] ends;
+        /** line indices sorted by position, ranks[i] is the place of line i in order */
+        private final int[] order;
+        private final int[] ranks;
+        private final int[] buffer;
+        private final double margin;
+
+        /**
+         * @param lines text lines
+         * @param orientation text orientation
+         */
+        LineIndex(List<ComponentLine> lines, double orientation) {
+            int size = lines.size();
+            positions = new double[size];
+            starts = new double[size];
+            ends = new double[size];
+            double a = Math.tan(orientation);
+            double norm = Math.sqrt(a * a + 1);
+            double s = Math.sin(-orientation), c = Math.cos(-orientation);
+            double maxAbs = 0;
+            Integer[] sorted = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                ComponentLine line = lines.get(i);
+                double xm = (line.x0 + line.x1) / 2, ym = (line.y0 + line.y1) / 2;
+                positions[i] = (a * xm - ym) / norm;
+                maxAbs = Math.max(maxAbs, (Math.abs(a * xm) + Math.abs(ym)) / norm);
+                double xs0 = c * line.x0 - s * line.y0;
+                double xs1 = c * line.x1 - s * line.y1;
+                starts[i] = Math.min(xs0, xs1);
+                ends[i] = Math.max(xs0, xs1);
+                sorted[i] = i;
+            }
+            margin = EPSILON * (1 + maxAbs);
+            Arrays.sort(sorted, new Comparator<Integer>() {
+
+                @Override
+                public int compare(Integer i1, Integer i2) {
+                    return Double.compare(positions[i1], positions[i2]);
+                }
+            });
+            order = new int[size];
+            ranks = new int[size];
+            buffer = new int[size];
+            for (int k = 0; k < size; k++) {
+                order[k] = sorted[k];
+                ranks[sorted[k]] = k;
+            }
+        }
+
+        /**
+         * Finds lines with greater indices than the given line, whose vertical
+         * distance from it is at most maxVertical and which are separated from
+         * it horizontally by a gap of at most maxGap.
+         *
+         * @param index line index
+         * @param maxVertical maximum vertical distance
+         * @param maxGap maximum horizontal gap
+         * @return indices of candidate lines in increasing order
+         */
+        int[] findCandidates(int index, double maxVertical, double maxGap) {
+            int count = 0;
+            double position = positions[index];
+            for (int k = ranks[index] + 1; k < order.length; k++) {
+                if (positions[order[k]] - position > maxVertical + margin) {
+                    break;
+                }
+                if (order[k] > index && isClose(index, order[k], maxGap)) {
+                    buffer[count++] = order[k];
+                }
+            }
+            for (int k = ranks[index] - 1; k >= 0; k--) {
+                if (position - positions[order[k]] > maxVertical + margin) {
+                    break;
+                }
+                if (order[k] > index && isClose(index, order[k], maxGap)) {
+                    buffer[count++] = order[k];
+                }
+            }
+            Arrays.sort(buffer, 0, count);
+            return Arrays.copyOf(buffer, count);
+        }
+
+        private boolean isClose(int i, int j, double maxGap) {
+            double gap = Math.max(starts[j] - ends[i], starts[i] - ends[j]);
+            return !(gap > maxGap + margin);
+        }
+    }
+
     /**
      * Filter class for neighbor objects that checks if the angle of the
      * neighbor is within specified range.
@@ -932,7 +1357,7 @@ public class DocstrumSegmenter implements DocumentSegmenter {
     public static final double DEFAULT_ANGLE_TOLERANCE = Math.PI / 6;
 
     public static final int DEFAULT_NEIGHBOR_COUNT = 5;
-    
+
      
     /**
      * Angle histogram resolution in radians per bin.
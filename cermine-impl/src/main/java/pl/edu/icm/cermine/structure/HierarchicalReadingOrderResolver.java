@@ -37,7 +37,6 @@ public class HierarchicalReadingOrderResolver implements ReadingOrderResolver {
     static final int GRIDSIZE = 50;
     static final double BOXES_FLOW = 0.5;
     static final double EPS = 0.01;
-    static final int MAX_ZONES = 1000;
     static final Comparator<BxObject> Y_ASCENDING_ORDER = new Comparator<BxObject>() {
 
         @Override
@@ -84,13 +83,7 @@ public class HierarchicalReadingOrderResolver implements ReadingOrderResolver {
                 Collections.sort(lines, YX_ASCENDING_ORDER);
                 zone.resetText();
             }
-            List<BxZone> orderedZones;
-            if (zones.size() > MAX_ZONES) {
-                orderedZones = new ArrayList<BxZone>(zones);
-                Collections.sort(orderedZones, YX_ASCENDING_ORDER);
-            } else {
-                orderedZones = reorderZones(zones);
-            }
+            List<BxZone> orderedZones = reorderZones(zones);
             page.setZones(orderedZones);
             page.resetText();
             orderedDoc.addPage(page);
@@ -184,11 +177,12 @@ public class HierarchicalReadingOrderResolver implements ReadingOrderResolver {
      * @param zones is a list of unordered zones
      * @return root of the zones clustered in a tree
      */
-    private BxZoneGroup groupZonesHierarchically(List<BxZone> zones) {
+    BxZoneGroup groupZonesHierarchically(List<BxZone> zones) {
         /*
-         * Distance tuples are stored sorted by ascending distance value
+         * Distance tuples are polled by ascending distance value, tuples
+         * referring to already grouped objects are skipped
          */
-        List<DistElem<BxObject>> dists = new ArrayList<DistElem<BxObject>>(zones.size()*zones.size()/2);
+        DistQueue dists = new DistQueue();
         for (int idx1 = 0; idx1 < zones.size(); ++idx1) {
             for (int idx2 = idx1 + 1; idx2 < zones.size(); ++idx2) {
                 BxZone zone1 = zones.get(idx1);
@@ -197,25 +191,38 @@ public class HierarchicalReadingOrderResolver implements ReadingOrderResolver {
                         zone1, zone2));
             }
         }
-        Collections.sort(dists);
         DocumentPlane plane = new DocumentPlane(zones, GRIDSIZE);
-        while (!dists.isEmpty()) {
-            DistElem<BxObject> distElem = dists.get(0);
-            dists.remove(0);
+        Set<BxObject> grouped = Collections.newSetFromMap(new IdentityHashMap<BxObject, Boolean>());
+        /*
+         * Tuples with objects between them are postponed until the next
+         * grouping, then they take precedence over all the other tuples
+         */
+        List<DistElem<BxObject>> postponed = new ArrayList<DistElem<BxObject>>();
+        while (!dists.isEmpty() || !postponed.isEmpty()) {
+            DistElem<BxObject> distElem = dists.poll();
+            if (distElem == null) {
+                dists.addAll(postponed);
+                postponed.clear();
+                continue;
+            }
+            if (grouped.contains(distElem.getObj1()) || grouped.contains(distElem.getObj2())) {
+                continue;
+            }
             if (!distElem.isC() && plane.anyObjectsBetween(distElem.getObj1(), distElem.getObj2())) {
-                dists.add(new DistElem<BxObject>(true, distElem.getDist(), distElem.getObj1(), distElem.getObj2()));
+                postponed.add(new DistElem<BxObject>(true, distElem.getDist(), distElem.getObj1(), distElem.getObj2()));
                 continue;
             }
 
             BxZoneGroup newGroup = new BxZoneGroup(distElem.getObj1(), distElem.getObj2());
             plane.remove(distElem.getObj1()).remove(distElem.getObj2());
-            dists = removeDistElementsContainingObject(dists, distElem.getObj1());
-            dists = removeDistElementsContainingObject(dists, distElem.getObj2());
+            grouped.add(distElem.getObj1());
+            grouped.add(distElem.getObj2());
+            dists.addAll(postponed);
+            postponed.clear();
             for (BxObject other : plane.getObjects()) {
                 dists.add(new DistElem<BxObject>(false, distance(other,
                         newGroup), newGroup, other));
             }
-            Collections.sort(dists);
             plane.add(newGroup);
         }
         
@@ -224,16 +231,60 @@ public class HierarchicalReadingOrderResolver implements ReadingOrderResolver {
     }
 
     /**
-     * Removes all distance tuples containing obj
+     * Priority queue of distance tuples, polled in the order of a list of
+     * the tuples kept sorted with a stable sort. The tuples are ordered as by
+     * DistElem: tuples with the magic value c set first, then by distance
+     * rounded to DistElem.PRECISION. Tuples equal in this order are polled in
+     * the order they were added, so the order is total and does not depend
+     * on the layout of the heap.
      */
-    private List<DistElem<BxObject>> removeDistElementsContainingObject(Collection<DistElem<BxObject>> list, BxObject obj) {
-        List<DistElem<BxObject>> ret = new ArrayList<DistElem<BxObject>>();
-        for (DistElem<BxObject> distElem : list) {
-            if (distElem.getObj1() != obj && distElem.getObj2() != obj) {
-                ret.add(distElem);
+    private static final class DistQueue {
+
+        private final PriorityQueue<QueuedDistElem> queue = new PriorityQueue<QueuedDistElem>();
+        private long added = 0;
+
+        void add(DistElem<BxObject> distElem) {
+            queue.add(new QueuedDistElem(distElem, added++));
+        }
+
+        void addAll(Collection<DistElem<BxObject>> distElems) {
+            for (DistElem<BxObject> distElem : distElems) {
+                add(distElem);
+            }
+        }
+
+        DistElem<BxObject> poll() {
+            QueuedDistElem queued = queue.poll();
+            return queued == null ? null : queued.distElem;
+        }
+
+        boolean isEmpty() {
+            return queue.isEmpty();
+        }
+    }
+
+    private static final class QueuedDistElem implements Comparable<QueuedDistElem> {
+
+        private final DistElem<BxObject> distElem;
+        private final long roundedDist;
+        private final long order;
+
+        QueuedDistElem(DistElem<BxObject> distElem, long order) {
+            this.distElem = distElem;
+            this.roundedDist = Math.round(distElem.getDist() / DistElem.PRECISION);
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(QueuedDistElem other) {
+            if (distElem.isC() != other.distElem.isC()) {
+                return distElem.isC() ? -1 : 1;
+            }
+            if (roundedDist != other.roundedDist) {
+                return roundedDist < other.roundedDist ? -1 : 1;
             }
+            return Long.compare(order, other.order);
         }
-        return ret;
     }
 
     /**
@@ -310,7 +361,7 @@ public class HierarchicalReadingOrderResolver implements ReadingOrderResolver {
      * @return distance value based on objects' coordinates and physical size on a plane
      *
      */
-    private double distance(BxObject obj1, BxObject obj2) {
+    double distance(BxObject obj1, BxObject obj2) {
 
         double x0 = Math.min(obj1.getX(), obj2.getX());
         double y0 = Math.min(obj1.getY(), obj2.getY());
@@ -20,12 +20,10 @@ package pl.edu.icm.cermine.structure;
 
 import com.itextpdf.text.Rectangle;
 import com.itextpdf.text.exceptions.InvalidPdfException;
-import com.itextpdf.text.pdf.PRIndirectReference;
-import com.itextpdf.text.pdf.PdfDictionary;
-import com.itextpdf.text.pdf.PdfName;
-import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.*;
 import com.itextpdf.text.pdf.parser.*;
 import com.itextpdf.text.pdf.parser.Vector;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
@@ -42,7 +40,7 @@ import pl.edu.icm.cermine.structure.tools.BxBoundsBuilder;
  *
  * @author Dominika Tkaczyk (dtkaczyk@icm.edu.pl)
  */
-public class ITextCharacterExtractor implements CharacterExtractor {
+public class ITextCharacterExtractor implements StreamingCharacterExtractor {
     
     public static final int DEFAULT_FRONT_PAGES_LIMIT = 20;
     
@@ -85,10 +83,88 @@ public class ITextCharacterExtractor implements CharacterExtractor {
      */
     @Override
     public BxDocument extractCharacters(InputStream stream) throws AnalysisException {
+        DocumentCollector collector = new DocumentCollector();
+        extractCharacters(stream, collector);
+        return collector.document;
+    }
+
+    /**
+     * Extracts text chunks from PDF page by page. The stream is read into memory,
+     * but PDF objects are parsed only when the page using them is processed.
+     * 
+     * @param stream PDF's stream
+     * @param listener listener receiving pages with extracted chunks
+     * @throws AnalysisException 
+     */
+    @Override
+    public void extractCharacters(InputStream stream, BxPageListener listener) throws AnalysisException {
+        extractCharacters(PdfSource.fromStream(stream), listener);
+    }
+
+    /**
+     * Extracts text chunks from PDF file and stores them in BxDocument object.
+     * 
+     * @param file PDF file
+     * @return BxDocument containing pages with extracted chunks stored as BxChunk lists
+     * @throws AnalysisException 
+     */
+    public BxDocument extractCharacters(File file) throws AnalysisException {
+        return extractCharacters(PdfSource.fromPath(file.toPath()));
+    }
+
+    /**
+     * Extracts text chunks from PDF file page by page. The file is memory-mapped
+     * and PDF objects are parsed only when the page using them is processed,
+     * so large documents do not have to fit in the heap.
+     * 
+     * @param file PDF file
+     * @param listener listener receiving pages with extracted chunks
+     * @throws AnalysisException 
+     */
+    public void extractCharacters(File file, BxPageListener listener) throws AnalysisException {
+        extractCharacters(PdfSource.fromPath(file.toPath()), listener);
+    }
+
+    /**
+     * Extracts text chunks from PDF source and stores them in BxDocument object.
+     * 
+     * @param source PDF source
+     * @return BxDocument containing pages with extracted chunks stored as BxChunk lists
+     * @throws AnalysisException 
+     */
+    @Override
+    public BxDocument extractCharacters(PdfSource source) throws AnalysisException {
+        DocumentCollector collector = new DocumentCollector();
+        extractCharacters(source, collector);
+        return collector.document;
+    }
+
+    /**
+     * Extracts text chunks from PDF source page by page. PDF objects are read
+     * and parsed only when the page using them is processed.
+     * 
+     * @param source PDF source
+     * @param listener listener receiving pages with extracted chunks
+     * @throws AnalysisException 
+     */
+    @Override
+    public void extractCharacters(PdfSource source, BxPageListener listener) throws AnalysisException {
+        RandomAccessFileOrArray input;
+        try {
+            input = new RandomAccessFileOrArray(source.openRandomAccessSource());
+        } catch (IOException ex) {
+            throw new AnalysisException("Cannot extract characters from PDF file", ex);
+        }
+        extractPages(input, listener);
+    }
+
+    private void extractPages(RandomAccessFileOrArray source, BxPageListener listener) 
+            throws AnalysisException {
+        PdfReader reader = null;
         try {
             BxDocumentCreator documentCreator = new BxDocumentCreator();
 
-            PdfReader reader = new PdfReader(stream);
+            reader = new PdfReader(source, null);
             PdfContentStreamProcessor processor = new PdfContentStreamProcessor(documentCreator);
             
             for (int pageNumber = 1; pageNumber <= reader.getNumberOfPages(); pageNumber++) {
@@ -96,6 +172,9 @@ public class ITextCharacterExtractor implements CharacterExtractor {
                         && pageNumber < reader.getNumberOfPages() - 1 - backPagesLimit) {
                     continue;
                 }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new AnalysisException("Character extraction interrupted!");
+                }
                 documentCreator.processNewBxPage(reader.getPageSize(pageNumber));
 
                 PdfDictionary resources = reader.getPageN(pageNumber).getAsDict(PdfName.RESOURCES);
@@ -103,13 +182,25 @@ public class ITextCharacterExtractor implements CharacterExtractor {
 
                 processor.reset();
                 processor.processContent(ContentByteUtils.getContentBytesForPage(reader, pageNumber), resources);
-            }
+                reader.releasePage(pageNumber);
 
-            return filterComponents(removeDuplicateChunks(documentCreator.document));
+                BxPage page = documentCreator.finishBxPage();
+                listener.pageExtracted(filterComponents(removeDuplicateChunks(page)));
+            }
         } catch (InvalidPdfException ex) {
             throw new AnalysisException("Invalid PDF file", ex);
         } catch (IOException ex) {
             throw new AnalysisException("Cannot extract characters from PDF file", ex);
+        } finally {
+            if (reader != null) {
+                reader.close();
+            } else {
+                try {
+                    source.close();
+                } catch (IOException ex) {
+                    // nothing to do, the source was only read
+                }
+            }
         }
     }
     
@@ -136,7 +227,8 @@ public class ITextCharacterExtractor implements CharacterExtractor {
                 return;
             }
             PRIndirectReference indRef = (PRIndirectReference) fontsDictionary.get(pdfFontName);
-            PdfDictionary fontDictionary = (PdfDictionary) PdfReader.getPdfObjectRelease(indRef);
+            // not released, as in partial mode the modified dictionary would be read again
+            PdfDictionary fontDictionary = (PdfDictionary) PdfReader.getPdfObject(indRef);
 
             PdfName baseFont = fontDictionary.getAsName(PdfName.BASEFONT);
             if (baseFont != null) {
@@ -148,160 +240,235 @@ public class ITextCharacterExtractor implements CharacterExtractor {
         }
     }
 
-    private BxDocument removeDuplicateChunks(BxDocument document) {
-        for (BxPage page : document.getPages()) {
-            List<BxChunk> chunks = page.getChunks();
-            List<BxChunk> filteredChunks = new ArrayList<BxChunk>();
-            Map<Integer, Map<Integer, Set<BxChunk>>> chunkMap = new HashMap<Integer, Map<Integer, Set<BxChunk>>>();
-            for (BxChunk chunk : chunks) {
-                int x = (int) chunk.getX();
-                int y = (int) chunk.getY();
-                boolean duplicate = false;
-                duplicateSearch:
-                for (int i = x-1; i <= x+1; i++) {
-                    for (int j = y-1; j <= y+1; j++) {
-                        if (chunkMap.get(i) == null || chunkMap.get(i).get(j) == null) {
-                            continue;
-                        }
-                        for (BxChunk ch : chunkMap.get(i).get(j)) {
-                            if (chunk.toText().equals(ch.toText()) && chunk.getBounds().isSimilarTo(ch.getBounds(), 1)) {
-                                duplicate = true;
-                                break duplicateSearch;
-                            }
-                        }
-                    }
-                }
-                if (!duplicate) {
-                    filteredChunks.add(chunk);
-                    x = (int) chunk.getX();
-                    y = (int) chunk.getY();
-                    if (chunkMap.get(x) == null) {
-                        chunkMap.put(x, new HashMap<Integer, Set<BxChunk>>());
-                    }
-                    if (chunkMap.get(x).get(y) == null) {
-                        chunkMap.get(x).put(y, new HashSet<BxChunk>());
+    /**
+     * Removes the chunks with the same text and nearly the same bounds as a chunk
+     * preceding them on the page.
+     */
+    static BxPage removeDuplicateChunks(BxPage page) {
+        List<BxChunk> chunks = page.getChunks();
+        List<BxChunk> filteredChunks = new ArrayList<BxChunk>(chunks.size());
+        ChunkGrid grid = new ChunkGrid(chunks.size());
+        for (int index = 0; index < chunks.size(); index++) {
+            BxChunk chunk = chunks.get(index);
+            int x = (int) chunk.getX();
+            int y = (int) chunk.getY();
+            if (!hasDuplicate(chunk, x, y, chunks, grid)) {
+                filteredChunks.add(chunk);
+                grid.add(ChunkGrid.key(x, y), index);
+            }
+        }
+        page.setChunks(filteredChunks);
+        return page;
+    }
+
+    private static boolean hasDuplicate(BxChunk chunk, int x, int y, List<BxChunk> chunks, ChunkGrid grid) {
+        for (int i = x-1; i <= x+1; i++) {
+            for (int j = y-1; j <= y+1; j++) {
+                for (int index = grid.first(ChunkGrid.key(i, j)); index >= 0; index = grid.next(index)) {
+                    BxChunk ch = chunks.get(index);
+                    if (chunk.toText().equals(ch.toText()) && chunk.getBounds().isSimilarTo(ch.getBounds(), 1)) {
+                        return true;
                     }
-                    chunkMap.get(x).get(y).add(chunk);
                 }
             }
-            page.setChunks(filteredChunks);
         }
-        return document;
+        return false;
     }
     
-    private BxDocument filterComponents(BxDocument document) {
-        for (BxPage page : document.getPages()) {
-            BxBoundsBuilder bounds = new BxBoundsBuilder();
-            for (BxChunk ch : page.getChunks()) {
-                bounds.expand(ch.getBounds());
-            }
+    /**
+     * Removes the chunks from the overcrowded areas of a dense page.
+     */
+    static BxPage filterComponents(BxPage page) {
+        List<BxChunk> chunks = page.getChunks();
+        BxBoundsBuilder bounds = new BxBoundsBuilder();
+        for (BxChunk ch : chunks) {
+            bounds.expand(ch.getBounds());
+        }
+    
+        double density = (double)100.0*chunks.size() / (bounds.getBounds().getWidth()*bounds.getBounds().getHeight());
+        if (Double.isNaN(density) || density < CHUNK_DENSITY_LIMIT) {
+            return page;
+        }
         
-            double density = (double)100.0*page.getChunks().size() / (bounds.getBounds().getWidth()*bounds.getBounds().getHeight());
-            if (Double.isNaN(density) || density < CHUNK_DENSITY_LIMIT) {
-                continue;
+        ChunkGrid grid = new ChunkGrid(chunks.size());
+        long[] keys = new long[chunks.size()];
+        for (int index = 0; index < chunks.size(); index++) {
+            BxChunk ch = chunks.get(index);
+            keys[index] = ChunkGrid.key((int)ch.getX()/PAGE_GRID_SIZE, (int)ch.getY()/PAGE_GRID_SIZE);
+            grid.add(keys[index], index);
+        }
+
+        List<BxChunk> filteredChunks = new ArrayList<BxChunk>(chunks.size());
+        for (int index = 0; index < chunks.size(); index++) {
+            if (grid.count(keys[index]) <= CHUNK_DENSITY_LIMIT) {
+                filteredChunks.add(chunks.get(index));
             }
-            
-            Map<String, List<BxChunk>> map = new HashMap<String, List<BxChunk>>();
-            for (BxChunk ch : page.getChunks()) {
-                int x = (int)ch.getX()/PAGE_GRID_SIZE;
-                int y = (int)ch.getY()/PAGE_GRID_SIZE;
-                String key = Integer.toString(x)+" "+Integer.toString(y);
-                if (map.get(key) == null) {
-                    map.put(key, new ArrayList<BxChunk>());
-                }
-                map.get(key).add(ch);
+        }
+        if (filteredChunks.size() < chunks.size()) {
+            page.setChunks(filteredChunks);
+        }
+        return page;
+    }
+
+    /**
+     * Hash grid of page cells, keyed by the packed cell coordinates.
+     * Each cell holds a chain of indices of the chunks added to it.
+     */
+    static final class ChunkGrid {
+
+        private final long[] keys;
+        private final int[] heads;
+        private final int[] counts;
+        private final int[] next;
+        private final int mask;
+
+        ChunkGrid(int chunkCount) {
+            int capacity = 16;
+            while (capacity < 2 * chunkCount) {
+                capacity <<= 1;
             }
+            keys = new long[capacity];
+            heads = new int[capacity];
+            counts = new int[capacity];
+            next = new int[chunkCount];
+            mask = capacity - 1;
+            Arrays.fill(heads, -1);
+        }
 
-            for (List<BxChunk> list : map.values()) {
-                if (list.size() > CHUNK_DENSITY_LIMIT) {
-                    for (BxChunk ch : list) {
-                        page.getChunks().remove(ch);
-                    }
-                }
+        static long key(int x, int y) {
+            return ((long) x << 32) | (y & 0xffffffffL);
+        }
+
+        /**
+         * Adds a chunk to a cell. Every chunk index can be added only once.
+         */
+        void add(long key, int index) {
+            int slot = slot(key);
+            keys[slot] = key;
+            next[index] = heads[slot];
+            heads[slot] = index;
+            counts[slot]++;
+        }
+
+        /**
+         * @return the index of a chunk in the cell, or -1 if the cell is empty
+         */
+        int first(long key) {
+            return heads[slot(key)];
+        }
+
+        /**
+         * @return the index of the next chunk in the same cell, or -1
+         */
+        int next(int index) {
+            return next[index];
+        }
+
+        int count(long key) {
+            return counts[slot(key)];
+        }
+
+        private int slot(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            int slot = (int) (hash ^ (hash >>> 32)) & mask;
+            while (heads[slot] >= 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
             }
+            return slot;
+        }
+    }
+
+    /**
+     * Page listener collecting the pages in a BxDocument object.
+     */
+    private static class DocumentCollector implements BxPageListener {
+
+        private final BxDocument document = new BxDocument();
+
+        @Override
+        public void pageExtracted(BxPage page) {
+            document.addPage(page);
         }
-        return document;
     }
 
     /**
      * Listener class receives information of text chunks and their render info
-     * from PDF content processor. Listener uses this to construct a BxDocument object
+     * from PDF content processor. Listener uses this to construct BxPage objects
      * containing lists of BxChunk elements.
+     * 
+     * The glyphs of the current page are stored in a primitive buffer, chunk
+     * objects are created only when the page is finished.
      */
     static class BxDocumentCreator implements RenderListener {
 
-        private BxDocument document = new BxDocument();
-        private BxPage actPage;
-
-        private BxBoundsBuilder boundsBuilder = new BxBoundsBuilder();
+        private final ChunkBuffer chunks = new ChunkBuffer();
 
         private Rectangle pageRectangle;
 
         private void processNewBxPage(Rectangle pageRectangle) {
-            if (actPage != null) {
-                actPage.setBounds(boundsBuilder.getBounds());
-                boundsBuilder.clear();
-            }
-            actPage = new BxPage();
-            document.addPage(actPage);
-
+            chunks.clear();
             this.pageRectangle = pageRectangle;
         }
 
+        private BxPage finishBxPage() {
+            BxPage page = chunks.toPage();
+            chunks.clear();
+            return page;
+        }
+
         @Override
         public void beginTextBlock() {
         }
 
         @Override
         public void renderText(TextRenderInfo tri) {
+            float pageLeft = pageRectangle.getLeft();
+            float pageRight = pageRectangle.getRight();
+            float pageBottom = pageRectangle.getBottom();
+            float pageTop = pageRectangle.getTop();
+            float pageHeight = pageRectangle.getHeight();
+            String fontName = null;
+
             for (TextRenderInfo charTri : tri.getCharacterRenderInfos()) {
                 String text = charTri.getText();
-                char ch = charTri.getText().charAt(0);
-                if (ch <= ' ' || text.matches("^[\uD800-\uD8FF]$")
-                        || text.matches("^[\uDC00-\uDFFF]$")
-                        || text.matches("^[\uFFF0-\uFFFF]$")) {
+                if (isIgnored(text)) {
                     continue;
                 }
                 
-                float absoluteCharLeft = charTri.getDescentLine().getStartPoint().get(Vector.I1);
-                float absoluteCharBottom = charTri.getDescentLine().getStartPoint().get(Vector.I2);
+                Vector descentStart = charTri.getDescentLine().getStartPoint();
+                float absoluteCharLeft = descentStart.get(Vector.I1);
+                float absoluteCharBottom = descentStart.get(Vector.I2);
                 
-                float charLeft = absoluteCharLeft - pageRectangle.getLeft();
-                float charBottom = absoluteCharBottom - pageRectangle.getBottom();
+                float charLeft = absoluteCharLeft - pageLeft;
+                float charBottom = absoluteCharBottom - pageBottom;
                 
-                float charHeight = charTri.getAscentLine().getStartPoint().get(Vector.I2) 
-                        - charTri.getDescentLine().getStartPoint().get(Vector.I2);
+                float charHeight = charTri.getAscentLine().getStartPoint().get(Vector.I2) - absoluteCharBottom;
                 float charWidth = charTri.getDescentLine().getLength();
                 
-                if (Float.isNaN(charHeight) || Float.isInfinite(charHeight)) {
+                if (!isFinite(charHeight)) {
                     charHeight = 0;
                 }
                 
-                if (Float.isNaN(charWidth) || Float.isInfinite(charWidth)) {
+                if (!isFinite(charWidth)) {
                     charWidth = 0;
                 } 
                 
-                if (absoluteCharLeft < pageRectangle.getLeft() 
-                        || absoluteCharLeft + charWidth > pageRectangle.getRight()
-                        || absoluteCharBottom < pageRectangle.getBottom() 
-                        || absoluteCharBottom + charHeight > pageRectangle.getTop()) {
+                if (absoluteCharLeft < pageLeft 
+                        || absoluteCharLeft + charWidth > pageRight
+                        || absoluteCharBottom < pageBottom 
+                        || absoluteCharBottom + charHeight > pageTop) {
                     continue;
                 }
                 
-                BxBounds bounds = new BxBounds(charLeft, pageRectangle.getHeight() - charBottom - charHeight,
-                                               charWidth, charHeight);
-                
-                if (Double.isNaN(bounds.getX()) || Double.isInfinite(bounds.getX())
-                        || Double.isNaN(bounds.getY()) || Double.isInfinite(bounds.getY())
-                        || Double.isNaN(bounds.getHeight()) || Double.isInfinite(bounds.getHeight())
-                        || Double.isNaN(bounds.getWidth()) || Double.isInfinite(bounds.getWidth())) {
+                float charTop = pageHeight - charBottom - charHeight;
+                if (!isFinite(charLeft) || !isFinite(charTop)) {
                     continue;
                 }
               
-                BxChunk chunk = new BxChunk(bounds, text);
-                chunk.setFontName(tri.getFont().getFullFontName()[0][3]);
-                actPage.addChunk(chunk);
-                boundsBuilder.expand(bounds);
+                if (fontName == null) {
+                    fontName = tri.getFont().getFullFontName()[0][3];
+                }
+                chunks.add(charLeft, charTop, charWidth, charHeight, text, fontName);
             }
         }
 
@@ -312,9 +479,82 @@ public class ITextCharacterExtractor implements CharacterExtractor {
         @Override
         public void renderImage(ImageRenderInfo iri) {
         }
+
+        /**
+         * Checks whether the glyph text is a whitespace, a control character,
+         * a single surrogate or a special character, which are not extracted.
+         */
+        private static boolean isIgnored(String text) {
+            char ch = text.charAt(0);
+            if (ch <= ' ') {
+                return true;
+            }
+            if (text.length() != 1) {
+                return false;
+            }
+            return (ch >= '\uD800' && ch <= '\uD8FF')
+                    || (ch >= '\uDC00' && ch <= '\uDFFF')
+                    || ch >= '\uFFF0';
+        }
+
+        private static boolean isFinite(float value) {
+            return !Float.isNaN(value) && !Float.isInfinite(value);
+        }
             
     }
 
+    /**
+     * Growable columnar buffer of the glyphs extracted from a page.
+     */
+    private static final class ChunkBuffer {
+
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private float[] coordinates = new float[4 * INITIAL_CAPACITY];
+        private String[] texts = new String[INITIAL_CAPACITY];
+        private String[] fontNames = new String[INITIAL_CAPACITY];
+        private int size;
+
+        void add(float x, float y, float width, float height, String text, String fontName) {
+            if (size == texts.length) {
+                int capacity = 2 * size;
+                coordinates = Arrays.copyOf(coordinates, 4 * capacity);
+                texts = Arrays.copyOf(texts, capacity);
+                fontNames = Arrays.copyOf(fontNames, capacity);
+            }
+            int offset = 4 * size;
+            coordinates[offset] = x;
+            coordinates[offset + 1] = y;
+            coordinates[offset + 2] = width;
+            coordinates[offset + 3] = height;
+            texts[size] = text;
+            fontNames[size] = fontName;
+            size++;
+        }
+
+        BxPage toPage() {
+            BxPage page = new BxPage();
+            BxBoundsBuilder boundsBuilder = new BxBoundsBuilder();
+            for (int i = 0; i < size; i++) {
+                int offset = 4 * i;
+                BxBounds bounds = new BxBounds(coordinates[offset], coordinates[offset + 1],
+                        coordinates[offset + 2], coordinates[offset + 3]);
+                BxChunk chunk = new BxChunk(bounds, texts[i]);
+                chunk.setFontName(fontNames[i]);
+                page.addChunk(chunk);
+                boundsBuilder.expand(bounds);
+            }
+            page.setBounds(boundsBuilder.getBounds());
+            return page;
+        }
+
+        void clear() {
+            Arrays.fill(texts, 0, size, null);
+            Arrays.fill(fontNames, 0, size, null);
+            size = 0;
+        }
+    }
+
     public int getBackPagesLimit() {
         return backPagesLimit;
     }
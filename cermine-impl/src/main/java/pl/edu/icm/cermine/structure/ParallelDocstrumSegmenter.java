@@ -19,22 +19,63 @@
 package pl.edu.icm.cermine.structure;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
-import pl.edu.icm.cermine.Cermine;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.tools.CancellableTasks;
+import pl.edu.icm.cermine.tools.SharedPools;
 
 /**
- * Page segmenter using Docstrum algorithm.
+ * Page segmenter using Docstrum algorithm. The pages of a document are processed
+ * in parallel by a long-lived executor, shared by default by all the segmenters.
+ * If the thread segmenting the document is interrupted, the page tasks
+ * of the document are cancelled.
  * 
  * @author krusek
  */
 public class ParallelDocstrumSegmenter extends DocstrumSegmenter {
     
+    private final ExecutorService executor;
+    
+    /**
+     * Creates the segmenter using the shared pool with one thread per available processor.
+     */
+    public ParallelDocstrumSegmenter() {
+        this(SharedPools.getDefaultPool());
+    }
+    
+    /**
+     * Creates the segmenter using the given executor. The executor is not
+     * shut down by the segmenter.
+     * 
+     * @param executor executor running the page-level tasks
+     */
+    public ParallelDocstrumSegmenter(ExecutorService executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        this.executor = executor;
+    }
+    
+    /**
+     * Returns the process-wide pool of the given parallelism level.
+     * The pool threads are daemon threads, so the pool does not have to be shut down.
+     * 
+     * @param parallelism the number of threads
+     * @return shared pool
+     */
+    public static ExecutorService getSharedPool(int parallelism) {
+        return SharedPools.getPool(parallelism);
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+    
     class NumBxPage {
         int index = -1;
         BxPage page;
@@ -52,14 +93,17 @@ public class ParallelDocstrumSegmenter extends DocstrumSegmenter {
     
     class SingleSegmenter implements Callable<NumBxPage> {
         NumBxPage page;
+        double docOrientation;
 
-        public SingleSegmenter(BxPage page, int index) {
+        public SingleSegmenter(BxPage page, int index, List<Component> components, double docOrientation) {
             this.page = new NumBxPage(page, index);
+            this.page.components = components;
+            this.docOrientation = docOrientation;
         }
        
         @Override
         public NumBxPage call() throws AnalysisException{
-            return new NumBxPage(segmentPage(page.page), page.index);
+            return new NumBxPage(segmentPage(page.page, page.components, docOrientation), page.index);
         }
     }
     
@@ -80,54 +124,103 @@ public class ParallelDocstrumSegmenter extends DocstrumSegmenter {
 
     @Override
     public BxDocument segmentDocument(BxDocument document) throws AnalysisException {
-        Map<BxPage, List<Component>> componentMap = new HashMap<>();
+        Map<BxPage, List<Component>> componentMap = new LinkedHashMap<>();
 
-        ExecutorService exec = Executors.newFixedThreadPool(Cermine.THREADS_NUMBER);
-        ArrayList<Callable<NumBxPage>> tasks = new ArrayList<>();
+        List<Callable<NumBxPage>> tasks = new ArrayList<>();
         for (BxPage page : document.getPages()) {
            tasks.add(new ComponentCounter(page));
         }
-        
-        List<Future<NumBxPage>> results;
-        try {
-            results = exec.invokeAll(tasks);
-            exec.shutdown();
-            
-            for (Future<NumBxPage> result : results) {
-                NumBxPage p = result.get();
-                componentMap.put(p.page, p.components);
-            }
-        } catch (ExecutionException | InterruptedException ex) {
-            throw new AnalysisException("Cannot segment pages!", ex);
+        for (NumBxPage p : invokeAll(tasks)) {
+            componentMap.put(p.page, p.components);
         }
-                
-        this.computeDocumentOrientation(componentMap);
+        return segmentPages(document, componentMap);
+    }
+
+    /**
+     * Starts the segmentation of a document delivered page by page. The components
+     * of each page are computed by the executor as soon as the page is received.
+     * 
+     * @return segmentation receiving the pages of the document
+     */
+    @Override
+    public DocumentSegmentation startSegmentation() {
+        return new DocumentSegmentation() {
+
+            private final BxDocument document = new BxDocument();
+            private final CancellableTasks<NumBxPage> components = new CancellableTasks<>(executor);
+
+            @Override
+            public void pageExtracted(BxPage page) throws AnalysisException {
+                document.addPage(page);
+                try {
+                    components.submit(new ComponentCounter(page));
+                } catch (RejectedExecutionException ex) {
+                    throw new AnalysisException("Cannot segment pages!", ex);
+                }
+            }
+
+            @Override
+            public BxDocument finish() throws AnalysisException {
+                Map<BxPage, List<Component>> componentMap = new LinkedHashMap<>();
+                for (NumBxPage p : getAll(components)) {
+                    componentMap.put(p.page, p.components);
+                }
+                return segmentPages(document, componentMap);
+            }
+
+            @Override
+            public void cancel() {
+                components.cancel();
+            }
+        };
+    }
+
+    @Override
+    protected BxDocument segmentPages(BxDocument document, Map<BxPage, List<Component>> componentMap)
+            throws AnalysisException {
+        double docOrientation = this.computeDocumentOrientation(componentMap);
     
         BxDocument output = new BxDocument();
         BxPage[] pages = new BxPage[document.getPages().size()];
         
-        exec = Executors.newFixedThreadPool(Cermine.THREADS_NUMBER);
-        tasks = new ArrayList<>();
+        List<Callable<NumBxPage>> tasks = new ArrayList<>();
         int i = 0;
         for (BxPage page : document.getPages()) {
-           tasks.add(new SingleSegmenter(page, i++));
+           tasks.add(new SingleSegmenter(page, i++, componentMap.get(page), docOrientation));
         }
-        
+        for (NumBxPage p : invokeAll(tasks)) {
+            pages[p.index] = p.page;
+        }
+        for (BxPage p : pages) {
+            if (p.getBounds() != null) {
+                output.addPage(p);
+            }
+        }
+        return output;
+    }
+
+    private List<NumBxPage> invokeAll(List<Callable<NumBxPage>> tasks) throws AnalysisException {
+        CancellableTasks<NumBxPage> pageTasks = new CancellableTasks<>(executor);
         try {
-            results = exec.invokeAll(tasks);
-            exec.shutdown();
-            
-            for (Future<NumBxPage> result : results) {
-                NumBxPage p = result.get();
-                pages[p.index] = p.page;
+            for (Callable<NumBxPage> task : tasks) {
+                pageTasks.submit(task);
             }
-            for (BxPage p : pages) {
-                if (p.getBounds() != null) {
-                    output.addPage(p);
-                }
+        } catch (RejectedExecutionException ex) {
+            throw new AnalysisException("Cannot segment pages!", ex);
+        }
+        return getAll(pageTasks);
+    }
+
+    private static List<NumBxPage> getAll(CancellableTasks<NumBxPage> tasks) throws AnalysisException {
+        try {
+            return tasks.getAll();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof AnalysisException) {
+                throw (AnalysisException) ex.getCause();
             }
-            return output;
-        } catch (ExecutionException | InterruptedException ex) {
+            throw new AnalysisException("Cannot segment pages!", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
             throw new AnalysisException("Cannot segment pages!", ex);
         }
     }
@@ -0,0 +1,258 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure;
+
+import com.itextpdf.text.io.IndependentRandomAccessSource;
+import com.itextpdf.text.io.RASInputStream;
+import com.itextpdf.text.io.RandomAccessSource;
+import com.itextpdf.text.io.RandomAccessSourceFactory;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The input PDF file. Files, channels and buffers are read with random access,
+ * without being copied into memory, so only the parts needed for the processed
+ * pages are actually read.
+ * 
+ * @author Dominika Tkaczyk
+ */
+public abstract class PdfSource {
+
+    private String name;
+
+    /**
+     * Creates a source reading from a stream. The whole stream will be read
+     * into memory.
+     * 
+     * @param stream PDF stream, not closed after the extraction
+     * @return PDF source
+     */
+    public static PdfSource fromStream(final InputStream stream) {
+        if (stream == null) {
+            throw new IllegalArgumentException("Stream cannot be null");
+        }
+        return new PdfSource() {
+
+            @Override
+            public InputStream openStream() {
+                return new FilterInputStream(stream) {
+
+                    @Override
+                    public void close() {
+                        // the stream is owned by the caller
+                    }
+                };
+            }
+
+            @Override
+            RandomAccessSource openRandomAccessSource() throws IOException {
+                return new RandomAccessSourceFactory().createSource(stream);
+            }
+        };
+    }
+
+    /**
+     * Creates a source reading from a byte array. The array is not copied.
+     * 
+     * @param bytes PDF file content
+     * @return PDF source
+     */
+    public static PdfSource fromBytes(final byte[] bytes) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("Bytes cannot be null");
+        }
+        return new PdfSource() {
+
+            @Override
+            public InputStream openStream() {
+                return new ByteArrayInputStream(bytes);
+            }
+
+            @Override
+            RandomAccessSource openRandomAccessSource() {
+                return new RandomAccessSourceFactory().createSource(bytes);
+            }
+        };
+    }
+
+    /**
+     * Creates a source reading the remaining bytes of a buffer. The buffer is
+     * not copied and its position is not changed.
+     * 
+     * @param buffer PDF file content
+     * @return PDF source
+     */
+    public static PdfSource fromBuffer(final ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("Buffer cannot be null");
+        }
+        return new RandomAccessPdfSource() {
+
+            @Override
+            RandomAccessSource openRandomAccessSource() {
+                return new BufferSource(buffer.slice());
+            }
+        };
+    }
+
+    /**
+     * Creates a source reading from a file. The file is memory-mapped.
+     * 
+     * @param path PDF file path
+     * @return PDF source
+     */
+    public static PdfSource fromPath(final Path path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        return new PdfSource() {
+
+            @Override
+            public InputStream openStream() throws IOException {
+                return Files.newInputStream(path);
+            }
+
+            @Override
+            RandomAccessSource openRandomAccessSource() throws IOException {
+                return new RandomAccessSourceFactory().createBestSource(path.toString());
+            }
+        }.setName(path.toString());
+    }
+
+    /**
+     * Creates a source reading from a file channel. The channel is memory-mapped,
+     * its position is not changed and it is not closed after the extraction.
+     * 
+     * @param channel PDF file channel
+     * @return PDF source
+     */
+    public static PdfSource fromChannel(final FileChannel channel) {
+        if (channel == null) {
+            throw new IllegalArgumentException("Channel cannot be null");
+        }
+        return new RandomAccessPdfSource() {
+
+            @Override
+            RandomAccessSource openRandomAccessSource() throws IOException {
+                return new IndependentRandomAccessSource(new RandomAccessSourceFactory().createBestSource(channel));
+            }
+        };
+    }
+
+    /**
+     * @return the name identifying the document, or null if it has none
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the name identifying the document, for example in the reported
+     * extraction stages. Sources created from paths are named after the paths.
+     * 
+     * @param name document name
+     * @return this source
+     */
+    public PdfSource setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    /**
+     * Opens the PDF as a stream, used by character extractors not able to
+     * read the file with random access. The caller is responsible for closing
+     * the returned stream.
+     * 
+     * @return PDF stream
+     * @throws IOException 
+     */
+    public abstract InputStream openStream() throws IOException;
+
+    /**
+     * Opens the PDF for random access by iText. The caller is responsible for
+     * closing the returned source.
+     * 
+     * @return random access source
+     * @throws IOException 
+     */
+    abstract RandomAccessSource openRandomAccessSource() throws IOException;
+
+    private abstract static class RandomAccessPdfSource extends PdfSource {
+
+        @Override
+        public InputStream openStream() throws IOException {
+            final RandomAccessSource source = openRandomAccessSource();
+            return new RASInputStream(source) {
+
+                @Override
+                public void close() throws IOException {
+                    source.close();
+                }
+            };
+        }
+    }
+
+    /**
+     * Random access source reading from a buffer using absolute positions.
+     */
+    private static final class BufferSource implements RandomAccessSource {
+
+        private final ByteBuffer buffer;
+
+        BufferSource(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int get(long position) {
+            if (position < 0 || position >= buffer.limit()) {
+                return -1;
+            }
+            return buffer.get((int) position) & 0xff;
+        }
+
+        @Override
+        public int get(long position, byte[] bytes, int off, int len) {
+            if (position < 0 || position >= buffer.limit()) {
+                return -1;
+            }
+            int count = (int) Math.min(len, buffer.limit() - position);
+            ByteBuffer view = buffer.duplicate();
+            view.position((int) position);
+            view.get(bytes, off, count);
+            return count;
+        }
+
+        @Override
+        public long length() {
+            return buffer.limit();
+        }
+
+        @Override
+        public void close() {
+            // the buffer is owned by the caller
+        }
+    }
+}
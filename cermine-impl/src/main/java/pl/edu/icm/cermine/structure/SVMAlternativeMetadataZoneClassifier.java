@@ -20,6 +20,7 @@ package pl.edu.icm.cermine.structure;
 
 import java.io.IOException;
 import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.tools.ModelRegistry;
 
 /**
  * @author Dominika Tkaczyk
@@ -28,17 +29,18 @@ public class SVMAlternativeMetadataZoneClassifier extends SVMMetadataZoneClassif
 	private static final String MODEL_FILE_PATH = "/pl/edu/icm/cermine/structure/model-metadata-humanities";
 	private static final String RANGE_FILE_PATH = "/pl/edu/icm/cermine/structure/model-metadata-humanities.range";
 	
-    private static SVMAlternativeMetadataZoneClassifier defaultInstance;
-    
 	public SVMAlternativeMetadataZoneClassifier() throws AnalysisException {
 		super(MODEL_FILE_PATH, RANGE_FILE_PATH, true);
 	}
 	
     public static SVMAlternativeMetadataZoneClassifier getDefaultInstance() throws AnalysisException, IOException {
-        if (defaultInstance == null) {
-            defaultInstance = new SVMAlternativeMetadataZoneClassifier();
-        }
-        return defaultInstance;
+        return ModelRegistry.getModel(MODEL_FILE_PATH, SVMAlternativeMetadataZoneClassifier.class,
+                new ModelRegistry.ModelLoader<SVMAlternativeMetadataZoneClassifier>() {
+                    @Override
+                    public SVMAlternativeMetadataZoneClassifier load() throws AnalysisException {
+                        return new SVMAlternativeMetadataZoneClassifier();
+                    }
+                });
     }
 
 }
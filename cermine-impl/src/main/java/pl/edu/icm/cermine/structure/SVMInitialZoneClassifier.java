@@ -21,14 +21,17 @@ package pl.edu.icm.cermine.structure;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.metadata.zoneclassification.features.*;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.structure.model.BxZoneLabel;
+import pl.edu.icm.cermine.tools.ModelRegistry;
 import pl.edu.icm.cermine.tools.classification.features.FeatureCalculator;
 import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
+import pl.edu.icm.cermine.tools.classification.svm.SVMClassifier;
 import pl.edu.icm.cermine.tools.classification.svm.SVMZoneClassifier;
 
 /**
@@ -40,8 +43,6 @@ public class SVMInitialZoneClassifier extends SVMZoneClassifier {
 	private static final String MODEL_FILE_PATH = "/pl/edu/icm/cermine/structure/model-initial-default";
 	private static final String RANGE_FILE_PATH = "/pl/edu/icm/cermine/structure/model-initial-default.range";
 
-    private static SVMInitialZoneClassifier defaultInstance;
-    
 	public SVMInitialZoneClassifier() throws AnalysisException, IOException {
 		super(getFeatureVectorBuilder());
 		loadModelFromResources(MODEL_FILE_PATH, RANGE_FILE_PATH);
@@ -149,19 +150,38 @@ public class SVMInitialZoneClassifier extends SVMZoneClassifier {
 	}
 	
     public static SVMInitialZoneClassifier getDefaultInstance() throws AnalysisException, IOException {
-        if (defaultInstance == null) {
-            defaultInstance = new SVMInitialZoneClassifier();
-        }
-        return defaultInstance;
+        return ModelRegistry.getModel(MODEL_FILE_PATH, SVMInitialZoneClassifier.class,
+                new ModelRegistry.ModelLoader<SVMInitialZoneClassifier>() {
+                    @Override
+                    public SVMInitialZoneClassifier load() throws AnalysisException {
+                        try {
+                            return new SVMInitialZoneClassifier();
+                        } catch (IOException ex) {
+                            throw new AnalysisException("Cannot create SVM classifier!", ex);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * @return the resources of the model used by the default instance
+     */
+    public static List<String> getDefaultResources() {
+        return SVMClassifier.getModelResources(MODEL_FILE_PATH, RANGE_FILE_PATH);
     }
     
     @Override
 	public BxDocument classifyZones(BxDocument document) throws AnalysisException {
-        for (BxZone zone : document.asZones()) {
-            if (zone.getLabel() == null) {
-                BxZoneLabel predicted = predictLabel(zone, zone.getParent());
-                zone.setLabel(predicted);
+        ZoneFeatureContext context = ZoneFeatureContext.open();
+        try {
+            for (BxZone zone : document.asZones()) {
+                if (zone.getLabel() == null) {
+                    BxZoneLabel predicted = predictLabel(zone, zone.getParent());
+                    zone.setLabel(predicted);
+                }
             }
+        } finally {
+            context.close();
         }
         return document;
 	}
@@ -21,14 +21,17 @@ package pl.edu.icm.cermine.structure;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.metadata.zoneclassification.features.*;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
 import pl.edu.icm.cermine.structure.model.BxZoneLabelCategory;
+import pl.edu.icm.cermine.tools.ModelRegistry;
 import pl.edu.icm.cermine.tools.classification.features.FeatureCalculator;
 import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
+import pl.edu.icm.cermine.tools.classification.svm.SVMClassifier;
 import pl.edu.icm.cermine.tools.classification.svm.SVMZoneClassifier;
 
 /**
@@ -40,8 +43,6 @@ public class SVMMetadataZoneClassifier extends SVMZoneClassifier {
 	private static final String MODEL_FILE_PATH = "/pl/edu/icm/cermine/structure/model-metadata-default";
 	private static final String RANGE_FILE_PATH = "/pl/edu/icm/cermine/structure/model-metadata-default.range";
 	
-    private static SVMMetadataZoneClassifier defaultInstance;
-    
 	public SVMMetadataZoneClassifier() throws AnalysisException {
 		this(MODEL_FILE_PATH, RANGE_FILE_PATH, true);
     }
@@ -144,10 +145,20 @@ public class SVMMetadataZoneClassifier extends SVMZoneClassifier {
 	}
     
     public static SVMMetadataZoneClassifier getDefaultInstance() throws AnalysisException, IOException {
-        if (defaultInstance == null) {
-            defaultInstance = new SVMMetadataZoneClassifier();
-        }
-        return defaultInstance;
+        return ModelRegistry.getModel(MODEL_FILE_PATH, SVMMetadataZoneClassifier.class,
+                new ModelRegistry.ModelLoader<SVMMetadataZoneClassifier>() {
+                    @Override
+                    public SVMMetadataZoneClassifier load() throws AnalysisException {
+                        return new SVMMetadataZoneClassifier();
+                    }
+                });
+    }
+
+    /**
+     * @return the resources of the model used by the default instance
+     */
+    public static List<String> getDefaultResources() {
+        return SVMClassifier.getModelResources(MODEL_FILE_PATH, RANGE_FILE_PATH);
     }
     
     @Override
@@ -157,11 +168,16 @@ public class SVMMetadataZoneClassifier extends SVMZoneClassifier {
                 zone.setParent(page);
             }
         }
-        for (BxZone zone: document.asZones()) {
-            if (zone.getLabel().isOfCategoryOrGeneral(BxZoneLabelCategory.CAT_METADATA)) {
-                zone.setLabel(predictLabel(zone, zone.getParent()));
+        ZoneFeatureContext context = ZoneFeatureContext.open();
+        try {
+            for (BxZone zone: document.asZones()) {
+                if (zone.getLabel().isOfCategoryOrGeneral(BxZoneLabelCategory.CAT_METADATA)) {
+                    zone.setLabel(predictLabel(zone, zone.getParent()));
+                }
             }
-		}
+        } finally {
+            context.close();
+        }
         return document;
     }
 
@@ -0,0 +1,63 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure;
+
+import java.io.InputStream;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+
+/**
+ * Character extractor able to pass the pages on as they are extracted,
+ * and to read the input with random access, without keeping the whole
+ * document in memory.
+ * 
+ * @author Dominika Tkaczyk
+ */
+public interface StreamingCharacterExtractor extends CharacterExtractor {
+
+    /**
+     * Extracts characters from the file, page by page.
+     * 
+     * @param stream
+     * @param listener listener receiving pages containing individual characters,
+     * in the order of the document
+     * @throws AnalysisException 
+     */
+    void extractCharacters(InputStream stream, BxPageListener listener) throws AnalysisException;
+    
+
+    /**
+     * Extracts characters from the source.
+     * 
+     * @param source PDF source
+     * @return a document containing pages with individual characters
+     * @throws AnalysisException 
+     */
+    BxDocument extractCharacters(PdfSource source) throws AnalysisException;
+    
+    /**
+     * Extracts characters from the source, page by page.
+     * 
+     * @param source PDF source
+     * @param listener listener receiving pages containing individual characters,
+     * in the order of the document
+     * @throws AnalysisException 
+     */
+    void extractCharacters(PdfSource source, BxPageListener listener) throws AnalysisException;
+}
@@ -0,0 +1,58 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure;
+
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+
+/**
+ * Document segmenter able to start processing the pages of a document
+ * while the following pages are still being extracted.
+ * 
+ * @author Dominika Tkaczyk
+ */
+public interface StreamingDocumentSegmenter extends DocumentSegmenter {
+
+    /**
+     * Starts the segmentation of a new document.
+     * 
+     * @return segmentation receiving the pages of the document
+     */
+    DocumentSegmentation startSegmentation();
+    
+    /**
+     * Segmentation of a single document, receiving the pages in the order of the document.
+     */
+    interface DocumentSegmentation extends BxPageListener {
+
+        /**
+         * Segments the document once all its pages were received.
+         * 
+         * @return a document with computed zones, lines and words
+         * @throws AnalysisException 
+         */
+        BxDocument finish() throws AnalysisException;
+
+        /**
+         * Cancels the segmentation of the pages received so far, for instance
+         * when the extraction of the following pages failed.
+         */
+        void cancel();
+    }
+}
@@ -29,6 +29,9 @@ import pl.edu.icm.cermine.tools.Utils;
 
 public class DistElem<E> implements Comparable<DistElem<E> >{
 
+    /** distances are compared after rounding to multiples of the precision */
+    public static final double PRECISION = 1E-3;
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -121,9 +124,8 @@ public class DistElem<E> implements Comparable<DistElem<E> >{
 	
 	@Override
 	public int compareTo(DistElem<E> compareObject) {
-        double eps = 1E-3;
         if (c == compareObject.c) {
-			return Utils.compareDouble(dist, compareObject.dist, eps);
+			return Utils.compareDouble(dist, compareObject.dist, PRECISION);
 		} else {
             return c ? -1 : 1;
 		}
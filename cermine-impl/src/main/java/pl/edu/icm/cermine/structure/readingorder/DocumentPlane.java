@@ -18,17 +18,14 @@
 
 package pl.edu.icm.cermine.structure.readingorder;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import pl.edu.icm.cermine.structure.model.BxBounds;
 import pl.edu.icm.cermine.structure.model.BxObject;
 import pl.edu.icm.cermine.structure.model.BxZone;
 
 /**
  * A set-like data structure for objects placed on a plane. Can efficiently find objects in a certain rectangular area.
- * It maintains two parallel lists of objects, each of which is sorted by its x or y coordinate.
+ * Objects are stored in a dense grid of squares, each square holding the objects overlapping its area.
  *
  * @author Pawel Szostek (p.szostek@icm.edu.pl) @date 05.2012
  *
@@ -36,65 +33,54 @@ import pl.edu.icm.cermine.structure.model.BxZone;
 public class DocumentPlane {
 
     /**
-     * List of objects on the plane. Stored in a random order
+     * List of objects on the plane, in the order they were added. Removed objects are replaced with nulls, which are
+     * dropped when the list is compacted
      */
     private List<BxObject> objs;
+    /**
+     * Positions of the objects in the object list
+     */
+    private Map<BxObject, Integer> positions;
+    /**
+     * Number of nulls left in the object list by removed objects
+     */
+    private int removed;
     /**
      * Size of a grid square. If gridSize=50, then the plane is divided into squares of size 50. Each square contains
      * objects placed in a 50x50 area
      */
     private int gridSize;
     /**
-     * Redundant dictionary of objects on the plane. Allows efficient 2D space search. Keys are X-Y coordinates of a
-     * grid square. Single object can be stored under several keys (depending on its physical size). Grid squares are
-     * lazy-initialized.
+     * Redundant dictionary of objects on the plane. Allows efficient 2D space search. Square (x, y) is stored under
+     * index (y - minGridY) * gridWidth + (x - minGridX). Single object can be stored in several squares (depending
+     * on its physical size). Squares are lazy-initialized, the grid is extended when an object outside of it is added.
      */
-    private Map<GridXY, List<BxObject>> grid;
-
-    /**
-     * Representation of XY coordinates
-     */
-    private static class GridXY {
-
-        public int x;
-        public int y;
-
-        public GridXY(int x, int y) {
-            this.x = x;
-            this.y = y;
-        }
-
-        @Override
-        public int hashCode() {
-            return x * y;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == null || getClass() != obj.getClass()) {
-                return false;
-            }
-            GridXY comparedObj = (GridXY) obj;
-            if (x != comparedObj.x || y != comparedObj.y) {
-                return false;
-            }
-            return true;
-        }
-
-        @Override
-        public String toString() {
-            return "(" + x + "," + y + ")";
-        }
-    }; //class GridXY
+    private Set<BxObject>[] grid;
+    private int minGridX;
+    private int minGridY;
+    private int gridWidth;
+    private int gridHeight;
 
     public List<BxObject> getObjects() {
+        if (removed > 0) {
+            compact();
+        }
         return objs;
     }
 
     public DocumentPlane(List<BxZone> objectList, int gridSize) {
-        this.grid = new HashMap<GridXY, List<BxObject>>();
         this.objs = new ArrayList<BxObject>();
+        this.positions = new IdentityHashMap<BxObject, Integer>();
         this.gridSize = gridSize;
+        int x0 = Integer.MAX_VALUE, y0 = Integer.MAX_VALUE;
+        int x1 = Integer.MIN_VALUE, y1 = Integer.MIN_VALUE;
+        for (BxZone obj : objectList) {
+            x0 = Math.min(x0, firstSquareX(obj));
+            y0 = Math.min(y0, firstSquareY(obj));
+            x1 = Math.max(x1, lastSquareX(obj));
+            y1 = Math.max(y1, lastSquareY(obj));
+        }
+        allocateGrid(x0, y0, x1, y1);
         for (BxZone obj : objectList) {
             add(obj);
         }
@@ -104,13 +90,7 @@ public class DocumentPlane {
      * Looks for objects placed between obj1 and obj2 excluding them
      */
     public List<BxObject> findObjectsBetween(BxObject obj1, BxObject obj2) {
-        double x0 = Math.min(obj1.getX(), obj2.getX());
-        double y0 = Math.min(obj1.getY(), obj2.getY());
-        double x1 = Math.max(obj1.getX() + obj1.getWidth(), obj2.getX() + obj2.getWidth());
-        double y1 = Math.max(obj1.getY() + obj1.getHeight(), obj2.getY() + obj2.getHeight());
-        assert x1 >= x0 && y1 >= y0;
-        BxBounds searchBounds = new BxBounds(x0, y0, x1 - x0, y1 - y0);
-        List<BxObject> objsBetween = find(searchBounds);
+        List<BxObject> objsBetween = find(boundsBetween(obj1, obj2));
         /*
          * the rectangle area must contain at least obj1 and obj2
          */
@@ -124,62 +104,118 @@ public class DocumentPlane {
      * Checks if there is any object placed between obj1 and obj2
      */
     public boolean anyObjectsBetween(BxObject obj1, BxObject obj2) {
-        List<BxObject> lObjs = findObjectsBetween(obj1, obj2);
-        return !(lObjs.isEmpty());
+        BxBounds searchBounds = boundsBetween(obj1, obj2);
+        double x0 = searchBounds.getX();
+        double y0 = searchBounds.getY();
+        double y1 = searchBounds.getY() + searchBounds.getHeight();
+        double x1 = searchBounds.getX() + searchBounds.getWidth();
+        int lastX = Math.min(((int) (x1 + gridSize - 1)) / gridSize, minGridX + gridWidth);
+        int lastY = Math.min(((int) (y1 + gridSize - 1)) / gridSize, minGridY + gridHeight);
+        for (int y = Math.max((int) y0 / gridSize, minGridY); y < lastY; ++y) {
+            for (int x = Math.max((int) x0 / gridSize, minGridX); x < lastX; ++x) {
+                Set<BxObject> square = grid[squareIndex(x, y)];
+                if (square == null) {
+                    continue;
+                }
+                for (BxObject obj : square) {
+                    if (obj != obj1 && obj != obj2 && overlaps(obj, x0, y0, x1, y1)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
     }
 
     /**
      * Adds object to the plane
      */
     public DocumentPlane add(BxObject obj) {
-        int objsBefore = this.objs.size();
+        int objsBefore = size();
+        int firstX = firstSquareX(obj), firstY = firstSquareY(obj);
+        int lastX = lastSquareX(obj), lastY = lastSquareY(obj);
+        if (firstX <= lastX && firstY <= lastY) {
+            if (firstX < minGridX || firstY < minGridY
+                    || lastX >= minGridX + gridWidth || lastY >= minGridY + gridHeight) {
+                extendGrid(firstX, firstY, lastX, lastY);
+            }
+        }
         /*
          * iterate over grid squares
          */
-        for (int y = ((int) obj.getY()) / gridSize; y < ((int) (obj.getY() + obj.getHeight() + gridSize - 1)) / gridSize; ++y) {
-            for (int x = ((int) obj.getX()) / gridSize; x < ((int) (obj.getX() + obj.getWidth() + gridSize - 1)) / gridSize; ++x) {
-                GridXY xy = new GridXY(x, y);
-                if (!grid.keySet().contains(xy)) {
+        for (int y = firstY; y <= lastY; ++y) {
+            for (int x = firstX; x <= lastX; ++x) {
+                int index = squareIndex(x, y);
+                if (grid[index] == null) {
                     /*
-                     * add the non-existing key
+                     * add the non-existing square
                      */
-                    grid.put(xy, new ArrayList<BxObject>());
-                    grid.get(xy).add(obj);
-                    assert grid.get(xy).size() == 1;
-                } else {
-                    grid.get(xy).add(obj);
+                    grid[index] = new LinkedHashSet<BxObject>();
                 }
+                grid[index].add(obj);
             }
         }
+        positions.put(obj, objs.size());
         objs.add(obj);
         /*
          * size of the object list should be incremented
          */
-        assert objsBefore + 1 == objs.size();
+        assert objsBefore + 1 == size();
         /*
          * object list must contain the same number of objects as object dictionary
          */
-        assert objs.size() == elementsInGrid();
+        assert size() == elementsInGrid();
         return this;
     }
 
     public DocumentPlane remove(BxObject obj) {
+        int lastX = Math.min(lastSquareX(obj), minGridX + gridWidth - 1);
+        int lastY = Math.min(lastSquareY(obj), minGridY + gridHeight - 1);
         /*
          * iterate over grid squares
          */
-        for (int y = ((int) obj.getY()) / gridSize; y < ((int) (obj.getY() + obj.getHeight() + gridSize - 1)) / gridSize; ++y) {
-            for (int x = ((int) obj.getX()) / gridSize; x < ((int) (obj.getX() + obj.getWidth() + gridSize - 1)) / gridSize; ++x) {
-                GridXY xy = new GridXY(x, y);
-                if (grid.get(xy).contains(obj)) {
-                    grid.get(xy).remove(obj);
+        for (int y = Math.max(firstSquareY(obj), minGridY); y <= lastY; ++y) {
+            for (int x = Math.max(firstSquareX(obj), minGridX); x <= lastX; ++x) {
+                Set<BxObject> square = grid[squareIndex(x, y)];
+                if (square != null) {
+                    square.remove(obj);
                 }
             }
         }
-        objs.remove(obj);
-        assert objs.size() == elementsInGrid();
+        Integer position = positions.remove(obj);
+        if (position != null) {
+            objs.set(position, null);
+            removed++;
+            /*
+             * compact when at least half of the list is empty, so that removal costs amortized constant time
+             */
+            if (2 * removed >= objs.size()) {
+                compact();
+            }
+        }
+        assert size() == elementsInGrid();
         return this;
     }
 
+    /**
+     * Drops the nulls left by removed objects, keeping the order of the remaining objects
+     */
+    private void compact() {
+        List<BxObject> remaining = new ArrayList<BxObject>(objs.size() - removed);
+        for (BxObject obj : objs) {
+            if (obj != null) {
+                positions.put(obj, remaining.size());
+                remaining.add(obj);
+            }
+        }
+        objs = remaining;
+        removed = 0;
+    }
+
+    private int size() {
+        return objs.size() - removed;
+    }
+
     /**
      * Find objects within search bounds
      *
@@ -187,39 +223,34 @@ public class DocumentPlane {
      * @return list of objects in!side search rectangle
      */
     public List<BxObject> find(BxBounds searchBounds) {
-        List<BxObject> done = new ArrayList<BxObject>(); //contains already considered objects (wrt. optimization)
         List<BxObject> ret = new ArrayList<BxObject>();
         double x0 = searchBounds.getX();
         double y0 = searchBounds.getY();
         double y1 = searchBounds.getY() + searchBounds.getHeight();
         double x1 = searchBounds.getX() + searchBounds.getWidth();
+        int firstX = (int) x0 / gridSize;
+        int firstY = (int) y0 / gridSize;
+        int lastX = Math.min(((int) (x1 + gridSize - 1)) / gridSize, minGridX + gridWidth);
+        int lastY = Math.min(((int) (y1 + gridSize - 1)) / gridSize, minGridY + gridHeight);
         /*
          * iterate over grid squares
          */
-        for (int y = (int)y0 / gridSize; y < ((int) (y1 + gridSize - 1)) / gridSize; ++y) {
-            for (int x = (int)x0 / gridSize; x < ((int) (x1 + gridSize - 1)) / gridSize; ++x) {
-                GridXY xy = new GridXY(x, y);
-                if (!grid.containsKey(xy)) {
+        for (int y = Math.max(firstY, minGridY); y < lastY; ++y) {
+            for (int x = Math.max(firstX, minGridX); x < lastX; ++x) {
+                Set<BxObject> square = grid[squareIndex(x, y)];
+                if (square == null) {
                     continue;
                 }
-                for (BxObject obj : grid.get(xy)) {
-                    if (done.contains(obj)) /*
-                     * omit if already checked
-                     */ {
-                        continue;
-                    }
-                    /*
-                     * add to the checked objects
-                     */
-                    done.add(obj);
+                for (BxObject obj : square) {
                     /*
-                     * check if two objects overlap
+                     * omit if already checked in a previous square
                      */
-                    if (obj.getX() + obj.getWidth() <= x0 || x1 <= obj.getX()
-                            || obj.getY() + obj.getHeight() <= y0 || y1 <= obj.getY()) {
+                    if (x != Math.max(firstX, firstSquareX(obj)) || y != Math.max(firstY, firstSquareY(obj))) {
                         continue;
                     }
-                    ret.add(obj);
+                    if (overlaps(obj, x0, y0, x1, y1)) {
+                        ret.add(obj);
+                    }
                 }
             }
         }
@@ -230,12 +261,10 @@ public class DocumentPlane {
      * Count objects stored in objects dictionary
      */
     protected int elementsInGrid() {
-        List<BxObject> objs_ = new ArrayList<BxObject>();
-        for (GridXY coord : grid.keySet()) {
-            for (BxObject obj : grid.get(coord)) {
-                if (!objs_.contains(obj)) {
-                    objs_.add(obj);
-                }
+        Set<BxObject> objs_ = Collections.newSetFromMap(new IdentityHashMap<BxObject, Boolean>());
+        for (Set<BxObject> square : grid) {
+            if (square != null) {
+                objs_.addAll(square);
             }
         }
         return objs_.size();
@@ -246,9 +275,13 @@ public class DocumentPlane {
      */
     public String dump() {
         StringBuilder sb = new StringBuilder();
-        for (GridXY iter : grid.keySet()) {
-            sb.append(iter.toString()).append(" [");
-            for (BxObject obj : grid.get(iter)) {
+        for (int index = 0; index < grid.length; index++) {
+            if (grid[index] == null) {
+                continue;
+            }
+            sb.append("(").append(minGridX + index % gridWidth).append(",")
+                    .append(minGridY + index / gridWidth).append(") [");
+            for (BxObject obj : grid[index]) {
                 if (obj instanceof BxZoneGroup) {
                     BxZoneGroup group = (BxZoneGroup) obj;
                     sb.append(group.getLeftChild());
@@ -263,4 +296,63 @@ public class DocumentPlane {
         }
         return sb.toString();
     }
-};
+
+    private BxBounds boundsBetween(BxObject obj1, BxObject obj2) {
+        double x0 = Math.min(obj1.getX(), obj2.getX());
+        double y0 = Math.min(obj1.getY(), obj2.getY());
+        double x1 = Math.max(obj1.getX() + obj1.getWidth(), obj2.getX() + obj2.getWidth());
+        double y1 = Math.max(obj1.getY() + obj1.getHeight(), obj2.getY() + obj2.getHeight());
+        assert x1 >= x0 && y1 >= y0;
+        return new BxBounds(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    /**
+     * Checks if two objects overlap
+     */
+    private boolean overlaps(BxObject obj, double x0, double y0, double x1, double y1) {
+        return !(obj.getX() + obj.getWidth() <= x0 || x1 <= obj.getX()
+                || obj.getY() + obj.getHeight() <= y0 || y1 <= obj.getY());
+    }
+
+    private int firstSquareX(BxObject obj) {
+        return ((int) obj.getX()) / gridSize;
+    }
+
+    private int firstSquareY(BxObject obj) {
+        return ((int) obj.getY()) / gridSize;
+    }
+
+    private int lastSquareX(BxObject obj) {
+        return ((int) (obj.getX() + obj.getWidth() + gridSize - 1)) / gridSize - 1;
+    }
+
+    private int lastSquareY(BxObject obj) {
+        return ((int) (obj.getY() + obj.getHeight() + gridSize - 1)) / gridSize - 1;
+    }
+
+    private int squareIndex(int x, int y) {
+        return (y - minGridY) * gridWidth + (x - minGridX);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocateGrid(int x0, int y0, int x1, int y1) {
+        if (x0 > x1 || y0 > y1) {
+            x0 = x1 = y0 = y1 = 0;
+        }
+        minGridX = x0;
+        minGridY = y0;
+        gridWidth = x1 - x0 + 1;
+        gridHeight = y1 - y0 + 1;
+        grid = new Set[gridWidth * gridHeight];
+    }
+
+    private void extendGrid(int x0, int y0, int x1, int y1) {
+        Set<BxObject>[] oldGrid = grid;
+        int oldMinX = minGridX, oldMinY = minGridY, oldWidth = gridWidth;
+        allocateGrid(Math.min(x0, minGridX), Math.min(y0, minGridY),
+                Math.max(x1, minGridX + gridWidth - 1), Math.max(y1, minGridY + gridHeight - 1));
+        for (int index = 0; index < oldGrid.length; index++) {
+            grid[squareIndex(oldMinX + index % oldWidth, oldMinY + index / oldWidth)] = oldGrid[index];
+        }
+    }
+}
@@ -27,7 +27,7 @@ import java.util.*;
  */
 public class DisjointSets<E> implements Iterable<Set<E>> {
 
-    private Map<E, Entry<E>> map = new HashMap<E, Entry<E>>();
+    private Map<E, Entry<E>> map = new LinkedHashMap<E, Entry<E>>();
 
     /**
      * Constructs a new set of singletons.
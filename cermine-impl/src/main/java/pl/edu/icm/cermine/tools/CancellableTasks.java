@@ -0,0 +1,179 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pl.edu.icm.cermine.tools;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * The tasks run by a shared executor on behalf of a single document, such as
+ * the segmentation of its pages.
+ * <p>
+ * The results are waited for with {@link Future#get()}, which, unlike
+ * {@link ExecutorService#invokeAll(Collection)} on a fork/join pool, can be
+ * interrupted. If the waiting thread is interrupted or a task fails, all the
+ * tasks are cancelled: the tasks that have not started yet are skipped, and
+ * the threads running the others are interrupted. Fork/join tasks are not
+ * interrupted by {@link Future#cancel(boolean)}, so the tasks are wrapped to
+ * keep track of their threads.
+ *
+ * @param <T> the type of the results
+ * @author Dominika Tkaczyk
+ */
+public final class CancellableTasks<T> {
+
+    private final ExecutorService executor;
+
+    private final List<Task<T>> tasks = new ArrayList<Task<T>>();
+
+    private final List<Future<T>> futures = new ArrayList<Future<T>>();
+
+    public CancellableTasks(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Runs the tasks and waits for their results.
+     *
+     * @param <T> the type of the results
+     * @param executor executor
+     * @param tasks tasks
+     * @return the results, in the order of the tasks
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException if any of the tasks failed
+     */
+    public static <T> List<T> invokeAll(ExecutorService executor, Collection<? extends Callable<T>> tasks)
+            throws InterruptedException, ExecutionException {
+        CancellableTasks<T> cancellableTasks = new CancellableTasks<T>(executor);
+        for (Callable<T> task : tasks) {
+            cancellableTasks.submit(task);
+        }
+        return cancellableTasks.getAll();
+    }
+
+    /**
+     * Submits a task to the executor.
+     *
+     * @param callable task
+     * @throws RejectedExecutionException if the executor does not accept the task,
+     * in which case all the tasks are cancelled
+     */
+    public void submit(Callable<T> callable) {
+        Task<T> task = new Task<T>(callable);
+        try {
+            futures.add(executor.submit(task));
+        } catch (RejectedExecutionException ex) {
+            cancel();
+            throw ex;
+        }
+        tasks.add(task);
+    }
+
+    /**
+     * Waits for the results of all the submitted tasks.
+     *
+     * @return the results, in the order of the tasks
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException if any of the tasks failed
+     */
+    public List<T> getAll() throws InterruptedException, ExecutionException {
+        List<T> results = new ArrayList<T>(futures.size());
+        boolean completed = false;
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                cancel();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Cancels all the submitted tasks.
+     */
+    public void cancel() {
+        // all the tasks are marked before any is interrupted, otherwise the thread
+        // of an interrupted task could go on to a following task not marked yet
+        for (Task<T> task : tasks) {
+            task.cancel();
+        }
+        for (Task<T> task : tasks) {
+            task.interrupt();
+        }
+        for (Future<T> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * A task interrupting its thread when cancelled.
+     */
+    private static final class Task<T> implements Callable<T> {
+
+        private final Callable<T> callable;
+
+        private Thread runner;
+
+        private boolean cancelled;
+
+        Task(Callable<T> callable) {
+            this.callable = callable;
+        }
+
+        @Override
+        public T call() throws Exception {
+            synchronized (this) {
+                if (cancelled) {
+                    throw new CancellationException();
+                }
+                runner = Thread.currentThread();
+            }
+            try {
+                return callable.call();
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                    // the pool thread outlives the task, so the interrupt must not leak
+                    if (cancelled) {
+                        Thread.interrupted();
+                    }
+                }
+            }
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+        }
+
+        synchronized void interrupt() {
+            if (cancelled && runner != null) {
+                runner.interrupt();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools;
+
+import java.util.concurrent.*;
+import pl.edu.icm.cermine.exception.AnalysisException;
+
+/**
+ * Process-wide registry of read-only extraction models (SVM classifiers,
+ * CRF parsers, dictionaries). Every model is loaded at most once per key,
+ * even if several threads request it at the same time, and the loaded
+ * instance is shared by all the callers.
+ *
+ * Keys are typically the resource paths of the model files.
+ *
+ * @author Dominika Tkaczyk
+ */
+public final class ModelRegistry {
+
+    private static final ConcurrentMap<String, Future<Object>> MODELS =
+            new ConcurrentHashMap<String, Future<Object>>();
+
+    private ModelRegistry() {}
+
+    /**
+     * Loads a model.
+     *
+     * @param <T> model type
+     */
+    public interface ModelLoader<T> {
+
+        T load() throws AnalysisException;
+
+    }
+
+    /**
+     * Returns the model registered under the given key. If the model is not
+     * present yet, it is loaded using the given loader and registered.
+     *
+     * @param <T> model type
+     * @param key model key, e.g. the resource path of the model file
+     * @param type model class
+     * @param loader loader used if the model is not registered yet
+     * @return shared model instance
+     * @throws AnalysisException if the model cannot be loaded
+     */
+    public static <T> T getModel(String key, Class<T> type, final ModelLoader<? extends T> loader)
+            throws AnalysisException {
+        Future<Object> future = MODELS.get(key);
+        if (future == null) {
+            FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>() {
+                @Override
+                public Object call() throws AnalysisException {
+                    return loader.load();
+                }
+            });
+            future = MODELS.putIfAbsent(key, task);
+            if (future == null) {
+                future = task;
+                task.run();
+            }
+        }
+        try {
+            return type.cast(future.get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisException("Interrupted while loading model " + key, ex);
+        } catch (ExecutionException ex) {
+            MODELS.remove(key, future);
+            if (ex.getCause() instanceof AnalysisException) {
+                throw (AnalysisException) ex.getCause();
+            }
+            throw new AnalysisException("Cannot load model " + key, ex.getCause());
+        } catch (ClassCastException ex) {
+            throw new AnalysisException("Model " + key + " is not of type " + type.getName(), ex);
+        }
+    }
+
+    /**
+     * Checks whether the model with the given key is registered.
+     *
+     * @param key model key
+     * @return true if the model is registered
+     */
+    public static boolean contains(String key) {
+        return MODELS.containsKey(key);
+    }
+
+    /**
+     * Removes the model with the given key from the registry.
+     *
+     * @param key model key
+     */
+    public static void evict(String key) {
+        MODELS.remove(key);
+    }
+
+    /**
+     * Removes all the models from the registry.
+     */
+    public static void clear() {
+        MODELS.clear();
+    }
+
+}
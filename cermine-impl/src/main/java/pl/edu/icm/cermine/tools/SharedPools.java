@@ -0,0 +1,73 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Process-wide fork/join pools used by the components processing parts
+ * of a document in parallel, such as pages or references. There is one pool
+ * per parallelism level, shared by all the components.
+ *
+ * @author Dominika Tkaczyk
+ */
+public final class SharedPools {
+
+    private static final ConcurrentMap<Integer, ExecutorService> POOLS =
+            new ConcurrentHashMap<Integer, ExecutorService>();
+
+    private SharedPools() {}
+
+    /**
+     * Returns the process-wide pool of the given parallelism level.
+     * The pool threads are daemon threads, so the pool does not have to be shut down.
+     *
+     * @param parallelism the number of threads
+     * @return shared pool
+     */
+    public static ExecutorService getPool(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism level must be positive");
+        }
+        ExecutorService pool = POOLS.get(parallelism);
+        if (pool == null) {
+            ExecutorService newPool = new ForkJoinPool(parallelism);
+            pool = POOLS.putIfAbsent(parallelism, newPool);
+            if (pool == null) {
+                pool = newPool;
+            } else {
+                newPool.shutdown();
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Returns the process-wide pool with one thread per available processor.
+     *
+     * @return shared pool
+     */
+    public static ExecutorService getDefaultPool() {
+        return getPool(Runtime.getRuntime().availableProcessors());
+    }
+
+}
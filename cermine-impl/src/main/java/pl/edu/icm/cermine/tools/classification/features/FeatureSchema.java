@@ -0,0 +1,74 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.features;
+
+import java.util.*;
+
+/**
+ * Immutable list of feature names, mapping the names to the indices
+ * of feature values. A single schema is shared by all the feature vectors
+ * created by a feature vector builder.
+ *
+ * @author Dominika Tkaczyk
+ */
+public final class FeatureSchema {
+
+    private final List<String> names;
+    
+    private final Map<String, Integer> indices;
+
+    public FeatureSchema(List<String> names) {
+        this.names = Collections.unmodifiableList(new ArrayList<String>(names));
+        this.indices = new HashMap<String, Integer>();
+        for (int i = 0; i < names.size(); i++) {
+            if (!indices.containsKey(names.get(i))) {
+                indices.put(names.get(i), i);
+            }
+        }
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+
+    public String getName(int index) {
+        return names.get(index);
+    }
+
+    /**
+     * @param name feature name
+     * @return the index of the first feature with the given name, or -1 if
+     * there is no such feature
+     */
+    public int indexOf(String name) {
+        Integer index = indices.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return true if no feature name occurs more than once
+     */
+    public boolean hasUniqueNames() {
+        return indices.size() == names.size();
+    }
+}
@@ -18,98 +18,172 @@
 
 package pl.edu.icm.cermine.tools.classification.features;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
  * Simple feature vector.
+ * 
+ * The values are stored in an array. The names of the features are either
+ * given by a schema shared with other vectors (for example all the vectors
+ * created by the same builder), or, if features were added to the vector
+ * one by one, stored by the vector itself.
  *
  * @author Dominika Tkaczyk (d.tkaczyk@icm.edu.pl)
  * @author Pawel Szostek (p.szostek@icm.edu.pl)
  */
 public class FeatureVector {
 
-    private List<String> names = new ArrayList<>();
-    private List<Double> values = new ArrayList<>();
+    private static final int INITIAL_CAPACITY = 16;
+    
+    /** shared feature names, or null if the vector has its own names */
+    private FeatureSchema schema;
+    private List<String> names;
+    private Map<String, Integer> indices;
+    
+    private double[] values;
+    private int size;
 
+    public FeatureVector() {
+        this.names = new ArrayList<String>();
+        this.indices = new HashMap<String, Integer>();
+        this.values = new double[INITIAL_CAPACITY];
+    }
+    
+    /**
+     * Creates a vector of the features given by the schema, 
+     * with all values set to 0.
+     * 
+     * @param schema feature names
+     */
+    public FeatureVector(FeatureSchema schema) {
+        this.schema = schema;
+        this.values = new double[schema.size()];
+        this.size = schema.size();
+    }
     
     public int size() {
-    	return values.size();
+    	return size;
     }
     
     public List<String> getFeatureNames() {
-		return names;
+        if (schema != null) {
+            return schema.getNames();
+        }
+		return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * @return the schema of the vector's features, shared with other vectors,
+     * or a new schema if the features were added to the vector one by one
+     */
+    public FeatureSchema getSchema() {
+        if (schema == null) {
+            return new FeatureSchema(names);
+        }
+        return schema;
+    }
+
+    /**
+     * @param other feature vector
+     * @return true if both vectors share the same schema
+     */
+    public boolean sharesSchemaWith(FeatureVector other) {
+        return schema != null && schema == other.schema;
     }
     
     public double getValue(String name) {
-        if (!names.contains(name)) {
-            throw new IllegalArgumentException("Feature vector does not contain feature '" + name + "'!");
-        }
-        return values.get(names.indexOf(name));
+        return values[indexOf(name)];
     }
     
     public double getValue(int index) {
-        if (index < 0 || index >= values.size()) {
-            throw new IllegalArgumentException("Feature vector contains only " + size()+ " features!");
-        }
-        return values.get(index);
+        checkIndex(index);
+        return values[index];
     }
     
     public double[] getValues() {
-        double[] ret = new double[size()];
-        for (int i = 0; i < size(); i++) {
-            ret[i] = values.get(i);
-        }
-		return ret;
+		return Arrays.copyOf(values, size);
 	}
-    
 
     public void addFeature(String name, double value) {
+        if (schema != null) {
+            names = new ArrayList<String>(schema.getNames());
+            indices = new HashMap<String, Integer>();
+            for (int i = 0; i < names.size(); i++) {
+                if (!indices.containsKey(names.get(i))) {
+                    indices.put(names.get(i), i);
+                }
+            }
+            schema = null;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(INITIAL_CAPACITY, 2 * size));
+        }
+        if (!indices.containsKey(name)) {
+            indices.put(name, size);
+        }
     	names.add(name);
-    	values.add(value);
+    	values[size++] = value;
     }
     
     public void setValue(String name, double value) {
-        if (!names.contains(name)) {
-            throw new IllegalArgumentException("Feature vector does not contain feature '" + name + "'!");
-        }
-        values.add(names.indexOf(name), value);
-        values.remove(names.indexOf(name) + 1);
+        values[indexOf(name)] = value;
 	}
     
     public void setValue(int index, double value) {
-        if (index < 0 || index >= values.size()) {
-            throw new IllegalArgumentException("Feature vector contains only " + size()+ " features!");
-        }
-        values.add(index, value);
-        values.remove(index + 1);
+        checkIndex(index);
+        values[index] = value;
 	}
     
     public void setValues(double[] values) {
-        if (names.size() != values.length) {
-            throw new IllegalArgumentException("This feature vector has " + names.size() + " features!");
-        }
-        this.values.clear();
-        for (double value: values) {
-            this.values.add(value);
+        if (size != values.length) {
+            throw new IllegalArgumentException("This feature vector has " + size + " features!");
         }
+        System.arraycopy(values, 0, this.values, 0, size);
 	}
     
     public String dump() {
     	StringBuilder ret = new StringBuilder();
     	for(int idx=0; idx<size(); ++idx) {
-    		String name = names.get(idx);
+    		String name = getFeatureNames().get(idx);
     		String shortName = (name.length() > 18 ? name.substring(0, 18) : name);
-    		ret.append(String.format("%18s: %5.2f%n", shortName, values.get(idx)));
+    		ret.append(String.format("%18s: %5.2f%n", shortName, values[idx]));
     	}
     	return ret.toString();
     }
 
     public FeatureVector copy() {
-        FeatureVector ret = new FeatureVector();
-        ret.names = new ArrayList<>(names);
-        ret.values = new ArrayList<>(values);
+        FeatureVector ret;
+        if (schema != null) {
+            ret = new FeatureVector(schema);
+        } else {
+            ret = new FeatureVector();
+            ret.names = new ArrayList<String>(names);
+            ret.indices = new HashMap<String, Integer>(indices);
+            ret.values = new double[values.length];
+            ret.size = size;
+        }
+        System.arraycopy(values, 0, ret.values, 0, size);
         return ret;
 	}
+
+    private int indexOf(String name) {
+        int index;
+        if (schema != null) {
+            index = schema.indexOf(name);
+        } else {
+            Integer i = indices.get(name);
+            index = i == null ? -1 : i;
+        }
+        if (index < 0) {
+            throw new IllegalArgumentException("Feature vector does not contain feature '" + name + "'!");
+        }
+        return index;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException("Feature vector contains only " + size()+ " features!");
+        }
+    }
 	
 }
@@ -37,15 +37,44 @@ public class FeatureVectorBuilder<S, T> {
 
 	private List<FeatureCalculator<S, T>> featureCalculators = new ArrayList<FeatureCalculator<S, T>>();
 
+	private FeatureSchema schema;
+
 	public FeatureVector getFeatureVector(S object, T context) {
-		FeatureVector featureVector = new FeatureVector();
-		for (FeatureCalculator<S, T> fc : featureCalculators) {
-			featureVector.addFeature(fc.getFeatureName(),
-					fc.calculateFeatureValue(object, context));
+		FeatureVector featureVector = new FeatureVector(getSchema());
+		for (int i = 0; i < featureCalculators.size(); i++) {
+			featureVector.setValue(i, featureCalculators.get(i).calculateFeatureValue(object, context));
 		}
 		return featureVector;
 	}
 
+	/**
+	 * @return the schema shared by all the vectors created by the builder
+	 */
+	public FeatureSchema getSchema() {
+		FeatureSchema current = schema;
+		if (current == null || !isCurrent(current)) {
+			current = new FeatureSchema(getFeatureNames());
+			schema = current;
+		}
+		return current;
+	}
+
+	/**
+	 * Checks if the schema still names the features of the calculators, which
+	 * can be replaced in the list returned by {@link #getFeatureCalculators()}.
+	 */
+	private boolean isCurrent(FeatureSchema current) {
+		if (current.size() != featureCalculators.size()) {
+			return false;
+		}
+		for (int i = 0; i < featureCalculators.size(); i++) {
+			if (!current.getName(i).equals(featureCalculators.get(i).getFeatureName())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	public List<String> getFeatureNames() {
 		List<String> ret = new ArrayList<String>();
 		for (FeatureCalculator<S, T> fc : featureCalculators) {
@@ -65,6 +94,7 @@ public class FeatureVectorBuilder<S, T> {
 	public void setFeatureCalculators(
 			List<FeatureCalculator<S, T>> featureCalculators) {
 		this.featureCalculators = featureCalculators;
+		this.schema = null;
 	}
 
 }
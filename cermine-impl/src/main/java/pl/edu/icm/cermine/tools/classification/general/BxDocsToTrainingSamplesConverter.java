@@ -20,6 +20,7 @@ package pl.edu.icm.cermine.tools.classification.general;
 
 import java.util.*;
 import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.metadata.zoneclassification.features.ZoneFeatureContext;
 import pl.edu.icm.cermine.metadata.zoneclassification.tools.ZoneClassificationUtils;
 import pl.edu.icm.cermine.structure.model.*;
 import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
@@ -44,13 +45,18 @@ public abstract class BxDocsToTrainingSamplesConverter {
                 ZoneClassificationUtils.mapZoneLabels(doc, labelMap);
             }
 
-            for (BxPage page : doc.getPages()) {
-                for (BxZone zone : page.getZones()) {
-                    FeatureVector featureVector = vectorBuilder.getFeatureVector(zone, page);
-                    TrainingSample<BxZoneLabel> element = new TrainingSample<BxZoneLabel>(featureVector, zone.getLabel());
-                    element.setData(zone.toText());
-                    trainingList.add(element);
+            ZoneFeatureContext context = ZoneFeatureContext.open();
+            try {
+                for (BxPage page : doc.getPages()) {
+                    for (BxZone zone : page.getZones()) {
+                        FeatureVector featureVector = vectorBuilder.getFeatureVector(zone, page);
+                        TrainingSample<BxZoneLabel> element = new TrainingSample<BxZoneLabel>(featureVector, zone.getLabel());
+                        element.setData(zone.toText());
+                        trainingList.add(element);
+                    }
                 }
+            } finally {
+                context.close();
             }
             System.out.println("Converting document: "+(++i));
         }
@@ -66,12 +72,17 @@ public abstract class BxDocsToTrainingSamplesConverter {
                 ZoneClassificationUtils.mapZoneLabels(doc, labelMap);
             }
 
-            for (BxPage page : doc.getPages()) {
-                for (BxZone zone : page.getZones()) {
-                    FeatureVector featureVector = vectorBuilder.getFeatureVector(zone, page);
-                    TrainingSample<BxZoneLabel> element = new TrainingSample<BxZoneLabel>(featureVector, zone.getLabel());
-                    trainingList.add(element);
+            ZoneFeatureContext context = ZoneFeatureContext.open();
+            try {
+                for (BxPage page : doc.getPages()) {
+                    for (BxZone zone : page.getZones()) {
+                        FeatureVector featureVector = vectorBuilder.getFeatureVector(zone, page);
+                        TrainingSample<BxZoneLabel> element = new TrainingSample<BxZoneLabel>(featureVector, zone.getLabel());
+                        trainingList.add(element);
+                    }
                 }
+            } finally {
+                context.close();
             }
         }
         return trainingList;
@@ -27,6 +27,14 @@ import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
  */
 public interface FeatureVectorScaler {
     FeatureVector scaleFeatureVector(FeatureVector fv);
+    
+    /**
+     * Scales the values of a feature vector without creating a new vector.
+     * 
+     * @param fv feature vector
+     * @param scaledValues the array the scaled values are written to
+     */
+    void scaleFeatureVector(FeatureVector fv, double[] scaledValues);
     <A extends Enum<A>> void calculateFeatureLimits(List<TrainingSample<A>> trainingElements);
     void saveRangeFile(String path) throws IOException;
 }
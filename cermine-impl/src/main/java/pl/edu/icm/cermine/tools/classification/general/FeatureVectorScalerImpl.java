@@ -54,6 +54,11 @@ public class FeatureVectorScalerImpl implements FeatureVectorScaler {
 		}
 		return strategy.scaleFeatureVector(scaledLowerBound, scaledUpperBound, limits, fv);
 	}
+
+    @Override
+	public void scaleFeatureVector(FeatureVector fv, double[] scaledValues) {
+		strategy.scaleFeatureVector(scaledLowerBound, scaledUpperBound, limits, fv, scaledValues);
+	}
 	
 	public void setFeatureLimits(List<FeatureLimits> featureLimits) {
 		this.limits = featureLimits.toArray(new FeatureLimits[featureLimits.size()]);
@@ -88,6 +93,14 @@ public class FeatureVectorScalerImpl implements FeatureVectorScaler {
 		return limits;
 	}
 
+	public double getScaledLowerBound() {
+		return scaledLowerBound;
+	}
+
+	public double getScaledUpperBound() {
+		return scaledUpperBound;
+	}
+
     @Override
     public void saveRangeFile(String path) throws IOException {
         BufferedWriter fp_save = null;
@@ -31,6 +31,13 @@ public class FeatureVectorScalerNoOp implements FeatureVectorScaler {
         return fv;
     }
 
+    @Override
+    public void scaleFeatureVector(FeatureVector fv, double[] scaledValues) {
+        for (int i = 0; i < fv.size(); i++) {
+            scaledValues[i] = fv.getValue(i);
+        }
+    }
+
     @Override
     public <A extends Enum<A>> void calculateFeatureLimits(List<TrainingSample<A>> trainingElements) {
         // intentionally left blank
@@ -25,8 +25,17 @@ public class LinearScaling implements ScalingStrategy {
 	@Override
 	public FeatureVector scaleFeatureVector(double scaledLowerBound,
 			double scaledUpperBound, FeatureLimits[] limits, FeatureVector fv) {
+		FeatureVector newVector = new FeatureVector(fv.getSchema());
+		double[] scaledValues = new double[fv.size()];
+		scaleFeatureVector(scaledLowerBound, scaledUpperBound, limits, fv, scaledValues);
+		newVector.setValues(scaledValues);
+		return newVector;
+	}
+
+	@Override
+	public void scaleFeatureVector(double scaledLowerBound, double scaledUpperBound,
+            FeatureLimits[] limits, FeatureVector fv, double[] scaledValues) {
 		final double EPS = 0.00001;
-		FeatureVector newVector = new FeatureVector();
 		
 		int featureIdx = 0;
 		for(String name: fv.getFeatureNames()) {
@@ -34,21 +43,20 @@ public class LinearScaling implements ScalingStrategy {
 			// featureLower = a*v_min + b
 			// featureUpper = a*v_max + b
 			if(Math.abs(limits[featureIdx].getMax()-limits[featureIdx].getMin()) < EPS) {
-				newVector.addFeature(name, 1.0);
+				scaledValues[featureIdx] = 1.0;
 			} else {
-				Double featureValue = fv.getValue(name);
+				double featureValue = fv.getValue(name);
 				double a = (scaledUpperBound-scaledLowerBound)/(limits[featureIdx].getMax()-limits[featureIdx].getMin());
 				double b = scaledLowerBound-a*limits[featureIdx].getMin();
 				
 				featureValue = a*featureValue+b; 
 
-				if (featureValue.isNaN()) {
+				if (Double.isNaN(featureValue)) {
 					throw new RuntimeException("Feature value is set to NaN: "+name);
 				}
-				newVector.addFeature(name, featureValue);
+				scaledValues[featureIdx] = featureValue;
 			}
 			++featureIdx;
 		}
-		return newVector;
 	}
 }
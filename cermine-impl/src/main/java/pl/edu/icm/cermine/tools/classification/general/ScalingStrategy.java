@@ -23,4 +23,7 @@ import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
 public interface ScalingStrategy {
 	FeatureVector scaleFeatureVector(double scaledLowerBound,
 			double scaledUpperBound, FeatureLimits[] limits, FeatureVector fv);
+
+	void scaleFeatureVector(double scaledLowerBound, double scaledUpperBound, 
+            FeatureLimits[] limits, FeatureVector fv, double[] scaledValues);
 }
@@ -31,6 +31,13 @@ public class FeatureVectorEuclideanMetric implements FeatureVectorDistanceMetric
     @Override
     public double getDistance(FeatureVector vector1, FeatureVector vector2) {
         double sum = 0;
+        if (vector1.sharesSchemaWith(vector2) && vector1.getSchema().hasUniqueNames()) {
+            for (int i = 0; i < vector1.size(); i++) {
+                sum += Math.pow(vector1.getValue(i) - vector2.getValue(i), 2);
+            }
+            return Math.sqrt(sum);
+        }
+
         List<String> featureNames1 = vector1.getFeatureNames();
         List<String> featureNames2 = vector2.getFeatureNames();
         
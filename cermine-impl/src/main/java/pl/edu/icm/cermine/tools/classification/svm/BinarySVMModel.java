@@ -0,0 +1,360 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.svm;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+import org.apache.commons.io.IOUtils;
+import pl.edu.icm.cermine.tools.classification.general.*;
+
+/**
+ * An SVM model together with its feature ranges, stored in a compact binary
+ * format. Unlike the libsvm text model and the range file, the binary model
+ * does not have to be parsed: the file is memory-mapped and its numeric 
+ * sections are read with bulk reads.
+ * <p>
+ * The format (big-endian) consists of a header: magic number, format version, 
+ * payload length and CRC32 checksum of the payload, followed by the payload: 
+ * the SVM parameters, class labels, decision function coefficients, 
+ * the support vectors as a dense matrix and the feature limits of the scaler.
+ * 
+ * @author Dominika Tkaczyk
+ */
+public final class BinarySVMModel {
+    
+    /** The suffix of the binary model resources, appended to the text model path. */
+    public static final String FILE_SUFFIX = ".bin";
+    
+    static final int MAGIC = 0x4353564D;
+    static final int VERSION = 1;
+    
+    private static final int HEADER_LENGTH = 24;
+    private static final int CHECKSUM_BUFFER_SIZE = 8192;
+    
+    private final svm_model model;
+    
+    /** feature limits, or null if the features are not scaled */
+    private final FeatureLimits[] limits;
+    private final double scaledLowerBound;
+    private final double scaledUpperBound;
+    
+    /**
+     * Creates a binary model.
+     * 
+     * @param model libsvm model
+     * @param scaler the scaler used with the model, either FeatureVectorScalerImpl 
+     * with linear scaling or FeatureVectorScalerNoOp
+     */
+    public BinarySVMModel(svm_model model, FeatureVectorScaler scaler) {
+        this.model = model;
+        if (scaler instanceof FeatureVectorScalerImpl) {
+            FeatureVectorScalerImpl scalerImpl = (FeatureVectorScalerImpl) scaler;
+            this.limits = scalerImpl.getLimits();
+            this.scaledLowerBound = scalerImpl.getScaledLowerBound();
+            this.scaledUpperBound = scalerImpl.getScaledUpperBound();
+        } else if (scaler instanceof FeatureVectorScalerNoOp) {
+            this.limits = null;
+            this.scaledLowerBound = 0;
+            this.scaledUpperBound = 1;
+        } else {
+            throw new IllegalArgumentException("Unsupported scaler: " + scaler);
+        }
+    }
+    
+    private BinarySVMModel(svm_model model, FeatureLimits[] limits, double scaledLowerBound, double scaledUpperBound) {
+        this.model = model;
+        this.limits = limits;
+        this.scaledLowerBound = scaledLowerBound;
+        this.scaledUpperBound = scaledUpperBound;
+    }
+
+    public svm_model getModel() {
+        return model;
+    }
+    
+    /**
+     * @return a new scaler using the model's feature limits
+     */
+    public FeatureVectorScaler createScaler() {
+        if (limits == null) {
+            return new FeatureVectorScalerNoOp();
+        }
+        List<FeatureLimits> limitList = new ArrayList<FeatureLimits>(limits.length);
+        for (FeatureLimits limit : limits) {
+            limitList.add(new FeatureLimits(limit.getMin(), limit.getMax()));
+        }
+        FeatureVectorScalerImpl scaler = new FeatureVectorScalerImpl(limits.length, scaledLowerBound, scaledUpperBound);
+        scaler.setStrategy(new LinearScaling());
+        scaler.setFeatureLimits(limitList);
+        return scaler;
+    }
+    
+    /**
+     * Writes the model in the binary format.
+     * 
+     * @param out output stream, not closed by the method
+     * @throws IOException 
+     */
+    public void write(OutputStream out) throws IOException {
+        if (model.label == null || model.nSV == null) {
+            throw new IllegalArgumentException("Only classification models can be stored in the binary format");
+        }
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        
+        svm_parameter param = model.param;
+        payload.writeInt(param.svm_type);
+        payload.writeInt(param.kernel_type);
+        payload.writeInt(param.degree);
+        payload.writeDouble(param.gamma);
+        payload.writeDouble(param.coef0);
+        
+        int classCount = model.nr_class;
+        int svCount = model.l;
+        int dimension = 0;
+        for (svm_node[] sv : model.SV) {
+            for (svm_node node : sv) {
+                dimension = Math.max(dimension, node.index + 1);
+            }
+        }
+        payload.writeInt(classCount);
+        payload.writeInt(svCount);
+        payload.writeInt(dimension);
+        
+        int pairCount = classCount * (classCount - 1) / 2;
+        writeInts(payload, model.label, classCount);
+        writeInts(payload, model.nSV, classCount);
+        writeDoubles(payload, model.rho, pairCount);
+        payload.writeBoolean(model.probA != null);
+        if (model.probA != null) {
+            writeDoubles(payload, model.probA, pairCount);
+            writeDoubles(payload, model.probB, pairCount);
+        }
+        for (int i = 0; i < classCount - 1; i++) {
+            writeDoubles(payload, model.sv_coef[i], svCount);
+        }
+        double[] dense = new double[dimension];
+        for (svm_node[] sv : model.SV) {
+            for (int k = 0; k < dimension; k++) {
+                dense[k] = 0;
+            }
+            for (svm_node node : sv) {
+                dense[node.index] = node.value;
+            }
+            writeDoubles(payload, dense, dimension);
+        }
+        
+        payload.writeInt(limits == null ? -1 : limits.length);
+        if (limits != null) {
+            payload.writeDouble(scaledLowerBound);
+            payload.writeDouble(scaledUpperBound);
+            for (FeatureLimits limit : limits) {
+                payload.writeDouble(limit.getMin());
+                payload.writeDouble(limit.getMax());
+            }
+        }
+        payload.flush();
+        
+        byte[] bytes = payloadBytes.toByteArray();
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes);
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeLong(bytes.length);
+        header.writeLong(checksum.getValue());
+        header.write(bytes);
+        header.flush();
+    }
+    
+    /**
+     * Reads a model from a buffer. The buffer's position is not changed.
+     * 
+     * @param buffer model data
+     * @return model
+     * @throws IOException if the data is not a valid binary model
+     */
+    public static BinarySVMModel read(ByteBuffer buffer) throws IOException {
+        ByteBuffer data = buffer.slice();
+        if (data.remaining() < HEADER_LENGTH || data.getInt() != MAGIC) {
+            throw new IOException("Not a binary SVM model");
+        }
+        int version = data.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary SVM model version: " + version);
+        }
+        long length = data.getLong();
+        long expectedChecksum = data.getLong();
+        if (length > data.remaining()) {
+            throw new IOException("Binary SVM model is truncated");
+        }
+        data.limit(data.position() + (int) length);
+        if (checksum(data.duplicate()) != expectedChecksum) {
+            throw new IOException("Binary SVM model checksum mismatch");
+        }
+        
+        try {
+            svm_model model = new svm_model();
+            model.param = new svm_parameter();
+            model.param.svm_type = data.getInt();
+            model.param.kernel_type = data.getInt();
+            model.param.degree = data.getInt();
+            model.param.gamma = data.getDouble();
+            model.param.coef0 = data.getDouble();
+
+            int classCount = data.getInt();
+            int svCount = data.getInt();
+            int dimension = data.getInt();
+            int pairCount = classCount * (classCount - 1) / 2;
+            model.nr_class = classCount;
+            model.l = svCount;
+            model.label = readInts(data, classCount);
+            model.nSV = readInts(data, classCount);
+            model.rho = readDoubles(data, pairCount);
+            if (data.get() != 0) {
+                model.probA = readDoubles(data, pairCount);
+                model.probB = readDoubles(data, pairCount);
+            }
+            model.sv_coef = new double[Math.max(classCount - 1, 0)][];
+            for (int i = 0; i < classCount - 1; i++) {
+                model.sv_coef[i] = readDoubles(data, svCount);
+            }
+            model.SV = new svm_node[svCount][dimension];
+            double[] dense = new double[dimension];
+            for (int i = 0; i < svCount; i++) {
+                data.asDoubleBuffer().get(dense);
+                data.position(data.position() + 8 * dimension);
+                for (int k = 0; k < dimension; k++) {
+                    svm_node node = new svm_node();
+                    node.index = k;
+                    node.value = dense[k];
+                    model.SV[i][k] = node;
+                }
+            }
+
+            int limitCount = data.getInt();
+            if (limitCount < 0) {
+                return new BinarySVMModel(model, null, 0, 1);
+            }
+            double scaledLowerBound = data.getDouble();
+            double scaledUpperBound = data.getDouble();
+            double[] limitValues = readDoubles(data, 2 * limitCount);
+            FeatureLimits[] limits = new FeatureLimits[limitCount];
+            for (int i = 0; i < limitCount; i++) {
+                limits[i] = new FeatureLimits(limitValues[2*i], limitValues[2*i+1]);
+            }
+            return new BinarySVMModel(model, limits, scaledLowerBound, scaledUpperBound);
+        } catch (RuntimeException ex) {
+            throw new IOException("Corrupted binary SVM model", ex);
+        }
+    }
+    
+    /**
+     * Reads a model from a stream.
+     * 
+     * @param stream model stream, not closed by the method
+     * @return model
+     * @throws IOException if the data is not a valid binary model
+     */
+    public static BinarySVMModel read(InputStream stream) throws IOException {
+        return read(ByteBuffer.wrap(IOUtils.toByteArray(stream)));
+    }
+    
+    /**
+     * Reads a model from a memory-mapped file.
+     * 
+     * @param path model file path
+     * @return model
+     * @throws IOException if the file cannot be read or is not a valid binary model
+     */
+    public static BinarySVMModel map(String path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer);
+        } finally {
+            file.close();
+        }
+    }
+    
+    /**
+     * Checks whether a file starts with the binary model's magic number.
+     * 
+     * @param path file path
+     * @return true if the file is a binary model
+     * @throws IOException 
+     */
+    public static boolean isBinaryModel(String path) throws IOException {
+        DataInputStream stream = new DataInputStream(new FileInputStream(path));
+        try {
+            return stream.readInt() == MAGIC;
+        } catch (EOFException ex) {
+            return false;
+        } finally {
+            stream.close();
+        }
+    }
+    
+    private static long checksum(ByteBuffer data) {
+        CRC32 checksum = new CRC32();
+        byte[] chunk = new byte[CHECKSUM_BUFFER_SIZE];
+        while (data.hasRemaining()) {
+            int length = Math.min(chunk.length, data.remaining());
+            data.get(chunk, 0, length);
+            checksum.update(chunk, 0, length);
+        }
+        return checksum.getValue();
+    }
+    
+    private static void writeInts(DataOutputStream out, int[] values, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+    
+    private static void writeDoubles(DataOutputStream out, double[] values, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.writeDouble(values[i]);
+        }
+    }
+    
+    private static int[] readInts(ByteBuffer data, int count) {
+        int[] values = new int[count];
+        data.asIntBuffer().get(values);
+        data.position(data.position() + 4 * count);
+        return values;
+    }
+    
+    private static double[] readDoubles(ByteBuffer data, int count) {
+        double[] values = new double[count];
+        data.asDoubleBuffer().get(values);
+        data.position(data.position() + 8 * count);
+        return values;
+    }
+    
+}
@@ -0,0 +1,389 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.svm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+
+/**
+ * A libsvm classification model with the support vectors packed into
+ * a contiguous, dense matrix. The kernel values are computed in tight loops
+ * over the matrix rather than over the support vectors' nodes, in exactly 
+ * the same order of operations as in libsvm, so the decisions are identical
+ * to those of {@link svm#svm_predict(svm_model, svm_node[])}.
+ * 
+ * Only classification models (C-SVC and nu-SVC) with linear, polynomial, 
+ * RBF or sigmoid kernels can be compiled. Instances that cannot be represented
+ * exactly in the dense form (with indices outside of the support vectors' range
+ * or non-finite values) are passed to libsvm.
+ * 
+ * @author Dominika Tkaczyk
+ */
+public final class CompiledSVMModel {
+    
+    /** The number of support vectors processed together for a batch of instances. */
+    private static final int SV_BLOCK_SIZE = 128;
+    
+    private final svm_model model;
+    
+    private final int kernelType;
+    private final double gamma;
+    private final double coef0;
+    private final int degree;
+    
+    private final int dimension;
+    private final int svCount;
+    private final double[] supportVectors;
+    
+    private final int classCount;
+    private final int[] start;
+    private final int[] nSV;
+    private final double[][] coefficients;
+    private final double[] rho;
+    private final int[] labels;
+    
+    private final ThreadLocal<Workspace> workspaces = new ThreadLocal<Workspace>() {
+        @Override
+        protected Workspace initialValue() {
+            return new Workspace();
+        }
+    };
+    
+    private CompiledSVMModel(svm_model model, int dimension) {
+        this.model = model;
+        svm_parameter param = model.param;
+        this.kernelType = param.kernel_type;
+        this.gamma = param.gamma;
+        this.coef0 = param.coef0;
+        this.degree = param.degree;
+        
+        this.dimension = dimension;
+        this.svCount = model.l;
+        this.supportVectors = new double[svCount * dimension];
+        for (int i = 0; i < svCount; i++) {
+            for (svm_node node : model.SV[i]) {
+                supportVectors[i * dimension + node.index] = node.value;
+            }
+        }
+        
+        this.classCount = model.nr_class;
+        this.nSV = model.nSV.clone();
+        this.start = new int[classCount];
+        for (int i = 1; i < classCount; i++) {
+            start[i] = start[i-1] + nSV[i-1];
+        }
+        this.coefficients = new double[model.sv_coef.length][];
+        for (int i = 0; i < coefficients.length; i++) {
+            coefficients[i] = model.sv_coef[i].clone();
+        }
+        this.rho = model.rho.clone();
+        this.labels = model.label.clone();
+    }
+    
+    /**
+     * Compiles a libsvm model.
+     * 
+     * @param model libsvm model
+     * @return compiled model, or null if the model is not supported
+     */
+    public static CompiledSVMModel compile(svm_model model) {
+        if (model == null || model.param == null || model.label == null || model.nSV == null) {
+            return null;
+        }
+        int svmType = model.param.svm_type;
+        if (svmType != svm_parameter.C_SVC && svmType != svm_parameter.NU_SVC) {
+            return null;
+        }
+        int kernelType = model.param.kernel_type;
+        if (kernelType != svm_parameter.LINEAR && kernelType != svm_parameter.POLY
+                && kernelType != svm_parameter.RBF && kernelType != svm_parameter.SIGMOID) {
+            return null;
+        }
+        int dimension = 0;
+        for (svm_node[] sv : model.SV) {
+            int lastIndex = -1;
+            for (svm_node node : sv) {
+                if (node.index <= lastIndex || Double.isNaN(node.value) || Double.isInfinite(node.value)) {
+                    return null;
+                }
+                lastIndex = node.index;
+            }
+            dimension = Math.max(dimension, lastIndex + 1);
+        }
+        return new CompiledSVMModel(model, dimension);
+    }
+    
+    /**
+     * Loads and compiles a model stored in the libsvm text format.
+     * 
+     * @param reader model reader
+     * @return compiled model
+     * @throws IOException 
+     */
+    public static CompiledSVMModel load(BufferedReader reader) throws IOException {
+        svm_model model = svm.svm_load_model(reader);
+        CompiledSVMModel compiled = compile(model);
+        if (compiled == null) {
+            throw new IllegalArgumentException("The SVM model cannot be compiled: unsupported SVM or kernel type");
+        }
+        return compiled;
+    }
+
+    /**
+     * @return the original libsvm model
+     */
+    public svm_model getModel() {
+        return model;
+    }
+    
+    /**
+     * Predicts the label of an instance.
+     * 
+     * @param instance instance
+     * @return predicted label, the same as returned by libsvm
+     */
+    public double predict(svm_node[] instance) {
+        double[] prediction = new double[1];
+        predict(new svm_node[][]{instance}, 1, prediction);
+        return prediction[0];
+    }
+    
+    /**
+     * Predicts the labels of the first count instances. The kernel values
+     * are computed for blocks of support vectors against the whole batch.
+     * 
+     * @param instances instances
+     * @param count the number of instances to classify
+     * @param predictions the array the predicted labels are written to
+     */
+    public void predict(svm_node[][] instances, int count, double[] predictions) {
+        Workspace workspace = workspaces.get();
+        double[] dense = workspace.dense(count * dimension);
+        double[] kernelValues = workspace.kernelValues(count * svCount);
+        
+        int[] rows = workspace.rows(count);
+        int denseCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (toDense(instances[i], dense, denseCount * dimension)) {
+                rows[denseCount++] = i;
+            } else {
+                predictions[i] = svm.svm_predict(model, instances[i]);
+            }
+        }
+        
+        for (int blockStart = 0; blockStart < svCount; blockStart += SV_BLOCK_SIZE) {
+            int blockEnd = Math.min(svCount, blockStart + SV_BLOCK_SIZE);
+            for (int r = 0; r < denseCount; r++) {
+                computeKernels(dense, r * dimension, kernelValues, r * svCount, blockStart, blockEnd);
+            }
+        }
+        
+        int[] votes = workspace.votes(classCount);
+        for (int r = 0; r < denseCount; r++) {
+            predictions[rows[r]] = decide(kernelValues, r * svCount, votes);
+        }
+    }
+    
+    private boolean toDense(svm_node[] instance, double[] dense, int offset) {
+        for (int k = 0; k < dimension; k++) {
+            dense[offset + k] = 0;
+        }
+        int lastIndex = -1;
+        for (svm_node node : instance) {
+            if (node.index <= lastIndex || node.index >= dimension
+                    || Double.isNaN(node.value) || Double.isInfinite(node.value)) {
+                return false;
+            }
+            dense[offset + node.index] = node.value;
+            lastIndex = node.index;
+        }
+        return true;
+    }
+    
+    /**
+     * Computes the kernel values of an instance against a range of support vectors.
+     * Four support vectors are processed at once, each one with its own sum 
+     * accumulated in the same order as in libsvm.
+     */
+    private void computeKernels(double[] x, int xOffset, double[] kernelValues, int kernelOffset, 
+            int from, int to) {
+        double[] y = supportVectors;
+        boolean rbf = kernelType == svm_parameter.RBF;
+        int sv = from;
+        for (; sv + 4 <= to; sv += 4) {
+            int y0 = sv * dimension;
+            int y1 = y0 + dimension;
+            int y2 = y1 + dimension;
+            int y3 = y2 + dimension;
+            double sum0 = 0;
+            double sum1 = 0;
+            double sum2 = 0;
+            double sum3 = 0;
+            if (rbf) {
+                for (int k = 0; k < dimension; k++) {
+                    double xk = x[xOffset + k];
+                    double d0 = xk - y[y0 + k];
+                    double d1 = xk - y[y1 + k];
+                    double d2 = xk - y[y2 + k];
+                    double d3 = xk - y[y3 + k];
+                    sum0 += d0 * d0;
+                    sum1 += d1 * d1;
+                    sum2 += d2 * d2;
+                    sum3 += d3 * d3;
+                }
+            } else {
+                for (int k = 0; k < dimension; k++) {
+                    double xk = x[xOffset + k];
+                    sum0 += xk * y[y0 + k];
+                    sum1 += xk * y[y1 + k];
+                    sum2 += xk * y[y2 + k];
+                    sum3 += xk * y[y3 + k];
+                }
+            }
+            kernelValues[kernelOffset + sv] = kernel(sum0);
+            kernelValues[kernelOffset + sv + 1] = kernel(sum1);
+            kernelValues[kernelOffset + sv + 2] = kernel(sum2);
+            kernelValues[kernelOffset + sv + 3] = kernel(sum3);
+        }
+        for (; sv < to; sv++) {
+            int y0 = sv * dimension;
+            double sum = 0;
+            if (rbf) {
+                for (int k = 0; k < dimension; k++) {
+                    double d = x[xOffset + k] - y[y0 + k];
+                    sum += d * d;
+                }
+            } else {
+                for (int k = 0; k < dimension; k++) {
+                    sum += x[xOffset + k] * y[y0 + k];
+                }
+            }
+            kernelValues[kernelOffset + sv] = kernel(sum);
+        }
+    }
+    
+    /**
+     * Computes the kernel value from the dot product of the vectors 
+     * or, for RBF kernel, from their squared distance.
+     */
+    private double kernel(double sum) {
+        switch (kernelType) {
+            case svm_parameter.RBF:
+                return Math.exp(-gamma * sum);
+            case svm_parameter.POLY:
+                return powi(gamma * sum + coef0, degree);
+            case svm_parameter.SIGMOID:
+                return Math.tanh(gamma * sum + coef0);
+            default:
+                return sum;
+        }
+    }
+    
+    private static double powi(double base, int times) {
+        double tmp = base;
+        double ret = 1.0;
+        for (int t = times; t > 0; t /= 2) {
+            if (t % 2 == 1) {
+                ret *= tmp;
+            }
+            tmp = tmp * tmp;
+        }
+        return ret;
+    }
+    
+    private double decide(double[] kernelValues, int offset, int[] votes) {
+        for (int i = 0; i < classCount; i++) {
+            votes[i] = 0;
+        }
+        int p = 0;
+        for (int i = 0; i < classCount; i++) {
+            for (int j = i + 1; j < classCount; j++) {
+                double sum = 0;
+                int si = start[i];
+                int sj = start[j];
+                double[] coef1 = coefficients[j-1];
+                double[] coef2 = coefficients[i];
+                for (int k = 0; k < nSV[i]; k++) {
+                    sum += coef1[si+k] * kernelValues[offset + si + k];
+                }
+                for (int k = 0; k < nSV[j]; k++) {
+                    sum += coef2[sj+k] * kernelValues[offset + sj + k];
+                }
+                sum -= rho[p];
+                if (sum > 0) {
+                    ++votes[i];
+                } else {
+                    ++votes[j];
+                }
+                p++;
+            }
+        }
+        int maxIdx = 0;
+        for (int i = 1; i < classCount; i++) {
+            if (votes[i] > votes[maxIdx]) {
+                maxIdx = i;
+            }
+        }
+        return labels[maxIdx];
+    }
+    
+    /**
+     * Per-thread arrays, grown when needed and reused between predictions.
+     */
+    private static final class Workspace {
+        
+        private double[] dense = new double[0];
+        private double[] kernelValues = new double[0];
+        private int[] rows = new int[0];
+        private int[] votes = new int[0];
+        
+        double[] dense(int size) {
+            if (dense.length < size) {
+                dense = new double[size];
+            }
+            return dense;
+        }
+        
+        double[] kernelValues(int size) {
+            if (kernelValues.length < size) {
+                kernelValues = new double[size];
+            }
+            return kernelValues;
+        }
+        
+        int[] rows(int size) {
+            if (rows.length < size) {
+                rows = new int[size];
+            }
+            return rows;
+        }
+        
+        int[] votes(int size) {
+            if (votes.length < size) {
+                votes = new int[size];
+            }
+            return votes;
+        }
+    }
+
+}
@@ -18,10 +18,10 @@
 
 package pl.edu.icm.cermine.tools.classification.svm;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -73,12 +73,22 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
 	protected svm_parameter param;
 	protected svm_problem problem;
 	protected svm_model model;
+	private CompiledSVMModel compiledModel;
 	
 	protected Class<E> enumClassObj;
+	private final E[] labels;
+	
+	private final ThreadLocal<NodeBuffer> nodeBuffers = new ThreadLocal<NodeBuffer>() {
+        @Override
+        protected NodeBuffer initialValue() {
+            return new NodeBuffer();
+        }
+    };
 	
 	public SVMClassifier(FeatureVectorBuilder<S, T> featureVectorBuilder, Class<E> enumClassObj) {
 		this.featureVectorBuilder = featureVectorBuilder;
 		this.enumClassObj = enumClassObj;
+		this.labels = enumClassObj.getEnumConstants();
 		int dimensions = featureVectorBuilder.size();
 		
 		double scaledLowerBound = 0.0;
@@ -122,28 +132,83 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
 		scaler.calculateFeatureLimits(trainingElements);
 		problem = buildDatasetForTraining(trainingElements);
 		model = libsvm.svm.svm_train(problem, param);
+		compiledModel = CompiledSVMModel.compile(model);
 	}
 	
 	public E predictLabel(S object, T context) {
-		svm_node[] instance = buildDatasetForClassification(object, context);
-		int predictedVal = (int)svm.svm_predict(model, instance);
-		return enumClassObj.getEnumConstants()[predictedVal];
+		return predictLabel(featureVectorBuilder.getFeatureVector(object, context));
 	}
 	
 	public E predictLabel(TrainingSample<E> sample) {
-		svm_node[] instance = buildDatasetForClassification(sample.getFeatureVector());
-		int predictedVal = (int)svm.svm_predict(model, instance);
-		return enumClassObj.getEnumConstants()[predictedVal];
+		return predictLabel(sample.getFeatureVector());
+	}
+	
+	protected E predictLabel(FeatureVector fv) {
+		NodeBuffer buffer = nodeBuffers.get();
+		svm_node[][] instances = buffer.fill(0, fv, scaler);
+		double[] predictions = buffer.predictions(1);
+		predictValues(instances, 1, predictions);
+		return labels[(int)predictions[0]];
+	}
+	
+	/**
+	 * Predicts the labels of a batch of objects sharing the same context.
+	 * The objects' features are written to per-thread node buffers reused
+	 * between calls, and the labels are predicted for the whole batch at once.
+	 * 
+	 * @param objects classified objects
+	 * @param context the objects' context
+	 * @return predicted labels, in the order of the objects
+	 */
+	public List<E> predictLabels(List<S> objects, T context) {
+		List<E> predicted = new ArrayList<E>(objects.size());
+		if (objects.isEmpty()) {
+			return predicted;
+		}
+		NodeBuffer buffer = nodeBuffers.get();
+		svm_node[][] instances = null;
+		int count = 0;
+		for (S object : objects) {
+			instances = buffer.fill(count++, featureVectorBuilder.getFeatureVector(object, context), scaler);
+		}
+		double[] predictions = buffer.predictions(count);
+		predictValues(instances, count, predictions);
+		for (int i = 0; i < count; i++) {
+			predicted.add(labels[(int)predictions[i]]);
+		}
+		return predicted;
+	}
+	
+	/**
+	 * Computes the model's decisions for the first count instances.
+	 * The instances are owned by the calling thread's buffer and reused,
+	 * they must not be referenced after the method returns. If the model
+	 * could be compiled, the kernel values are computed by the compiled model
+	 * for the whole batch.
+	 * 
+	 * @param instances scaled instances
+	 * @param count the number of instances to classify
+	 * @param predictions the array the decisions are written to
+	 */
+	protected void predictValues(svm_node[][] instances, int count, double[] predictions) {
+		CompiledSVMModel compiled = compiledModel;
+		if (compiled != null && compiled.getModel() == model) {
+			compiled.predict(instances, count, predictions);
+			return;
+		}
+		for (int i = 0; i < count; i++) {
+			predictions[i] = svm.svm_predict(model, instances[i]);
+		}
 	}
 
     public Map<E, Double> predictProbabilities(S object, T context) {
         svm_node[] instance = buildDatasetForClassification(object, context);
-        double[] probEstimates = new double[enumClassObj.getEnumConstants().length];
+        double[] probEstimates = new double[labels.length];
         svm.svm_predict_probability(model, instance, probEstimates);
 
         Map<E, Double> result = new HashMap<E, Double>();
         for (int i = 0; i < probEstimates.length; ++i) {
-            result.put(enumClassObj.getEnumConstants()[model.label[i]], probEstimates[i]);
+            result.put(labels[model.label[i]], probEstimates[i]);
         }
         return result;
     }
@@ -174,13 +239,11 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
 	protected svm_node[] buildDatasetForClassification(FeatureVector fv) {
 		FeatureVector scaled = scaler.scaleFeatureVector(fv);
 		svm_node[] ret = new svm_node[featureVectorBuilder.size()];
-		int featureIdx = 0;
-		for (double val: scaled.getValues()) {
+		for (int featureIdx = 0; featureIdx < scaled.size(); featureIdx++) {
 			svm_node cur = new svm_node();
 			cur.index = featureIdx;
-			cur.value = val;
+			cur.value = scaled.getValue(featureIdx);
 			ret[featureIdx] = cur;
-			++featureIdx;
 		}
 		return ret;
 	}
@@ -229,7 +292,42 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
 		return weights;
 	}
 
+	/**
+	 * Returns the resources read by {@link #loadModelFromResources(String, String)}:
+	 * the binary model if it is available, the model and range files otherwise.
+	 * 
+	 * @param modelFilePath model resource path
+	 * @param rangeFilePath range resource path
+	 * @return resource paths
+	 */
+	public static List<String> getModelResources(String modelFilePath, String rangeFilePath) {
+		String binaryFilePath = modelFilePath + BinarySVMModel.FILE_SUFFIX;
+		if (SVMClassifier.class.getResource(binaryFilePath) != null) {
+			return Collections.singletonList(binaryFilePath);
+		}
+		return Arrays.asList(modelFilePath, rangeFilePath);
+	}
+
+	/**
+	 * Loads the model from resources. If the binary version of the model
+	 * (with the path suffixed by {@link BinarySVMModel#FILE_SUFFIX}) is available,
+	 * it is used instead of the text model and range files.
+	 * 
+	 * @param modelFilePath model resource path
+	 * @param rangeFilePath range resource path
+	 * @throws IOException 
+	 */
 	public void loadModelFromResources(String modelFilePath, String rangeFilePath) throws IOException {
+		InputStream binaryIS = this.getClass().getResourceAsStream(modelFilePath + BinarySVMModel.FILE_SUFFIX);
+		if (binaryIS != null) {
+			try {
+				loadModel(BinarySVMModel.read(binaryIS));
+			} finally {
+				binaryIS.close();
+			}
+			return;
+		}
+		
 		InputStreamReader modelISR = new InputStreamReader(this.getClass().getResourceAsStream(modelFilePath));
 		BufferedReader modelFile = new BufferedReader(modelISR);
 		
@@ -238,7 +336,19 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
 		loadModelFromFile(modelFile, rangeFile);
 	}
 
+	/**
+	 * Loads the model from files. If the model file is a binary model,
+	 * it is memory-mapped and the range file is ignored.
+	 * 
+	 * @param modelFilePath model file path
+	 * @param rangeFilePath range file path, or null if the features are not scaled
+	 * @throws IOException 
+	 */
 	public void loadModelFromFile(String modelFilePath, String rangeFilePath) throws IOException {
+		if (BinarySVMModel.isBinaryModel(modelFilePath)) {
+			loadModel(BinarySVMModel.map(modelFilePath));
+			return;
+		}
 		BufferedReader modelFile = new BufferedReader(new InputStreamReader(new FileInputStream(modelFilePath)));
 		BufferedReader rangeFile = null;
         if (rangeFilePath != null) {
@@ -249,21 +359,31 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
 	
 	public void loadModelFromFile(BufferedReader modelFile, BufferedReader rangeFile) throws IOException {
         if (rangeFile == null) {
-            this.scaler = new FeatureVectorScalerNoOp();
+            setScaler(new FeatureVectorScalerNoOp());
         } else {
-            FeatureVectorScalerImpl lScaler =
-                    FeatureVectorScalerImpl.fromRangeReader(rangeFile);
+            setScaler(FeatureVectorScalerImpl.fromRangeReader(rangeFile));
+		}
 
+		this.model = svm.svm_load_model(modelFile);
+		this.compiledModel = CompiledSVMModel.compile(model);
+	}
+	
+	public void loadModel(BinarySVMModel binaryModel) {
+		setScaler(binaryModel.createScaler());
+		this.model = binaryModel.getModel();
+		this.compiledModel = CompiledSVMModel.compile(model);
+	}
+	
+	private void setScaler(FeatureVectorScaler scaler) {
+		if (scaler instanceof FeatureVectorScalerImpl) {
+			FeatureVectorScalerImpl lScaler = (FeatureVectorScalerImpl) scaler;
             if (lScaler.getLimits().length != featureVectorBuilder.size()) {
                 throw new IllegalArgumentException("Supplied .range file has "
                         + "wrong number of features (got " + lScaler.getLimits().length
                         + ", expected " + featureVectorBuilder.size() + " )");
             }
-
-			this.scaler = lScaler;
 		}
-
-		this.model = svm.svm_load_model(modelFile);
+		this.scaler = scaler;
 	}
 
 	public void saveModel(String modelPath) throws IOException {
@@ -271,6 +391,15 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
 		svm.svm_save_model(modelPath, model);
 	}
 	
+	public void saveBinaryModel(String modelPath) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(modelPath));
+		try {
+			new BinarySVMModel(model, scaler).write(out);
+		} finally {
+			out.close();
+		}
+	}
+	
 	public void printWeigths(FeatureVectorBuilder<BxZone, BxPage> vectorBuilder) {
 		List<String> fnames = featureVectorBuilder.getFeatureNames();
 		Iterator<String> namesIt = fnames.iterator();
@@ -289,4 +418,47 @@ public abstract class SVMClassifier<S, T, E extends Enum<E>> {
 		this.param = param;
 	}
 
+    /**
+     * Per-thread instance matrix, grown when needed and reused between predictions.
+     */
+    private static final class NodeBuffer {
+        
+        private svm_node[][] instances = new svm_node[0][];
+        private double[] values = new double[0];
+        private double[] predictions = new double[0];
+        
+        svm_node[][] fill(int row, FeatureVector fv, FeatureVectorScaler scaler) {
+            if (row >= instances.length) {
+                svm_node[][] grown = new svm_node[Math.max(row + 1, 2 * instances.length)][];
+                System.arraycopy(instances, 0, grown, 0, instances.length);
+                instances = grown;
+            }
+            int size = fv.size();
+            if (values.length < size) {
+                values = new double[size];
+            }
+            svm_node[] instance = instances[row];
+            if (instance == null || instance.length != size) {
+                instance = new svm_node[size];
+                for (int i = 0; i < size; i++) {
+                    instance[i] = new svm_node();
+                    instance[i].index = i;
+                }
+                instances[row] = instance;
+            }
+            scaler.scaleFeatureVector(fv, values);
+            for (int i = 0; i < size; i++) {
+                instance[i].value = values[i];
+            }
+            return instances;
+        }
+        
+        double[] predictions(int count) {
+            if (predictions.length < count) {
+                predictions = new double[Math.max(count, 2 * predictions.length)];
+            }
+            return predictions;
+        }
+    }
+
 }
@@ -0,0 +1,187 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Dominika Tkaczyk
+ */
+public class BatchExtractorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<File> createFiles(int count) throws IOException {
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < count; i++) {
+            files.add(folder.newFile("doc" + i + ".pdf"));
+        }
+        return files;
+    }
+
+    private BatchExtractor createBatchExtractor(int workers) {
+        BatchExtractor batchExtractor = new BatchExtractor(workers);
+        batchExtractor.setLog(new PrintStream(new NullOutputStream()));
+        return batchExtractor;
+    }
+
+    @Test
+    public void testAllFilesProcessed() throws Exception {
+        List<File> files = createFiles(50);
+        final Set<File> processed = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+        BatchExtractor batchExtractor = createBatchExtractor(4);
+        batchExtractor.setQueueCapacity(1);
+        BatchExtractor.Summary summary = batchExtractor.process(files, new BatchExtractor.FileProcessor() {
+            @Override
+            public void process(File file) {
+                assertTrue(processed.add(file));
+            }
+        });
+
+        assertEquals(50, processed.size());
+        assertEquals(50, summary.getSucceeded());
+        assertEquals(50, summary.getFinished());
+    }
+
+    @Test
+    public void testFailuresAndTimeouts() throws Exception {
+        List<File> files = createFiles(6);
+
+        BatchExtractor batchExtractor = createBatchExtractor(3);
+        batchExtractor.setTimeout(200);
+        BatchExtractor.Summary summary = batchExtractor.process(files, new BatchExtractor.FileProcessor() {
+            @Override
+            public void process(File file) throws Exception {
+                if (file.getName().equals("doc1.pdf")) {
+                    throw new IOException("broken file");
+                }
+                if (file.getName().equals("doc2.pdf")) {
+                    Thread.sleep(10000);
+                }
+            }
+        });
+
+        assertEquals(4, summary.getSucceeded());
+        assertEquals(1, summary.getFailed());
+        assertEquals(1, summary.getTimedOut());
+    }
+
+    @Test
+    public void testErrorsRecordedAsFailures() throws Exception {
+        List<File> files = createFiles(4);
+        File progressFile = new File(folder.getRoot(), "progress");
+
+        BatchExtractor batchExtractor = createBatchExtractor(2);
+        batchExtractor.setProgressFile(progressFile);
+        BatchExtractor.Summary summary = batchExtractor.process(files, new BatchExtractor.FileProcessor() {
+            @Override
+            public void process(File file) {
+                if (file.getName().equals("doc1.pdf")) {
+                    throw new StackOverflowError();
+                }
+                if (file.getName().equals("doc2.pdf")) {
+                    throw new IllegalStateException("broken file");
+                }
+            }
+        });
+
+        assertEquals(2, summary.getSucceeded());
+        assertEquals(2, summary.getFailed());
+        assertEquals(4, FileUtils.readLines(progressFile).size());
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        List<File> files = createFiles(10);
+        File progressFile = new File(folder.getRoot(), "progress");
+
+        BatchExtractor batchExtractor = createBatchExtractor(2);
+        batchExtractor.setProgressFile(progressFile);
+        BatchExtractor.Summary summary = batchExtractor.process(files.subList(0, 4), new BatchExtractor.FileProcessor() {
+            @Override
+            public void process(File file) {
+            }
+        });
+        assertEquals(4, summary.getSucceeded());
+        assertEquals(4, FileUtils.readLines(progressFile).size());
+
+        final Set<File> processed = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+        summary = batchExtractor.process(files, new BatchExtractor.FileProcessor() {
+            @Override
+            public void process(File file) {
+                processed.add(file);
+            }
+        });
+        assertEquals(4, summary.getSkipped());
+        assertEquals(6, summary.getSucceeded());
+        assertEquals(new HashSet<File>(files.subList(4, 10)), processed);
+        assertEquals(10, FileUtils.readLines(progressFile).size());
+    }
+
+    @Test
+    public void testResumeRetriesFailures() throws Exception {
+        List<File> files = createFiles(6);
+        File progressFile = new File(folder.getRoot(), "progress");
+
+        BatchExtractor batchExtractor = createBatchExtractor(2);
+        batchExtractor.setProgressFile(progressFile);
+        batchExtractor.setTimeout(200);
+        BatchExtractor.Summary summary = batchExtractor.process(files, new BatchExtractor.FileProcessor() {
+            @Override
+            public void process(File file) throws Exception {
+                if (file.getName().equals("doc1.pdf")) {
+                    throw new IOException("broken file");
+                }
+                if (file.getName().equals("doc2.pdf")) {
+                    Thread.sleep(10000);
+                }
+            }
+        });
+        assertEquals(1, summary.getFailed());
+        assertEquals(1, summary.getTimedOut());
+
+        final Set<File> processed = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+        summary = batchExtractor.process(files, new BatchExtractor.FileProcessor() {
+            @Override
+            public void process(File file) {
+                processed.add(file);
+            }
+        });
+        assertEquals(4, summary.getSkipped());
+        assertEquals(2, summary.getSucceeded());
+        assertEquals(new HashSet<File>(files.subList(1, 3)), processed);
+    }
+
+}
@@ -0,0 +1,89 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pl.edu.icm.cermine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import pl.edu.icm.cermine.instrumentation.ExtractionListener;
+import pl.edu.icm.cermine.instrumentation.ExtractionStage;
+import pl.edu.icm.cermine.instrumentation.StageEvent;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+
+/**
+ * @author Dominika Tkaczyk
+ */
+public class StageTimerTest {
+
+    @Test
+    public void testFinishedStage() {
+        RecordingListener listener = new RecordingListener();
+        List<ExtractionListener> listeners = Collections.<ExtractionListener>singletonList(listener);
+        BxDocument document = new BxDocument();
+
+        try (StageTimer timer = StageTimer.start(listeners, ExtractionStage.SEGMENTATION, "doc", document)) {
+            timer.finish(document);
+        }
+
+        assertEquals(1, listener.started.size());
+        assertEquals(1, listener.finished.size());
+        assertEquals("doc", listener.finished.get(0).getDocumentId());
+        assertFalse(listener.finished.get(0).isFailed());
+    }
+
+    @Test
+    public void testFailedStage() {
+        RecordingListener listener = new RecordingListener();
+        List<ExtractionListener> listeners = Collections.<ExtractionListener>singletonList(listener);
+        BxDocument document = new BxDocument();
+
+        try (StageTimer timer = StageTimer.start(listeners, ExtractionStage.SEGMENTATION, "doc", document)) {
+            throw new IllegalStateException("stage failed");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+
+        assertEquals(1, listener.started.size());
+        assertEquals(1, listener.finished.size());
+        StageEvent event = listener.finished.get(0);
+        assertEquals(ExtractionStage.SEGMENTATION, event.getStage());
+        assertEquals("doc", event.getDocumentId());
+        assertTrue(event.isFailed());
+    }
+
+    private static class RecordingListener implements ExtractionListener {
+
+        private final List<StageEvent> started = new ArrayList<StageEvent>();
+
+        private final List<StageEvent> finished = new ArrayList<StageEvent>();
+
+        @Override
+        public void stageStarted(StageEvent event) {
+            started.add(event);
+        }
+
+        @Override
+        public void stageFinished(StageEvent event) {
+            finished.add(event);
+        }
+
+    }
+
+}
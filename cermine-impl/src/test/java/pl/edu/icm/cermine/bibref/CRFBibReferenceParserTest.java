@@ -18,7 +18,19 @@
 
 package pl.edu.icm.cermine.bibref;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
+import org.junit.Test;
 import pl.edu.icm.cermine.bibref.model.BibEntry;
 import pl.edu.icm.cermine.exception.AnalysisException;
 
@@ -30,6 +42,8 @@ public class CRFBibReferenceParserTest extends AbstractBibReferenceParserTest {
     
     private double minPercentage = 0.9;
     
+    private static final String REFS_FILE = "/pl/edu/icm/cermine/bibref/refs.txt";
+    
     private CRFBibReferenceParser parser;
     
     @Before
@@ -37,6 +51,39 @@ public class CRFBibReferenceParserTest extends AbstractBibReferenceParserTest {
         parser = CRFBibReferenceParser.getInstance();
     }
 
+    @Test
+    public void testParseBibReferences() throws AnalysisException, IOException {
+        List<String> texts = new ArrayList<>();
+        texts.addAll(IOUtils.readLines(getClass().getResourceAsStream(REFS_FILE), "UTF-8"));
+        texts.add("");
+        texts.add(StringUtils.repeat("a ", 1500));
+        texts.addAll(IOUtils.readLines(getClass().getResourceAsStream(REFS_FILE), "UTF-8"));
+        
+        final AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(3, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                threads.incrementAndGet();
+                return new Thread(runnable);
+            }
+        });
+        try {
+            List<BibEntry> parallel = parser.withExecutor(executor).parseBibReferences(texts);
+            // the default model is a snapshot, so the batches are parsed by the executor
+            assertTrue(threads.get() > 0);
+            List<BibEntry> sequential = parser.withExecutor(null).parseBibReferences(texts);
+            assertEquals(texts.size(), parallel.size());
+            assertEquals(texts.size(), sequential.size());
+            for (int i = 0; i < texts.size(); i++) {
+                String expected = parser.parseBibReference(texts.get(i)).toBibTeX();
+                assertEquals(expected, parallel.get(i).toBibTeX());
+                assertEquals(expected, sequential.get(i).toBibTeX());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Override
     protected BibReferenceParser<BibEntry> getParser() {
         return parser;
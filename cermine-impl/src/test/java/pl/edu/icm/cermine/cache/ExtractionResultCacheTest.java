@@ -0,0 +1,327 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pl.edu.icm.cermine.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jdom.Element;
+import org.jdom.output.XMLOutputter;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pl.edu.icm.cermine.ComponentConfiguration;
+import pl.edu.icm.cermine.ExtractionContext;
+import pl.edu.icm.cermine.ExtractionPipeline;
+import pl.edu.icm.cermine.bibref.CRFBibReferenceParser;
+import pl.edu.icm.cermine.bibref.model.BibEntry;
+import pl.edu.icm.cermine.content.cleaning.ContentCleaner;
+import pl.edu.icm.cermine.content.model.DocumentContentStructure;
+import pl.edu.icm.cermine.content.model.DocumentParagraph;
+import pl.edu.icm.cermine.content.references.BracketType;
+import pl.edu.icm.cermine.content.references.InTextReference;
+import pl.edu.icm.cermine.content.references.InTextReferenceStyle;
+import pl.edu.icm.cermine.content.references.InTextReferenceType;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.exception.CermineException;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.ITextCharacterExtractor;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentReader;
+
+/**
+ * @author Dominika Tkaczyk
+ */
+public class ExtractionResultCacheTest {
+
+    private static final String STRUCTURE_FILE = "/pl/edu/icm/cermine/structure/001.xml";
+    private static final String PDF_FILE = "/pl/edu/icm/cermine/test2.pdf";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testKeys() {
+        byte[] pdf = {1, 2, 3};
+        String key = CacheKeys.compute(pdf, "config");
+        assertEquals(key, CacheKeys.compute(new byte[]{1, 2, 3}, "config"));
+        assertFalse(key.equals(CacheKeys.compute(pdf, "other config")));
+        assertFalse(key.equals(CacheKeys.compute(new byte[]{1, 2, 4}, "config")));
+        assertTrue(key.matches("[0-9a-f]{64}-[0-9a-f]{16}"));
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", CacheKeys.sha256(new byte[0]));
+    }
+
+    @Test
+    public void testMemoryCacheEvictsLeastRecentlyUsed() {
+        MemoryExtractionResultCache cache = new MemoryExtractionResultCache(2);
+        cache.put("a", result("a"));
+        cache.put("b", result("b"));
+        assertNotNull(cache.get("a"));
+        cache.put("c", result("c"));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals("a", cache.get("a").getJats().getText());
+        assertEquals("c", cache.get("c").getJats().getText());
+    }
+
+    @Test
+    public void testMemoryCacheCopiesResults() throws IOException, TransformationException {
+        MemoryExtractionResultCache cache = new MemoryExtractionResultCache(1);
+        CachedExtraction result = resultWithReferences("a", readStructure());
+        cache.put("a", result);
+        result.getJats().setText("changed");
+        result.getEndReferences().get(0).setText("changed");
+
+        CachedExtraction cached = cache.get("a");
+        cached.getJats().setText("changed");
+        cached.getDocument().getPages().clear();
+        cached.getEndReferences().clear();
+        cached.getContentStructure().getParagraphs().get(0).addInTextReference(null);
+
+        cached = cache.get("a");
+        assertEquals("a", cached.getJats().getText());
+        assertEquals(readStructure().toText(), cached.getDocument().toText());
+        assertReferences(cached);
+    }
+
+    @Test
+    public void testDiskCacheRoundTrip() throws IOException, TransformationException {
+        BxDocument document = readStructure();
+        Element jats = new Element("article").addContent(new Element("front").setText("zażółć"));
+
+        DiskExtractionResultCache cache = new DiskExtractionResultCache(folder.newFolder("cache"), true);
+        assertNull(cache.get("key"));
+        CachedExtraction result = resultWithReferences("a", document);
+        cache.put("key", new CachedExtraction(jats, document, result.getContentStructure(),
+                result.getEndReferences(), result.getInTextReferences()));
+
+        CachedExtraction cached = new DiskExtractionResultCache(cache.getDirectory(), true).get("key");
+        assertEquals("zażółć", cached.getJats().getChildText("front"));
+        assertEquals(document.asZones().size(), cached.getDocument().asZones().size());
+        assertEquals(document.toText(), cached.getDocument().toText());
+        assertReferences(cached);
+
+        cached = new DiskExtractionResultCache(cache.getDirectory(), false).get("key");
+        assertNull(cached.getDocument());
+        assertReferences(cached);
+    }
+
+    @Test
+    public void testDiskCacheIgnoresBrokenEntries() throws IOException {
+        DiskExtractionResultCache cache = new DiskExtractionResultCache(folder.newFolder("cache"), false);
+        FileUtils.writeStringToFile(new File(cache.getDirectory(), "key.xml"), "<article><fro");
+        assertNull(cache.get("key"));
+        cache.put("key", result("a"));
+        assertEquals("a", cache.get("key").getJats().getText());
+    }
+
+    @Test
+    public void testPipelineSkipsCachedDocuments() throws CermineException, IOException {
+        byte[] pdf;
+        try (InputStream stream = ExtractionResultCacheTest.class.getResourceAsStream(PDF_FILE)) {
+            pdf = IOUtils.toByteArray(stream);
+        }
+        ComponentConfiguration config = new ComponentConfiguration();
+        MemoryExtractionResultCache cache = new MemoryExtractionResultCache(10);
+        String key = CacheKeys.compute(pdf, config.getFingerprint());
+        cache.put(key, result("stale"));
+        config.setResultCache(cache);
+        ExtractionPipeline pipeline = new ExtractionPipeline(config);
+
+        // the results without the references are extracted again
+        ExtractionContext context = pipeline.extract(new ByteArrayInputStream(pdf));
+        assertFalse(context.isCached());
+        assertEquals(0, cache.getStatistics().getHits());
+        assertEquals(1, cache.getStatistics().getMisses());
+
+        cache.put(key, resultWithReferences("cached", null));
+        context = pipeline.extract(new ByteArrayInputStream(pdf));
+        assertTrue(context.isCached());
+        assertEquals("cached", context.getJats().getText());
+        assertReferences(context.getEndReferences(), context.getInTextReferences());
+        assertEquals(1, cache.getStatistics().getHits());
+        assertEquals(1, cache.getStatistics().getMisses());
+        assertEquals(pdf.length, cache.getStatistics().getBytesSaved());
+    }
+
+    @Test
+    public void testPipelineCacheHitMatchesMiss() throws CermineException, IOException {
+        byte[] pdf;
+        try (InputStream stream = ExtractionResultCacheTest.class.getResourceAsStream(PDF_FILE)) {
+            pdf = IOUtils.toByteArray(stream);
+        }
+        ComponentConfiguration config = new ComponentConfiguration();
+        config.setResultCache(new MemoryExtractionResultCache(10));
+        ExtractionPipeline pipeline = new ExtractionPipeline(config);
+
+        ExtractionContext miss = pipeline.extract(new ByteArrayInputStream(pdf));
+        ExtractionContext hit = pipeline.extract(new ByteArrayInputStream(pdf));
+        assertFalse(miss.isCached());
+        assertTrue(hit.isCached());
+
+        XMLOutputter outputter = new XMLOutputter();
+        assertEquals(outputter.outputString(miss.getJats()), outputter.outputString(hit.getJats()));
+        assertEquals(miss.getDocument().toText(), hit.getDocument().toText());
+        assertEquals(miss.getContentStructure().getAllParagraphTexts(),
+                hit.getContentStructure().getAllParagraphTexts());
+        assertEquals(miss.getContentStructure().getAllHeadingTexts(),
+                hit.getContentStructure().getAllHeadingTexts());
+        assertEquals(miss.getEndReferences(), hit.getEndReferences());
+        assertFalse(miss.getInTextReferences().isEmpty());
+        assertEquals(miss.getInTextReferences().size(), hit.getInTextReferences().size());
+        for (int i = 0; i < miss.getInTextReferences().size(); i++) {
+            InTextReference expected = miss.getInTextReferences().get(i);
+            InTextReference actual = hit.getInTextReferences().get(i);
+            assertEquals(expected.getParentParagraph().getText(), actual.getParentParagraph().getText());
+            assertEquals(expected.getStartPosition(), actual.getStartPosition());
+            assertEquals(expected.getEndPosition(), actual.getEndPosition());
+            assertEquals(expected.getEndReferences(), actual.getEndReferences());
+        }
+        assertNotSame(miss.getDocument(), hit.getDocument());
+        assertNotSame(miss.getEndReferences(), hit.getEndReferences());
+    }
+
+    @Test
+    public void testFingerprintDependsOnModels() throws CermineException, IOException {
+        ComponentConfiguration config = new ComponentConfiguration();
+        String fingerprint = config.getFingerprint();
+        assertEquals(fingerprint, new ComponentConfiguration().getFingerprint());
+        config.setDocumentSegmenterConcurrency(1);
+        config.setResultCache(new MemoryExtractionResultCache(1));
+        assertEquals(fingerprint, config.getFingerprint());
+        ITextCharacterExtractor characterExtractor = new ITextCharacterExtractor();
+        config.setCharacterExtractor(characterExtractor);
+        assertEquals(fingerprint, config.getFingerprint());
+        characterExtractor.setPagesLimits(3, 2);
+        assertFalse(fingerprint.equals(config.getFingerprint()));
+        config.setCharacterExtractor(new ITextCharacterExtractor());
+        config.setContentCleaner(new ContentCleaner() {});
+        assertFalse(fingerprint.equals(config.getFingerprint()));
+
+        // the models loaded from streams differing only in the range of the features
+        byte[] model = resource("/pl/edu/icm/cermine/content/filtering.model");
+        byte[] range = resource("/pl/edu/icm/cermine/content/filtering.range");
+        config.setContentFilter(new ByteArrayInputStream(model), new ByteArrayInputStream(range));
+        fingerprint = config.getFingerprint();
+        config.setContentFilter(new ByteArrayInputStream(model), new ByteArrayInputStream(range));
+        assertEquals(fingerprint, config.getFingerprint());
+        byte[] otherRange = new String(range, StandardCharsets.US_ASCII)
+                .replace("2.697094314877391", "2.7").getBytes(StandardCharsets.US_ASCII);
+        assertFalse(Arrays.equals(range, otherRange));
+        config.setContentFilter(new ByteArrayInputStream(model), new ByteArrayInputStream(otherRange));
+        assertFalse(fingerprint.equals(config.getFingerprint()));
+    }
+
+    private static byte[] resource(String name) throws IOException {
+        try (InputStream is = ExtractionResultCacheTest.class.getResourceAsStream(name)) {
+            return IOUtils.toByteArray(is);
+        }
+    }
+
+    @Test
+    public void testDigestResource() throws AnalysisException, IOException {
+        String resource = "/pl/edu/icm/cermine/bibref/crf-train-words.txt";
+        byte[] content;
+        try (InputStream is = CacheKeys.class.getResourceAsStream(resource)) {
+            content = IOUtils.toByteArray(is);
+        }
+        assertEquals(CacheKeys.sha256(content), CacheKeys.digestResource(resource));
+        try {
+            CacheKeys.digestResource("/pl/edu/icm/cermine/missing.txt");
+            fail("Missing resource digested");
+        } catch (AnalysisException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDefaultResourcesAreLoadedOnes() {
+        assertEquals(Arrays.asList("/pl/edu/icm/cermine/bibref/acrf.crf",
+                        "/pl/edu/icm/cermine/bibref/crf-train-words.txt"),
+                CRFBibReferenceParser.getDefaultResources());
+    }
+
+    private static CachedExtraction result(String text) {
+        return new CachedExtraction(new Element("article").setText(text), null);
+    }
+
+    /**
+     * A result with one paragraph citing the second of two references.
+     */
+    private static CachedExtraction resultWithReferences(String text, BxDocument document) {
+        DocumentContentStructure structure = new DocumentContentStructure();
+        DocumentParagraph paragraph = new DocumentParagraph("As shown in [2].", structure);
+        structure.addParagraph(paragraph);
+        BibEntry first = new BibEntry(BibEntry.TYPE_ARTICLE).setText("First reference");
+        first.setId("R1");
+        BibEntry second = new BibEntry(BibEntry.TYPE_ARTICLE).setText("Second reference")
+                .addField(BibEntry.FIELD_YEAR, "2009");
+        second.setId("R2");
+        InTextReference reference = new InTextReference(paragraph, 12, 13,
+                new InTextReferenceStyle(BracketType.SQUARE_BRACKETS, InTextReferenceType.NUMERIC));
+        reference.setEndReferences(Collections.singleton(second));
+        paragraph.addInTextReference(reference);
+        return new CachedExtraction(new Element("article").setText(text), document, structure,
+                Arrays.asList(first, second), Collections.singletonList(reference));
+    }
+
+    private static void assertReferences(CachedExtraction cached) {
+        assertTrue(cached.hasReferences());
+        assertReferences(cached.getEndReferences(), cached.getInTextReferences());
+        DocumentParagraph paragraph = cached.getContentStructure().getParagraphs().get(0);
+        assertSame(paragraph, cached.getInTextReferences().get(0).getParentParagraph());
+        assertEquals(cached.getInTextReferences(), paragraph.getInTextReferences());
+    }
+
+    private static void assertReferences(List<BibEntry> endReferences, List<InTextReference> inTextReferences) {
+        assertEquals(2, endReferences.size());
+        assertEquals("First reference", endReferences.get(0).getText());
+        assertEquals("R2", endReferences.get(1).getId());
+        assertEquals("2009", endReferences.get(1).getFirstFieldValue(BibEntry.FIELD_YEAR));
+        assertEquals(1, inTextReferences.size());
+        InTextReference reference = inTextReferences.get(0);
+        assertEquals("As shown in [2].", reference.getParentParagraph().getText());
+        assertEquals(12, reference.getStartPosition());
+        assertEquals(BracketType.SQUARE_BRACKETS, reference.getInTextReferenceStyle().getBracketType());
+        // the end references are not duplicated
+        assertSame(endReferences.get(1), reference.getEndReferences().iterator().next());
+    }
+
+    private static BxDocument readStructure() throws IOException, TransformationException {
+        try (Reader reader = new InputStreamReader(
+                ExtractionResultCacheTest.class.getResourceAsStream(STRUCTURE_FILE), StandardCharsets.UTF_8)) {
+            List<BxPage> pages = new TrueVizToBxDocumentReader().read(reader);
+            return new BxDocument().setPages(pages);
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pl.edu.icm.cermine.instrumentation;
+
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * @author Dominika Tkaczyk
+ */
+public class TimingStatisticsTest {
+
+    @Test
+    public void testHistogram() {
+        StageHistogram histogram = new StageHistogram();
+        assertEquals(0, histogram.getPercentileNanos(50));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5050), histogram.getTotalNanos());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), histogram.getMaxNanos());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(50) + 500000, histogram.getMeanNanos());
+        assertBetween(TimeUnit.MILLISECONDS.toNanos(50), 2 * TimeUnit.MILLISECONDS.toNanos(50),
+                histogram.getPercentileNanos(50));
+        assertBetween(TimeUnit.MILLISECONDS.toNanos(90), TimeUnit.MILLISECONDS.toNanos(100),
+                histogram.getPercentileNanos(90));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), histogram.getPercentileNanos(100));
+        assertBetween(TimeUnit.MILLISECONDS.toNanos(1), 2 * TimeUnit.MILLISECONDS.toNanos(1),
+                histogram.getPercentileNanos(0));
+    }
+
+    @Test
+    public void testSmallDurations() {
+        StageHistogram histogram = new StageHistogram();
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(-5);
+        assertEquals(3, histogram.getCount());
+        assertEquals(1, histogram.getMaxNanos());
+        assertEquals(1, histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    public void testStatistics() {
+        TimingStatistics statistics = new TimingStatistics();
+        statistics.stageStarted(new StageEvent(ExtractionStage.SEGMENTATION, "doc", 0, 0, 0));
+        statistics.stageFinished(new StageEvent(ExtractionStage.SEGMENTATION, "doc", 2, 10, 3000000));
+        statistics.stageFinished(new StageEvent(ExtractionStage.SEGMENTATION, "doc", 2, 10, 1000000));
+        statistics.stageFinished(new StageEvent(ExtractionStage.REFERENCE_PARSING, "doc", 2, 10, 5000000));
+
+        assertEquals(2, statistics.getHistogram(ExtractionStage.SEGMENTATION).getCount());
+        assertEquals(4000000, statistics.getHistogram(ExtractionStage.SEGMENTATION).getTotalNanos());
+        assertEquals(0, statistics.getHistogram(ExtractionStage.READING_ORDER).getCount());
+
+        String summary = statistics.getSummary();
+        assertTrue(summary.contains("SEGMENTATION"));
+        assertTrue(summary.contains("REFERENCE_PARSING"));
+        assertFalse(summary.contains("READING_ORDER"));
+        assertTrue(summary.indexOf("SEGMENTATION") < summary.indexOf("REFERENCE_PARSING"));
+        assertTrue(summary.matches("(?s).*All stages\\s+9[.,]0\\s*"));
+    }
+
+    private static void assertBetween(long min, long max, long actual) {
+        assertTrue(actual + " not in [" + min + ", " + max + "]", min <= actual && actual <= max);
+    }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.metadata.zoneclassification.features;
+
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.HierarchicalReadingOrderResolver;
+import pl.edu.icm.cermine.structure.SVMInitialZoneClassifier;
+import pl.edu.icm.cermine.structure.SVMMetadataZoneClassifier;
+import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.model.BxPage;
+import pl.edu.icm.cermine.structure.model.BxZone;
+import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentReader;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
+
+/**
+ * @author Dominika Tkaczyk
+ */
+public class ZoneFeatureContextTest {
+
+    private static final String[] INPUT_FILES = {"001.xml", "006.xml"};
+
+    @Test
+    public void testCachedFeatures() throws TransformationException, AnalysisException {
+        BxDocument document = new BxDocument();
+        for (String file : INPUT_FILES) {
+            document.setPages(concat(document.getPages(), new TrueVizToBxDocumentReader().read(new InputStreamReader(
+                    this.getClass().getResourceAsStream("/pl/edu/icm/cermine/structure/" + file)))));
+        }
+        document = new HierarchicalReadingOrderResolver().resolve(document);
+
+        List<FeatureVectorBuilder<BxZone, BxPage>> builders = new ArrayList<FeatureVectorBuilder<BxZone, BxPage>>();
+        builders.add(SVMInitialZoneClassifier.getFeatureVectorBuilder());
+        builders.add(SVMMetadataZoneClassifier.getFeatureVectorBuilder());
+
+        List<double[]> expected = new ArrayList<double[]>();
+        for (BxZone zone : document.asZones()) {
+            for (FeatureVectorBuilder<BxZone, BxPage> builder : builders) {
+                expected.add(builder.getFeatureVector(zone, zone.getParent()).getValues());
+            }
+        }
+
+        ZoneFeatureContext context = ZoneFeatureContext.open();
+        try {
+            int i = 0;
+            for (BxZone zone : document.asZones()) {
+                for (FeatureVectorBuilder<BxZone, BxPage> builder : builders) {
+                    assertArrayEquals(expected.get(i++), builder.getFeatureVector(zone, zone.getParent()).getValues(), 0);
+                }
+            }
+            assertSame(context, ZoneFeatureContext.get());
+        } finally {
+            context.close();
+        }
+        assertNotSame(context, ZoneFeatureContext.get());
+    }
+
+    private static List<BxPage> concat(List<BxPage> pages1, List<BxPage> pages2) {
+        List<BxPage> pages = new ArrayList<BxPage>(pages1);
+        pages.addAll(pages2);
+        return pages;
+    }
+}
@@ -0,0 +1,251 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.parsing.tools;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import pl.edu.icm.cermine.exception.AnalysisException;
+
+/**
+ * @author Dominika Tkaczyk
+ */
+public class ACRFSnapshotTest {
+
+    private static final String[] LABELS = {"A", "B", "C"};
+    private static final String[] FEATURES = {"F0", "F1", "F2", "F3", "F4"};
+
+    private double[][] weights;
+    private double[] defaultWeights;
+    private ACRFSnapshot snapshot;
+    private Random random;
+
+    @Before
+    public void setUp() {
+        random = new Random(13);
+        int pairCount = LABELS.length * LABELS.length;
+        weights = new double[pairCount][FEATURES.length];
+        defaultWeights = new double[pairCount];
+        for (int pair = 0; pair < pairCount; pair++) {
+            for (int feature = 0; feature < FEATURES.length; feature++) {
+                weights[pair][feature] = random.nextGaussian();
+            }
+            defaultWeights[pair] = random.nextGaussian();
+        }
+        snapshot = new ACRFSnapshot(LABELS, FEATURES, weights, defaultWeights);
+    }
+
+    @Test
+    public void testBestLabels() {
+        for (int length = 0; length <= 5; length++) {
+            for (int i = 0; i < 20; i++) {
+                int[][] features = randomFeatures(length);
+                assertArrayEquals(maxMarginalLabels(features), snapshot.getBestLabels(features));
+            }
+        }
+    }
+
+    @Test
+    public void testBestLabelsFromGrmmInput() {
+        int[][] features = {{0, 2}, {1}, {3, 4, 0}, {}};
+        StringBuilder input = new StringBuilder("\n");
+        for (int[] tokenFeatures : features) {
+            input.append("TEXT ----");
+            for (int feature : tokenFeatures) {
+                input.append(" ").append(FEATURES[feature]);
+            }
+            input.append(" unknown\n");
+        }
+        input.append("\nTEXT ---- F1\n");
+
+        int[] expected = snapshot.getBestLabels(features);
+        String[] actual = snapshot.getBestLabels(input.toString());
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(LABELS[expected[i]], actual[i]);
+        }
+    }
+
+    @Test
+    public void testUnknownAndRepeatedFeatures() {
+        int[][] features = {{1, 3}, {2}, {0}};
+        int[][] noisy = {{3, -1, 1, 3}, {2, 2}, {-1, 0}};
+        assertArrayEquals(snapshot.getBestLabels(features), snapshot.getBestLabels(noisy));
+        assertEquals(3, snapshot.getFeatureIndex("F3"));
+        assertEquals(-1, snapshot.getFeatureIndex("unknown"));
+    }
+
+    @Test
+    public void testBestLabelsFromFeatureLists() {
+        List<List<String>> features = Arrays.asList(
+                Arrays.asList("F0", "F2"),
+                Arrays.asList("F1 unknown", ""),
+                Arrays.<String>asList(),
+                Arrays.asList("F3\tF4"));
+        String input = "TEXT ---- F0 F2\nTEXT ---- F1 unknown\nTEXT ---- \nTEXT ---- F3 F4\n";
+        assertArrayEquals(snapshot.getBestLabels(input), snapshot.getBestLabels(features));
+        assertArrayEquals(new int[]{1, -1, 3, 4}, snapshot.getFeatureIndices(Arrays.asList("F1 unknown", "F3\tF4")));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        snapshot.write(out);
+        ACRFSnapshot read = ACRFSnapshot.read(new ByteArrayInputStream(out.toByteArray()));
+        assertArrayEquals(LABELS, read.getLabels());
+        assertEquals(FEATURES.length, read.getFeatureCount());
+        for (int i = 0; i < 50; i++) {
+            int[][] features = randomFeatures(1 + random.nextInt(8));
+            assertArrayEquals(snapshot.getBestLabels(features), read.getBestLabels(features));
+        }
+
+        File file = File.createTempFile("acrf", ACRFSnapshot.FILE_SUFFIX);
+        try {
+            OutputStream fileOut = new FileOutputStream(file);
+            try {
+                snapshot.write(fileOut);
+            } finally {
+                fileOut.close();
+            }
+            assertTrue(ACRFSnapshot.isSnapshot(file.getPath()));
+            ACRFSnapshot mapped = ACRFSnapshot.map(file.getPath());
+            int[][] features = randomFeatures(6);
+            assertArrayEquals(snapshot.getBestLabels(features), mapped.getBestLabels(features));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testCorruptedSnapshot() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        snapshot.write(out);
+        byte[] bytes = out.toByteArray();
+
+        bytes[bytes.length - 1] ^= 1;
+        try {
+            ACRFSnapshot.read(ByteBuffer.wrap(bytes));
+            fail("Checksum mismatch not detected");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("checksum"));
+        }
+
+        try {
+            ACRFSnapshot.read(ByteBuffer.wrap(bytes, 0, bytes.length - 8));
+            fail("Truncation not detected");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("truncated"));
+        }
+
+        InputStream notSnapshot = new BufferedInputStream(new ByteArrayInputStream(new byte[]{31, -117, 8, 0}));
+        assertFalse(ACRFSnapshot.isSnapshot(notSnapshot));
+        assertEquals(31, notSnapshot.read());
+    }
+
+    @Test
+    public void testSnapshotFile() {
+        assertEquals("/pl/edu/icm/cermine/bibref/acrf.crf",
+                ACRFSnapshot.getSnapshotFile("/pl/edu/icm/cermine/bibref/acrf.ser.gz"));
+    }
+
+    @Test
+    public void testDefaultModelsLoadFromSnapshots() throws AnalysisException {
+        String[] models = {
+            "/pl/edu/icm/cermine/bibref/acrf.ser.gz",
+            "/pl/edu/icm/cermine/metadata/affiliation/acrf-affiliations-pubmed.ser.gz",
+            "/pl/edu/icm/cermine/metadata/affiliation/acrf-affiliations-with-author.ser.gz"
+        };
+        for (String model : models) {
+            GrmmModel grmmModel = GrmmModel.loadResource(ACRFSnapshotTest.class, model);
+            assertNull(model, grmmModel.getACRF());
+            assertNotNull(model, grmmModel.getSnapshot());
+            assertTrue(model, grmmModel.getSnapshot().getLabels().length > 1);
+            assertTrue(model, grmmModel.getSnapshot().getFeatureCount() > 0);
+        }
+    }
+
+    private int[][] randomFeatures(int length) {
+        int[][] features = new int[length][];
+        for (int t = 0; t < length; t++) {
+            features[t] = new int[random.nextInt(4)];
+            for (int i = 0; i < features[t].length; i++) {
+                features[t][i] = random.nextInt(FEATURES.length);
+            }
+        }
+        return features;
+    }
+
+    /**
+     * Computes the max-marginals by enumerating all the label sequences.
+     */
+    private int[] maxMarginalLabels(int[][] features) {
+        int length = features.length;
+        int labelCount = LABELS.length;
+        int[] best = new int[length];
+        if (length < 2) {
+            return best;
+        }
+        double[][] maxMarginals = new double[length][labelCount];
+        for (double[] row : maxMarginals) {
+            Arrays.fill(row, Double.NEGATIVE_INFINITY);
+        }
+        int sequenceCount = (int) Math.pow(labelCount, length);
+        for (int code = 0; code < sequenceCount; code++) {
+            int[] sequence = new int[length];
+            int rest = code;
+            for (int t = 0; t < length; t++) {
+                sequence[t] = rest % labelCount;
+                rest /= labelCount;
+            }
+            double score = 0;
+            for (int t = 0; t < length - 1; t++) {
+                score += factor(features[t], sequence[t] * labelCount + sequence[t + 1]);
+            }
+            for (int t = 0; t < length; t++) {
+                maxMarginals[t][sequence[t]] = Math.max(maxMarginals[t][sequence[t]], score);
+            }
+        }
+        for (int t = 0; t < length; t++) {
+            for (int label = 1; label < labelCount; label++) {
+                if (maxMarginals[t][label] > maxMarginals[t][best[t]] + 1e-9) {
+                    best[t] = label;
+                }
+            }
+        }
+        return best;
+    }
+
+    private double factor(int[] tokenFeatures, int pair) {
+        double value = 0;
+        boolean[] seen = new boolean[FEATURES.length];
+        for (int feature : tokenFeatures) {
+            if (!seen[feature]) {
+                seen[feature] = true;
+                value += weights[pair][feature];
+            }
+        }
+        return value + defaultWeights[pair];
+    }
+
+}
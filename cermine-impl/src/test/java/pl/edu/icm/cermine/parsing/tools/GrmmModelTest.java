@@ -0,0 +1,219 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.parsing.tools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.jdom.JDOMException;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import pl.edu.icm.cermine.bibref.parsing.model.Citation;
+import pl.edu.icm.cermine.bibref.parsing.model.CitationToken;
+import pl.edu.icm.cermine.bibref.parsing.tools.CitationUtils;
+import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.metadata.affiliation.tools.AffiliationFeatureExtractor;
+import pl.edu.icm.cermine.metadata.affiliation.tools.AffiliationTokenizer;
+import pl.edu.icm.cermine.metadata.affiliation.tools.NLMAffiliationExtractor;
+import pl.edu.icm.cermine.metadata.model.AffiliationLabel;
+import pl.edu.icm.cermine.metadata.model.DocumentAffiliation;
+import pl.edu.icm.cermine.parsing.model.Token;
+
+/**
+ * @author Dominika Tkaczyk
+ */
+public class GrmmModelTest {
+
+    private static final String MODEL_FILE = "/pl/edu/icm/cermine/bibref/acrf.ser.gz";
+    private static final String WORDS_FILE = "/pl/edu/icm/cermine/bibref/crf-train-words.txt";
+    private static final String REFERENCES_FILE = "/pl/edu/icm/cermine/bibref/refs.txt";
+    private static final String AFFILIATION_MODEL_FILE =
+            "/pl/edu/icm/cermine/metadata/affiliation/acrf-affiliations-pubmed.ser.gz";
+    private static final String AFFILIATION_WORDS_FILE =
+            "/pl/edu/icm/cermine/metadata/affiliation/common-words-affiliations-pubmed.txt";
+    private static final String AFFILIATION_WITH_AUTHOR_MODEL_FILE =
+            "/pl/edu/icm/cermine/metadata/affiliation/acrf-affiliations-with-author.ser.gz";
+    private static final String AFFILIATION_WITH_AUTHOR_WORDS_FILE =
+            "/pl/edu/icm/cermine/metadata/affiliation/common-words-affiliations-with-author.txt";
+    private static final String AFFILIATIONS_FILE =
+            "/pl/edu/icm/cermine/metadata/affiliation/tools/test-nlm-extract-affs.xml";
+    private static final String[] AFFILIATIONS = {
+        "Department of Dinozauring, Dino Institute, Tyranosaurus Route 35, Boston, MA, USA",
+        "Andrew McDino and Elizabeth Pterodactyl, Department of Dinozauring, Dino Institute, Boston, MA, USA"
+    };
+
+    private GrmmModel model;
+    private List<List<String>> tokenLabels;
+    private List<List<List<String>>> tokenFeatures;
+
+    @Before
+    public void setUp() throws AnalysisException, IOException {
+        model = GrmmModel.load(GrmmModelTest.class.getResourceAsStream(MODEL_FILE));
+        Set<String> words = new HashSet<String>(readLines(WORDS_FILE));
+        tokenLabels = new ArrayList<List<String>>();
+        tokenFeatures = new ArrayList<List<List<String>>>();
+        for (String reference : readLines(REFERENCES_FILE)) {
+            if (reference.trim().isEmpty()) {
+                continue;
+            }
+            Citation citation = CitationUtils.stringToCitation(reference);
+            List<String> labels = new ArrayList<String>();
+            for (CitationToken token : citation.getTokens()) {
+                labels.add(String.valueOf(token.getLabel()));
+            }
+            tokenLabels.add(labels);
+            tokenFeatures.add(CitationUtils.citationToFeatureLists(citation, words));
+        }
+    }
+
+    @Test
+    public void testBestLabelsMatchGrmmInput() {
+        assertNotNull(model.getACRF());
+        for (int i = 0; i < tokenFeatures.size(); i++) {
+            assertArrayEquals(model.getBestLabels(toGrmmInput(tokenLabels.get(i), tokenFeatures.get(i))),
+                    model.getBestLabels(tokenLabels.get(i), tokenFeatures.get(i)));
+        }
+    }
+
+    @Test
+    public void testFeaturesAreSplitAtWhitespace() {
+        for (int i = 0; i < tokenFeatures.size(); i++) {
+            List<List<String>> joinedFeatures = new ArrayList<List<String>>();
+            for (List<String> features : tokenFeatures.get(i)) {
+                joinedFeatures.add(Collections.singletonList(" " + StringUtils.join(features, "  ")));
+            }
+            assertArrayEquals(model.getBestLabels(tokenLabels.get(i), tokenFeatures.get(i)),
+                    model.getBestLabels(tokenLabels.get(i), joinedFeatures));
+        }
+    }
+
+    @Test
+    public void testAffiliationLabelsMatchGrmmInput() throws AnalysisException, IOException, JDOMException {
+        GrmmModel affiliationModel = GrmmModel.load(GrmmModelTest.class.getResourceAsStream(AFFILIATION_MODEL_FILE));
+        assertNotNull(affiliationModel.getACRF());
+        List<List<String>> affiliationLabels = new ArrayList<List<String>>();
+        List<List<List<String>>> affiliationFeatures = new ArrayList<List<List<String>>>();
+        readAffiliations(AFFILIATION_WORDS_FILE, affiliationLabels, affiliationFeatures);
+        for (int i = 0; i < affiliationFeatures.size(); i++) {
+            assertArrayEquals(
+                    affiliationModel.getBestLabels(toGrmmInput(affiliationLabels.get(i), affiliationFeatures.get(i))),
+                    affiliationModel.getBestLabels(affiliationLabels.get(i), affiliationFeatures.get(i)));
+        }
+    }
+
+    @Test
+    public void testBestLabelSequences() {
+        tokenLabels.add(1, Collections.<String>emptyList());
+        tokenFeatures.add(1, Collections.<List<String>>emptyList());
+        List<String[]> labels = model.getBestLabelSequences(tokenLabels, tokenFeatures);
+        assertEquals(tokenFeatures.size(), labels.size());
+        assertEquals(0, labels.get(1).length);
+        for (int i = 0; i < tokenFeatures.size(); i++) {
+            if (i != 1) {
+                assertArrayEquals(model.getBestLabels(toGrmmInput(tokenLabels.get(i), tokenFeatures.get(i))),
+                        labels.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testSnapshotMatchesACRF() throws AnalysisException {
+        ACRFSnapshot snapshot = GrmmModel.loadResource(GrmmModelTest.class, MODEL_FILE).getSnapshot();
+        assertNotNull(snapshot);
+        for (int i = 0; i < tokenFeatures.size(); i++) {
+            assertArrayEquals(model.getBestLabels(tokenLabels.get(i), tokenFeatures.get(i)),
+                    snapshot.getBestLabels(tokenFeatures.get(i)));
+        }
+    }
+
+    @Test
+    public void testAffiliationSnapshotsMatchACRF() throws AnalysisException, IOException, JDOMException {
+        String[] models = {AFFILIATION_MODEL_FILE, AFFILIATION_WITH_AUTHOR_MODEL_FILE};
+        String[] words = {AFFILIATION_WORDS_FILE, AFFILIATION_WITH_AUTHOR_WORDS_FILE};
+        for (int m = 0; m < models.length; m++) {
+            GrmmModel affiliationModel = GrmmModel.load(GrmmModelTest.class.getResourceAsStream(models[m]));
+            ACRFSnapshot snapshot = GrmmModel.loadResource(GrmmModelTest.class, models[m]).getSnapshot();
+            assertNotNull(affiliationModel.getACRF());
+            assertNotNull(snapshot);
+            List<List<String>> affiliationLabels = new ArrayList<List<String>>();
+            List<List<List<String>>> affiliationFeatures = new ArrayList<List<List<String>>>();
+            readAffiliations(words[m], affiliationLabels, affiliationFeatures);
+            for (int i = 0; i < affiliationFeatures.size(); i++) {
+                assertArrayEquals(models[m],
+                        affiliationModel.getBestLabels(affiliationLabels.get(i), affiliationFeatures.get(i)),
+                        snapshot.getBestLabels(affiliationFeatures.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Reads the labelled affiliations of the NLM fixture and the unlabelled
+     * sample affiliations, with their features.
+     */
+    private void readAffiliations(String wordsFile, List<List<String>> labels, List<List<List<String>>> features)
+            throws AnalysisException, IOException, JDOMException {
+        List<DocumentAffiliation> affiliations = new NLMAffiliationExtractor().extractStrings(
+                new InputSource(GrmmModelTest.class.getResourceAsStream(AFFILIATIONS_FILE)));
+        AffiliationTokenizer tokenizer = new AffiliationTokenizer();
+        for (String text : AFFILIATIONS) {
+            DocumentAffiliation affiliation = new DocumentAffiliation(text);
+            affiliation.setTokens(tokenizer.tokenize(text));
+            for (Token<AffiliationLabel> token : affiliation.getTokens()) {
+                token.setLabel(AffiliationLabel.TEXT);
+            }
+            affiliations.add(affiliation);
+        }
+        AffiliationFeatureExtractor extractor = new AffiliationFeatureExtractor(readLines(wordsFile));
+        for (DocumentAffiliation affiliation : affiliations) {
+            extractor.calculateFeatures(affiliation);
+            List<String> affiliationLabels = new ArrayList<String>();
+            for (Token<AffiliationLabel> token : affiliation.getTokens()) {
+                affiliationLabels.add(token.getLabel().toString());
+            }
+            labels.add(affiliationLabels);
+            features.add(GrmmUtils.toFeatureLists(affiliation.getTokens(), 1));
+        }
+    }
+
+    private String toGrmmInput(List<String> labels, List<List<String>> features) {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < features.size(); i++) {
+            input.append(GrmmUtils.toGrmmInput(labels.get(i), features.get(i))).append("\n");
+        }
+        return input.toString();
+    }
+
+    private List<String> readLines(String resource) throws IOException {
+        InputStream stream = GrmmModelTest.class.getResourceAsStream(resource);
+        try {
+            return IOUtils.readLines(stream, "UTF-8");
+        } finally {
+            stream.close();
+        }
+    }
+
+}
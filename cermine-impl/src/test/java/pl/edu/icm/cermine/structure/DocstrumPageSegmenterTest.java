@@ -21,12 +21,19 @@ package pl.edu.icm.cermine.structure;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
 import static org.junit.Assert.*;
 import org.junit.Test;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.exception.TransformationException;
 import pl.edu.icm.cermine.structure.model.*;
+import pl.edu.icm.cermine.structure.tools.BxBoundsBuilder;
 import pl.edu.icm.cermine.structure.tools.UnsegmentedPagesFlattener;
 import pl.edu.icm.cermine.structure.transformers.MargToTextrImporter;
 
@@ -87,6 +94,187 @@ public class DocstrumPageSegmenterTest {
         assertNotNull(outDoc.getPages().get(0).getBounds());
     }
 
+    @Test
+    public void testConcurrentSegmentation() throws Exception {
+        final DocstrumSegmenter pageSegmenter = new DocstrumSegmenter();
+        String expected = pageSegmenter.segmentDocument(loadDocument()).toText();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        for (int i = 0; i < 16; i++) {
+            results.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return pageSegmenter.segmentDocument(loadDocument()).toText();
+                }
+            }));
+        }
+        for (Future<String> result : results) {
+            assertEquals(expected, result.get());
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void testNearestNeighbors() throws AnalysisException {
+        Random random = new Random(1);
+        BxPage page = new BxPage();
+        for (int i = 0; i < 500; i++) {
+            page.addChunk(new BxChunk(new BxBounds(random.nextInt(100) * 1.5, random.nextInt(50) * 3.0, 1, 2), "a"));
+        }
+        
+        List<DocstrumSegmenter.Component> components = new DocstrumSegmenter().createComponents(page);
+        for (DocstrumSegmenter.Component component : components) {
+            double[] distances = new double[components.size() - 1];
+            int i = 0;
+            for (DocstrumSegmenter.Component other : components) {
+                if (other != component) {
+                    distances[i++] = other.distance(component);
+                }
+            }
+            Arrays.sort(distances);
+            
+            List<DocstrumSegmenter.Neighbor> neighbors = component.getNeighbors();
+            assertEquals(DocstrumSegmenter.DEFAULT_NEIGHBOR_COUNT, neighbors.size());
+            for (int j = 0; j < neighbors.size(); j++) {
+                assertEquals(distances[j], neighbors.get(j).getDistance(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testLineIndexMatchesExhaustivePairing() throws AnalysisException {
+        List<BxDocument> documents = new ArrayList<BxDocument>();
+        documents.add(createDensePage(new Random(7), 0));
+        documents.add(createDensePage(new Random(8), 0.05));
+        for (String pdf : new String[]{"test1.pdf", "example3.pdf"}) {
+            documents.add(new ITextCharacterExtractor().extractCharacters(
+                    this.getClass().getResourceAsStream("/pl/edu/icm/cermine/" + pdf)));
+        }
+        double[] orientations = {0, Math.atan(0.05), 0, 0};
+
+        DocstrumSegmenter segmenter = new DocstrumSegmenter();
+        int candidateCount = 0, pairCount = 0;
+        for (int d = 0; d < documents.size(); d++) {
+            double orientation = orientations[d];
+            for (BxPage page : segmenter.segmentDocument(documents.get(d)).getPages()) {
+                List<DocstrumSegmenter.ComponentLine> lines = componentLines(page, orientation);
+                DocstrumSegmenter.LineIndex index = new DocstrumSegmenter.LineIndex(lines, orientation);
+                double height = lines.get(0).getHeight();
+                for (double maxVertical : new double[]{0.5 * height, 1.5 * height, 4 * height}) {
+                    for (double maxGap : new double[]{0.1, 3 * height, Double.POSITIVE_INFINITY}) {
+                        for (int i = 0; i < lines.size(); i++) {
+                            List<Integer> candidates = new ArrayList<Integer>();
+                            for (int j : index.findCandidates(i, maxVertical, maxGap)) {
+                                assertTrue(j > i);
+                                candidates.add(j);
+                            }
+                            List<Integer> expected = pairEveryLine(lines, i, orientation, maxVertical, maxGap);
+                            assertTrue(candidates.containsAll(expected));
+                            candidateCount += candidates.size();
+                            pairCount += lines.size() - i - 1;
+                            for (int j : expected) {
+                                assertEquals(allComponentsOverlap(lines.get(i), lines.get(j), orientation),
+                                        DocstrumSegmenter.componentsOverlap(lines.get(i), lines.get(j), orientation));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue(candidateCount < pairCount / 2);
+    }
+
+    /**
+     * Recreates the component lines of a segmented page.
+     */
+    private List<DocstrumSegmenter.ComponentLine> componentLines(BxPage page, double orientation) {
+        List<DocstrumSegmenter.ComponentLine> lines = new ArrayList<DocstrumSegmenter.ComponentLine>();
+        for (BxZone zone : page.getZones()) {
+            for (BxLine line : zone.getLines()) {
+                List<DocstrumSegmenter.Component> components = new ArrayList<DocstrumSegmenter.Component>();
+                for (BxWord word : line.getWords()) {
+                    for (BxChunk chunk : word.getChunks()) {
+                        components.add(new DocstrumSegmenter.Component(chunk));
+                    }
+                }
+                Collections.sort(components, DocstrumSegmenter.ComponentXComparator.getInstance());
+                lines.add(new DocstrumSegmenter.ComponentLine(components, orientation));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Finds the lines with greater indices than the given line, which are
+     * close enough to it, by comparing it with every such line.
+     */
+    private List<Integer> pairEveryLine(List<DocstrumSegmenter.ComponentLine> lines, int index,
+            double orientation, double maxVertical, double maxGap) {
+        List<Integer> pairs = new ArrayList<Integer>();
+        DocstrumSegmenter.ComponentLine line = lines.get(index);
+        for (int j = index + 1; j < lines.size(); j++) {
+            if (line.verticalDistance(lines.get(j), orientation) <= maxVertical
+                    && line.horizontalDistance(lines.get(j), orientation) >= -maxGap) {
+                pairs.add(j);
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Checks if the components of two lines overlap horizontally,
+     * comparing all the pairs of components.
+     */
+    private boolean allComponentsOverlap(DocstrumSegmenter.ComponentLine line1,
+            DocstrumSegmenter.ComponentLine line2, double orientation) {
+        int overlappingCount = 0;
+        for (DocstrumSegmenter.Component ci : line1.getComponents()) {
+            for (DocstrumSegmenter.Component cj : line2.getComponents()) {
+                double dist = ci.overlappingDistance(cj, orientation);
+                if (dist > 2) {
+                    return true;
+                }
+                if (dist > 0) {
+                    overlappingCount++;
+                }
+            }
+        }
+        return overlappingCount > 2;
+    }
+
+    /**
+     * Creates a page of three columns of densely and irregularly spaced
+     * lines, some of them spanning two columns.
+     */
+    private BxDocument createDensePage(Random random, double slope) {
+        BxPage page = new BxPage();
+        for (int column = 0; column < 3; column++) {
+            double y = 20;
+            for (int line = 0; line < 90; line++) {
+                double height = random.nextInt(10) == 0 ? 10 : 6 + random.nextDouble();
+                double x = 20 + column * 180 + random.nextDouble() * 3;
+                int length = 15 + random.nextInt(column < 2 && random.nextInt(15) == 0 ? 70 : 30);
+                for (int i = 0; i < length; i++) {
+                    double width = height * (0.4 + random.nextDouble() * 0.2);
+                    page.addChunk(new BxChunk(new BxBounds(x, y + x * slope + random.nextDouble() * 0.5,
+                            width, height), "a"));
+                    x += width + (random.nextInt(6) == 0 ? 2 + random.nextDouble() * 2 : random.nextDouble() * 0.5);
+                }
+                y += height + (random.nextInt(12) == 0 ? 8 : 1 + random.nextDouble() * 2);
+            }
+        }
+        BxBoundsBuilder.setBounds(page);
+        return new BxDocument().addPage(page);
+    }
+
+    private BxDocument loadDocument() throws TransformationException {
+        Reader reader = new InputStreamReader(getResource("DocstrumPageSegmenter01.xml"));
+        BxDocument doc = new BxDocument().setPages(new MargToTextrImporter().read(reader));
+        new UnsegmentedPagesFlattener().process(doc);
+        return doc;
+    }
+
     public void testSegmentPages_badBounds(BxBounds bounds) throws AnalysisException {
         BxDocument doc = new BxDocument().addPage(new BxPage().addChunk(new BxChunk(bounds, "a")));
         new DocstrumSegmenter().segmentDocument(doc);
@@ -24,6 +24,8 @@ import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.zip.ZipEntry;
@@ -34,10 +36,15 @@ import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 import pl.edu.icm.cermine.exception.TransformationException;
+import pl.edu.icm.cermine.structure.model.BxBounds;
 import pl.edu.icm.cermine.structure.model.BxChunk;
 import pl.edu.icm.cermine.structure.model.BxDocument;
+import pl.edu.icm.cermine.structure.model.BxObject;
 import pl.edu.icm.cermine.structure.model.BxPage;
 import pl.edu.icm.cermine.structure.model.BxZone;
+import pl.edu.icm.cermine.structure.readingorder.BxZoneGroup;
+import pl.edu.icm.cermine.structure.readingorder.DistElem;
+import pl.edu.icm.cermine.structure.readingorder.DocumentPlane;
 import pl.edu.icm.cermine.structure.transformers.TrueVizToBxDocumentReader;
 
 /**
@@ -135,4 +142,96 @@ public class HierarchicalReadingOrderResolverTest {
 		    assertEquals(doc.asChunks().size(), orderedDoc.asChunks().size());	
 		}
 	}
+
+    @Test
+    public void testClusteringMatchesSortedList() throws TransformationException, IOException {
+        HierarchicalReadingOrderResolver roa = new HierarchicalReadingOrderResolver();
+        int multiColumnPages = 0;
+        for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements();) {
+            String filename = e.nextElement().getName();
+            if (!filename.endsWith(".xml")) {
+                continue;
+            }
+            for (BxPage page : getDocumentFromZip(filename).getPages()) {
+                List<BxZone> zones = page.getZones();
+                if (zones.size() < 2) {
+                    continue;
+                }
+                if (isMultiColumn(zones)) {
+                    multiColumnPages++;
+                }
+                BxZoneGroup expected = groupZonesWithSortedList(roa, zones);
+                BxZoneGroup actual = roa.groupZonesHierarchically(zones);
+                assertTrue(filename, areTreesEqual(expected, actual));
+            }
+        }
+        assertTrue(multiColumnPages > 0);
+    }
+
+    /**
+     * The clustering keeping the distance tuples in a list, filtered and
+     * sorted again after every grouping.
+     */
+    private BxZoneGroup groupZonesWithSortedList(HierarchicalReadingOrderResolver roa, List<BxZone> zones) {
+        List<DistElem<BxObject>> dists = new ArrayList<DistElem<BxObject>>();
+        for (int idx1 = 0; idx1 < zones.size(); ++idx1) {
+            for (int idx2 = idx1 + 1; idx2 < zones.size(); ++idx2) {
+                dists.add(new DistElem<BxObject>(false, roa.distance(zones.get(idx1), zones.get(idx2)),
+                        zones.get(idx1), zones.get(idx2)));
+            }
+        }
+        Collections.sort(dists);
+        DocumentPlane plane = new DocumentPlane(zones, HierarchicalReadingOrderResolver.GRIDSIZE);
+        while (!dists.isEmpty()) {
+            DistElem<BxObject> distElem = dists.remove(0);
+            if (!distElem.isC() && plane.anyObjectsBetween(distElem.getObj1(), distElem.getObj2())) {
+                dists.add(new DistElem<BxObject>(true, distElem.getDist(), distElem.getObj1(), distElem.getObj2()));
+                continue;
+            }
+            BxZoneGroup newGroup = new BxZoneGroup(distElem.getObj1(), distElem.getObj2());
+            plane.remove(distElem.getObj1()).remove(distElem.getObj2());
+            List<DistElem<BxObject>> remaining = new ArrayList<DistElem<BxObject>>();
+            for (DistElem<BxObject> other : dists) {
+                if (other.getObj1() != distElem.getObj1() && other.getObj2() != distElem.getObj1()
+                        && other.getObj1() != distElem.getObj2() && other.getObj2() != distElem.getObj2()) {
+                    remaining.add(other);
+                }
+            }
+            dists = remaining;
+            for (BxObject other : plane.getObjects()) {
+                dists.add(new DistElem<BxObject>(false, roa.distance(other, newGroup), newGroup, other));
+            }
+            Collections.sort(dists);
+            plane.add(newGroup);
+        }
+        return (BxZoneGroup) plane.getObjects().get(0);
+    }
+
+    private boolean areTreesEqual(BxObject node1, BxObject node2) {
+        if (node1 instanceof BxZoneGroup && node2 instanceof BxZoneGroup) {
+            BxZoneGroup group1 = (BxZoneGroup) node1;
+            BxZoneGroup group2 = (BxZoneGroup) node2;
+            return areTreesEqual(group1.getLeftChild(), group2.getLeftChild())
+                    && areTreesEqual(group1.getRightChild(), group2.getRightChild());
+        }
+        return node1 == node2;
+    }
+
+    /**
+     * Checks if some zones of the page lie side by side.
+     */
+    private boolean isMultiColumn(List<BxZone> zones) {
+        for (BxZone zone1 : zones) {
+            for (BxZone zone2 : zones) {
+                BxBounds bounds1 = zone1.getBounds();
+                BxBounds bounds2 = zone2.getBounds();
+                if (bounds1.getX() + bounds1.getWidth() < bounds2.getX()
+                        && bounds1.getY() < bounds2.getY() + bounds2.getHeight()
+                        && bounds2.getY() < bounds1.getY() + bounds1.getHeight()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 }
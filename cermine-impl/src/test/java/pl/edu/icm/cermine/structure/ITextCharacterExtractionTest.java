@@ -18,11 +18,25 @@
 
 package pl.edu.icm.cermine.structure;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.io.IOUtils;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.structure.ITextCharacterExtractor.ChunkGrid;
 import pl.edu.icm.cermine.structure.model.BxBounds;
+import pl.edu.icm.cermine.structure.model.BxChunk;
 import pl.edu.icm.cermine.structure.model.BxDocument;
 import pl.edu.icm.cermine.structure.model.BxPage;
 
@@ -62,4 +76,117 @@ public class ITextCharacterExtractionTest {
             assertTrue(page.getChunks().get(7).getBounds().isSimilarTo(b7, 0.08));
         }
     }
+    
+    @Test
+    public void streamingExtractionTest() throws AnalysisException, URISyntaxException {
+        ITextCharacterExtractor streamingExtractor = new ITextCharacterExtractor();
+        for (String file : INPUT_FILES) {
+            BxDocument document = extractor.extractCharacters(this.getClass().getResourceAsStream(INPUT_DIR + file));
+            
+            final List<BxPage> pages = new ArrayList<BxPage>();
+            File pdf = new File(this.getClass().getResource(INPUT_DIR + file).toURI());
+            streamingExtractor.extractCharacters(pdf, new BxPageListener() {
+
+                @Override
+                public void pageExtracted(BxPage page) {
+                    pages.add(page);
+                }
+            });
+            
+            assertEquals(document.getPages().size(), pages.size());
+            for (int i = 0; i < pages.size(); i++) {
+                assertEquals(document.getPages().get(i).toText(), pages.get(i).toText());
+                assertTrue(document.getPages().get(i).getBounds().isSimilarTo(pages.get(i).getBounds(), 0));
+            }
+        }
+    }
+
+    @Test
+    public void pdfSourceExtractionTest() throws AnalysisException, URISyntaxException, IOException {
+        ITextCharacterExtractor sourceExtractor = new ITextCharacterExtractor();
+        for (String file : INPUT_FILES) {
+            BxDocument document = extractor.extractCharacters(this.getClass().getResourceAsStream(INPUT_DIR + file));
+            
+            Path path = Paths.get(this.getClass().getResource(INPUT_DIR + file).toURI());
+            byte[] bytes = IOUtils.toByteArray(this.getClass().getResourceAsStream(INPUT_DIR + file));
+            assertEquals(document.toText(), sourceExtractor.extractCharacters(PdfSource.fromPath(path)).toText());
+            assertEquals(document.toText(), sourceExtractor.extractCharacters(PdfSource.fromBytes(bytes)).toText());
+            assertEquals(document.toText(), 
+                    sourceExtractor.extractCharacters(PdfSource.fromBuffer(ByteBuffer.wrap(bytes))).toText());
+            try (FileChannel channel = FileChannel.open(path)) {
+                assertEquals(document.toText(), sourceExtractor.extractCharacters(PdfSource.fromChannel(channel)).toText());
+                assertTrue(channel.isOpen());
+            }
+        }
+    }
+
+    @Test
+    public void chunkGridTest() {
+        ChunkGrid grid = new ChunkGrid(40);
+        for (int index = 0; index < 40; index++) {
+            grid.add(ChunkGrid.key(index % 4 - 2, -index % 3), index);
+        }
+        assertEquals(-1, grid.first(ChunkGrid.key(2, 0)));
+        assertEquals(0, grid.count(ChunkGrid.key(0, 1)));
+        
+        List<Integer> cell = new ArrayList<Integer>();
+        for (int index = grid.first(ChunkGrid.key(-1, -2)); index >= 0; index = grid.next(index)) {
+            cell.add(index);
+        }
+        assertEquals(Arrays.asList(29, 17, 5), cell);
+        assertEquals(3, grid.count(ChunkGrid.key(-1, -2)));
+        assertEquals(4, grid.count(ChunkGrid.key(-2, 0)));
+    }
+
+    @Test
+    public void removeDuplicateChunksTest() {
+        BxPage page = new BxPage();
+        // duplicates in the neighbouring cells
+        page.addChunk(newChunk("a", 9.9, 20, 5, 8));
+        page.addChunk(newChunk("a", 10.2, 20, 5, 8));
+        page.addChunk(newChunk("b", 29.95, 39.95, 5, 8));
+        page.addChunk(newChunk("b", 30.5, 40.6, 5, 8));
+        page.addChunk(newChunk("f", 9, 120, 5, 8));
+        page.addChunk(newChunk("f", 10, 121, 5, 8));
+        // not duplicates
+        page.addChunk(newChunk("c", 50, 60, 5, 8));
+        page.addChunk(newChunk("c", 51.5, 60, 5, 8));
+        page.addChunk(newChunk("d", 70.5, 80, 5, 8));
+        page.addChunk(newChunk("e", 70.5, 80, 5, 8));
+        page.addChunk(newChunk("g", 90, 100, 5, 8));
+        page.addChunk(newChunk("g", 90, 100, 6.5, 8));
+
+        ITextCharacterExtractor.removeDuplicateChunks(page);
+        
+        assertEquals(Arrays.asList("a", "b", "f", "c", "c", "d", "e", "g", "g"), chunkTexts(page));
+        assertEquals(9.0, page.getChunks().get(2).getX(), 0);
+        assertEquals(51.5, page.getChunks().get(4).getX(), 0);
+    }
+
+    @Test
+    public void filterComponentsTest() {
+        BxPage page = new BxPage();
+        for (int i = 0; i < 20; i++) {
+            page.addChunk(newChunk("x", i % 5 * 2, i / 5 * 2, 1, 1));
+        }
+        for (int i = 0; i < 5; i++) {
+            page.addChunk(newChunk("y", 10 + i * 2, 0, 1, 1));
+        }
+        
+        ITextCharacterExtractor.filterComponents(page);
+        
+        assertEquals(Arrays.asList("y", "y", "y", "y", "y"), chunkTexts(page));
+    }
+
+    private BxChunk newChunk(String text, double x, double y, double width, double height) {
+        return new BxChunk(new BxBounds(x, y, width, height), text);
+    }
+
+    private List<String> chunkTexts(BxPage page) {
+        List<String> texts = new ArrayList<String>();
+        for (BxChunk chunk : page.getChunks()) {
+            texts.add(chunk.toText());
+        }
+        return texts;
+    }
 }
@@ -22,6 +22,11 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.junit.Assert.*;
 import org.junit.Test;
 import pl.edu.icm.cermine.exception.AnalysisException;
@@ -87,6 +92,77 @@ public class ParallelDocstrumPageSegmenterTest {
         assertNotNull(outDoc.getPages().get(0).getBounds());
     }
 
+    @Test
+    public void testInjectedExecutor() throws TransformationException, AnalysisException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            BxDocument expected = new DocstrumSegmenter().segmentDocument(loadDocument());
+            BxDocument actual = new ParallelDocstrumSegmenter(executor).segmentDocument(loadDocument());
+            assertEquals(expected.toText(), actual.toText());
+            assertEquals(expected.getPages().get(0).getZones().size(), actual.getPages().get(0).getZones().size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testStreamingSegmentation() throws TransformationException, AnalysisException {
+        BxDocument expected = new DocstrumSegmenter().segmentDocument(loadDocument());
+        
+        StreamingDocumentSegmenter.DocumentSegmentation segmentation = 
+                new ParallelDocstrumSegmenter().startSegmentation();
+        for (BxPage page : loadDocument().getPages()) {
+            segmentation.pageExtracted(page);
+        }
+        BxDocument actual = segmentation.finish();
+        assertEquals(expected.toText(), actual.toText());
+        assertEquals(expected.getPages().get(0).getZones().size(), actual.getPages().get(0).getZones().size());
+    }
+
+    @Test
+    public void testCancelledSegmentation() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final AtomicInteger startedPages = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        try {
+            ParallelDocstrumSegmenter segmenter = new ParallelDocstrumSegmenter(executor) {
+                @Override
+                protected List<Component> createComponents(BxPage page) throws AnalysisException {
+                    startedPages.incrementAndGet();
+                    started.countDown();
+                    try {
+                        released.await();
+                    } catch (InterruptedException ex) {
+                        throw new AnalysisException("Interrupted!", ex);
+                    }
+                    return super.createComponents(page);
+                }
+            };
+            StreamingDocumentSegmenter.DocumentSegmentation segmentation = segmenter.startSegmentation();
+            for (int i = 0; i < 3; i++) {
+                segmentation.pageExtracted(loadDocument().getPages().get(0));
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            segmentation.cancel();
+            
+            // the running page is interrupted and the waiting ones are skipped
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(1, startedPages.get());
+        } finally {
+            released.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private BxDocument loadDocument() throws TransformationException {
+        Reader reader = new InputStreamReader(getResource("DocstrumPageSegmenter01.xml"));
+        BxDocument doc = new BxDocument().setPages(new MargToTextrImporter().read(reader));
+        new UnsegmentedPagesFlattener().process(doc);
+        return doc;
+    }
+
     public void testSegmentPages_badBounds(BxBounds bounds) throws AnalysisException {
         BxDocument doc = new BxDocument().addPage(new BxPage().addChunk(new BxChunk(bounds, "a")));
         new DocstrumSegmenter().segmentDocument(doc);
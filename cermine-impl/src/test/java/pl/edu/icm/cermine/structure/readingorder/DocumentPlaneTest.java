@@ -0,0 +1,103 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.structure.readingorder;
+
+import java.util.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import pl.edu.icm.cermine.structure.model.BxBounds;
+import pl.edu.icm.cermine.structure.model.BxObject;
+import pl.edu.icm.cermine.structure.model.BxZone;
+
+/**
+ *
+ * @author Dominika Tkaczyk
+ */
+public class DocumentPlaneTest {
+
+    private BxZone newZone(double x, double y, double width, double height) {
+        return new BxZone().setBounds(new BxBounds(x, y, width, height));
+    }
+
+    @Test
+    public void testFind() {
+        BxZone zone1 = newZone(10, 10, 100, 20);
+        BxZone zone2 = newZone(10, 200, 100, 20);
+        BxZone zone3 = newZone(40, 100, 200, 20);
+        BxZone zone4 = newZone(300, 100, 20, 20);
+        DocumentPlane plane = new DocumentPlane(Arrays.asList(zone1, zone2, zone3, zone4), 50);
+
+        assertEquals(Arrays.<BxObject>asList(zone1, zone3, zone2), plane.find(new BxBounds(0, 0, 120, 300)));
+        assertEquals(Arrays.<BxObject>asList(zone3), plane.findObjectsBetween(zone1, zone2));
+        assertTrue(plane.anyObjectsBetween(zone1, zone2));
+        assertFalse(plane.anyObjectsBetween(zone3, zone4));
+        assertFalse(plane.anyObjectsBetween(zone1, zone3));
+    }
+
+    @Test
+    public void testAddRemove() {
+        BxZone zone1 = newZone(10, 10, 100, 20);
+        BxZone zone2 = newZone(10, 200, 100, 20);
+        BxZone zone3 = newZone(40, 100, 20, 20);
+        DocumentPlane plane = new DocumentPlane(Arrays.asList(zone1, zone2, zone3), 50);
+
+        plane.remove(zone3);
+        assertFalse(plane.anyObjectsBetween(zone1, zone2));
+        assertEquals(Arrays.<BxObject>asList(zone1, zone2), plane.getObjects());
+
+        BxZoneGroup group = new BxZoneGroup(zone1, zone2);
+        plane.remove(zone1).remove(zone2).add(group);
+        assertEquals(Arrays.<BxObject>asList(group), plane.find(new BxBounds(0, 0, 50, 50)));
+
+        BxZone far = newZone(1000, 2000, 20, 20);
+        plane.add(far);
+        assertEquals(Arrays.<BxObject>asList(far), plane.find(new BxBounds(900, 1900, 200, 200)));
+        assertEquals(Arrays.<BxObject>asList(group), plane.find(new BxBounds(0, 0, 50, 50)));
+        assertTrue(plane.anyObjectsBetween(group, newZone(2000, 3000, 10, 10)));
+    }
+
+    @Test
+    public void testRemoveKeepsOrder() {
+        List<BxZone> zones = new ArrayList<BxZone>();
+        for (int i = 0; i < 100; i++) {
+            zones.add(newZone(i % 10 * 60, i / 10 * 30, 50, 20));
+        }
+        DocumentPlane plane = new DocumentPlane(zones, 50);
+
+        List<BxObject> expected = new ArrayList<BxObject>(zones);
+        for (int i = 99; i >= 0; i -= 3) {
+            plane.remove(zones.get(i));
+            expected.remove(zones.get(i));
+        }
+        assertEquals(expected, plane.getObjects());
+
+        BxZoneGroup group = new BxZoneGroup(zones.get(0), zones.get(1));
+        plane.remove(zones.get(0)).remove(zones.get(1)).add(group);
+        expected.remove(zones.get(0));
+        expected.remove(zones.get(1));
+        expected.add(group);
+        for (int i = 2; i < 60; i++) {
+            plane.remove(zones.get(i));
+            expected.remove(zones.get(i));
+        }
+        assertEquals(expected, plane.getObjects());
+        assertEquals(Arrays.<BxObject>asList(group), plane.find(new BxBounds(0, 0, 100, 10)));
+        assertTrue(plane.find(new BxBounds(0, 30, 600, 150)).isEmpty());
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package pl.edu.icm.cermine.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Dominika Tkaczyk
+ */
+public class CancellableTasksTest {
+
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new ForkJoinPool(1);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testResultsInOrder() throws Exception {
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < 10; i++) {
+            final int value = i;
+            tasks.add(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return value * value;
+                }
+            });
+        }
+        assertEquals(Arrays.asList(0, 1, 4, 9, 16, 25, 36, 49, 64, 81), CancellableTasks.invokeAll(pool, tasks));
+    }
+
+    @Test
+    public void testInterruptCancelsTasks() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final AtomicBoolean queuedRun = new AtomicBoolean();
+        Callable<Integer> hanging = new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                started.countDown();
+                while (!Thread.currentThread().isInterrupted()) {
+                    // busy loop ignoring everything but the interrupt, as a stuck computation would
+                }
+                interrupted.countDown();
+                return 0;
+            }
+        };
+        Callable<Integer> queued = new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                queuedRun.set(true);
+                return 1;
+            }
+        };
+
+        final Thread waiting = Thread.currentThread();
+        Thread interrupter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    started.await();
+                    waiting.interrupt();
+                } catch (InterruptedException ex) {
+                    // test thread ends
+                }
+            }
+        };
+        interrupter.start();
+        try {
+            CancellableTasks.invokeAll(pool, Arrays.asList(hanging, queued));
+            fail("Interrupt not detected");
+        } catch (InterruptedException ex) {
+            // expected
+        }
+        interrupter.join();
+
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        // the pool thread is reused without the interrupt of the cancelled task
+        Callable<Boolean> check = new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return Thread.currentThread().isInterrupted();
+            }
+        };
+        assertFalse(CancellableTasks.invokeAll(pool, Arrays.asList(check)).get(0));
+        assertFalse(queuedRun.get());
+    }
+
+    @Test
+    public void testCancelSkipsQueuedTasks() throws Exception {
+        for (int attempt = 0; attempt < 20; attempt++) {
+            final CountDownLatch started = new CountDownLatch(1);
+            final AtomicInteger queuedRuns = new AtomicInteger();
+            CancellableTasks<Integer> tasks = new CancellableTasks<Integer>(pool);
+            tasks.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws InterruptedException {
+                    started.countDown();
+                    new CountDownLatch(1).await();
+                    return 0;
+                }
+            });
+            for (int i = 0; i < 100; i++) {
+                tasks.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return queuedRuns.incrementAndGet();
+                    }
+                });
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            tasks.cancel();
+            
+            // the thread of the interrupted task must not pick up the following ones
+            assertEquals(Arrays.asList(0), CancellableTasks.invokeAll(pool, Arrays.asList(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return queuedRuns.get();
+                }
+            })));
+        }
+    }
+
+    @Test
+    public void testFailureCancelsTasks() throws Exception {
+        Callable<Integer> failing = new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                throw new IllegalStateException("failed");
+            }
+        };
+        try {
+            CancellableTasks.invokeAll(pool, Arrays.asList(failing));
+            fail("Failure not reported");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
+}
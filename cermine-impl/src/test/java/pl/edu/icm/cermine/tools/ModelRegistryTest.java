@@ -0,0 +1,92 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import pl.edu.icm.cermine.exception.AnalysisException;
+
+/**
+ * @author Dominika Tkaczyk
+ */
+public class ModelRegistryTest {
+
+    @Test
+    public void testModelLoadedOnce() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final ModelRegistry.ModelLoader<Object> loader = new ModelRegistry.ModelLoader<Object>() {
+            @Override
+            public Object load() throws AnalysisException {
+                loads.incrementAndGet();
+                return new Object();
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Object>> results = new ArrayList<Future<Object>>();
+        for (int i = 0; i < 32; i++) {
+            results.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws AnalysisException {
+                    return ModelRegistry.getModel("test-once", Object.class, loader);
+                }
+            }));
+        }
+        Object first = results.get(0).get();
+        for (Future<Object> result : results) {
+            assertSame(first, result.get());
+        }
+        executor.shutdown();
+
+        assertEquals(1, loads.get());
+        assertTrue(ModelRegistry.contains("test-once"));
+        ModelRegistry.evict("test-once");
+        assertFalse(ModelRegistry.contains("test-once"));
+    }
+
+    @Test
+    public void testFailedLoadNotRegistered() throws AnalysisException {
+        try {
+            ModelRegistry.getModel("test-failure", Object.class, new ModelRegistry.ModelLoader<Object>() {
+                @Override
+                public Object load() throws AnalysisException {
+                    throw new AnalysisException("failure");
+                }
+            });
+            fail("AnalysisException expected");
+        } catch (AnalysisException ex) {
+            assertEquals("failure", ex.getMessage());
+        }
+        assertFalse(ModelRegistry.contains("test-failure"));
+
+        Object model = ModelRegistry.getModel("test-failure", Object.class, new ModelRegistry.ModelLoader<Object>() {
+            @Override
+            public Object load() throws AnalysisException {
+                return "model";
+            }
+        });
+        assertEquals("model", model);
+        ModelRegistry.evict("test-failure");
+    }
+
+}
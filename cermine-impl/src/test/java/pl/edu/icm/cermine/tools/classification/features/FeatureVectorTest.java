@@ -0,0 +1,119 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.features;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * @author Dominika Tkaczyk
+ */
+public class FeatureVectorTest {
+
+    @Test
+    public void testSchemaVector() {
+        FeatureSchema schema = new FeatureSchema(Arrays.asList("a", "b", "a"));
+        assertFalse(schema.hasUniqueNames());
+        
+        FeatureVector vector = new FeatureVector(schema);
+        vector.setValues(new double[]{1, 2, 3});
+        assertEquals(3, vector.size());
+        assertEquals(1, vector.getValue("a"), 0);
+        assertEquals(2, vector.getValue("b"), 0);
+        assertEquals(3, vector.getValue(2), 0);
+        assertSame(schema, vector.getSchema());
+
+        FeatureVector copy = vector.copy();
+        copy.setValue("b", 5);
+        assertEquals(2, vector.getValue("b"), 0);
+        assertEquals(5, copy.getValue("b"), 0);
+        assertSame(schema, copy.getSchema());
+    }
+
+    @Test
+    public void testAddFeature() {
+        FeatureVector vector = new FeatureVector(new FeatureSchema(Arrays.asList("a", "b")));
+        vector.setValues(new double[]{1, 2});
+        vector.addFeature("c", 3);
+        vector.addFeature("a", 4);
+        
+        assertEquals(Arrays.asList("a", "b", "c", "a"), vector.getFeatureNames());
+        assertArrayEquals(new double[]{1, 2, 3, 4}, vector.getValues(), 0);
+        assertEquals(1, vector.getValue("a"), 0);
+        assertEquals(3, vector.getValue("c"), 0);
+        assertEquals(4, vector.getSchema().size());
+    }
+
+    @Test
+    public void testSchemaOfAddedFeatures() {
+        FeatureVector vector = new FeatureVector();
+        vector.addFeature("a", 1);
+        vector.addFeature("b", 2);
+        assertEquals(Arrays.asList("a", "b"), vector.getSchema().getNames());
+        assertFalse(vector.sharesSchemaWith(vector.copy()));
+        
+        // reading the schema leaves the vector as it was
+        vector.addFeature("c", 3);
+        assertEquals(Arrays.asList("a", "b", "c"), vector.getFeatureNames());
+        assertEquals(3, vector.getValue("c"), 0);
+    }
+
+    @Test
+    public void testBuilderSchema() {
+        FeatureVectorBuilder<String, Object> builder = new FeatureVectorBuilder<String, Object>();
+        builder.setFeatureCalculators(new ArrayList<FeatureCalculator<String, Object>>(
+                Arrays.asList(calculator("a"), calculator("b"))));
+        FeatureVector vector1 = builder.getFeatureVector("text", null);
+        FeatureVector vector2 = builder.getFeatureVector("text", null);
+        assertTrue(vector1.sharesSchemaWith(vector2));
+        
+        builder.getFeatureCalculators().set(0, calculator("c"));
+        FeatureVector vector3 = builder.getFeatureVector("text", null);
+        assertEquals(Arrays.asList("c", "b"), vector3.getFeatureNames());
+        assertFalse(vector1.sharesSchemaWith(vector3));
+    }
+
+    private FeatureCalculator<String, Object> calculator(final String name) {
+        return new FeatureCalculator<String, Object>() {
+            @Override
+            public String getFeatureName() {
+                return name;
+            }
+
+            @Override
+            public double calculateFeatureValue(String object, Object context) {
+                return object.length();
+            }
+        };
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownFeature() {
+        new FeatureVector(new FeatureSchema(Arrays.asList("a"))).getValue("b");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongIndex() {
+        FeatureVector vector = new FeatureVector();
+        vector.addFeature("a", 1);
+        vector.setValue(1, 2);
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.svm;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_node;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVector;
+import pl.edu.icm.cermine.tools.classification.general.FeatureVectorScaler;
+import pl.edu.icm.cermine.tools.classification.general.FeatureVectorScalerImpl;
+
+/**
+ * @author Dominika Tkaczyk
+ */
+public class BinarySVMModelTest {
+
+    private static final String MODEL_PATH = "/pl/edu/icm/cermine/content/header.model";
+    private static final String RANGE_PATH = "/pl/edu/icm/cermine/content/header.range";
+    
+    private svm_model model;
+    private FeatureVectorScaler scaler;
+    private byte[] binary;
+    
+    @Before
+    public void setUp() throws IOException {
+        model = svm.svm_load_model(reader(MODEL_PATH));
+        scaler = FeatureVectorScalerImpl.fromRangeReader(reader(RANGE_PATH));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinarySVMModel(model, scaler).write(out);
+        binary = out.toByteArray();
+    }
+    
+    @Test
+    public void testRoundTrip() throws IOException {
+        BinarySVMModel read = BinarySVMModel.read(new ByteArrayInputStream(binary));
+        assertSamePredictions(model, read.getModel());
+        
+        FeatureVectorScaler readScaler = read.createScaler();
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            FeatureVector fv = new FeatureVector();
+            for (int j = 0; j < 15; j++) {
+                fv.addFeature("f" + j, random.nextDouble() * 10);
+            }
+            assertArrayEquals(scaler.scaleFeatureVector(fv).getValues(), 
+                    readScaler.scaleFeatureVector(fv).getValues(), 0);
+        }
+    }
+    
+    @Test
+    public void testMappedFile() throws IOException {
+        File file = File.createTempFile("model", BinarySVMModel.FILE_SUFFIX);
+        try {
+            OutputStream out = new FileOutputStream(file);
+            out.write(binary);
+            out.close();
+            
+            assertTrue(BinarySVMModel.isBinaryModel(file.getPath()));
+            assertSamePredictions(model, BinarySVMModel.map(file.getPath()).getModel());
+        } finally {
+            file.delete();
+        }
+    }
+    
+    @Test(expected = IOException.class)
+    public void testChecksum() throws IOException {
+        binary[binary.length - 20] ^= 1;
+        BinarySVMModel.read(ByteBuffer.wrap(binary));
+    }
+    
+    @Test(expected = IOException.class)
+    public void testVersion() throws IOException {
+        ByteBuffer.wrap(binary).putInt(4, BinarySVMModel.VERSION + 1);
+        BinarySVMModel.read(ByteBuffer.wrap(binary));
+    }
+    
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        BinarySVMModel.read(ByteBuffer.wrap(binary, 0, binary.length - 1));
+    }
+    
+    private void assertSamePredictions(svm_model expected, svm_model actual) {
+        Random random = new Random(11);
+        for (int i = 0; i < 500; i++) {
+            svm_node[] instance = new svm_node[15];
+            for (int j = 0; j < instance.length; j++) {
+                instance[j] = new svm_node();
+                instance[j].index = j;
+                instance[j].value = random.nextDouble();
+            }
+            assertEquals(svm.svm_predict(expected, instance), svm.svm_predict(actual, instance), 0);
+        }
+    }
+    
+    private BufferedReader reader(String path) {
+        return new BufferedReader(new InputStreamReader(BinarySVMModelTest.class.getResourceAsStream(path)));
+    }
+}
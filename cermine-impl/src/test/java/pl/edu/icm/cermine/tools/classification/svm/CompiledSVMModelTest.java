@@ -0,0 +1,109 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.svm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Random;
+import libsvm.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * @author Dominika Tkaczyk
+ */
+public class CompiledSVMModelTest {
+
+    private static final int INSTANCES = 2000;
+    
+    @Test
+    public void testRBFModels() throws IOException {
+        assertSameDecisions(load("/pl/edu/icm/cermine/content/filtering.model"), 6);
+        assertSameDecisions(load("/pl/edu/icm/cermine/content/header.model"), 14);
+    }
+    
+    @Test
+    public void testPolyModel() {
+        Random random = new Random(17);
+        svm_problem problem = new svm_problem();
+        problem.l = 300;
+        problem.x = new svm_node[problem.l][];
+        problem.y = new double[problem.l];
+        for (int i = 0; i < problem.l; i++) {
+            problem.x[i] = randomInstance(random, 8);
+            problem.y[i] = (int) (problem.x[i][0].value * 3);
+        }
+        svm_model model = svm.svm_train(problem, SVMClassifier.getDefaultParam());
+        assertEquals(svm_parameter.POLY, model.param.kernel_type);
+        assertEquals(3, model.nr_class);
+        assertSameDecisions(model, 8);
+    }
+    
+    @Test
+    public void testUnsupportedModel() {
+        svm_model model = new svm_model();
+        model.param = SVMClassifier.getDefaultParam();
+        model.param.svm_type = svm_parameter.EPSILON_SVR;
+        model.label = new int[0];
+        model.nSV = new int[0];
+        assertNull(CompiledSVMModel.compile(model));
+    }
+    
+    private svm_model load(String path) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                CompiledSVMModelTest.class.getResourceAsStream(path)));
+        try {
+            return CompiledSVMModel.load(reader).getModel();
+        } finally {
+            reader.close();
+        }
+    }
+    
+    private void assertSameDecisions(svm_model model, int dimension) {
+        CompiledSVMModel compiled = CompiledSVMModel.compile(model);
+        assertNotNull(compiled);
+        
+        Random random = new Random(42);
+        svm_node[][] instances = new svm_node[INSTANCES][];
+        for (int i = 0; i < INSTANCES; i++) {
+            instances[i] = randomInstance(random, dimension);
+        }
+        instances[0] = new svm_node[0];
+        instances[1][1].value = Double.POSITIVE_INFINITY;
+        
+        double[] predictions = new double[INSTANCES];
+        compiled.predict(instances, INSTANCES, predictions);
+        for (int i = 0; i < INSTANCES; i++) {
+            double expected = svm.svm_predict(model, instances[i]);
+            assertEquals(expected, predictions[i], 0);
+            assertEquals(expected, compiled.predict(instances[i]), 0);
+        }
+    }
+    
+    private svm_node[] randomInstance(Random random, int dimension) {
+        svm_node[] instance = new svm_node[dimension];
+        for (int j = 0; j < dimension; j++) {
+            instance[j] = new svm_node();
+            instance[j].index = j;
+            instance[j].value = random.nextInt(4) == 0 ? 0 : random.nextDouble();
+        }
+        return instance;
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.tools.classification.svm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import pl.edu.icm.cermine.tools.classification.features.FeatureCalculator;
+import pl.edu.icm.cermine.tools.classification.features.FeatureVectorBuilder;
+import pl.edu.icm.cermine.tools.classification.general.TrainingSample;
+
+/**
+ * @author Dominika Tkaczyk
+ */
+public class SVMClassifierTest {
+
+    private enum Side {
+        LOWER, UPPER
+    }
+
+    private FeatureVectorBuilder<double[], Object> builder;
+    
+    private SVMClassifier<double[], Object, Side> classifier;
+    
+    @Before
+    public void setUp() {
+        builder = new FeatureVectorBuilder<double[], Object>();
+        builder.setFeatureCalculators(Arrays.<FeatureCalculator<double[], Object>>asList(
+                new CoordinateFeature(0), new CoordinateFeature(1)));
+        
+        List<TrainingSample<Side>> samples = new ArrayList<TrainingSample<Side>>();
+        for (double[] point : grid(10)) {
+            Side side = point[0] + point[1] > 1 ? Side.UPPER : Side.LOWER;
+            samples.add(new TrainingSample<Side>(builder.getFeatureVector(point, null), side));
+        }
+        classifier = new SVMClassifier<double[], Object, Side>(builder, Side.class) {};
+        classifier.buildClassifier(samples);
+    }
+
+    @Test
+    public void testPredictLabels() {
+        List<double[]> points = grid(7);
+        List<Side> labels = classifier.predictLabels(points, null);
+        
+        assertEquals(points.size(), labels.size());
+        int correct = 0;
+        for (int i = 0; i < points.size(); i++) {
+            double[] point = points.get(i);
+            assertEquals(classifier.predictLabel(point, null), labels.get(i));
+            Side side = point[0] + point[1] > 1 ? Side.UPPER : Side.LOWER;
+            if (side == labels.get(i)) {
+                correct++;
+            }
+        }
+        assertTrue(correct > 0.9 * points.size());
+        
+        assertEquals(labels.subList(0, 3), classifier.predictLabels(points.subList(0, 3), null));
+        assertTrue(classifier.predictLabels(new ArrayList<double[]>(), null).isEmpty());
+    }
+    
+    private static List<double[]> grid(int size) {
+        List<double[]> points = new ArrayList<double[]>();
+        for (int i = 0; i <= size; i++) {
+            for (int j = 0; j <= size; j++) {
+                points.add(new double[]{(double) i / size, (double) j / size});
+            }
+        }
+        return points;
+    }
+
+    private static class CoordinateFeature extends FeatureCalculator<double[], Object> {
+
+        private final int coordinate;
+
+        CoordinateFeature(int coordinate) {
+            this.coordinate = coordinate;
+        }
+
+        @Override
+        public String getFeatureName() {
+            return "Coordinate" + coordinate;
+        }
+
+        @Override
+        public double calculateFeatureValue(double[] object, Object context) {
+            return object[coordinate];
+        }
+    }
+}
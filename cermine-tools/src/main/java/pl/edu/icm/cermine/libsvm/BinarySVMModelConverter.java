@@ -0,0 +1,66 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.libsvm;
+
+import java.io.*;
+import libsvm.svm;
+import libsvm.svm_model;
+import pl.edu.icm.cermine.tools.classification.general.FeatureVectorScaler;
+import pl.edu.icm.cermine.tools.classification.general.FeatureVectorScalerImpl;
+import pl.edu.icm.cermine.tools.classification.general.FeatureVectorScalerNoOp;
+import pl.edu.icm.cermine.tools.classification.svm.BinarySVMModel;
+
+/**
+ * Converts an SVM model in libsvm text format and its range file
+ * into a single binary model file.
+ * 
+ * @author Dominika Tkaczyk
+ */
+public final class BinarySVMModelConverter {
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: BinarySVMModelConverter <model> <range file or -> <output>");
+            return;
+        }
+        
+        svm_model model = svm.svm_load_model(args[0]);
+        FeatureVectorScaler scaler;
+        if ("-".equals(args[1])) {
+            scaler = new FeatureVectorScalerNoOp();
+        } else {
+            scaler = FeatureVectorScalerImpl.fromRangeReader(
+                    new BufferedReader(new InputStreamReader(new FileInputStream(args[1]), "UTF-8")));
+        }
+        
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(args[2]));
+        try {
+            new BinarySVMModel(model, scaler).write(out);
+        } finally {
+            out.close();
+        }
+        // make sure the written model can be read back
+        BinarySVMModel.map(args[2]);
+        System.out.println("Binary model written to " + args[2]);
+    }
+
+    private BinarySVMModelConverter() {
+    }
+   
+}
@@ -15,6 +15,8 @@
 package pl.edu.icm.cermine.web;
 
 import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.List;
 import java.util.logging.Level;
 import javax.servlet.http.HttpServletRequest;
 import org.jdom.Element;
@@ -29,6 +31,7 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import pl.edu.icm.cermine.bibref.CRFBibReferenceParser;
 import pl.edu.icm.cermine.bibref.model.BibEntry;
 import pl.edu.icm.cermine.bibref.transformers.BibEntryToNLMElementConverter;
@@ -36,6 +39,8 @@ import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.exception.TransformationException;
 import pl.edu.icm.cermine.metadata.affiliation.CRFAffiliationParser;
 import pl.edu.icm.cermine.web.service.model.ExtractionResult;
+import pl.edu.icm.cermine.web.service.model.TaskStatus;
+import pl.edu.icm.cermine.web.service.exceptions.NoSuchTaskException;
 import pl.edu.icm.cermine.web.service.exceptions.ServiceException;
 
 /**
@@ -65,13 +70,61 @@ public class WebServiceController extends CermineController {
         }
     }
 
+    @RequestMapping(value = "/submit.do", method = RequestMethod.POST)
+    public ResponseEntity<String> submitExtraction(@RequestBody byte[] content) {
+        try {
+            logger.debug("content length: {}", content.length);
+
+            long jobId = extractorService.submitExtraction(content);
+            HttpHeaders responseHeaders = new HttpHeaders();
+            responseHeaders.setContentType(MediaType.TEXT_PLAIN);
+            return new ResponseEntity<>(jobId + "\n", responseHeaders, HttpStatus.ACCEPTED);
+        } catch (ServiceException ex) {
+            return new ResponseEntity<>("Exception: " + ex.getMessage(), null, HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    @RequestMapping(value = "/status.do", method = RequestMethod.GET)
+    public ResponseEntity<String> extractionStatus(@RequestParam("id") long jobId) {
+        try {
+            HttpHeaders responseHeaders = new HttpHeaders();
+            responseHeaders.setContentType(MediaType.TEXT_PLAIN);
+            TaskStatus status = extractorService.getExtractionStatus(jobId);
+            return new ResponseEntity<>(status.getText() + "\n", responseHeaders, HttpStatus.OK);
+        } catch (NoSuchTaskException ex) {
+            return new ResponseEntity<>("Exception: " + ex.getMessage(), null, HttpStatus.NOT_FOUND);
+        }
+    }
+
+    @RequestMapping(value = "/result.do", method = RequestMethod.GET)
+    public ResponseEntity<String> extractionResult(@RequestParam("id") long jobId) {
+        try {
+            ExtractionResult result = extractorService.getExtractionResult(jobId);
+            HttpHeaders responseHeaders = new HttpHeaders();
+            if (result == null) {
+                responseHeaders.setContentType(MediaType.TEXT_PLAIN);
+                TaskStatus status = extractorService.getExtractionStatus(jobId);
+                return new ResponseEntity<>(status.getText() + "\n", responseHeaders, HttpStatus.ACCEPTED);
+            }
+            if (!result.isSucceeded()) {
+                return new ResponseEntity<>("Exception: " + result.getErrorMessage(), null,
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+            responseHeaders.setContentType(MediaType.APPLICATION_XML);
+            return new ResponseEntity<>(result.getNlm(), responseHeaders, HttpStatus.OK);
+        } catch (NoSuchTaskException ex) {
+            return new ResponseEntity<>("Exception: " + ex.getMessage(), null, HttpStatus.NOT_FOUND);
+        }
+    }
+
     @RequestMapping(value = "/parse.do", method = RequestMethod.POST)
     public ResponseEntity<String> parseSync(HttpServletRequest request, Model model) {
         try {
-            String refText = request.getParameter("reference");
-            if (refText == null) {
-                refText = request.getParameter("ref");
+            String[] refTexts = request.getParameterValues("reference");
+            if (refTexts == null) {
+                refTexts = request.getParameterValues("ref");
             }
+            String refText = refTexts == null ? null : refTexts[0];
             String affText = request.getParameter("affiliation");
             if (affText == null) {
                 affText = request.getParameter("aff");
@@ -100,19 +153,39 @@ public class WebServiceController extends CermineController {
                 }
 
                 CRFBibReferenceParser parser = CRFBibReferenceParser.getInstance();
-                BibEntry reference = parser.parseBibReference(refText);
-                if (format.equals("bibtex")) {
-                    responseHeaders.setContentType(MediaType.TEXT_PLAIN);
-                    response = reference.toBibTeX();
+                if (refTexts.length > 1) {
+                    // many references are parsed as a batch
+                    List<BibEntry> references = parser.parseBibReferences(Arrays.asList(refTexts));
+                    if (format.equals("bibtex")) {
+                        responseHeaders.setContentType(MediaType.TEXT_PLAIN);
+                        StringBuilder bibtex = new StringBuilder();
+                        for (BibEntry reference : references) {
+                            bibtex.append(reference.toBibTeX()).append("\n");
+                        }
+                        response = bibtex.toString().trim();
+                    } else {
+                        responseHeaders.setContentType(MediaType.APPLICATION_XML);
+                        BibEntryToNLMElementConverter converter = new BibEntryToNLMElementConverter();
+                        Element refList = new Element("ref-list");
+                        refList.addContent(converter.convertAll(references));
+                        XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
+                        response = outputter.outputString(refList);
+                    }
                 } else {
-                    responseHeaders.setContentType(MediaType.APPLICATION_XML);
-                    BibEntryToNLMElementConverter converter = new BibEntryToNLMElementConverter();
-                    Element element = converter.convert(reference);
-                    XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
-                    response = outputter.outputString(element);
+                    BibEntry reference = parser.parseBibReference(refText);
+                    if (format.equals("bibtex")) {
+                        responseHeaders.setContentType(MediaType.TEXT_PLAIN);
+                        response = reference.toBibTeX();
+                    } else {
+                        responseHeaders.setContentType(MediaType.APPLICATION_XML);
+                        BibEntryToNLMElementConverter converter = new BibEntryToNLMElementConverter();
+                        Element element = converter.convert(reference);
+                        XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
+                        response = outputter.outputString(element);
+                    }
                 }
             } else {
-                CRFAffiliationParser parser = new CRFAffiliationParser();
+                CRFAffiliationParser parser = CRFAffiliationParser.getDefaultInstance();
                 Element parsedAff = parser.parse(affText);
                 XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
                 response = outputter.outputString(parsedAff);
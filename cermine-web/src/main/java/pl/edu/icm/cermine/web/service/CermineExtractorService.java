@@ -17,7 +17,9 @@ package pl.edu.icm.cermine.web.service;
 import pl.edu.icm.cermine.web.service.model.ExtractionResult;
 import java.io.InputStream;
 import pl.edu.icm.cermine.exception.AnalysisException;
+import pl.edu.icm.cermine.web.service.exceptions.NoSuchTaskException;
 import pl.edu.icm.cermine.web.service.exceptions.ServiceException;
+import pl.edu.icm.cermine.web.service.model.TaskStatus;
 
 /**
  * Abstraction of the service used to extract metadata from submitted files. The service is
@@ -41,4 +43,30 @@ public interface CermineExtractorService {
     public ExtractionResult extractNLM(InputStream ii) throws AnalysisException, ServiceException;
 
     public long initExtractionTask(byte[] pdf, String fileName);
+
+    /**
+     * Queues the given pdf file for extraction and returns immediately. The job
+     * can then be polled with {@link #getExtractionStatus(long)} and its result
+     * retrieved with {@link #getExtractionResult(long)}. Finished jobs are kept
+     * for a limited time.
+     *
+     * @param pdf the content of the pdf file
+     * @return the id of the extraction job
+     * @throws ServiceException if the queue of the service is full
+     */
+    public long submitExtraction(byte[] pdf) throws ServiceException;
+
+    /**
+     * @param jobId the id of the extraction job
+     * @return the current status of the job
+     * @throws NoSuchTaskException if the job is not known or has expired
+     */
+    public TaskStatus getExtractionStatus(long jobId) throws NoSuchTaskException;
+
+    /**
+     * @param jobId the id of the extraction job
+     * @return the result of the job, or null if the job is not finished yet
+     * @throws NoSuchTaskException if the job is not known or has expired
+     */
+    public ExtractionResult getExtractionResult(long jobId) throws NoSuchTaskException;
 }
@@ -18,13 +18,15 @@ import pl.edu.icm.cermine.web.service.model.ExtractionResult;
 import pl.edu.icm.cermine.web.service.model.ExtractionTask;
 import pl.edu.icm.cermine.web.service.model.TaskStatus;
 import pl.edu.icm.cermine.web.service.model.ArticleMeta;
+import pl.edu.icm.cermine.web.service.exceptions.NoSuchTaskException;
 import pl.edu.icm.cermine.web.service.exceptions.ServiceException;
-import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
+import java.util.Iterator;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import org.jdom.Document;
 import org.jdom.Element;
 import org.jdom.output.Format;
@@ -32,12 +34,17 @@ import org.jdom.output.XMLOutputter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import pl.edu.icm.cermine.AbstractExtractor;
 import pl.edu.icm.cermine.PdfJatsExtractor;
+import pl.edu.icm.cermine.cache.DiskExtractionResultCache;
+import pl.edu.icm.cermine.cache.ExtractionResultCache;
+import pl.edu.icm.cermine.cache.MemoryExtractionResultCache;
 import pl.edu.icm.cermine.content.transformers.NLMElementToHTMLWriter;
 import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.exception.CermineException;
+import pl.edu.icm.cermine.structure.PdfSource;
 
 /**
  * This class handles the threads for extracting content from files.
@@ -50,12 +57,21 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
 
     private static final int DEFAULT_POOL_SIZE = 4;
     private static final int DEFAULT_QUEUE_SIZE = 10000;
+    /** how long the finished asynchronous jobs are kept, in milliseconds */
+    private static final long JOB_RETENTION = TimeUnit.HOURS.toMillis(1);
 
     private int threadPoolSize;
     private int maxQueueForBatch;
     private final Logger log = LoggerFactory.getLogger(CermineExtractorServiceImpl.class);
 
-    private final List<AbstractExtractor> extractors;
+    private final ExtractorPool extractors;
+
+    private int resultCacheSize;
+    private String resultCacheDirectory = "";
+    private ExtractionResultCache resultCache;
+
+    private final ConcurrentMap<Long, ExtractionTask> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong lastJobId = new AtomicLong();
 
     private ExecutorService processingExecutor;
     private ExecutorService batchProcessingExecutor;
@@ -86,8 +102,52 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
 
         this.createExecutorServices();
 
-        this.extractors = new ArrayList<>();
-        this.createExtractors();
+        this.extractors = this.createExtractors();
+    }
+
+    /**
+     * Sets the number of results kept in the in-memory result cache.
+     * The cache is not used if the size is not positive.
+     *
+     * @param resultCacheSize
+     */
+    @Value("${resultCacheSize}")
+    public synchronized void setResultCacheSize(int resultCacheSize) {
+        this.resultCacheSize = resultCacheSize;
+        updateResultCache();
+    }
+
+    /**
+     * Sets the directory of the on-disk result cache. If the directory is set,
+     * it is used instead of the in-memory cache.
+     *
+     * @param resultCacheDirectory
+     */
+    @Value("${resultCacheDirectory}")
+    public synchronized void setResultCacheDirectory(String resultCacheDirectory) {
+        this.resultCacheDirectory = resultCacheDirectory;
+        updateResultCache();
+    }
+
+    private void updateResultCache() {
+        resultCache = null;
+        if (!resultCacheDirectory.isEmpty()) {
+            try {
+                resultCache = new DiskExtractionResultCache(new File(resultCacheDirectory), false);
+            } catch (IOException ex) {
+                log.error("Cannot create the result cache, the results will not be cached", ex);
+            }
+        } else if (resultCacheSize > 0) {
+            resultCache = new MemoryExtractionResultCache(resultCacheSize);
+        }
+        extractors.setResultCache(resultCache);
+    }
+
+    /**
+     * @return the result cache, or null if the results are not cached
+     */
+    public synchronized ExtractionResultCache getResultCache() {
+        return resultCache;
     }
 
     /**
@@ -111,7 +171,10 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
             res = future.get();
         } catch (RejectedExecutionException rje) {
             throw new ServiceException("Queue size exceeded.", rje);
-        } catch (InterruptedException | ExecutionException ex) {
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("Interrupted while waiting for extraction.", ex);
+        } catch (ExecutionException ex) {
             log.error("Exception while executing extraction task...", ex);
             throw new RuntimeException(ex);
         }
@@ -131,25 +194,71 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
     public long initExtractionTask(byte[] pdf, String fileName) {
         ExtractionTask task = this.taskManager.createTask(pdf, fileName);
 
-        processingExecutor.submit(new ExtractingTaskExecution(task, this.log));
         task.setStatus(TaskStatus.QUEUED);
+        processingExecutor.submit(new ExtractingTaskExecution(task, this.log));
 
         return task.getId();
     }
 
+    /**
+     * Queues an asynchronous extraction job. The method returns immediately.
+     *
+     * @param pdf
+     * @return
+     * @throws ServiceException
+     */
+    @Override
+    public long submitExtraction(byte[] pdf) throws ServiceException {
+        removeExpiredJobs();
+        ExtractionTask job = new ExtractionTask(lastJobId.incrementAndGet(), pdf, null, TaskStatus.QUEUED);
+        jobs.put(job.getId(), job);
+        try {
+            batchProcessingExecutor.submit(new ExtractingTaskExecution(job, this.log));
+        } catch (RejectedExecutionException rje) {
+            jobs.remove(job.getId());
+            throw new ServiceException("Queue size exceeded.", rje);
+        }
+        return job.getId();
+    }
+
+    @Override
+    public TaskStatus getExtractionStatus(long jobId) throws NoSuchTaskException {
+        return getJob(jobId).getStatus();
+    }
+
+    @Override
+    public ExtractionResult getExtractionResult(long jobId) throws NoSuchTaskException {
+        ExtractionTask job = getJob(jobId);
+        return job.getStatus().getFinalState() ? job.getResult() : null;
+    }
+
+    private ExtractionTask getJob(long jobId) throws NoSuchTaskException {
+        ExtractionTask job = jobs.get(jobId);
+        if (job == null) {
+            throw new NoSuchTaskException(jobId);
+        }
+        return job;
+    }
+
+    private void removeExpiredJobs() {
+        long now = System.currentTimeMillis();
+        Iterator<ExtractionTask> iterator = jobs.values().iterator();
+        while (iterator.hasNext()) {
+            ExtractionTask job = iterator.next();
+            Date finished = job.getFinishedDate();
+            if (job.getStatus().getFinalState() && finished != null
+                    && now - finished.getTime() > JOB_RETENTION) {
+                iterator.remove();
+            }
+        }
+    }
+
     protected AbstractExtractor obtainExtractor() {
         log.debug("Obtaining an extractor from the pool");
-        AbstractExtractor res;
         try {
-            synchronized (extractors) {
-                while (extractors.isEmpty()) {
-                    log.debug("Extractor pool is empty, going to sleep...");
-                    extractors.wait();
-                }
-                res = extractors.remove(0);
-            }
-            return res;
+            return extractors.obtain();
         } catch (InterruptedException ire) {
+            Thread.currentThread().interrupt();
             log.error("Unexpected exception while waiting for extractor...", ire);
             throw new RuntimeException(ire);
         }
@@ -157,15 +266,7 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
 
     protected void returnExtractor(AbstractExtractor e) {
         log.debug("Returning extractor to the pool...");
-        synchronized (extractors) {
-            try {
-                e = new PdfJatsExtractor();
-                extractors.add(e);
-            } catch (AnalysisException ex) {
-                throw new RuntimeException("Cannot create extractor!", ex);
-            }
-            extractors.notify();
-        }
+        extractors.release((PdfJatsExtractor) e);
     }
 
     /**
@@ -175,10 +276,10 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
      * @param input
      * @return The result of the extraction on the input stream.
      */
-    private ExtractionResult performExtraction(ExtractionResult result, InputStream input) {
-        AbstractExtractor<InputStream, Element> extractor = null;
+    private ExtractionResult performExtraction(ExtractionResult result, PdfSource input) {
+        PdfJatsExtractor extractor = null;
         try {
-            extractor = obtainExtractor();
+            extractor = (PdfJatsExtractor) obtainExtractor();
             result.setProcessingStart(new Date());
             log.debug("Starting extraction on the input stream...");
             Element resEl = extractor.extract(input);
@@ -192,7 +293,7 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
             String html = new NLMElementToHTMLWriter().write(resEl);
             result.setHtml(html);
 
-            result.setInTextReferences(Integer.toString(((PdfJatsExtractor) extractor).getInTextReferences().size()));
+            result.setInTextReferences(Integer.toString(extractor.getInTextReferences().size()));
             log.debug("Article meta extraction start:");
             result.setMeta(ArticleMeta.extractNLM(doc));
             log.debug("Article meta extraction succeeded");
@@ -201,6 +302,10 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
             log.debug("Exception from analysis: ", ex);
             result.setError(ex);
             result.setSucceeded(false);
+        } catch (Throwable ex) {
+            log.error("Unexpected exception from analysis: ", ex);
+            result.setError(ex);
+            result.setSucceeded(false);
         } finally {
             if (extractor != null) {
                 returnExtractor(extractor);
@@ -231,18 +336,26 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
             ExtractionResult result = new ExtractionResult();
             result.setProcessingStart(new Date());
 
-            log.debug("Running extraction: " + task.getId());
-            performExtraction(result, new ByteArrayInputStream(task.getPdf()));
-            task.setResult(result);
-
-            log.debug("Processing finished: " + task.getId());
-            if (result.isSucceeded()) {
-                task.setStatus(TaskStatus.FINISHED);
-            } else {
-                task.setStatus(TaskStatus.FAILED);
+            try {
+                log.debug("Running extraction: " + task.getId());
+                performExtraction(result, task.getPdfSource());
+            } catch (Throwable ex) {
+                log.error("Unexpected exception while processing task: " + task.getId(), ex);
+                result.setError(ex);
+                result.setSucceeded(false);
+            } finally {
+                task.setResult(result);
+
+                log.debug("Processing finished: " + task.getId());
+                // the task must reach a final state, otherwise it would never expire
+                if (result.isSucceeded()) {
+                    task.setStatus(TaskStatus.FINISHED);
+                } else {
+                    task.setStatus(TaskStatus.FAILED);
+                }
+                //clean up memory, we will overflow after few request without it...
+                task.releasePdf();
             }
-            //clean up memory, we will overflow after few request without it...
-            task.setPdf(null);
             log.debug("finishing task: " + task.getId());
         }
     }
@@ -257,7 +370,7 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
 
         @Override
         public ExtractionResult call() throws CermineException {
-            return performExtraction(new ExtractionResult(), input);
+            return performExtraction(new ExtractionResult(), PdfSource.fromStream(input));
         }
     }
 
@@ -267,11 +380,9 @@ public class CermineExtractorServiceImpl implements CermineExtractorService {
         this.batchProcessingExecutor = new ThreadPoolExecutor(threadPoolSize, threadPoolSize, 1, TimeUnit.DAYS, q);
     }
 
-    private void createExtractors() {
+    private ExtractorPool createExtractors() {
         try {
-            for (int i = 0; i < threadPoolSize; i++) {
-                extractors.add(new PdfJatsExtractor());
-            }
+            return new ExtractorPool(threadPoolSize);
         } catch (AnalysisException ex) {
             log.error("Failed to init content extractor", ex);
             throw new RuntimeException(ex);
@@ -0,0 +1,100 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.web.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import pl.edu.icm.cermine.PdfJatsExtractor;
+import pl.edu.icm.cermine.cache.ExtractionResultCache;
+import pl.edu.icm.cermine.exception.AnalysisException;
+
+/**
+ * Bounded pool of reusable extractors. The extractors are created once,
+ * together with the pool, and are reset when they are returned, so the models
+ * are never reloaded. Obtaining an extractor blocks while all of them are in use.
+ *
+ * @author Dominika Tkaczyk
+ */
+public class ExtractorPool {
+
+    private final int size;
+
+    private final BlockingQueue<PdfJatsExtractor> idle;
+
+    /**
+     * @param size the number of extractors
+     * @throws AnalysisException if the extractors cannot be created
+     */
+    public ExtractorPool(int size) throws AnalysisException {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        this.size = size;
+        this.idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            idle.add(new PdfJatsExtractor());
+        }
+    }
+
+    /**
+     * Takes an extractor from the pool, waiting until one is available.
+     *
+     * @return extractor
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public PdfJatsExtractor obtain() throws InterruptedException {
+        return idle.take();
+    }
+
+    /**
+     * Resets the extractor and puts it back into the pool. The extractor
+     * has to be returned by the thread that used it.
+     *
+     * @param extractor extractor obtained from the pool
+     */
+    public void release(PdfJatsExtractor extractor) {
+        extractor.reset();
+        if (!idle.offer(extractor)) {
+            throw new IllegalStateException("Extractor returned to a full pool");
+        }
+    }
+
+    /**
+     * Sets the result cache shared by all the extractors. Only the extractors
+     * in the pool are configured, so the cache should be set before the pool is used.
+     *
+     * @param cache result cache, or null to disable caching
+     */
+    public void setResultCache(ExtractionResultCache cache) {
+        for (PdfJatsExtractor extractor : idle) {
+            extractor.getConfiguration().setResultCache(cache);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of extractors not in use at the moment
+     */
+    public int getAvailable() {
+        return idle.size();
+    }
+}
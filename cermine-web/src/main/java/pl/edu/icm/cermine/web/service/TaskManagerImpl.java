@@ -16,13 +16,33 @@ package pl.edu.icm.cermine.web.service;
 
 import pl.edu.icm.cermine.web.service.model.ExtractionTask;
 import pl.edu.icm.cermine.web.service.exceptions.NoSuchTaskException;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Service;
 import pl.edu.icm.cermine.web.service.model.TaskStatus;
 
 /**
  * Manages the storage of tasks in the session of the current user.
+ * 
+ * The number of stored tasks and their lifetime are limited. When the limit
+ * is reached, the least recently used task is removed, finished tasks first.
+ * The pdf data of big tasks is kept in temporary files until the task is processed.
+ * Every virtual machine writes the files to its own subdirectory of the spill
+ * directory and holds a lock on it until it exits. Before the subdirectory
+ * is created, the unlocked subdirectories left by the stopped servers are removed.
  *
  * @author Aleksander Nowinski <a.nowinski@icm.edu.pl>
  * @author Dominik Horb <cermine@dominik.berlin>
@@ -31,41 +51,196 @@ import pl.edu.icm.cermine.web.service.model.TaskStatus;
 @Scope(value = "session")
 public class TaskManagerImpl implements TaskManager{
 
+    private static final int DEFAULT_MAX_TASKS = 100;
+    private static final long DEFAULT_TIME_TO_LIVE = TimeUnit.DAYS.toMillis(1);
+    private static final int DEFAULT_SPILL_THRESHOLD = 1000000;
+
+    private final Logger log = LoggerFactory.getLogger(TaskManagerImpl.class);
+
+    private static final String SPILL_SUBDIRECTORY_PREFIX = "cermine-tasks-";
+    private static final String SPILL_LOCK_FILE = "server.lock";
+
+    // the subdirectories of this virtual machine by spill directory, shared by the sessions
+    private static final Map<File, File> SPILL_SUBDIRECTORIES = new HashMap<>();
+    // the locks are released when the virtual machine exits
+    private static final List<FileLock> SPILL_LOCKS = new ArrayList<>();
+
     private int currentId;
-    private final List<ExtractionTask> tasks;
+    // access order, the least recently used task first
+    private final LinkedHashMap<Long, ExtractionTask> tasks;
+
+    private int maxTasks;
+    private long timeToLive;
+    private int spillThreshold;
+    private File spillDirectory;
     
     public TaskManagerImpl(){
+        this(DEFAULT_MAX_TASKS, DEFAULT_TIME_TO_LIVE, DEFAULT_SPILL_THRESHOLD, null);
+    }
+    
+    /**
+     * @param maxTasks the maximum number of stored tasks
+     * @param timeToLive the time after the creation of a task when the task
+     * is removed if it is finished, in milliseconds
+     * @param spillThreshold the size in bytes above which the pdf data is kept
+     * in a temporary file, 0 or less to keep all the data in memory
+     * @param spillDirectory the directory of the temporary files,
+     * null for the default temporary directory
+     */
+    public TaskManagerImpl(int maxTasks, long timeToLive, int spillThreshold, File spillDirectory) {
         this.currentId = 0;
-        this.tasks = new ArrayList<>();
+        this.tasks = new LinkedHashMap<>(16, 0.75f, true);
+        this.maxTasks = checkMaxTasks(maxTasks);
+        this.timeToLive = timeToLive;
+        this.spillThreshold = spillThreshold;
+        this.spillDirectory = spillDirectory;
+    }
+
+    @Value("${taskMaxCount}")
+    public synchronized void setMaxTasks(int maxTasks) {
+        this.maxTasks = checkMaxTasks(maxTasks);
+    }
+
+    private static int checkMaxTasks(int maxTasks) {
+        if (maxTasks < 1) {
+            throw new IllegalArgumentException("Maximum number of tasks must be positive");
+        }
+        return maxTasks;
+    }
+
+    @Value("${taskTimeToLiveSeconds}")
+    public synchronized void setTimeToLiveSeconds(long seconds) {
+        this.timeToLive = TimeUnit.SECONDS.toMillis(seconds);
+    }
+
+    @Value("${taskSpillThreshold}")
+    public synchronized void setSpillThreshold(int spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+
+    @Value("${taskSpillDirectory}")
+    public synchronized void setSpillDirectory(String spillDirectory) {
+        this.spillDirectory = spillDirectory.isEmpty() ? null : new File(spillDirectory);
     }
     
     @Override
-    public ExtractionTask createTask(byte[] pdf, String fileName) {
+    public synchronized ExtractionTask createTask(byte[] pdf, String fileName) {
+        removeExpiredTasks();
+        while (tasks.size() >= maxTasks) {
+            removeLeastRecentlyUsedTask();
+        }
+
         this.currentId++;
         ExtractionTask task = new ExtractionTask(this.currentId, pdf, fileName, TaskStatus.CREATED);
-        tasks.add(task);
+        if (spillThreshold > 0 && pdf != null && pdf.length > spillThreshold) {
+            try {
+                task.spillPdf(getSpillSubdirectory());
+            } catch (IOException ex) {
+                log.warn("Cannot spill the pdf of task " + task.getId() + ", keeping it in memory", ex);
+            }
+        }
+        tasks.put(task.getId(), task);
         return task;
     }
 
-    @Override
-    public ExtractionTask getTask(long id) throws NoSuchTaskException {
-        for (ExtractionTask task : tasks) {
-            if (task.getId() == id) {
-                return task;
+    /**
+     * Returns the subdirectory of the spill directory used by this virtual machine,
+     * creating and locking it the first time. Before it is created, the subdirectories
+     * of the servers which are not running any more are removed.
+     */
+    private File getSpillSubdirectory() throws IOException {
+        File directory = (spillDirectory != null
+                ? spillDirectory : new File(System.getProperty("java.io.tmpdir"))).getAbsoluteFile();
+        synchronized (SPILL_SUBDIRECTORIES) {
+            File subdirectory = SPILL_SUBDIRECTORIES.get(directory);
+            if (subdirectory != null && subdirectory.isDirectory()) {
+                return subdirectory;
+            }
+            removeStaleSpillSubdirectories(directory);
+            subdirectory = Files.createTempDirectory(directory.toPath(), SPILL_SUBDIRECTORY_PREFIX).toFile();
+            FileChannel channel = FileChannel.open(new File(subdirectory, SPILL_LOCK_FILE).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                SPILL_LOCKS.add(channel.lock());
+            } catch (IOException ex) {
+                channel.close();
+                throw ex;
             }
+            SPILL_SUBDIRECTORIES.put(directory, subdirectory);
+            return subdirectory;
         }
-        throw new NoSuchTaskException(id);
+    }
+
+    /**
+     * Removes the spill subdirectories whose lock is not held by any server.
+     * The subdirectories locked after this virtual machine was started are kept,
+     * as their servers may be just about to lock them.
+     */
+    private void removeStaleSpillSubdirectories(File directory) {
+        File[] subdirectories = directory.listFiles();
+        if (subdirectories == null) {
+            return;
+        }
+        long startTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+        for (File subdirectory : subdirectories) {
+            File lockFile = new File(subdirectory, SPILL_LOCK_FILE);
+            if (!subdirectory.getName().startsWith(SPILL_SUBDIRECTORY_PREFIX) || !lockFile.isFile()
+                    || lockFile.lastModified() >= startTime) {
+                continue;
+            }
+            try {
+                if (isLocked(lockFile)) {
+                    continue;
+                }
+                // the lock file cannot be deleted while it is open on some systems
+                FileUtils.deleteDirectory(subdirectory);
+            } catch (IOException ex) {
+                log.warn("Cannot remove the stale spill directory " + subdirectory, ex);
+            }
+        }
+    }
+
+    private static boolean isLocked(File lockFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                return true;
+            }
+            lock.release();
+            return false;
+        } catch (OverlappingFileLockException ex) {
+            // locked by this virtual machine
+            return true;
+        }
+    }
+
+    @Override
+    public synchronized ExtractionTask getTask(long id) throws NoSuchTaskException {
+        removeExpiredTasks();
+        ExtractionTask task = tasks.get(id);
+        if (task == null) {
+            throw new NoSuchTaskException(id);
+        }
+        return task;
     }
 
     @Override
-    public List<ExtractionTask> getTaskList() {
-        // unmodifiable list to make sure the interface of this class
-        // is used to manipulate the list of registered tasks
-        return Collections.unmodifiableList(this.tasks);
+    public synchronized List<ExtractionTask> getTaskList() {
+        removeExpiredTasks();
+        // a copy in the order of creation, so that the interface of this class
+        // is used to manipulate the registered tasks
+        List<ExtractionTask> taskList = new ArrayList<>(tasks.values());
+        Collections.sort(taskList, new Comparator<ExtractionTask>() {
+            @Override
+            public int compare(ExtractionTask t1, ExtractionTask t2) {
+                return Long.compare(t1.getId(), t2.getId());
+            }
+        });
+        return Collections.unmodifiableList(taskList);
     }
 
     @Override
-    public String getUniqueFilename(String filename) {
+    public synchronized String getUniqueFilename(String filename) {
         String fbase = filename;
         if (filename == null || filename.isEmpty()) {
             fbase = "input.pdf";
@@ -80,7 +255,7 @@ public class TaskManagerImpl implements TaskManager{
 
     private int countTasksWithSameFilename(String fbase) {
         int sameName = 0;
-        for (ExtractionTask task : tasks) {
+        for (ExtractionTask task : tasks.values()) {
             if (fbase.equals(task.getFileName())) {
                 sameName++;
             }
@@ -88,4 +263,33 @@ public class TaskManagerImpl implements TaskManager{
 
         return sameName;
     }
+
+    private void removeExpiredTasks() {
+        long now = System.currentTimeMillis();
+        Iterator<ExtractionTask> iterator = tasks.values().iterator();
+        while (iterator.hasNext()) {
+            ExtractionTask task = iterator.next();
+            if (task.getStatus().getFinalState() 
+                    && now - task.getCreationDate().getTime() > timeToLive) {
+                iterator.remove();
+                task.releasePdf();
+            }
+        }
+    }
+
+    private void removeLeastRecentlyUsedTask() {
+        Iterator<ExtractionTask> iterator = tasks.values().iterator();
+        while (iterator.hasNext()) {
+            ExtractionTask task = iterator.next();
+            if (task.getStatus().getFinalState()) {
+                iterator.remove();
+                task.releasePdf();
+                return;
+            }
+        }
+        // all the tasks are in progress, the pdf data is released once processed
+        iterator = tasks.values().iterator();
+        iterator.next();
+        iterator.remove();
+    }
 }
@@ -14,7 +14,11 @@
  */
 package pl.edu.icm.cermine.web.service.model;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Date;
+import org.apache.commons.io.FileUtils;
+import pl.edu.icm.cermine.structure.PdfSource;
 
 /**
  * This class represents the task of an extraction with it's current state and results.
@@ -23,13 +27,18 @@ import java.util.Date;
  */
 public class ExtractionTask {
 
+    private static final String SPILL_FILE_PREFIX = "cermine-task";
+    private static final String SPILL_FILE_SUFFIX = ".pdf";
+
     private final long id;
     private final String fileName;
     private final Date creationDate;
-    private Date finishedDate;
-    private byte[] pdf;
-    private TaskStatus status;
-    private ExtractionResult result;
+    // the task is processed by a worker thread and polled by request threads
+    private volatile Date finishedDate;
+    private volatile byte[] pdf;
+    private volatile File pdfFile;
+    private volatile TaskStatus status;
+    private volatile ExtractionResult result;
 
     public ExtractionTask(long id, byte[] pdf, String fileName, TaskStatus status){
         this.id = id;
@@ -55,6 +64,54 @@ public class ExtractionTask {
         this.pdf = pdf;
     }
 
+    /**
+     * Moves the pdf data from memory to a temporary file in the given directory.
+     * The file is deleted when the data is released.
+     *
+     * @param directory the directory of the file
+     * @throws IOException if the file cannot be written
+     */
+    public void spillPdf(File directory) throws IOException {
+        byte[] data = this.pdf;
+        if (data == null) {
+            return;
+        }
+        File file = File.createTempFile(SPILL_FILE_PREFIX + this.id + "-", SPILL_FILE_SUFFIX, directory);
+        try {
+            FileUtils.writeByteArrayToFile(file, data);
+        } catch (IOException ex) {
+            file.delete();
+            throw ex;
+        }
+        this.pdfFile = file;
+        this.pdf = null;
+    }
+
+    /**
+     * @return the source of the pdf data, either in memory or spilled to a file,
+     * or null if the data was released
+     */
+    public PdfSource getPdfSource() {
+        byte[] data = this.pdf;
+        if (data != null) {
+            return PdfSource.fromBytes(data);
+        }
+        File file = this.pdfFile;
+        return file == null ? null : PdfSource.fromPath(file.toPath());
+    }
+
+    /**
+     * Releases the pdf data, deleting the file it was spilled to.
+     */
+    public void releasePdf() {
+        this.pdf = null;
+        File file = this.pdfFile;
+        this.pdfFile = null;
+        if (file != null) {
+            file.delete();
+        }
+    }
+
     public TaskStatus getStatus() {
         return this.status;
     }
@@ -15,13 +15,16 @@
 package pl.edu.icm.cermine.web.service;
 
 import pl.edu.icm.cermine.web.service.model.ExtractionResult;
+import pl.edu.icm.cermine.web.service.exceptions.NoSuchTaskException;
 import pl.edu.icm.cermine.web.service.exceptions.ServiceException;
+import pl.edu.icm.cermine.web.service.model.TaskStatus;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
+import org.apache.commons.io.IOUtils;
 import static org.junit.Assert.*;
 import org.junit.*;
 import org.slf4j.Logger;
@@ -126,4 +129,58 @@ public class CermineExtractorServiceImplTest {
         Thread.sleep(100);
         assertFalse(sleeping);
     }
+
+    @Test
+    public void testExtractorsAreReused() throws Exception {
+        final CermineExtractorServiceImpl instance = new CermineExtractorServiceImpl(1, 0);
+        AbstractExtractor first = instance.obtainExtractor();
+        instance.returnExtractor(first);
+        assertSame(first, instance.obtainExtractor());
+    }
+
+    @Test
+    public void testSubmitExtraction() throws Exception {
+        byte[] pdf;
+        try (InputStream is = this.getClass().getResourceAsStream("/pdf/test1.pdf")) {
+            pdf = IOUtils.toByteArray(is);
+        }
+        long jobId = instance.submitExtraction(pdf);
+
+        long deadline = System.currentTimeMillis() + 120000;
+        while (!instance.getExtractionStatus(jobId).getFinalState()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(100);
+        }
+        assertEquals(TaskStatus.FINISHED, instance.getExtractionStatus(jobId));
+        ExtractionResult result = instance.getExtractionResult(jobId);
+        assertTrue(result.isSucceeded());
+        assertNotNull(result.getNlm());
+    }
+
+    @Test
+    public void testSubmitExtractionFailsOnUnexpectedException() throws Exception {
+        final IllegalStateException failure = new IllegalStateException("Extractor pool is broken");
+        CermineExtractorServiceImpl failingInstance = new CermineExtractorServiceImpl(1, 0) {
+            @Override
+            protected AbstractExtractor obtainExtractor() {
+                throw failure;
+            }
+        };
+        long jobId = failingInstance.submitExtraction(new byte[]{1, 2, 3});
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!failingInstance.getExtractionStatus(jobId).getFinalState()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(100);
+        }
+        assertEquals(TaskStatus.FAILED, failingInstance.getExtractionStatus(jobId));
+        ExtractionResult result = failingInstance.getExtractionResult(jobId);
+        assertFalse(result.isSucceeded());
+        assertSame(failure, result.getError());
+    }
+
+    @Test(expected = NoSuchTaskException.class)
+    public void testUnknownExtractionJob() {
+        instance.getExtractionStatus(-1);
+    }
 }
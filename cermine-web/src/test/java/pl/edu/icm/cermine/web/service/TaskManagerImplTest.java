@@ -0,0 +1,201 @@
+/**
+ * This file is part of CERMINE project.
+ * Copyright (c) 2011-2013 ICM-UW
+ *
+ * CERMINE is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CERMINE is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with CERMINE. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pl.edu.icm.cermine.web.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pl.edu.icm.cermine.web.service.exceptions.NoSuchTaskException;
+import pl.edu.icm.cermine.web.service.model.ExtractionTask;
+import pl.edu.icm.cermine.web.service.model.TaskStatus;
+
+/**
+ * @author Dominika Tkaczyk
+ */
+public class TaskManagerImplTest {
+
+    private File spillDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        spillDirectory = Files.createTempDirectory("tasks").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(spillDirectory);
+    }
+
+    @Test
+    public void testGetTask() {
+        TaskManagerImpl manager = new TaskManagerImpl();
+        ExtractionTask task1 = manager.createTask(new byte[1], "a.pdf");
+        ExtractionTask task2 = manager.createTask(new byte[1], "a.pdf");
+        assertSame(task1, manager.getTask(task1.getId()));
+        assertSame(task2, manager.getTask(task2.getId()));
+        assertEquals("a.pdf#2", manager.getUniqueFilename("a.pdf"));
+        try {
+            manager.getTask(task2.getId() + 1);
+            fail("Unknown task found");
+        } catch (NoSuchTaskException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedTaskIsRemoved() {
+        TaskManagerImpl manager = new TaskManagerImpl(3, Long.MAX_VALUE, 0, null);
+        ExtractionTask task1 = finished(manager.createTask(new byte[1], "1.pdf"));
+        ExtractionTask task2 = finished(manager.createTask(new byte[1], "2.pdf"));
+        ExtractionTask task3 = manager.createTask(new byte[1], "3.pdf");
+        manager.getTask(task1.getId());
+
+        ExtractionTask task4 = manager.createTask(new byte[1], "4.pdf");
+        assertTaskIds(manager.getTaskList(), task1, task3, task4);
+        assertNull(task2.getPdfSource());
+
+        // unfinished tasks are removed only if there are no finished ones
+        ExtractionTask task5 = manager.createTask(new byte[1], "5.pdf");
+        assertTaskIds(manager.getTaskList(), task3, task4, task5);
+        ExtractionTask task6 = manager.createTask(new byte[1], "6.pdf");
+        assertTaskIds(manager.getTaskList(), task4, task5, task6);
+        assertNotNull(task3.getPdfSource());
+    }
+
+    @Test
+    public void testFinishedTasksExpire() throws InterruptedException {
+        TaskManagerImpl manager = new TaskManagerImpl(10, 20, 0, null);
+        ExtractionTask finishedTask = finished(manager.createTask(new byte[1], "1.pdf"));
+        ExtractionTask task = manager.createTask(new byte[1], "2.pdf");
+        Thread.sleep(50);
+        assertTaskIds(manager.getTaskList(), task);
+        try {
+            manager.getTask(finishedTask.getId());
+            fail("Expired task found");
+        } catch (NoSuchTaskException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBigPdfIsSpilled() throws IOException {
+        TaskManagerImpl manager = new TaskManagerImpl(10, Long.MAX_VALUE, 100, spillDirectory);
+        byte[] small = new byte[100];
+        byte[] big = new byte[101];
+        big[100] = 7;
+        ExtractionTask smallTask = manager.createTask(small, "small.pdf");
+        ExtractionTask bigTask = manager.createTask(big, "big.pdf");
+
+        assertSame(small, smallTask.getPdf());
+        assertNull(bigTask.getPdf());
+        assertEquals(1, spilledPdfs().size());
+        try (InputStream is = bigTask.getPdfSource().openStream()) {
+            assertArrayEquals(big, IOUtils.toByteArray(is));
+        }
+
+        bigTask.releasePdf();
+        assertNull(bigTask.getPdfSource());
+        assertEquals(0, spilledPdfs().size());
+    }
+
+    @Test
+    public void testStaleSpillDirectoriesAreRemoved() throws IOException {
+        File stale = spillSubdirectory("cermine-tasks-1", 0);
+        assertTrue(new File(stale, "task.pdf").createNewFile());
+        File live = spillSubdirectory("cermine-tasks-2", 0);
+        File recent = spillSubdirectory("cermine-tasks-3", System.currentTimeMillis());
+        File other = new File(spillDirectory, "other.pdf");
+        assertTrue(other.createNewFile());
+        assertTrue(other.setLastModified(0));
+
+        try (FileChannel channel = FileChannel.open(new File(live, "server.lock").toPath(),
+                StandardOpenOption.WRITE); FileLock lock = channel.lock()) {
+            TaskManagerImpl manager = new TaskManagerImpl(10, Long.MAX_VALUE, 100, spillDirectory);
+            manager.createTask(new byte[1], "small.pdf");
+            assertTrue(stale.exists());
+            ExtractionTask bigTask = manager.createTask(new byte[101], "big.pdf");
+            assertFalse(stale.exists());
+            assertTrue(live.exists());
+            assertTrue(recent.exists());
+            assertTrue(other.exists());
+            assertEquals(1, spilledPdfs().size());
+
+            // the subdirectory is shared by the sessions
+            ExtractionTask otherTask = new TaskManagerImpl(10, Long.MAX_VALUE, 100, spillDirectory)
+                    .createTask(new byte[101], "big.pdf");
+            assertEquals(2, spilledPdfs().size());
+            assertEquals(spilledPdfs().get(0).getParentFile(), spilledPdfs().get(1).getParentFile());
+            bigTask.releasePdf();
+            otherTask.releasePdf();
+        }
+    }
+
+    /**
+     * Creates a spill subdirectory of a server with a lock file modified at the given time.
+     */
+    private File spillSubdirectory(String name, long lastModified) throws IOException {
+        File subdirectory = new File(spillDirectory, name);
+        assertTrue(subdirectory.mkdir());
+        File lockFile = new File(subdirectory, "server.lock");
+        assertTrue(lockFile.createNewFile());
+        assertTrue(lockFile.setLastModified(lastModified));
+        return subdirectory;
+    }
+
+    /**
+     * @return the pdf files in the spill subdirectories
+     */
+    private List<File> spilledPdfs() {
+        List<File> pdfs = new ArrayList<>();
+        for (File subdirectory : spillDirectory.listFiles()) {
+            if (subdirectory.isDirectory()) {
+                for (File file : subdirectory.listFiles()) {
+                    if (file.getName().endsWith(".pdf")) {
+                        pdfs.add(file);
+                    }
+                }
+            }
+        }
+        return pdfs;
+    }
+
+    private static ExtractionTask finished(ExtractionTask task) {
+        task.setStatus(TaskStatus.FINISHED);
+        return task;
+    }
+
+    private static void assertTaskIds(List<ExtractionTask> tasks, ExtractionTask... expected) {
+        assertEquals(expected.length, tasks.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].getId(), tasks.get(i).getId());
+        }
+    }
+}